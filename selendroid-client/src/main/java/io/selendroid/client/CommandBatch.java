@@ -0,0 +1,143 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.client;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects several commands and sends them to the device in a single request. The device
+ * executes the commands in the order they were added and returns one result per command, so
+ * each command gets its own future.
+ *
+ * <pre>
+ * CommandBatch batch = driver.newBatch();
+ * ListenableFuture&lt;Object&gt; title = batch.add("getTitle");
+ * ListenableFuture&lt;Object&gt; url = batch.add("getCurrentUrl");
+ * batch.send();
+ * </pre>
+ *
+ * Values returned by a command cannot be used as parameters of a later command of the same
+ * batch.
+ */
+public class CommandBatch {
+  private final SelendroidDriver driver;
+  private final List<Command> commands = new ArrayList<Command>();
+  private final List<SettableFuture<Object>> results = new ArrayList<SettableFuture<Object>>();
+  private boolean stopOnError = false;
+  private boolean sent = false;
+
+  CommandBatch(SelendroidDriver driver) {
+    this.driver = driver;
+  }
+
+  public ListenableFuture<Object> add(String command) {
+    return add(command, ImmutableMap.<String, Object>of());
+  }
+
+  /**
+   * Adds a command to the batch. The returned future completes with the value of the command,
+   * elements as {@link org.openqa.selenium.WebElement}s, or with the exception the synchronous
+   * call would have thrown, once the batch was executed.
+   */
+  public synchronized ListenableFuture<Object> add(String command, Map<String, ?> parameters) {
+    checkNotSent();
+    commands.add(new Command(driver.getSessionId(), command, parameters));
+    SettableFuture<Object> result = SettableFuture.create();
+    results.add(result);
+    return result;
+  }
+
+  /**
+   * If set, the device skips the remaining commands after the first one that failed. The futures
+   * of the skipped commands fail as well.
+   */
+  public synchronized CommandBatch stopOnError(boolean stopOnError) {
+    checkNotSent();
+    this.stopOnError = stopOnError;
+    return this;
+  }
+
+  public synchronized int size() {
+    return commands.size();
+  }
+
+  /**
+   * Sends the batch without blocking the calling thread.
+   *
+   * @return a future of the values of all commands, which fails if any of the commands failed
+   */
+  public synchronized ListenableFuture<List<Object>> send() {
+    checkNotSent();
+    sent = true;
+    List<Map<String, Object>> entries = new ArrayList<Map<String, Object>>(commands.size());
+    for (Command command : commands) {
+      entries.add(SelendroidCommandExecutor.toBatchEntry(command));
+    }
+    ListenableFuture<Object> response = driver.executeAsync(SelendroidCommandExecutor.EXECUTE_BATCH,
+        ImmutableMap.of("commands", entries, "stopOnError", stopOnError));
+    Futures.addCallback(response, new FutureCallback<Object>() {
+      @Override
+      public void onSuccess(Object value) {
+        complete((List<?>) value);
+      }
+
+      @Override
+      public void onFailure(Throwable t) {
+        for (SettableFuture<Object> result : results) {
+          result.setException(t);
+        }
+      }
+    });
+    return Futures.allAsList(results);
+  }
+
+  private void complete(List<?> values) {
+    for (int i = 0; i < results.size(); i++) {
+      SettableFuture<Object> result = results.get(i);
+      if (i >= values.size()) {
+        result.setException(new WebDriverException("Command '" + commands.get(i).getName()
+            + "' was skipped because an earlier command of the batch failed."));
+        continue;
+      }
+      Map<?, ?> value = (Map<?, ?>) values.get(i);
+      Response response = new Response(driver.getSessionId());
+      response.setStatus(((Number) value.get("status")).intValue());
+      response.setValue(value.get("value"));
+      try {
+        driver.getErrorHandler().throwIfResponseFailed(response, 0);
+        result.set(driver.convertResponseValue(response.getValue()));
+      } catch (RuntimeException e) {
+        result.setException(e);
+      }
+    }
+  }
+
+  private void checkNotSent() {
+    if (sent) {
+      throw new IllegalStateException("The batch was already sent.");
+    }
+  }
+}
@@ -34,10 +34,14 @@ public class MultiTouchScreen {
   }
 
   private Map<String, Object> createActionChain(TouchAction touchAction) {
+    return createActionChain(touchAction.getActionChain());
+  }
+
+  private Map<String, Object> createActionChain(List<Map<String, Object>> actions) {
     Map<String, Object> actionChain = Maps.newHashMap();
     actionChain.put("inputDevice", "touch");
     actionChain.put("id", "");
-    actionChain.put("actions", touchAction.getActionChain());
+    actionChain.put("actions", actions);
 
     return actionChain;
   }
@@ -63,4 +67,16 @@ public class MultiTouchScreen {
 
     mExecuteMethod.execute("actions", params);
   }
+
+  protected void executeAction(TouchActionBatch batch) {
+    List<Map<String, Object>> payload = Lists.newArrayList();
+    for (List<Map<String, Object>> actions : batch.getActionChains()) {
+      payload.add(createActionChain(actions));
+    }
+
+    Map<String, Object> params = Maps.newHashMap();
+    params.put("payload", payload);
+
+    mExecuteMethod.execute("actions", params);
+  }
 }
@@ -13,9 +13,13 @@
  */
 package io.selendroid.client;
 
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.Command;
 import org.openqa.selenium.remote.CommandInfo;
 import org.openqa.selenium.remote.HttpCommandExecutor;
 import org.openqa.selenium.remote.http.HttpMethod;
+import org.openqa.selenium.remote.http.HttpRequest;
+import org.openqa.selenium.remote.http.JsonHttpCommandCodec;
 
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -23,50 +27,85 @@ import java.util.HashMap;
 import java.util.Map;
 
 public class SelendroidCommandExecutor extends HttpCommandExecutor {
+  /**
+   * Executes several commands of a session in one request, see {@link CommandBatch}.
+   */
+  public final static String EXECUTE_BATCH = "-selendroid-executeBatch";
   private final static String VENDOR_PREFIX = "/session/:sessionId/selendroid/";
   private final static Map<String, CommandInfo> SELENDROID_COMMANDS =
-      new HashMap<String, CommandInfo>() {
-        {
-          // TODO remove network connection once 2.42 is released for Selenium
-          put("getNetworkConnection", new CommandInfo("/session/:sessionId/network_connection",
-              HttpMethod.GET));
-          put("setNetworkConnection", new CommandInfo("/session/:sessionId/network_connection",
-                  HttpMethod.POST));
-          put("actions", new CommandInfo("/session/:sessionId/actions", HttpMethod.POST));
-          // trackball command, should be part of Selenium mouse API, but is not implemented as of now.
-          put("roll", new CommandInfo("/session/:sessionId/trackball/roll", HttpMethod.POST));
-
-
-          put("selendroid-getBrightness", newVendorCommand("screen/brightness", HttpMethod.GET));
-          put("selendroid-setBrightness", newVendorCommand("screen/brightness", HttpMethod.POST));
-
-          put("selendroid-getCommandConfiguration",
-                  newVendorCommand("configure/command/:command", HttpMethod.GET));
-          put("selendroid-setCommandConfiguration",
-                  newVendorCommand("configure/command/:command", HttpMethod.POST));
-
-          put("selendroid-adb-sendKeyEvent",newVendorCommand("adb/sendKeyEvent", HttpMethod.POST));
-          put("selendroid-adb-sendText", newVendorCommand("adb/sendText", HttpMethod.POST));
-          put("selendroid-adb-tap", newVendorCommand("adb/tap", HttpMethod.POST));
-          put("selendroid-adb-executeShellCommand",
-                  newVendorCommand("adb/executeShellCommand", HttpMethod.POST));
-
-          put("selendroid-handleByExtension", newVendorCommand("extension", HttpMethod.POST));
-
-          put("backgroundApp", newVendorCommand("background", HttpMethod.POST));
-          put("resumeApp", newVendorCommand("resume", HttpMethod.POST));
-
-          put("addCallLog", newVendorCommand("addCallLog", HttpMethod.POST));
-          put("readCallLog", newVendorCommand("readCallLog", HttpMethod.POST));
-
-          put("-selendroid-forceGcExplicitly", newVendorCommand("gc", HttpMethod.POST));
-          put("-selendroid-setAndroidOsSystemProperty",
-                  newVendorCommand("systemProperty", HttpMethod.POST));
-        }
-      };
-
-  private static CommandInfo newVendorCommand(String path, HttpMethod method) {
-    return new CommandInfo(VENDOR_PREFIX + path, method);
+      new HashMap<String, CommandInfo>();
+  // Resolves the URL of commands that are sent as part of a batch.
+  private final static JsonHttpCommandCodec BATCH_CODEC = new JsonHttpCommandCodec();
+
+  static {
+    // TODO remove network connection once 2.42 is released for Selenium
+    defineCommand("getNetworkConnection", "/session/:sessionId/network_connection",
+        HttpMethod.GET);
+    defineCommand("setNetworkConnection", "/session/:sessionId/network_connection",
+        HttpMethod.POST);
+    defineCommand("actions", "/session/:sessionId/actions", HttpMethod.POST);
+    // trackball command, should be part of Selenium mouse API, but is not implemented as of now.
+    defineCommand("roll", "/session/:sessionId/trackball/roll", HttpMethod.POST);
+
+
+    defineVendorCommand("selendroid-getBrightness", "screen/brightness", HttpMethod.GET);
+    defineVendorCommand("selendroid-setBrightness", "screen/brightness", HttpMethod.POST);
+
+    defineVendorCommand("selendroid-getCommandConfiguration",
+        "configure/command/:command", HttpMethod.GET);
+    defineVendorCommand("selendroid-setCommandConfiguration",
+        "configure/command/:command", HttpMethod.POST);
+
+    defineVendorCommand("selendroid-adb-sendKeyEvent", "adb/sendKeyEvent", HttpMethod.POST);
+    defineVendorCommand("selendroid-adb-sendText", "adb/sendText", HttpMethod.POST);
+    defineVendorCommand("selendroid-adb-tap", "adb/tap", HttpMethod.POST);
+    defineVendorCommand("selendroid-adb-executeShellCommand",
+        "adb/executeShellCommand", HttpMethod.POST);
+
+    defineVendorCommand("selendroid-handleByExtension", "extension", HttpMethod.POST);
+
+    defineVendorCommand("backgroundApp", "background", HttpMethod.POST);
+    defineVendorCommand("resumeApp", "resume", HttpMethod.POST);
+
+    defineVendorCommand("addCallLog", "addCallLog", HttpMethod.POST);
+    defineVendorCommand("readCallLog", "readCallLog", HttpMethod.POST);
+
+    defineVendorCommand("-selendroid-getServerLogs", "serverLogs", HttpMethod.POST);
+
+    defineVendorCommand("-selendroid-forceGcExplicitly", "gc", HttpMethod.POST);
+    defineVendorCommand("-selendroid-setAndroidOsSystemProperty",
+        "systemProperty", HttpMethod.POST);
+
+    defineVendorCommand(EXECUTE_BATCH, "batch", HttpMethod.POST);
+    defineVendorCommand("-selendroid-waitForCondition", "waitFor", HttpMethod.POST);
+  }
+
+  private static void defineCommand(String name, String url, HttpMethod method) {
+    SELENDROID_COMMANDS.put(name, new CommandInfo(url, method));
+    BATCH_CODEC.defineCommand(name, method, url);
+  }
+
+  private static void defineVendorCommand(String name, String path, HttpMethod method) {
+    defineCommand(name, VENDOR_PREFIX + path, method);
+  }
+
+  /**
+   * Converts a command into an entry of the {@link #EXECUTE_BATCH} payload: its HTTP method, its
+   * path relative to the session URI and its parameters as body.
+   */
+  static Map<String, Object> toBatchEntry(Command command) {
+    HttpRequest request = BATCH_CODEC.encode(command);
+    String sessionUri = "/session/" + command.getSessionId();
+    String uri = request.getUri();
+    if (!uri.startsWith(sessionUri)) {
+      throw new WebDriverException("Only commands of the current session can be batched: "
+          + command.getName());
+    }
+    Map<String, Object> entry = new HashMap<String, Object>();
+    entry.put("method", request.getMethod().name());
+    entry.put("path", uri.substring(sessionUri.length()));
+    entry.put("body", command.getParameters());
+    return entry;
   }
 
   public SelendroidCommandExecutor(URL url) throws MalformedURLException {
@@ -13,12 +13,21 @@
  */
 package io.selendroid.client;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.selendroid.client.adb.AdbConnection;
 import io.selendroid.server.common.utils.CallLogEntry;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -26,6 +35,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -34,12 +45,17 @@ import org.openqa.selenium.ContextAware;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.Rotatable;
 import org.openqa.selenium.ScreenOrientation;
+import org.openqa.selenium.UnsupportedCommandException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.HasTouchScreen;
 import org.openqa.selenium.interactions.TouchScreen;
 import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.ErrorCodes;
 import org.openqa.selenium.remote.ExecuteMethod;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.JsonToBeanConverter;
 import org.openqa.selenium.remote.RemoteExecuteMethod;
 import org.openqa.selenium.remote.RemoteTouchScreen;
 import org.openqa.selenium.remote.RemoteWebDriver;
@@ -66,8 +82,14 @@ public class SelendroidDriver extends RemoteWebDriver
   private MultiTouchScreen multiTouchScreen;
   private RemoteAdbConnection adbConnection;
   private TrackBall trackBall;
-
-  private SelendroidDriver(CommandExecutor executor, Capabilities caps) throws Exception {
+  // Runs the commands of the non-blocking API one after the other, in the order of submission.
+  private final ListeningExecutorService asyncExecutor = MoreExecutors.listeningDecorator(
+      Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("selendroid-driver-async-%d").setDaemon(true).build()));
+  // Cleared once the server answered that it does not know wait conditions.
+  private volatile boolean waitConditionsSupported = true;
+
+  /* package */SelendroidDriver(CommandExecutor executor, Capabilities caps) throws Exception {
     super(executor, caps);
     RemoteExecuteMethod executeMethod = new RemoteExecuteMethod(this);
     touchScreen = new RemoteTouchScreen(executeMethod);
@@ -250,6 +272,17 @@ public class SelendroidDriver extends RemoteWebDriver
     }
   }
 
+  /**
+   * Reads the log entries buffered by the selendroid server on the device, starting at the given
+   * sequence number. The returned map contains the list of {@code entries} and the sequence
+   * number to pass as {@code since} to the next call in {@code next}.
+   */
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> getServerLogs(long since) {
+    Response response = execute("-selendroid-getServerLogs", ImmutableMap.of("since", since));
+    return (Map<String, Object>) response.getValue();
+  }
+
   public Object callExtension(String extensionMethod) {
     return callExtension(extensionMethod, ImmutableMap.<String, Object>of());
   }
@@ -286,4 +319,149 @@ public class SelendroidDriver extends RemoteWebDriver
     execute("-selendroid-forceGcExplicitly");
   }
 
+  /**
+   * Takes a PNG screenshot, see {@link #getScreenshotBytes(String)}.
+   */
+  public byte[] getScreenshotBytes() {
+    return getScreenshotBytes("png");
+  }
+
+  /**
+   * Takes a screenshot and returns the image bytes as sent by the server, without the Base64 and
+   * JSON encoding used by {@link #getScreenshotAs(OutputType)}. Falls back to the latter if the
+   * server does not support raw screenshots.
+   *
+   * @param format {@code png} or {@code webp}. Screenshots taken with adb by the standalone
+   *        server are always PNG.
+   */
+  public byte[] getScreenshotBytes(String format) {
+    HttpURLConnection connection = null;
+    try {
+      URL server = ((HttpCommandExecutor) getCommandExecutor()).getAddressOfRemoteServer();
+      URL url = new URL(server.toExternalForm() + "/session/" + getSessionId()
+          + "/selendroid/screenshot?format=" + format);
+      connection = (HttpURLConnection) url.openConnection();
+      int status = connection.getResponseCode();
+      if (status == 404) {
+        return getScreenshotAs(OutputType.BYTES);
+      }
+      InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+      byte[] content;
+      try {
+        int length = connection.getContentLength();
+        if (length >= 0) {
+          content = new byte[length];
+          ByteStreams.readFully(in, content);
+        } else {
+          content = ByteStreams.toByteArray(in);
+        }
+      } finally {
+        in.close();
+      }
+      String contentType = connection.getContentType();
+      if (contentType != null && contentType.startsWith("image/")) {
+        return content;
+      }
+      // Errors are reported the same way as for any other command
+      Response response = new JsonToBeanConverter().convert(Response.class,
+          new String(content, Charsets.UTF_8));
+      if (response.getStatus() == ErrorCodes.UNKNOWN_COMMAND) {
+        return getScreenshotAs(OutputType.BYTES);
+      }
+      getErrorHandler().throwIfResponseFailed(response, 0);
+      throw new WebDriverException("Unexpected screenshot response of type " + contentType);
+    } catch (IOException e) {
+      throw new WebDriverException("Failed to take screenshot", e);
+    } finally {
+      if (connection != null) {
+        connection.disconnect();
+      }
+    }
+  }
+
+  /**
+   * Waits on the device until the condition is satisfied, without polling it from the client.
+   * See the {@code WaitForCondition} handler of the selendroid server for the supported
+   * conditions.
+   *
+   * @param condition the condition, with its {@code type} and parameters
+   * @param timeoutMillis how long to wait
+   * @return the value the condition was satisfied with
+   * @throws org.openqa.selenium.TimeoutException if the condition was not satisfied in time
+   * @throws UnsupportedCommandException if the selendroid server does not support wait
+   *         conditions
+   */
+  public Object waitForCondition(Map<String, ?> condition, long timeoutMillis) {
+    try {
+      return execute("-selendroid-waitForCondition",
+          ImmutableMap.of("condition", condition, "timeout", timeoutMillis)).getValue();
+    } catch (UnsupportedCommandException e) {
+      waitConditionsSupported = false;
+      throw e;
+    }
+  }
+
+  /**
+   * Returns {@code false} once the selendroid server answered that it does not support
+   * {@link #waitForCondition(Map, long)}.
+   */
+  public boolean supportsWaitConditions() {
+    return waitConditionsSupported;
+  }
+
+  /**
+   * Executes a command without blocking the calling thread. Commands submitted with this method
+   * or with {@link CommandBatch#send()} are executed one after the other in the order they were
+   * submitted; there is no ordering guarantee relative to commands executed synchronously from
+   * other threads.
+   *
+   * @param command the name of the command, e.g. one of
+   *        {@link org.openqa.selenium.remote.DriverCommand}
+   * @return the value of the response, elements are returned as {@link WebElement}s
+   */
+  public ListenableFuture<Object> executeAsync(String command) {
+    return executeAsync(command, ImmutableMap.<String, Object>of());
+  }
+
+  /**
+   * Executes a command with the given parameters without blocking the calling thread.
+   *
+   * @see #executeAsync(String)
+   */
+  public ListenableFuture<Object> executeAsync(final String command,
+      final Map<String, ?> parameters) {
+    return asyncExecutor.submit(new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return execute(command, parameters).getValue();
+      }
+    });
+  }
+
+  /**
+   * Converts the elements in the value of a response into {@link WebElement}s, the same way the
+   * values of synchronous commands are converted.
+   */
+  /* package */Object convertResponseValue(Object value) {
+    return getElementConverter().apply(value);
+  }
+
+  /**
+   * Creates a batch that sends several commands to the device in one request.
+   */
+  public CommandBatch newBatch() {
+    return new CommandBatch(this);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * Commands of the non-blocking API that are still queued are not guaranteed to be executed.
+   */
+  @Override
+  public void quit() {
+    asyncExecutor.shutdown();
+    super.quit();
+  }
+
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.List;
+import java.util.Map;
+
+import io.selendroid.server.common.action.touch.TouchActionName;
+
+/**
+ * A TouchActionBatch performs several gestures one after another with a single request to the
+ * device. Every gesture is merged into one multi-pointer action tree, so the device executes the
+ * whole batch with its own timing instead of one HTTP round trip per gesture.
+ */
+public class TouchActionBatch {
+
+  private List<MultiTouchAction> gestures = Lists.newArrayList();
+
+  public TouchActionBatch add(TouchAction touchAction) {
+    gestures.add(new MultiTouchAction(touchAction));
+    return this;
+  }
+
+  public TouchActionBatch add(MultiTouchAction multiTouchAction) {
+    gestures.add(multiTouchAction);
+    return this;
+  }
+
+  /**
+   * Merges the gestures into parallel action chains, one per pointer. Chains are padded with
+   * zero length pauses so that every gesture starts in the same tick on all pointers.
+   */
+  protected List<List<Map<String, Object>>> getActionChains() {
+    int pointerCount = 0;
+    for (MultiTouchAction gesture : gestures) {
+      pointerCount = Math.max(pointerCount, gesture.getTouchActions().size());
+    }
+
+    List<List<Map<String, Object>>> chains = Lists.newArrayList();
+    for (int i = 0; i < pointerCount; i++) {
+      chains.add(Lists.<Map<String, Object>>newArrayList());
+    }
+
+    for (MultiTouchAction gesture : gestures) {
+      ImmutableList<TouchAction> touchActions = gesture.getTouchActions();
+      int ticks = 0;
+      for (TouchAction touchAction : touchActions) {
+        ticks = Math.max(ticks, touchAction.getActionChain().size());
+      }
+      for (int i = 0; i < pointerCount; i++) {
+        List<Map<String, Object>> chain = chains.get(i);
+        int start = chain.size();
+        if (i < touchActions.size()) {
+          chain.addAll(touchActions.get(i).getActionChain());
+        }
+        while (chain.size() < start + ticks) {
+          chain.add(emptyPause());
+        }
+      }
+    }
+    return chains;
+  }
+
+  private Map<String, Object> emptyPause() {
+    Map<String, Object> pause = Maps.newHashMap();
+    pause.put("name", TouchActionName.PAUSE);
+    pause.put("ms", 0);
+    return pause;
+  }
+
+  public void perform(WebDriver driver) {
+    Preconditions.checkState(driver instanceof HasMultiTouchScreen);
+    ((HasMultiTouchScreen) driver)
+        .getMultiTouchScreen()
+        .executeAction(this);
+  }
+}
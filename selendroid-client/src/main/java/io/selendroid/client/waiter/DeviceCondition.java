@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.client.waiter;
+
+import io.selendroid.client.SelendroidDriver;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.WrapsDriver;
+import org.openqa.selenium.remote.RemoteWebElement;
+
+/**
+ * A waiting condition the selendroid server can evaluate on the device. {@link TestWaiter} sends
+ * it to the device with {@link SelendroidDriver#waitForCondition(Map, long)} and only polls it
+ * with {@link #call()} if the driver is not a {@link SelendroidDriver} or the server does not
+ * support wait conditions.
+ */
+abstract class DeviceCondition<X> implements Callable<X> {
+
+  /**
+   * Returns the driver to evaluate the condition with, or {@code null} if it must be polled.
+   */
+  abstract SelendroidDriver getDriver();
+
+  /**
+   * The condition in the format of the wait conditions endpoint.
+   */
+  abstract Map<String, Object> toJson();
+
+  /**
+   * Converts the value the device returned into the value {@link #call()} would have returned.
+   */
+  @SuppressWarnings("unchecked")
+  X fromResult(Object value) {
+    return (X) value;
+  }
+
+  static SelendroidDriver asSelendroidDriver(WebDriver driver) {
+    return driver instanceof SelendroidDriver ? (SelendroidDriver) driver : null;
+  }
+
+  static SelendroidDriver asSelendroidDriver(WebElement element) {
+    if (element instanceof RemoteWebElement) {
+      return asSelendroidDriver(((WrapsDriver) element).getWrappedDriver());
+    }
+    return null;
+  }
+}
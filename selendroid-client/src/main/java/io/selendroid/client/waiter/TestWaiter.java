@@ -20,7 +20,11 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
+import io.selendroid.client.SelendroidDriver;
+
 import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.UnsupportedCommandException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedConditions;
@@ -48,14 +52,31 @@ public class TestWaiter {
 
   /**
    * Wait for the callable to return either "not null" or "true". Exceptions are caught and only
-   * rethrown if we time out.
+   * rethrown if we time out. Conditions created by {@link WaitingConditions} for a
+   * {@link SelendroidDriver} are evaluated on the device instead of being polled.
    * 
    * @param until Condition that we're waiting for.
    * @param duration How long to wait.
    * @param in Unit in which duration is measured.
    * @return Whatever the condition returns.
    */
+  @SuppressWarnings("unchecked")
   public static <X> X waitFor(Callable<X> until, long duration, TimeUnit in) {
+    if (until instanceof DeviceCondition) {
+      DeviceCondition<X> condition = (DeviceCondition<X>) until;
+      SelendroidDriver driver = condition.getDriver();
+      if (driver != null && driver.supportsWaitConditions()) {
+        try {
+          return condition.fromResult(
+              driver.waitForCondition(condition.toJson(), in.toMillis(duration)));
+        } catch (UnsupportedCommandException e) {
+          // The selendroid server is too old, poll the condition from here instead.
+        } catch (TimeoutException e) {
+          throw new RuntimeException("Condition timed out: " + until, e);
+        }
+      }
+    }
+
     long end = System.currentTimeMillis() + in.toMillis(duration);
 
     X value = null;
@@ -15,6 +15,10 @@
 
 package io.selendroid.client.waiter;
 
+import io.selendroid.client.SelendroidDriver;
+
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 
@@ -25,6 +29,7 @@ import org.openqa.selenium.Point;
 import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebElement;
 
 public class WaitingConditions {
 
@@ -33,12 +38,22 @@ public class WaitingConditions {
   }
 
   public static Callable<WebElement> elementToExist(final WebDriver driver, final String elementId) {
-    return new Callable<WebElement>() {
+    return new DeviceCondition<WebElement>() {
 
       public WebElement call() throws Exception {
         return driver.findElement(By.id(elementId));
       }
 
+      @Override
+      SelendroidDriver getDriver() {
+        return asSelendroidDriver(driver);
+      }
+
+      @Override
+      Map<String, Object> toJson() {
+        return condition("elementExists", "using", "id", "value", elementId);
+      }
+
       @Override
       public String toString() {
         return String.format("element with ID %s to exist", elementId);
@@ -46,14 +61,28 @@ public class WaitingConditions {
     };
   }
 
-  private static abstract class ElementTextComperator implements Callable<String> {
+  private static abstract class ElementTextComperator extends DeviceCondition<String> {
     private String lastText = "";
     private WebElement element;
     private String expectedValue;
+    // The type of the equivalent wait condition on the device, null if there is none.
+    private String conditionType;
 
-    ElementTextComperator(WebElement element, String expectedValue) {
+    ElementTextComperator(WebElement element, String expectedValue, String conditionType) {
       this.element = element;
       this.expectedValue = expectedValue;
+      this.conditionType = conditionType;
+    }
+
+    @Override
+    SelendroidDriver getDriver() {
+      return conditionType == null ? null : asSelendroidDriver(element);
+    }
+
+    @Override
+    Map<String, Object> toJson() {
+      return condition(conditionType, "element", ((RemoteWebElement) element).getId(),
+          "text", expectedValue);
     }
 
     public String call() throws Exception {
@@ -74,7 +103,7 @@ public class WaitingConditions {
   }
 
   public static Callable<String> elementTextToEqual(final WebElement element, final String value) {
-    return new ElementTextComperator(element, value) {
+    return new ElementTextComperator(element, value, "elementTextEquals") {
 
       @Override
       boolean compareText(String expectedValue, String actualValue) {
@@ -85,7 +114,7 @@ public class WaitingConditions {
 
   public static Callable<String> trimmedElementTextToEqual(final WebElement element,
       final String value) {
-    return new ElementTextComperator(element, value) {
+    return new ElementTextComperator(element, value, null) {
 
       @Override
       boolean compareText(String expectedValue, String actualValue) {
@@ -95,7 +124,7 @@ public class WaitingConditions {
   }
 
   public static Callable<String> elementTextToContain(final WebElement element, final String value) {
-    return new ElementTextComperator(element, value) {
+    return new ElementTextComperator(element, value, "elementTextContains") {
 
       @Override
       boolean compareText(String expectedValue, String actualValue) {
@@ -148,7 +177,7 @@ public class WaitingConditions {
   }
 
   public static Callable<Boolean> elementToBeHidden(final WebElement element) {
-    return new Callable<Boolean>() {
+    return new DeviceCondition<Boolean>() {
       public Boolean call() throws Exception {
         try {
           return !element.isDisplayed();
@@ -156,6 +185,16 @@ public class WaitingConditions {
           return true;
         }
       }
+
+      @Override
+      SelendroidDriver getDriver() {
+        return asSelendroidDriver(element);
+      }
+
+      @Override
+      Map<String, Object> toJson() {
+        return condition("elementHidden", "element", ((RemoteWebElement) element).getId());
+      }
     };
   }
 
@@ -181,7 +220,17 @@ public class WaitingConditions {
   }
 
   public static Callable<String> pageTitleToBe(final WebDriver driver, final String expectedTitle) {
-    return new Callable<String>() {
+    return new DeviceCondition<String>() {
+
+      @Override
+      SelendroidDriver getDriver() {
+        return asSelendroidDriver(driver);
+      }
+
+      @Override
+      Map<String, Object> toJson() {
+        return condition("titleEquals", "text", expectedTitle);
+      }
 
       public String call() throws Exception {
         String title = driver.getTitle();
@@ -200,7 +249,17 @@ public class WaitingConditions {
     };
   }
   public static Callable<String> driverUrlToBe(final WebDriver driver, final String expectedUrl) {
-    return new Callable<String>() {
+    return new DeviceCondition<String>() {
+
+      @Override
+      SelendroidDriver getDriver() {
+        return asSelendroidDriver(driver);
+      }
+
+      @Override
+      Map<String, Object> toJson() {
+        return condition("urlEquals", "text", expectedUrl);
+      }
 
       public String call() throws Exception {
         String url = driver.getCurrentUrl();
@@ -278,4 +337,12 @@ public class WaitingConditions {
     };
   }
 
+  private static Map<String, Object> condition(String type, String... parameters) {
+    Map<String, Object> condition = new HashMap<String, Object>();
+    condition.put("type", type);
+    for (int i = 0; i < parameters.length; i += 2) {
+      condition.put(parameters[i], parameters[i + 1]);
+    }
+    return condition;
+  }
 }
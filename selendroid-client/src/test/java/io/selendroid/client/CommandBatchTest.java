@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.RemoteWebElement;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class CommandBatchTest {
+  private FakeCommandExecutor executor;
+  private SelendroidDriver driver;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = new FakeCommandExecutor();
+    driver = new SelendroidDriver(executor, new DesiredCapabilities());
+  }
+
+  @Test
+  public void shouldReturnBatchedElementsAsWebElements() throws Exception {
+    executor.respond("-selendroid-executeBatch", ImmutableList.of(
+        ImmutableMap.of("status", 0, "value", ImmutableMap.of("ELEMENT", "7")),
+        ImmutableMap.of("status", 0, "value", ImmutableList.of(ImmutableMap.of("ELEMENT", "8"))),
+        ImmutableMap.of("status", 0, "value", "Title")));
+
+    CommandBatch batch = driver.newBatch();
+    ListenableFuture<Object> element = batch.add(DriverCommand.FIND_ELEMENT,
+        ImmutableMap.of("using", "id", "value", "button"));
+    ListenableFuture<Object> elements = batch.add(DriverCommand.FIND_ELEMENTS,
+        ImmutableMap.of("using", "id", "value", "item"));
+    ListenableFuture<Object> title = batch.add(DriverCommand.GET_TITLE);
+    batch.send().get(5, TimeUnit.SECONDS);
+
+    Assert.assertTrue(element.get() instanceof RemoteWebElement);
+    Assert.assertEquals("7", ((RemoteWebElement) element.get()).getId());
+    Assert.assertEquals(driver, ((RemoteWebElement) element.get()).getWrappedDriver());
+    Object found = ((List<?>) elements.get()).get(0);
+    Assert.assertTrue(found instanceof RemoteWebElement);
+    Assert.assertEquals("8", ((RemoteWebElement) found).getId());
+    Assert.assertEquals("Title", title.get());
+
+    Map<?, ?> payload = executor.getLastParameters();
+    Assert.assertEquals(3, ((List<?>) payload.get("commands")).size());
+  }
+
+  @Test
+  public void shouldFailOnlyTheFutureOfTheFailedCommand() throws Exception {
+    executor.respond("-selendroid-executeBatch", ImmutableList.of(
+        ImmutableMap.of("status", ErrorCodes.NO_SUCH_ELEMENT,
+            "value", ImmutableMap.of("message", "not found")),
+        ImmutableMap.of("status", 0, "value", "Title")));
+
+    CommandBatch batch = driver.newBatch();
+    ListenableFuture<Object> element = batch.add(DriverCommand.FIND_ELEMENT,
+        ImmutableMap.of("using", "id", "value", "missing"));
+    ListenableFuture<Object> title = batch.add(DriverCommand.GET_TITLE);
+    batch.send();
+
+    try {
+      element.get(5, TimeUnit.SECONDS);
+      Assert.fail("The lookup should have failed");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof NoSuchElementException);
+    }
+    Assert.assertEquals("Title", title.get(5, TimeUnit.SECONDS));
+  }
+}
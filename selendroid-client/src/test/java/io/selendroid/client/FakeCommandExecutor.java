@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.client;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Answers the commands of a {@link SelendroidDriver} with canned values instead of talking to a
+ * selendroid server. Commands without a canned value are answered as unknown commands.
+ */
+public class FakeCommandExecutor implements CommandExecutor {
+  private static final SessionId SESSION_ID = new SessionId("1");
+  private final Map<String, Object> values = new HashMap<String, Object>();
+  private Map<String, ?> lastParameters;
+
+  public FakeCommandExecutor() {
+    respond(DriverCommand.NEW_SESSION, ImmutableMap.of("platform", "ANDROID"));
+    respond(DriverCommand.QUIT, null);
+  }
+
+  /**
+   * Starts a {@link SelendroidDriver} whose commands are answered by this executor.
+   */
+  public SelendroidDriver newDriver() throws Exception {
+    return new SelendroidDriver(this, new DesiredCapabilities());
+  }
+
+  public synchronized void respond(String command, Object value) {
+    values.put(command, value);
+  }
+
+  public synchronized Map<String, ?> getLastParameters() {
+    return lastParameters;
+  }
+
+  @Override
+  public synchronized Response execute(Command command) {
+    lastParameters = command.getParameters();
+    Response response = new Response(SESSION_ID);
+    if (!values.containsKey(command.getName())) {
+      response.setStatus(ErrorCodes.UNKNOWN_COMMAND);
+      response.setValue(ImmutableMap.of("message", "Unknown command: " + command.getName()));
+      return response;
+    }
+    response.setStatus(ErrorCodes.SUCCESS);
+    response.setValue(values.get(command.getName()));
+    return response;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.client.waiter;
+
+import io.selendroid.client.FakeCommandExecutor;
+import io.selendroid.client.SelendroidDriver;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class TestWaiterTest {
+  private static final String WAIT_FOR_CONDITION = "-selendroid-waitForCondition";
+  private FakeCommandExecutor executor;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = new FakeCommandExecutor();
+  }
+
+  @Test
+  public void shouldWaitOnTheDevice() throws Exception {
+    executor.respond(WAIT_FOR_CONDITION, "Home");
+    SelendroidDriver driver = executor.newDriver();
+
+    String title = TestWaiter.waitFor(WaitingConditions.pageTitleToBe(driver, "Home"), 2,
+        TimeUnit.SECONDS);
+
+    Assert.assertEquals("Home", title);
+    Map<?, ?> condition = (Map<?, ?>) executor.getLastParameters().get("condition");
+    Assert.assertEquals("titleEquals", condition.get("type"));
+    Assert.assertEquals("Home", condition.get("text"));
+    Assert.assertEquals(2000L, executor.getLastParameters().get("timeout"));
+  }
+
+  @Test
+  public void shouldFallBackToPollingIfTheServerDoesNotSupportWaitConditions() throws Exception {
+    executor.respond(DriverCommand.GET_TITLE, "Home");
+    SelendroidDriver driver = executor.newDriver();
+
+    String title = TestWaiter.waitFor(WaitingConditions.pageTitleToBe(driver, "Home"), 2,
+        TimeUnit.SECONDS);
+
+    Assert.assertEquals("Home", title);
+    Assert.assertFalse(driver.supportsWaitConditions());
+  }
+
+  @Test
+  public void shouldPollConditionsOfOtherDrivers() throws Exception {
+    executor.respond(DriverCommand.GET_TITLE, "Home");
+    executor.respond(WAIT_FOR_CONDITION, "Login");
+    RemoteWebDriver driver = new RemoteWebDriver(executor, new DesiredCapabilities());
+
+    String title = TestWaiter.waitFor(WaitingConditions.pageTitleToBe(driver, "Home"), 2,
+        TimeUnit.SECONDS);
+
+    Assert.assertEquals("Home", title);
+    Assert.assertTrue(executor.getLastParameters().isEmpty());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldTimeOutWhilePolling() throws Exception {
+    executor.respond(DriverCommand.GET_TITLE, "Login");
+    SelendroidDriver driver = executor.newDriver();
+
+    TestWaiter.waitFor(WaitingConditions.pageTitleToBe(driver, "Home"), 300,
+        TimeUnit.MILLISECONDS);
+  }
+}
@@ -67,6 +67,23 @@ public class SelendroidCapabilities extends DesiredCapabilities {
 
   public static final String USE_RANDOM_LOCAL_PORT = "useRandomLocalPort";
 
+  /**
+   * How sendKeys enters text into native elements: "keyEvents", "setText" or "inputConnection".
+   */
+  public static final String INPUT_STRATEGY = "inputStrategy";
+
+  /**
+   * Requests with a higher priority leave the session queue of the standalone server first.
+   * Defaults to 0.
+   */
+  public static final String SESSION_PRIORITY = "sessionPriority";
+
+  /**
+   * Identifies the client requesting the session. The session queue takes turns between the
+   * clients waiting with the same priority.
+   */
+  public static final String SESSION_CLIENT = "sessionClient";
+
   public static SelendroidCapabilities empty() {
     return new SelendroidCapabilities(new HashMap<String, Object>());
   }
@@ -128,6 +145,22 @@ public class SelendroidCapabilities extends DesiredCapabilities {
     return useRandomLocalPort != null ? useRandomLocalPort : false;
   }
 
+  public String getInputStrategy() {
+    return (String) getRawCapabilities().get(INPUT_STRATEGY);
+  }
+
+  public int getSessionPriority() {
+    Object priority = getRawCapabilities().get(SESSION_PRIORITY);
+    if (priority instanceof Number) {
+      return ((Number) priority).intValue();
+    }
+    return priority instanceof String ? Integer.parseInt((String) priority) : 0;
+  }
+
+  public String getSessionClient() {
+    return (String) getRawCapabilities().get(SESSION_CLIENT);
+  }
+
   public String getPlatformName() {
     return (String) getRawCapabilities().get(PLATFORM_NAME);
   }
@@ -267,6 +300,18 @@ public class SelendroidCapabilities extends DesiredCapabilities {
     setCapability(USE_RANDOM_LOCAL_PORT, useRandomLocalPort);
   }
 
+  public void setInputStrategy(String inputStrategy) {
+    setCapability(INPUT_STRATEGY, inputStrategy);
+  }
+
+  public void setSessionPriority(int priority) {
+    setCapability(SESSION_PRIORITY, priority);
+  }
+
+  public void setSessionClient(String client) {
+    setCapability(SESSION_CLIENT, client);
+  }
+
   public void setLocale(String locale) {
     setCapability(LOCALE, locale);
   }
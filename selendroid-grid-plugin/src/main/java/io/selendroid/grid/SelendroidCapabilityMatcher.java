@@ -15,10 +15,16 @@ package io.selendroid.grid;
 
 import org.openqa.grid.internal.utils.CapabilityMatcher;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
+/**
+ * Matches requested capabilities against the capabilities of a Selendroid test slot.
+ *
+ * Only a fixed set of keys is considered. They are looked up directly instead of scanning every
+ * requested key, and values on both sides are compared in their string form so that e.g. a
+ * boolean {@code emulator} flag registered by the node matches a requested {@code "true"}. A
+ * requested value of {@code null} matches anything.
+ */
 public class SelendroidCapabilityMatcher implements CapabilityMatcher {
   public static final String AUT = "aut";
   public static final String PLATFORM_NAME = "platformName";
@@ -26,35 +32,31 @@ public class SelendroidCapabilityMatcher implements CapabilityMatcher {
   public static final String BROWSER_NAME = "browserName";
   public static final String PLATFORM_VERSION = "platformVersion";
   public static final String EMULATOR = "emulator";
-  private final List<String> toConsider = new ArrayList<String>();
-
-  public SelendroidCapabilityMatcher() {
-    toConsider.add(BROWSER_NAME);
-    toConsider.add(AUT);
-    toConsider.add(PLATFORM_NAME);
-    toConsider.add(SCREEN_SIZE);
-    toConsider.add(PLATFORM_VERSION);
-    toConsider.add(EMULATOR);
-  }
+  private static final String[] TO_CONSIDER =
+      {BROWSER_NAME, AUT, PLATFORM_NAME, SCREEN_SIZE, PLATFORM_VERSION, EMULATOR};
 
   @Override
   public boolean matches(Map<String, Object> nodeCapability, Map<String, Object> requestedCapability) {
     if (nodeCapability == null || requestedCapability == null) {
       return false;
     }
-    for (String key : requestedCapability.keySet()) {
-      if (toConsider.contains(key)) {
-        if (requestedCapability.get(key) != null) {
-          String value = requestedCapability.get(key).toString();
-          if (!value.equals(nodeCapability.get(key))) {
-            return false;
-          }
-        } else {
-          // null value matches anything.
-        }
+    for (String key : TO_CONSIDER) {
+      Object requested = requestedCapability.get(key);
+      // null value matches anything.
+      if (requested != null && !normalize(requested).equals(normalize(nodeCapability.get(key)))) {
+        return false;
       }
     }
     return true;
   }
 
+  /**
+   * @return the representation capability values are compared in, {@code null} if not set.
+   */
+  static String normalize(Object value) {
+    if (value == null || value instanceof String) {
+      return (String) value;
+    }
+    return value.toString();
+  }
 }
@@ -13,31 +13,94 @@
  */
 package io.selendroid.grid;
 
+import com.google.gson.JsonObject;
+
 import org.openqa.grid.common.RegistrationRequest;
+import org.openqa.grid.common.exception.GridException;
 import org.openqa.grid.internal.Registry;
 import org.openqa.grid.internal.TestSession;
+import org.openqa.grid.internal.TestSlot;
 import org.openqa.grid.internal.listeners.TestSessionListener;
 import org.openqa.grid.internal.utils.HtmlRenderer;
 import org.openqa.grid.selenium.proxy.DefaultRemoteProxy;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
 public class SelendroidSessionProxy extends DefaultRemoteProxy implements TestSessionListener {
+  private static final Logger log = Logger.getLogger(SelendroidSessionProxy.class.getName());
   private HtmlRenderer renderer = new SelendroidNodeHtmlRenderer(this);
-  private int totalTests = 0;
+  private final AtomicInteger totalTests = new AtomicInteger();
+  private final SelendroidSlotIndex slotIndex;
+  private final SelendroidSlotPrioritizer prioritizer = new SelendroidSlotPrioritizer();
 
   public SelendroidSessionProxy(RegistrationRequest request, Registry registry) {
     super(request, registry);
+    // the index is only valid for the matching rules of the selendroid matcher
+    slotIndex = getCapabilityHelper() instanceof SelendroidCapabilityMatcher
+        ? new SelendroidSlotIndex(getTestSlots()) : null;
+  }
+
+  @Override
+  public boolean hasCapability(Map<String, Object> requestedCapability) {
+    if (slotIndex == null) {
+      return super.hasCapability(requestedCapability);
+    }
+    for (TestSlot slot : slotIndex.getCandidates(requestedCapability)) {
+      if (getCapabilityHelper().matches(slot.getCapabilities(), requestedCapability)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public TestSession getNewSession(Map<String, Object> requestedCapability) {
+    if (slotIndex == null) {
+      return super.getNewSession(requestedCapability);
+    }
+    // like the default proxy, don't hand out sessions of a node that is unreachable
+    if (isDown()) {
+      return null;
+    }
+    List<TestSlot> candidates = slotIndex.getCandidates(requestedCapability);
+    if (candidates.isEmpty()) {
+      log.fine("Node " + this + " has no matching capability");
+      return null;
+    }
+    if (getTotalUsed() >= getMaxNumberOfConcurrentTestSessions()) {
+      log.fine("Node " + this + " has no free slots");
+      return null;
+    }
+    for (TestSlot slot : prioritizer.prioritize(candidates)) {
+      TestSession session = slot.getNewSession(requestedCapability);
+      if (session != null) {
+        return session;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Also picks up the scheduling hints the node publishes in its status.
+   */
+  @Override
+  public JsonObject getStatus() throws GridException {
+    JsonObject status = super.getStatus();
+    prioritizer.update(status);
+    return status;
   }
 
   @Override
   public void beforeSession(TestSession session) {
     super.beforeSession(session);
-    synchronized (this) {
-      totalTests++;
-    }
+    totalTests.incrementAndGet();
   }
 
-  public synchronized int getTotalTests() {
-    return totalTests;
+  public int getTotalTests() {
+    return totalTests.get();
   }
 
   @Override
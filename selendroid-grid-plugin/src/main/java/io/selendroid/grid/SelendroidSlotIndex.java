@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.grid;
+
+import org.openqa.grid.internal.TestSlot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.selendroid.grid.SelendroidCapabilityMatcher.AUT;
+import static io.selendroid.grid.SelendroidCapabilityMatcher.EMULATOR;
+import static io.selendroid.grid.SelendroidCapabilityMatcher.PLATFORM_VERSION;
+import static io.selendroid.grid.SelendroidCapabilityMatcher.SCREEN_SIZE;
+import static io.selendroid.grid.SelendroidCapabilityMatcher.normalize;
+
+/**
+ * Groups the test slots of a proxy by app under test, platform version, screen size and emulator
+ * flag, so that only the slots that can possibly match a request have to be checked by the
+ * {@link SelendroidCapabilityMatcher}. A fully specified request is a single lookup; a request
+ * leaving some of these keys open is checked against the distinct groups, not against every slot.
+ */
+class SelendroidSlotIndex {
+  private static final String[] INDEXED_KEYS = {AUT, PLATFORM_VERSION, SCREEN_SIZE, EMULATOR};
+  private final Map<List<String>, List<TestSlot>> slotsByKey =
+      new LinkedHashMap<List<String>, List<TestSlot>>();
+
+  SelendroidSlotIndex(List<TestSlot> slots) {
+    for (TestSlot slot : slots) {
+      List<String> key = keyOf(slot.getCapabilities());
+      List<TestSlot> group = slotsByKey.get(key);
+      if (group == null) {
+        group = new ArrayList<TestSlot>();
+        slotsByKey.put(key, group);
+      }
+      group.add(slot);
+    }
+  }
+
+  /**
+   * @return the slots whose indexed capabilities are compatible with the request, in the order
+   *         they were registered in. The remaining capabilities still have to be matched.
+   */
+  List<TestSlot> getCandidates(Map<String, Object> requestedCapability) {
+    List<String> wanted = keyOf(requestedCapability);
+    if (!wanted.contains(null)) {
+      List<TestSlot> group = slotsByKey.get(wanted);
+      return group == null ? Collections.<TestSlot>emptyList() : group;
+    }
+    List<TestSlot> candidates = new ArrayList<TestSlot>();
+    for (Map.Entry<List<String>, List<TestSlot>> entry : slotsByKey.entrySet()) {
+      if (isCompatible(wanted, entry.getKey())) {
+        candidates.addAll(entry.getValue());
+      }
+    }
+    return candidates;
+  }
+
+  private static boolean isCompatible(List<String> wanted, List<String> key) {
+    for (int i = 0; i < wanted.size(); i++) {
+      String value = wanted.get(i);
+      if (value != null && !value.equals(key.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<String> keyOf(Map<String, Object> capabilities) {
+    String[] key = new String[INDEXED_KEYS.length];
+    for (int i = 0; i < INDEXED_KEYS.length; i++) {
+      key[i] = normalize(capabilities.get(INDEXED_KEYS[i]));
+    }
+    return Arrays.asList(key);
+  }
+}
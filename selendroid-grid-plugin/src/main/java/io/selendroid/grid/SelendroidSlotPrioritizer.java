@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.grid;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import org.openqa.grid.internal.TestSlot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Orders the candidate slots of a Selendroid node so that sessions are started where that is
+ * fastest: on a device that already has the app under test installed, then on a running device,
+ * then on the device recent sessions started fastest on. Slots the node did not publish any hints
+ * for keep their registration order behind the ones it did.
+ *
+ * The hints are taken from the status of the node, which the proxy polls anyway.
+ */
+class SelendroidSlotPrioritizer {
+  static final String SLOT_HINTS = "slotHints";
+  static final String WARM = "warm";
+  static final String INSTALLED_APPS = "installedApps";
+  static final String RECENT_SESSION_START_MILLIS = "recentSessionStartMillis";
+  static final String SERIAL = "serial";
+  static final String AVD_NAME = "avdName";
+
+  private volatile Map<String, Hint> hintsByDevice = Collections.emptyMap();
+
+  /**
+   * Replaces the hints with the ones published in the given node status.
+   */
+  void update(JsonObject status) {
+    if (status == null || !status.has("value") || !status.get("value").isJsonObject()) {
+      return;
+    }
+    JsonObject value = status.getAsJsonObject("value");
+    if (!value.has("supportedDevices") || !value.get("supportedDevices").isJsonArray()) {
+      return;
+    }
+    Map<String, Hint> hints = new HashMap<String, Hint>();
+    for (JsonElement element : value.getAsJsonArray("supportedDevices")) {
+      if (!element.isJsonObject()) {
+        continue;
+      }
+      JsonObject device = element.getAsJsonObject();
+      String id = deviceId(device);
+      if (id != null && device.has(SLOT_HINTS) && device.get(SLOT_HINTS).isJsonObject()) {
+        hints.put(id, new Hint(device.getAsJsonObject(SLOT_HINTS)));
+      }
+    }
+    hintsByDevice = hints;
+  }
+
+  /**
+   * @return the given slots, best first. The list passed in is not modified.
+   */
+  List<TestSlot> prioritize(List<TestSlot> slots) {
+    final Map<String, Hint> hints = hintsByDevice;
+    if (hints.isEmpty() || slots.size() < 2) {
+      return slots;
+    }
+    List<TestSlot> prioritized = new ArrayList<TestSlot>(slots);
+    // stable, so equally good slots are still used in registration order
+    Collections.sort(prioritized, new Comparator<TestSlot>() {
+      @Override
+      public int compare(TestSlot first, TestSlot second) {
+        Score firstScore = score(hints, first);
+        Score secondScore = score(hints, second);
+        if (firstScore == null || secondScore == null) {
+          return firstScore == secondScore ? 0 : (firstScore == null ? 1 : -1);
+        }
+        return secondScore.compareTo(firstScore);
+      }
+    });
+    return prioritized;
+  }
+
+  private static Score score(Map<String, Hint> hints, TestSlot slot) {
+    Map<String, Object> capabilities = slot.getCapabilities();
+    Hint hint = hints.get(deviceId(capabilities));
+    if (hint == null) {
+      return null;
+    }
+    String aut = SelendroidCapabilityMatcher.normalize(capabilities.get(SelendroidCapabilityMatcher.AUT));
+    return new Score(aut != null && hint.installedApps.contains(aut), hint.warm,
+        hint.recentSessionStartMillis);
+  }
+
+  private static String deviceId(JsonObject device) {
+    String key = device.has(AVD_NAME) ? AVD_NAME : SERIAL;
+    return device.has(key) && !device.get(key).isJsonNull() ? device.get(key).getAsString() : null;
+  }
+
+  private static String deviceId(Map<String, Object> capabilities) {
+    Object avdName = capabilities.get(AVD_NAME);
+    return SelendroidCapabilityMatcher.normalize(avdName != null ? avdName : capabilities.get(SERIAL));
+  }
+
+  private static class Hint {
+    private final boolean warm;
+    private final Set<String> installedApps = new HashSet<String>();
+    private final long recentSessionStartMillis;
+
+    Hint(JsonObject json) {
+      warm = json.has(WARM) && json.get(WARM).getAsBoolean();
+      if (json.has(INSTALLED_APPS) && json.get(INSTALLED_APPS).isJsonArray()) {
+        JsonArray apps = json.getAsJsonArray(INSTALLED_APPS);
+        for (JsonElement app : apps) {
+          installedApps.add(app.getAsString());
+        }
+      }
+      recentSessionStartMillis =
+          json.has(RECENT_SESSION_START_MILLIS) ? json.get(RECENT_SESSION_START_MILLIS).getAsLong() : 0;
+    }
+  }
+
+  private static class Score implements Comparable<Score> {
+    private final boolean appInstalled;
+    private final boolean warm;
+    private final long recentSessionStartMillis;
+
+    Score(boolean appInstalled, boolean warm, long recentSessionStartMillis) {
+      this.appInstalled = appInstalled;
+      this.warm = warm;
+      this.recentSessionStartMillis = recentSessionStartMillis;
+    }
+
+    /**
+     * Higher is better.
+     */
+    @Override
+    public int compareTo(Score other) {
+      if (appInstalled != other.appInstalled) {
+        return appInstalled ? 1 : -1;
+      }
+      if (warm != other.warm) {
+        return warm ? 1 : -1;
+      }
+      // 0 means no session has been started on the device yet
+      long mine = recentSessionStartMillis == 0 ? Long.MAX_VALUE : recentSessionStartMillis;
+      long theirs =
+          other.recentSessionStartMillis == 0 ? Long.MAX_VALUE : other.recentSessionStartMillis;
+      return mine == theirs ? 0 : (mine < theirs ? 1 : -1);
+    }
+  }
+}
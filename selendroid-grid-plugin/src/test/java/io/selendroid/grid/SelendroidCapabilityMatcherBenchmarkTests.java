@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.grid;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.openqa.grid.internal.TestSlot;
+import org.openqa.grid.internal.utils.CapabilityMatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.selendroid.grid.SelendroidCapabilityMatcherTest.capabilities;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Compares the matching throughput of the former list based matcher, the current matcher and the
+ * current matcher behind the per proxy slot index for a hub with a few hundred Selendroid slots.
+ * Only executed in manual mode.
+ */
+public class SelendroidCapabilityMatcherBenchmarkTests {
+  private static final int APPS = 20;
+  private static final String[] PLATFORM_VERSIONS = {"16", "17", "18", "19", "21"};
+  private static final String[] SCREEN_SIZES = {"480x800", "768x1280", "1080x1920"};
+  private static final int WARMUP_ROUNDS = 200;
+  private static final int ROUNDS = 2000;
+
+  @Ignore("Benchmark, run manually")
+  @Test
+  public void compareMatchingThroughput() {
+    final List<TestSlot> slots = slots();
+    final List<Map<String, Object>> requests = requests();
+    final SelendroidSlotIndex index = new SelendroidSlotIndex(slots);
+    // the mocked slots record every invocation, so their capabilities are only read once
+    final Map<TestSlot, Map<String, Object>> capabilities =
+        new IdentityHashMap<TestSlot, Map<String, Object>>();
+    for (TestSlot slot : slots) {
+      capabilities.put(slot, slot.getCapabilities());
+    }
+
+    final ListBasedMatcher listBasedMatcher = new ListBasedMatcher();
+    report("list based matcher", slots.size(), requests, new Matching() {
+      @Override
+      public int match(Map<String, Object> requested) {
+        return countMatches(listBasedMatcher, capabilities, slots, requested);
+      }
+    });
+    final SelendroidCapabilityMatcher matcher = new SelendroidCapabilityMatcher();
+    report("current matcher", slots.size(), requests, new Matching() {
+      @Override
+      public int match(Map<String, Object> requested) {
+        return countMatches(matcher, capabilities, slots, requested);
+      }
+    });
+    report("current matcher + slot index", slots.size(), requests, new Matching() {
+      @Override
+      public int match(Map<String, Object> requested) {
+        return countMatches(matcher, capabilities, index.getCandidates(requested),
+            requested);
+      }
+    });
+  }
+
+  private interface Matching {
+    int match(Map<String, Object> requested);
+  }
+
+  private void report(String name, int slotCount, List<Map<String, Object>> requests,
+      Matching matching) {
+    int matches = 0;
+    for (int i = 0; i < WARMUP_ROUNDS; i++) {
+      for (Map<String, Object> requested : requests) {
+        matches += matching.match(requested);
+      }
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < ROUNDS; i++) {
+      for (Map<String, Object> requested : requests) {
+        matches += matching.match(requested);
+      }
+    }
+    long nanos = System.nanoTime() - start;
+    long comparisons = (long) ROUNDS * requests.size() * slotCount;
+    System.out.println(String.format("%s: %d slot checks/ms (%d matches)", name,
+        comparisons * 1000000 / nanos, matches));
+  }
+
+  private static int countMatches(CapabilityMatcher matcher,
+      Map<TestSlot, Map<String, Object>> capabilities, List<TestSlot> slots,
+      Map<String, Object> requested) {
+    int matches = 0;
+    for (TestSlot slot : slots) {
+      if (matcher.matches(capabilities.get(slot), requested)) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  private List<TestSlot> slots() {
+    List<TestSlot> slots = new ArrayList<TestSlot>();
+    for (int app = 0; app < APPS; app++) {
+      for (String platformVersion : PLATFORM_VERSIONS) {
+        for (String screenSize : SCREEN_SIZES) {
+          Map<String, Object> capabilities = capabilities("selendroid", aut(app), platformVersion);
+          capabilities.put(SelendroidCapabilityMatcher.PLATFORM_NAME, "android");
+          capabilities.put(SelendroidCapabilityMatcher.SCREEN_SIZE, screenSize);
+          capabilities.put(SelendroidCapabilityMatcher.EMULATOR, "true");
+          capabilities.put("platform", "ANDROID");
+          capabilities.put("version", platformVersion);
+          capabilities.put("maxInstances", 1);
+          TestSlot slot = mock(TestSlot.class);
+          when(slot.getCapabilities()).thenReturn(capabilities);
+          slots.add(slot);
+        }
+      }
+    }
+    return slots;
+  }
+
+  private List<Map<String, Object>> requests() {
+    List<Map<String, Object>> requests = new ArrayList<Map<String, Object>>();
+    for (int app = 0; app < APPS; app += 4) {
+      Map<String, Object> byApp = capabilities("selendroid", aut(app), null);
+      requests.add(byApp);
+      Map<String, Object> full = capabilities("selendroid", aut(app), "19");
+      full.put(SelendroidCapabilityMatcher.SCREEN_SIZE, "768x1280");
+      full.put(SelendroidCapabilityMatcher.EMULATOR, "true");
+      full.put(SelendroidCapabilityMatcher.PLATFORM_NAME, "android");
+      full.put("locale", "en_US");
+      full.put("loggingPrefs", Arrays.asList("driver"));
+      requests.add(full);
+    }
+    return requests;
+  }
+
+  private static String aut(int app) {
+    return "io.selendroid.app" + app + ":1.0";
+  }
+
+  /**
+   * The matcher as it was before the considered keys were looked up directly.
+   */
+  private static class ListBasedMatcher implements CapabilityMatcher {
+    private final List<String> toConsider = Arrays.asList(
+        SelendroidCapabilityMatcher.BROWSER_NAME, SelendroidCapabilityMatcher.AUT,
+        SelendroidCapabilityMatcher.PLATFORM_NAME, SelendroidCapabilityMatcher.SCREEN_SIZE,
+        SelendroidCapabilityMatcher.PLATFORM_VERSION, SelendroidCapabilityMatcher.EMULATOR);
+
+    @Override
+    public boolean matches(Map<String, Object> nodeCapability,
+        Map<String, Object> requestedCapability) {
+      for (String key : requestedCapability.keySet()) {
+        if (toConsider.contains(key) && requestedCapability.get(key) != null) {
+          String value = requestedCapability.get(key).toString();
+          if (!value.equals(nodeCapability.get(key))) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.grid;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SelendroidCapabilityMatcherTest {
+  private final SelendroidCapabilityMatcher matcher = new SelendroidCapabilityMatcher();
+
+  @Test
+  public void shouldMatchWhenAllConsideredCapabilitiesAreEqual() {
+    Map<String, Object> requested = capabilities("selendroid", "io.selendroid.testapp:0.18.0", "19");
+    assertTrue(matcher.matches(node(), requested));
+  }
+
+  @Test
+  public void shouldNotMatchDifferentApp() {
+    Map<String, Object> requested = capabilities("selendroid", "io.selendroid.other:1.0", "19");
+    assertFalse(matcher.matches(node(), requested));
+  }
+
+  @Test
+  public void shouldIgnoreCapabilitiesThatAreNotConsidered() {
+    Map<String, Object> requested = capabilities("selendroid", "io.selendroid.testapp:0.18.0", "19");
+    requested.put("locale", "de_DE");
+    assertTrue(matcher.matches(node(), requested));
+  }
+
+  @Test
+  public void shouldTreatNullAsWildcard() {
+    Map<String, Object> requested = capabilities("selendroid", null, null);
+    assertTrue(matcher.matches(node(), requested));
+  }
+
+  @Test
+  public void shouldCompareNormalizedValues() {
+    Map<String, Object> requested = capabilities("selendroid", "io.selendroid.testapp:0.18.0", "19");
+    requested.put(SelendroidCapabilityMatcher.EMULATOR, "true");
+    assertTrue(matcher.matches(node(), requested));
+
+    requested.put(SelendroidCapabilityMatcher.EMULATOR, false);
+    assertFalse(matcher.matches(node(), requested));
+  }
+
+  @Test
+  public void shouldNotMatchCapabilityTheNodeDoesNotHave() {
+    Map<String, Object> requested = capabilities("selendroid", "io.selendroid.testapp:0.18.0", "19");
+    requested.put(SelendroidCapabilityMatcher.SCREEN_SIZE, "768x1280");
+    assertFalse(matcher.matches(node(), requested));
+    assertFalse(matcher.matches(null, requested));
+  }
+
+  static Map<String, Object> capabilities(String browserName, String aut, String platformVersion) {
+    Map<String, Object> capabilities = new HashMap<String, Object>();
+    capabilities.put(SelendroidCapabilityMatcher.BROWSER_NAME, browserName);
+    capabilities.put(SelendroidCapabilityMatcher.AUT, aut);
+    capabilities.put(SelendroidCapabilityMatcher.PLATFORM_VERSION, platformVersion);
+    return capabilities;
+  }
+
+  private Map<String, Object> node() {
+    Map<String, Object> node = capabilities("selendroid", "io.selendroid.testapp:0.18.0", "19");
+    node.put(SelendroidCapabilityMatcher.PLATFORM_NAME, "android");
+    node.put(SelendroidCapabilityMatcher.EMULATOR, true);
+    node.put("maxInstances", 1);
+    return node;
+  }
+}
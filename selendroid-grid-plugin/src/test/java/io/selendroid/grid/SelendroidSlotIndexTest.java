@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.grid;
+
+import org.junit.Test;
+import org.openqa.grid.internal.TestSlot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static io.selendroid.grid.SelendroidCapabilityMatcherTest.capabilities;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SelendroidSlotIndexTest {
+  private final TestSlot testApp16 = slot("io.selendroid.testapp:0.18.0", "16");
+  private final TestSlot testApp19 = slot("io.selendroid.testapp:0.18.0", "19");
+  private final TestSlot otherApp19 = slot("io.selendroid.other:1.0", "19");
+  private final TestSlot secondTestApp19 = slot("io.selendroid.testapp:0.18.0", "19");
+  private final SelendroidSlotIndex index = new SelendroidSlotIndex(
+      Arrays.asList(testApp16, testApp19, otherApp19, secondTestApp19));
+
+  @Test
+  public void shouldLookUpFullySpecifiedRequest() {
+    Map<String, Object> requested = capabilities("selendroid", "io.selendroid.testapp:0.18.0", "19");
+    requested.put(SelendroidCapabilityMatcher.SCREEN_SIZE, "768x1280");
+    requested.put(SelendroidCapabilityMatcher.EMULATOR, true);
+
+    assertEquals(Arrays.asList(testApp19, secondTestApp19), index.getCandidates(requested));
+  }
+
+  @Test
+  public void shouldReturnAllCompatibleGroupsForPartialRequest() {
+    List<TestSlot> candidates =
+        index.getCandidates(capabilities("selendroid", "io.selendroid.testapp:0.18.0", null));
+
+    assertEquals(Arrays.asList(testApp16, testApp19, secondTestApp19), candidates);
+  }
+
+  @Test
+  public void shouldReturnNoCandidatesForUnknownApp() {
+    assertTrue(index.getCandidates(capabilities("selendroid", "io.selendroid.unknown:1.0", null))
+        .isEmpty());
+  }
+
+  private static TestSlot slot(String aut, String platformVersion) {
+    Map<String, Object> capabilities = capabilities("selendroid", aut, platformVersion);
+    capabilities.put(SelendroidCapabilityMatcher.SCREEN_SIZE, "768x1280");
+    capabilities.put(SelendroidCapabilityMatcher.EMULATOR, true);
+    TestSlot slot = mock(TestSlot.class);
+    when(slot.getCapabilities()).thenReturn(capabilities);
+    return slot;
+  }
+}
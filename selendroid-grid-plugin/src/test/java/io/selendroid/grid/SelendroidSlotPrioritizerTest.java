@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.grid;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+import org.openqa.grid.internal.TestSlot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static io.selendroid.grid.SelendroidCapabilityMatcherTest.capabilities;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SelendroidSlotPrioritizerTest {
+  private static final String AUT = "io.selendroid.testapp:0.18.0";
+  private final SelendroidSlotPrioritizer prioritizer = new SelendroidSlotPrioritizer();
+  private final TestSlot cold = slot("cold");
+  private final TestSlot warm = slot("warm");
+  private final TestSlot installed = slot("installed");
+  private final TestSlot unknown = slot("unknown");
+  private final List<TestSlot> slots = Arrays.asList(unknown, cold, warm, installed);
+
+  @Test
+  public void shouldKeepOrderWithoutHints() {
+    assertEquals(slots, prioritizer.prioritize(slots));
+  }
+
+  @Test
+  public void shouldPreferInstalledAppThenWarmDevice() {
+    prioritizer.update(status(
+        device("cold", false, "[]", 0),
+        device("warm", true, "[]", 0),
+        device("installed", false, "[\"" + AUT + "\"]", 0)));
+
+    assertEquals(Arrays.asList(installed, warm, cold, unknown), prioritizer.prioritize(slots));
+  }
+
+  @Test
+  public void shouldPreferFasterRecentSessionStarts() {
+    prioritizer.update(status(
+        device("cold", true, "[]", 0),
+        device("warm", true, "[]", 8000),
+        device("installed", true, "[]", 3000)));
+
+    assertEquals(Arrays.asList(installed, warm, cold, unknown), prioritizer.prioritize(slots));
+  }
+
+  @Test
+  public void shouldIgnoreStatusWithoutDevices() {
+    prioritizer.update(new JsonParser().parse("{\"status\": 0, \"value\": {}}").getAsJsonObject());
+
+    assertEquals(slots, prioritizer.prioritize(slots));
+  }
+
+  private static JsonObject status(String... devices) {
+    StringBuilder json = new StringBuilder("{\"status\": 0, \"value\": {\"supportedDevices\": [");
+    for (int i = 0; i < devices.length; i++) {
+      json.append(i > 0 ? "," : "").append(devices[i]);
+    }
+    return new JsonParser().parse(json.append("]}}").toString()).getAsJsonObject();
+  }
+
+  private static String device(String avdName, boolean warm, String installedApps,
+      long recentSessionStartMillis) {
+    return String.format("{\"emulator\": true, \"avdName\": \"%s\", \"slotHints\": {\"warm\": %s,"
+        + " \"installedApps\": %s, \"recentSessionStartMillis\": %d}}", avdName, warm,
+        installedApps, recentSessionStartMillis);
+  }
+
+  private static TestSlot slot(String avdName) {
+    Map<String, Object> capabilities = capabilities("selendroid", AUT, "19");
+    capabilities.put("avdName", avdName);
+    TestSlot slot = mock(TestSlot.class);
+    when(slot.getCapabilities()).thenReturn(capabilities);
+    return slot;
+  }
+}
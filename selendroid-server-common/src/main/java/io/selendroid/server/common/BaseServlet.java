@@ -56,15 +56,21 @@ public abstract class BaseServlet implements HttpServlet {
 
   @Override
   public void handleHttpRequest(HttpRequest request, HttpResponse response) throws Exception {
-    BaseRequestHandler handler = null;
+    handleRequest(request, response, findHandler(request));
+  }
+
+  /**
+   * Returns the handler registered for the method and URI of the request, or {@code null}.
+   */
+  protected BaseRequestHandler findHandler(HttpRequest request) {
     if ("GET".equals(request.method())) {
-      handler = findMatcher(request, getHandler);
+      return findMatcher(request, getHandler);
     } else if ("POST".equals(request.method())) {
-      handler = findMatcher(request, postHandler);
+      return findMatcher(request, postHandler);
     } else if ("DELETE".equals(request.method())) {
-      handler = findMatcher(request, deleteHandler);
+      return findMatcher(request, deleteHandler);
     }
-    handleRequest(request, response, handler);
+    return null;
   }
 
   protected void register(Map<String, BaseRequestHandler> registerOn, BaseRequestHandler handler) {
@@ -135,6 +141,13 @@ public abstract class BaseServlet implements HttpServlet {
     response.end();
   }
 
+  protected void handleBinaryResponse(HttpResponse response, BinaryResponse result) {
+    response.setContentType(result.getContentType());
+    response.setContent(result.getContent());
+    response.setStatus(200);
+    response.end();
+  }
+
   private String[] getRequestUrlSections(String urlToMatch) {
     if (urlToMatch == null) {
       return null;
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.common;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.base64.Base64;
+import io.netty.util.CharsetUtil;
+
+/**
+ * A response whose content is sent as-is with its own content type instead of being wrapped in
+ * the JSON of a {@link SelendroidResponse}, e.g. the bytes of a screenshot.
+ */
+public class BinaryResponse implements Response {
+  private final String sessionId;
+  private final String contentType;
+  private final byte[] content;
+
+  public BinaryResponse(String sessionId, String contentType, byte[] content) {
+    this.sessionId = sessionId;
+    this.contentType = contentType;
+    this.content = content;
+  }
+
+  @Override
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public byte[] getContent() {
+    return content;
+  }
+
+  /**
+   * Renders the content Base64 encoded as the value of a JSON response, the way screenshots are
+   * returned by the JSON endpoint.
+   */
+  @Override
+  public String render() {
+    String encoded =
+        Base64.encode(Unpooled.wrappedBuffer(content), false).toString(CharsetUtil.US_ASCII);
+    return new SelendroidResponse(sessionId, encoded).render();
+  }
+}
@@ -13,6 +13,8 @@
  */
 package io.selendroid.server.common.http;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 
 public interface HttpResponse {
@@ -25,6 +27,14 @@ public interface HttpResponse {
 
   HttpResponse setContent(String message);
 
+  /**
+   * Reads the content directly from the given stream, without copying it into an intermediate
+   * array first.
+   *
+   * @param length the number of bytes to read, or -1 to read until the end of the stream.
+   */
+  HttpResponse setContent(InputStream content, long length) throws IOException;
+
   HttpResponse setEncoding(Charset charset);
 
   HttpResponse sendRedirect(String to);
@@ -34,4 +44,18 @@ public interface HttpResponse {
   void end();
 
   boolean isClosed();
+
+  /**
+   * Keeps the request open after the servlet returned. The response is sent as soon as
+   * {@link #end()} is called, which may happen on any thread.
+   */
+  HttpResponse suspend();
+
+  boolean isSuspended();
+
+  /**
+   * Runs the listener if the client disconnects while the response is suspended, before it has
+   * been ended.
+   */
+  HttpResponse onCancel(Runnable listener);
 }
@@ -15,6 +15,7 @@ package io.selendroid.server.common.http;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
@@ -47,15 +48,37 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
     response.headers().add("Connection", "close");
 
     HttpRequest httpRequest = new NettyHttpRequest(request);
-    HttpResponse httpResponse = new NettyHttpResponse(response);
+    NettyHttpResponse httpResponse = new NettyHttpResponse(response);
 
     for (HttpServlet handler : httpHandlers) {
       handler.handleHttpRequest(httpRequest, httpResponse);
-      if (httpResponse.isClosed()) {
+      if (httpResponse.isClosed() || httpResponse.isSuspended()) {
         break;
       }
     }
 
+    if (httpResponse.isSuspended()) {
+      // the servlet ends the response later, the event loop is free to serve other requests
+      final ChannelHandlerContext context = ctx;
+      final FullHttpResponse suspendedResponse = response;
+      final NettyHttpResponse suspended = httpResponse;
+      httpResponse.onEnd(new Runnable() {
+        @Override
+        public void run() {
+          context.writeAndFlush(suspendedResponse).addListener(ChannelFutureListener.CLOSE);
+        }
+      });
+      // nobody is waiting for the response anymore if the client disconnects in the meantime
+      ctx.channel().closeFuture().addListener(new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) {
+          suspended.cancel();
+        }
+      });
+      super.channelRead(ctx, msg);
+      return;
+    }
+
     if (!httpResponse.isClosed()) {
       httpResponse.setStatus(404);
       httpResponse.end();
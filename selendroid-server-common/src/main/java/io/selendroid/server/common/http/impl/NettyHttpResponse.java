@@ -13,17 +13,26 @@
  */
 package io.selendroid.server.common.http.impl;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.util.CharsetUtil;
 import io.selendroid.server.common.http.HttpResponse;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 
 public class NettyHttpResponse implements HttpResponse {
+  private static final int READ_CHUNK_SIZE = 8192;
 
   private final FullHttpResponse response;
   private boolean closed = false;
+  private boolean suspended = false;
+  private Runnable endListener;
+  private boolean cancelled = false;
+  private Runnable cancelListener;
   private Charset charset = CharsetUtil.UTF_8;
 
   public NettyHttpResponse(FullHttpResponse response) {
@@ -47,6 +56,26 @@ public class NettyHttpResponse implements HttpResponse {
     return this;
   }
 
+  public HttpResponse setContent(InputStream content, long length) throws IOException {
+    ByteBuf buffer = response.content();
+    if (length >= 0) {
+      int remaining = (int) length;
+      while (remaining > 0) {
+        int read = buffer.writeBytes(content, remaining);
+        if (read < 0) {
+          throw new EOFException("Content ended " + remaining + " bytes before its length");
+        }
+        remaining -= read;
+      }
+    } else {
+      while (buffer.writeBytes(content, READ_CHUNK_SIZE) >= 0) {
+        // keep reading until the end of the stream
+      }
+    }
+    response.headers().add("Content-Length", buffer.readableBytes());
+    return this;
+  }
+
   public HttpResponse setContent(String message) {
     setContent(message.getBytes(charset));
     return this;
@@ -66,13 +95,77 @@ public class NettyHttpResponse implements HttpResponse {
 
   @Override
   public void end() {
-    closed = true;
+    Runnable listener;
+    synchronized (this) {
+      closed = true;
+      listener = endListener;
+      endListener = null;
+      cancelListener = null;
+    }
+    if (listener != null) {
+      listener.run();
+    }
   }
 
-  public boolean isClosed() {
+  public synchronized boolean isClosed() {
     return closed;
   }
 
+  @Override
+  public synchronized HttpResponse suspend() {
+    suspended = true;
+    return this;
+  }
+
+  @Override
+  public synchronized boolean isSuspended() {
+    return suspended;
+  }
+
+  /**
+   * Runs the listener once the response has been ended, right away if it has been already.
+   */
+  public void onEnd(Runnable listener) {
+    synchronized (this) {
+      if (!closed) {
+        endListener = listener;
+        return;
+      }
+    }
+    listener.run();
+  }
+
+  @Override
+  public HttpResponse onCancel(Runnable listener) {
+    synchronized (this) {
+      if (!cancelled) {
+        cancelListener = listener;
+        return this;
+      }
+    }
+    listener.run();
+    return this;
+  }
+
+  /**
+   * Called when the client disconnected, notifies the cancel listener unless the response has been
+   * ended already.
+   */
+  public void cancel() {
+    Runnable listener;
+    synchronized (this) {
+      if (closed || cancelled) {
+        return;
+      }
+      cancelled = true;
+      listener = cancelListener;
+      cancelListener = null;
+    }
+    if (listener != null) {
+      listener.run();
+    }
+  }
+
   @Override
   public HttpResponse setEncoding(Charset charset) {
     this.charset = charset;
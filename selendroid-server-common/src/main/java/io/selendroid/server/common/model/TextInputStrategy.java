@@ -0,0 +1,46 @@
+package io.selendroid.server.common.model;
+
+/**
+ * The ways text can be entered into a native element when sending keys.
+ */
+public enum TextInputStrategy {
+  /**
+   * One synthesized key event per character, waiting for the UI to become idle in between. This
+   * is the closest to a real user typing, but also the slowest.
+   */
+  KEY_EVENTS("keyEvents"),
+  /**
+   * Appends the text to the element's editable content in one call on the UI thread. Text
+   * watchers are notified once for the whole payload.
+   */
+  SET_TEXT("setText"),
+  /**
+   * Commits the text through the element's input connection, the same way an input method
+   * editor does. Special keys are still sent as key events.
+   */
+  INPUT_CONNECTION("inputConnection");
+
+  private final String name;
+
+  private TextInputStrategy(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public static TextInputStrategy fromString(String name) {
+    for (TextInputStrategy strategy : values()) {
+      if (strategy.name.equals(name)) {
+        return strategy;
+      }
+    }
+    throw new IllegalArgumentException("Unknown text input strategy: " + name);
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.common;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BinaryResponseTest {
+
+  @Test
+  public void testRendersContentAsBase64() throws JSONException {
+    BinaryResponse response =
+        new BinaryResponse("my-session", "image/png", new byte[] {'H', 'e', 'l', 'l', 'o'});
+    JSONObject rendered = new JSONObject(response.render());
+
+    assertEquals("my-session", rendered.getString("sessionId"));
+    assertEquals(0, rendered.getInt("status"));
+    assertEquals("SGVsbG8=", rendered.getString("value"));
+  }
+}
@@ -14,6 +14,7 @@
 package io.selendroid.server;
 
 import io.selendroid.server.common.BaseRequestHandler;
+import io.selendroid.server.common.BinaryResponse;
 import io.selendroid.server.common.BaseServlet;
 import io.selendroid.server.common.Response;
 import io.selendroid.server.common.SelendroidResponse;
@@ -39,10 +40,19 @@ import io.selendroid.server.handler.timeouts.TimeoutsHandler;
 import io.selendroid.server.model.DefaultSelendroidDriver;
 import io.selendroid.server.model.SelendroidDriver;
 import io.selendroid.server.util.SelendroidLogger;
+import io.selendroid.server.util.Supplier;
 
 import java.net.URLDecoder;
 
 public class AndroidServlet extends BaseServlet {
+  private static final Supplier<String> TRAFFIC_STATISTICS = new Supplier<String>() {
+    @Override
+    public String get() {
+      return String.format("traffic_stats: rx_bytes %d tx_bytes %d",
+          TrafficCounter.readBytes(), TrafficCounter.writtenBytes());
+    }
+  };
+
   private SelendroidDriver driver = null;
   protected ExtensionLoader extensionLoader = null;
 
@@ -137,6 +147,8 @@ public class AndroidServlet extends BaseServlet {
         "/wd/hub/session/:sessionId/selendroid/configure/command/:command"));
     register(postHandler, new ForceGcExplicitly("/wd/hub/session/:sessionId/selendroid/gc"));
     register(postHandler, new SetSystemProperty("/wd/hub/session/:sessionId/selendroid/systemProperty"));
+    register(getHandler, new CaptureScreenshotBytes(
+        "/wd/hub/session/:sessionId/selendroid/screenshot"));
 
     // Endpoints to send app to background and resume it
     register(postHandler, new BackgroundApp("/wd/hub/session/:sessionId/selendroid/background"));
@@ -146,6 +158,9 @@ public class AndroidServlet extends BaseServlet {
     register(postHandler, new AddCallLog("/wd/hub/session/:sessionId/selendroid/addCallLog"));
     register(postHandler, new ReadCallLog("/wd/hub/session/:sessionId/selendroid/readCallLog"));
 
+    // Endpoint to read the log entries buffered by the server
+    register(postHandler, new GetServerLogs("/wd/hub/session/:sessionId/selendroid/serverLogs"));
+
     // Handle calls to dynamically loaded handlers
     register(postHandler, new ExtensionCallHandler(
         "/wd/hub/session/:sessionId/selendroid/extension", extensionLoader));
@@ -153,6 +168,12 @@ public class AndroidServlet extends BaseServlet {
     // Actions sequencing endpoint
     register(postHandler, new Actions("/wd/hub/session/:sessionId/actions"));
 
+    // Waits on the device until a condition is satisfied
+    register(postHandler, new WaitForCondition("/wd/hub/session/:sessionId/selendroid/waitFor"));
+
+    // Executes several commands of a session in one request
+    register(postHandler, new ExecuteBatch("/wd/hub/session/:sessionId/selendroid/batch", this));
+
     // currently not yet supported
     register(getHandler, new UnknownCommandHandler(
         "/wd/hub/session/:sessionId/ime/available_engines"));
@@ -246,52 +267,79 @@ public class AndroidServlet extends BaseServlet {
       response.setStatus(404).end();
       return;
     }
-    Response result;
+    Response result = process(request, handler);
+    if (result == null) {
+      replyWithServerError(response);
+      return;
+    }
+    if (result instanceof BinaryResponse) {
+      handleBinaryResponse(response, (BinaryResponse) result);
+      return;
+    }
+    handleResponse(request, response, (SelendroidResponse) result);
+    SelendroidLogger.info(TRAFFIC_STATISTICS);
+  }
+
+  /**
+   * Executes a single command of a batch with the handler registered for its method and URI.
+   * Failures are reported in the returned response instead of an HTTP error.
+   */
+  public SelendroidResponse dispatch(HttpRequest request) {
+    BaseRequestHandler handler = findHandler(request);
+    if (handler == null) {
+      return new SelendroidResponse(null, StatusCode.UNKNOWN_COMMAND,
+          "No handler found for " + request.method() + " " + request.uri());
+    }
+    Response result = process(request, handler);
+    if (result == null) {
+      return new SelendroidResponse(handler.getSessionId(request), StatusCode.UNKNOWN_ERROR,
+          "Error handling " + request.method() + " " + request.uri());
+    }
+    if (!(result instanceof SelendroidResponse)) {
+      return new SelendroidResponse(handler.getSessionId(request), StatusCode.UNKNOWN_COMMAND,
+          request.method() + " " + request.uri() + " cannot be batched");
+    }
+    return (SelendroidResponse) result;
+  }
+
+  /**
+   * Runs the handler and maps the known exceptions to responses. Returns {@code null} if the
+   * request failed in a way that must be reported as an internal server error.
+   */
+  private Response process(HttpRequest request, BaseRequestHandler handler) {
     try {
       addHandlerAttributesToRequest(request, handler.getMappedUri());
       if (!handler.commandAllowedWithAlertPresentInWebViewMode()) {
         SelendroidDriver driver =
             (SelendroidDriver) request.data().get(AndroidServlet.DRIVER_KEY);
         if (driver != null && driver.isAlertPresent()) {
-          result =
-              new SelendroidResponse(handler.getSessionId(request),
-                  StatusCode.UNEXPECTED_ALERT_OPEN,
-                  "Unhandled Alert present");
-          handleResponse(request, response, (SelendroidResponse) result);
-          return;
+          return new SelendroidResponse(handler.getSessionId(request),
+              StatusCode.UNEXPECTED_ALERT_OPEN,
+              "Unhandled Alert present");
         }
       }
-      result = handler.handle(request);
+      return handler.handle(request);
     } catch (StaleElementReferenceException se) {
       try {
         SelendroidLogger.error("StaleElementReferenceException", se);
         String sessionId = getParameter(handler.getMappedUri(), request.uri(), ":sessionId");
-        result = new SelendroidResponse(sessionId, StatusCode.STALE_ELEMENT_REFERENCE, se);
+        return new SelendroidResponse(sessionId, StatusCode.STALE_ELEMENT_REFERENCE, se);
       } catch (Exception e) {
         SelendroidLogger.error("Error responding to StaleElementReferenceException", e);
-        replyWithServerError(response);
-        return;
+        return null;
       }
     } catch (AppCrashedException ae) {
       try {
         SelendroidLogger.error("App crashed when handling request", ae);
         String sessionId = getParameter(handler.getMappedUri(), request.uri(), ":sessionId");
-        result = new SelendroidResponse(sessionId, StatusCode.UNKNOWN_ERROR, ae);
+        return new SelendroidResponse(sessionId, StatusCode.UNKNOWN_ERROR, ae);
       } catch (Exception e) {
         SelendroidLogger.error("Error responding to app crash", e);
-        replyWithServerError(response);
-        return;
+        return null;
       }
     } catch (Exception e) {
       SelendroidLogger.error("Error handling request.", e);
-      replyWithServerError(response);
-      return;
+      return null;
     }
-    handleResponse(request, response, (SelendroidResponse) result);
-    String trafficStatistics = String.format(
-        "traffic_stats: rx_bytes %d tx_bytes %d",
-        TrafficCounter.readBytes(),
-        TrafficCounter.writtenBytes());
-    SelendroidLogger.info(trafficStatistics);
   }
 }
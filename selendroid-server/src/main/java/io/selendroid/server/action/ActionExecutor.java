@@ -0,0 +1,98 @@
+package io.selendroid.server.action;
+
+import io.selendroid.server.common.action.touch.TouchActionName;
+import io.selendroid.server.common.exceptions.SelendroidException;
+import io.selendroid.server.common.exceptions.TimeoutException;
+import io.selendroid.server.model.SelendroidDriver;
+import io.selendroid.server.util.SelendroidLogger;
+
+import org.json.JSONException;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs compiled {@link ActionSequence}s on a dedicated injection thread.
+ *
+ * Pauses are scheduled against absolute deadlines measured from the start of the sequence, so
+ * the time spent injecting events does not accumulate as drift between ticks.
+ */
+public class ActionExecutor {
+  private static final long EXECUTION_TIMEOUT_MILLIS = 60000;
+
+  private final ExecutorService injectionThread =
+      Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "selendroid-action-injection");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  /**
+   * Performs the whole sequence and blocks until the last tick (including its pause) is done.
+   */
+  public void execute(final SelendroidDriver driver, final ActionSequence sequence) {
+    Future<Void> result = injectionThread.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        perform(driver, sequence);
+        return null;
+      }
+    });
+
+    long timeout = sequence.getTotalPauseMillis() + EXECUTION_TIMEOUT_MILLIS;
+    try {
+      result.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new SelendroidException(cause);
+    } catch (java.util.concurrent.TimeoutException e) {
+      result.cancel(true);
+      throw new TimeoutException(String.format(
+          "Timed out after %d ms waiting for the action sequence to complete", timeout));
+    } catch (InterruptedException e) {
+      result.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new SelendroidException(e);
+    }
+  }
+
+  private void perform(SelendroidDriver driver, ActionSequence sequence)
+      throws JSONException, InterruptedException {
+    long deadline = System.nanoTime();
+    for (ActionSequence.Tick tick : sequence.getTicks()) {
+      waitUntil(deadline);
+      for (ActionSequence.Step step : tick.getSteps()) {
+        SelendroidLogger.debug("Performing action " + step.getInputDevice() + "/"
+            + step.getActionName());
+        step.perform(driver);
+        // POINTER_CANCEL cancels all actions, so all contexts must be released.
+        if (step.getActionName().equals(TouchActionName.POINTER_CANCEL)) {
+          sequence.releaseAll();
+        }
+      }
+      deadline += TimeUnit.MILLISECONDS.toNanos(tick.getPauseMillis());
+    }
+    waitUntil(deadline);
+  }
+
+  private void waitUntil(long deadline) throws InterruptedException {
+    long remaining = deadline - System.nanoTime();
+    if (remaining > 0) {
+      TimeUnit.NANOSECONDS.sleep(remaining);
+    }
+  }
+}
@@ -31,6 +31,10 @@ public abstract class ActionHandler {
     actionMap.put(actionName, actionClass);
   }
 
+  public boolean supports(String actionName) {
+    return actionMap.containsKey(actionName);
+  }
+
   public void handle(String actionName, SelendroidDriver driver, JSONObject properties,
       ActionContext context) throws JSONException {
     Class<? extends Action> actionClass = actionMap.get(actionName);
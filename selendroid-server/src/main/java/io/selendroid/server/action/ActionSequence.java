@@ -0,0 +1,160 @@
+package io.selendroid.server.action;
+
+import io.selendroid.server.common.action.touch.TouchActionName;
+import io.selendroid.server.common.exceptions.UnsupportedOperationException;
+import io.selendroid.server.model.SelendroidDriver;
+import io.selendroid.server.util.Preconditions;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A complete, validated tree of parallel action chains. The whole payload is compiled into
+ * ticks up front so that malformed sequences are rejected before a single event is injected.
+ * Each tick holds at most one action per chain, and the pause to apply once the tick has been
+ * performed is the longest pause of any chain in that tick.
+ */
+public class ActionSequence {
+  private final List<ActionChain> chains = new ArrayList<ActionChain>();
+  private final List<Tick> ticks = new ArrayList<Tick>();
+  private long totalPauseMillis = 0;
+
+  public ActionSequence(JSONArray payload) throws JSONException {
+    for (int i = 0; i < payload.length(); i++) {
+      chains.add(new ActionChain(payload.getJSONObject(i)));
+    }
+    compile();
+  }
+
+  private void compile() throws JSONException {
+    boolean[] pressed = new boolean[chains.size()];
+    boolean stillRunning = true;
+
+    while (stillRunning) {
+      stillRunning = false;
+      Tick tick = new Tick();
+      for (int i = 0; i < chains.size(); i++) {
+        ActionChain chain = chains.get(i);
+        if (!chain.hasNext()) {
+          continue;
+        }
+        stillRunning = true;
+        JSONObject action = chain.next();
+        String actionName = action.getString("name");
+
+        if (actionName.equals(TouchActionName.PAUSE)) {
+          Preconditions.checkArgument(chain.getPauseTime() >= 0,
+              "Pause of %s ms for input device %s must not be negative",
+              chain.getPauseTime(), chain.getInputDevice());
+          tick.pauseMillis = Math.max(tick.pauseMillis, chain.getPauseTime());
+          continue;
+        }
+
+        ActionHandler handler = ActionHandler.getHandlerForInputDevice(chain.getInputDevice());
+        if (!handler.supports(actionName)) {
+          throw new UnsupportedOperationException("Action: " + actionName + " was not recognised.");
+        }
+        validatePointerState(actionName, action, i, pressed);
+        tick.steps.add(new Step(chain, handler, actionName, action));
+      }
+      if (stillRunning) {
+        ticks.add(tick);
+        totalPauseMillis += tick.pauseMillis;
+      }
+    }
+  }
+
+  private void validatePointerState(String actionName, JSONObject action, int chainIndex,
+      boolean[] pressed) {
+    if (actionName.equals(TouchActionName.POINTER_DOWN)) {
+      Preconditions.checkState(!pressed[chainIndex],
+          "Pointer of chain %s is already down", chainIndex);
+      checkHasPosition(actionName, action);
+      pressed[chainIndex] = true;
+    } else if (actionName.equals(TouchActionName.POINTER_UP)) {
+      Preconditions.checkState(pressed[chainIndex],
+          "Pointer of chain %s must be down before it can be released", chainIndex);
+      pressed[chainIndex] = false;
+    } else if (actionName.equals(TouchActionName.POINTER_MOVE)) {
+      Preconditions.checkState(pressed[chainIndex],
+          "Pointer of chain %s must be down before it can be moved", chainIndex);
+      checkHasPosition(actionName, action);
+    } else if (actionName.equals(TouchActionName.POINTER_CANCEL)) {
+      for (int i = 0; i < pressed.length; i++) {
+        pressed[i] = false;
+      }
+    } else if (actionName.equals(TouchActionName.FLICK)) {
+      Preconditions.checkState(!pressed[chainIndex],
+          "Cannot flick while the pointer of chain %s is down", chainIndex);
+      checkHasPosition(actionName, action);
+    }
+  }
+
+  private void checkHasPosition(String actionName, JSONObject action) {
+    Preconditions.checkArgument(action.has("element") || (action.has("x") && action.has("y")),
+        "Action %s requires either an element or x and y coordinates", actionName);
+  }
+
+  public List<Tick> getTicks() {
+    return Collections.unmodifiableList(ticks);
+  }
+
+  public long getTotalPauseMillis() {
+    return totalPauseMillis;
+  }
+
+  /**
+   * Releases every pointer that is still down, as required after a pointer cancel.
+   */
+  public void releaseAll() {
+    for (ActionChain chain : chains) {
+      if (chain.getContext().getIsPressed()) {
+        chain.getContext().release();
+      }
+    }
+  }
+
+  public static class Tick {
+    private final List<Step> steps = new ArrayList<Step>();
+    private int pauseMillis = 0;
+
+    public List<Step> getSteps() {
+      return Collections.unmodifiableList(steps);
+    }
+
+    public int getPauseMillis() {
+      return pauseMillis;
+    }
+  }
+
+  public static class Step {
+    private final ActionChain chain;
+    private final ActionHandler handler;
+    private final String actionName;
+    private final JSONObject properties;
+
+    Step(ActionChain chain, ActionHandler handler, String actionName, JSONObject properties) {
+      this.chain = chain;
+      this.handler = handler;
+      this.actionName = actionName;
+      this.properties = properties;
+    }
+
+    public String getActionName() {
+      return actionName;
+    }
+
+    public String getInputDevice() {
+      return chain.getInputDevice();
+    }
+
+    public void perform(SelendroidDriver driver) throws JSONException {
+      handler.handle(actionName, driver, properties, chain.getContext());
+    }
+  }
+}
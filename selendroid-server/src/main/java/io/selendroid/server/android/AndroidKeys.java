@@ -47,6 +47,8 @@ public enum AndroidKeys implements CharSequence {
       KeyEvent.KEYCODE_SYM), ALT_RIGHT('\uE105', KeyEvent.KEYCODE_ALT_RIGHT), SHIFT_RIGHT('\uE106',
       KeyEvent.KEYCODE_SHIFT_RIGHT);
 
+  private static final char FIRST_PRIVATE_USE_CHAR = '\uE000';
+
   private final char keyCode;
   private final int androidKeyCode;
 
@@ -93,6 +95,10 @@ public enum AndroidKeys implements CharSequence {
    * @return true if key is present within {@code AndroidKeys}
    */
   public static boolean hasAndroidKeyEvent(char keyCode) {
+    // All special keys live in the Unicode private use area, so plain text can skip the lookup.
+    if (keyCode < FIRST_PRIVATE_USE_CHAR) {
+      return false;
+    }
     for (AndroidKeys key : AndroidKeys.values()) {
       if (key.charAt(0) == keyCode) {
         return true;
@@ -101,6 +107,22 @@ public enum AndroidKeys implements CharSequence {
     return false;
   }
 
+  /**
+   * Returns the index of the first character which has to be sent as a key event.
+   *
+   * @param text the text to search
+   * @param startIndex the index to start searching from
+   * @return index of the first special key, or the length of {@code text} if there is none
+   */
+  public static int indexOfSpecialKey(CharSequence text, int startIndex) {
+    for (int i = startIndex; i < text.length(); i++) {
+      if (hasAndroidKeyEvent(text.charAt(i))) {
+        return i;
+      }
+    }
+    return text.length();
+  }
+
   /**
    * Returns key's corresponding Android {@code KeyEvent} code.
    * 
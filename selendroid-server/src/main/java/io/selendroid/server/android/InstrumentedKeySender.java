@@ -53,15 +53,6 @@ public class InstrumentedKeySender implements KeySender {
     return keyboardImpl;
   }
 
-  private static int indexOfSpecialKey(CharSequence string, int startIndex) {
-    for (int i = startIndex; i < string.length(); i++) {
-      if (AndroidKeys.hasAndroidKeyEvent(string.charAt(i))) {
-        return i;
-      }
-    }
-    return string.length();
-  }
-
   /**
    * Sends key events to the {@code Instrumentation}. This method will send a portion of the given
    * {@code CharSequence} as a single {@code String} if the portion does not contain any special
@@ -89,7 +80,7 @@ public class InstrumentedKeySender implements KeySender {
         // represented by a plain Unicode character that can be sent with
         // sendStringSync. So send as many such consecutive normal characters
         // as possible in a single String.
-        int nextSpecialKey = indexOfSpecialKey(text, currentIndex);
+        int nextSpecialKey = AndroidKeys.indexOfSpecialKey(text, currentIndex);
         SelendroidLogger.debug("Send keys, sending string");
         instrumentation.sendStringSync(text.subSequence(currentIndex, nextSpecialKey).toString());
         currentIndex = nextSpecialKey;
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.android;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import io.selendroid.server.common.exceptions.NoSuchElementException;
+import io.selendroid.server.common.exceptions.SelendroidException;
+import io.selendroid.server.common.exceptions.StaleElementReferenceException;
+import io.selendroid.server.common.exceptions.TimeoutException;
+import io.selendroid.server.util.Function;
+
+/**
+ * A {@link Wait} that re-evaluates the condition when the view tree of the given window is about
+ * to be drawn, instead of sleeping a fixed interval between attempts. Changes that do not redraw
+ * this window, e.g. in a dialog, are still noticed because the condition is re-evaluated at least
+ * every {@link AndroidWait#DEFAULT_SLEEP_INTERVAL} ms. While animations keep redrawing the window
+ * the condition is evaluated at most every {@link #MIN_EVALUATION_INTERVAL} ms.
+ */
+public class ViewChangeWait implements Wait<Void> {
+  static final long MIN_EVALUATION_INTERVAL = 50;
+
+  private final View root;
+  private final long timeoutInMillis;
+  private final Object lock = new Object();
+  private boolean changed = false;
+
+  /**
+   * @param root the root view of the window to observe, may be {@code null} to only poll
+   * @param timeoutInMillis timeout in milliseconds
+   */
+  public ViewChangeWait(View root, long timeoutInMillis) {
+    this.root = root;
+    this.timeoutInMillis = timeoutInMillis;
+  }
+
+  @Override
+  public <T> T until(Function<Void, T> isTrue) {
+    ViewTreeObserver.OnPreDrawListener listener = new ViewTreeObserver.OnPreDrawListener() {
+      @Override
+      public boolean onPreDraw() {
+        synchronized (lock) {
+          changed = true;
+          lock.notifyAll();
+        }
+        return true;
+      }
+    };
+    register(listener);
+    try {
+      long end = System.currentTimeMillis() + timeoutInMillis;
+      RuntimeException lastException = null;
+      while (true) {
+        long evaluatedAt = System.currentTimeMillis();
+        synchronized (lock) {
+          changed = false;
+        }
+        try {
+          T value = isTrue.apply(null);
+          if (value != null && !Boolean.FALSE.equals(value)) {
+            return value;
+          }
+        } catch (NoSuchElementException e) {
+          lastException = e;
+        } catch (StaleElementReferenceException e) {
+          lastException = e;
+        }
+        long remaining = end - System.currentTimeMillis();
+        if (remaining <= 0) {
+          break;
+        }
+        awaitChange(evaluatedAt, Math.min(remaining, AndroidWait.DEFAULT_SLEEP_INTERVAL));
+      }
+      throw new TimeoutException(
+          String.format("Timed out after %d ms", timeoutInMillis), lastException);
+    } finally {
+      unregister(listener);
+    }
+  }
+
+  private void awaitChange(long evaluatedAt, long maxWaitMillis) {
+    try {
+      synchronized (lock) {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        long wait = maxWaitMillis;
+        while (!changed && wait > 0) {
+          lock.wait(wait);
+          wait = deadline - System.currentTimeMillis();
+        }
+      }
+      long sinceEvaluation = System.currentTimeMillis() - evaluatedAt;
+      if (sinceEvaluation < MIN_EVALUATION_INTERVAL) {
+        Thread.sleep(MIN_EVALUATION_INTERVAL - sinceEvaluation);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SelendroidException(e);
+    }
+  }
+
+  // View tree observers must only be changed on the main thread.
+  private void register(final ViewTreeObserver.OnPreDrawListener listener) {
+    if (root == null) {
+      return;
+    }
+    new Handler(Looper.getMainLooper()).post(new Runnable() {
+      @Override
+      public void run() {
+        root.getViewTreeObserver().addOnPreDrawListener(listener);
+      }
+    });
+  }
+
+  private void unregister(final ViewTreeObserver.OnPreDrawListener listener) {
+    if (root == null) {
+      return;
+    }
+    new Handler(Looper.getMainLooper()).post(new Runnable() {
+      @Override
+      public void run() {
+        ViewTreeObserver observer = root.getViewTreeObserver();
+        if (observer.isAlive()) {
+          observer.removeOnPreDrawListener(listener);
+        }
+      }
+    });
+  }
+}
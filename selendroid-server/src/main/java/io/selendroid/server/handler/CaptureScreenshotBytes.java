@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.handler;
+
+import android.os.Build;
+
+import io.selendroid.server.common.BinaryResponse;
+import io.selendroid.server.common.Response;
+import io.selendroid.server.common.http.HttpRequest;
+import io.selendroid.server.model.ScreenshotFormat;
+import io.selendroid.server.util.SelendroidLogger;
+
+import org.json.JSONException;
+
+/**
+ * Returns the screenshot as raw image bytes instead of Base64 encoded inside JSON. The image
+ * format can be chosen with the {@code format} query parameter, {@code png} (default) or
+ * {@code webp}. Devices older than Android 4.0 can't encode WebP and return PNG instead, the
+ * content type tells which one it is. Errors are still returned as JSON.
+ */
+public class CaptureScreenshotBytes extends SafeRequestHandler {
+
+  public CaptureScreenshotBytes(String mappedUri) {
+    super(mappedUri);
+  }
+
+  @Override
+  public Response safeHandle(HttpRequest request) throws JSONException {
+    ScreenshotFormat format = getFormat(request.uri());
+    if (format == ScreenshotFormat.WEBP
+        && Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+      SelendroidLogger.info("WebP is not supported on API level " + Build.VERSION.SDK_INT
+          + ", falling back to PNG");
+      format = ScreenshotFormat.PNG;
+    }
+    SelendroidLogger.info("take screenshot bytes command, format: " + format);
+    byte[] image = getSelendroidDriver(request).takeScreenshot(format);
+
+    return new BinaryResponse(getSessionId(request), format.getMimeType(), image);
+  }
+
+  static ScreenshotFormat getFormat(String uri) {
+    int query = uri.indexOf('?');
+    if (query != -1) {
+      for (String parameter : uri.substring(query + 1).split("&")) {
+        if (parameter.startsWith("format=")) {
+          return ScreenshotFormat.fromString(parameter.substring("format=".length()));
+        }
+      }
+    }
+    return ScreenshotFormat.PNG;
+  }
+}
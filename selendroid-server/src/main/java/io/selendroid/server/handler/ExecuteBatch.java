@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.handler;
+
+import io.selendroid.server.AndroidServlet;
+import io.selendroid.server.common.Response;
+import io.selendroid.server.common.SelendroidResponse;
+import io.selendroid.server.common.StatusCode;
+import io.selendroid.server.common.exceptions.SelendroidException;
+import io.selendroid.server.common.http.HttpRequest;
+import io.selendroid.server.util.SelendroidLogger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Executes several commands of the current session with a single request. The payload contains
+ * the list of {@code commands}, each with its HTTP {@code method}, its {@code path} relative to
+ * the session URI and an optional {@code body}. The commands are executed one after the other in
+ * the given order and the response value contains one {@code status}/{@code value} result per
+ * executed command. If {@code stopOnError} is set, the remaining commands are skipped after the
+ * first failure, so the list of results can be shorter than the list of commands.
+ */
+public class ExecuteBatch extends SafeRequestHandler {
+  private final AndroidServlet servlet;
+
+  public ExecuteBatch(String mappedUri, AndroidServlet servlet) {
+    super(mappedUri);
+    this.servlet = servlet;
+  }
+
+  @Override
+  public Response safeHandle(HttpRequest request) throws JSONException {
+    JSONObject payload = getPayload(request);
+    JSONArray commands = payload.getJSONArray("commands");
+    boolean stopOnError = payload.optBoolean("stopOnError", false);
+    String sessionId = getSessionId(request);
+    SelendroidLogger.info("Executing batch of " + commands.length() + " commands");
+
+    JSONArray results = new JSONArray();
+    for (int i = 0; i < commands.length(); i++) {
+      SelendroidResponse response = execute(request, sessionId, commands.getJSONObject(i));
+      JSONObject result = new JSONObject();
+      result.put("status", response.getStatus());
+      result.put("value", response.getValue() == null ? JSONObject.NULL : response.getValue());
+      results.put(result);
+      if (stopOnError && response.getStatus() != StatusCode.SUCCESS.getCode()) {
+        break;
+      }
+    }
+    return new SelendroidResponse(sessionId, results);
+  }
+
+  private SelendroidResponse execute(HttpRequest batch, String sessionId, JSONObject command)
+      throws JSONException {
+    String method = command.getString("method");
+    String path = command.optString("path", "");
+    if (!path.isEmpty() && !path.startsWith("/")) {
+      throw new SelendroidException("The path of a batched command must start with '/': " + path);
+    }
+    String uri = "/wd/hub/session/" + sessionId + path;
+    if (uri.equals(batch.uri())) {
+      return new SelendroidResponse(sessionId, StatusCode.UNKNOWN_COMMAND,
+          "Batches cannot be nested.");
+    }
+    JSONObject body = command.optJSONObject("body");
+    return servlet.dispatch(
+        new BatchedRequest(batch, method, uri, body == null ? null : body.toString()));
+  }
+
+  /**
+   * A command of a batch. Headers are taken from the batch request itself.
+   */
+  private static class BatchedRequest implements HttpRequest {
+    private final HttpRequest batch;
+    private final String method;
+    private final String uri;
+    private final String body;
+    private final Map<String, Object> data = new HashMap<String, Object>();
+
+    BatchedRequest(HttpRequest batch, String method, String uri, String body) {
+      this.batch = batch;
+      this.method = method;
+      this.uri = uri;
+      this.body = body;
+    }
+
+    @Override
+    public String method() {
+      return method;
+    }
+
+    @Override
+    public String uri() {
+      return uri;
+    }
+
+    @Override
+    public String body() {
+      return body;
+    }
+
+    @Override
+    public String header(String name) {
+      return batch.header(name);
+    }
+
+    @Override
+    public Map<String, Object> data() {
+      return data;
+    }
+  }
+}
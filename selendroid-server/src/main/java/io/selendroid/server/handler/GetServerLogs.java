@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.handler;
+
+import io.selendroid.server.common.Response;
+import io.selendroid.server.common.SelendroidResponse;
+import io.selendroid.server.common.http.HttpRequest;
+import io.selendroid.server.util.LogEntry;
+import io.selendroid.server.util.SelendroidLogger;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Returns the log entries buffered by the selendroid server. The optional {@code since}
+ * parameter is the sequence number to start from; the response contains the sequence number to
+ * pass to the next call in {@code next}.
+ */
+public class GetServerLogs extends SafeRequestHandler {
+
+  public GetServerLogs(String mappedUri) {
+    super(mappedUri);
+  }
+
+  @Override
+  public Response safeHandle(HttpRequest request) throws JSONException {
+    long since = getPayload(request).optLong("since", 0);
+    List<LogEntry> entries = SelendroidLogger.getBufferedLogs(since);
+
+    JSONArray logs = new JSONArray();
+    long next = since;
+    for (LogEntry entry : entries) {
+      logs.put(entry.toJson());
+      next = entry.getSequence() + 1;
+    }
+
+    JSONObject result = new JSONObject();
+    result.put("entries", logs);
+    result.put("next", next);
+    return new SelendroidResponse(getSessionId(request), result);
+  }
+}
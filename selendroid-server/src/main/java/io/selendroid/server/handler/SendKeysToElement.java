@@ -16,6 +16,7 @@ package io.selendroid.server.handler;
 import io.selendroid.server.common.Response;
 import io.selendroid.server.common.SelendroidResponse;
 import io.selendroid.server.common.http.HttpRequest;
+import io.selendroid.server.common.model.TextInputStrategy;
 import io.selendroid.server.model.AndroidElement;
 import io.selendroid.server.model.Session;
 import io.selendroid.server.util.SelendroidLogger;
@@ -40,14 +41,38 @@ public class SendKeysToElement extends SafeRequestHandler {
     AndroidElement element = getElementFromCache(request, id);
     String[] keysToSend = extractKeysToSendFromPayload(request);
 
-    if (isNativeEvents(request)) {
-      element.enterText(keysToSend);
-    }else{
-      element.setText(keysToSend);
+    switch (getInputStrategy(request)) {
+      case KEY_EVENTS:
+        element.enterText(keysToSend);
+        break;
+      case INPUT_CONNECTION:
+        element.commitText(keysToSend);
+        break;
+      default:
+        element.setText(keysToSend);
     }
     return new SelendroidResponse(getSessionId(request), "");
   }
 
+  /**
+   * The input strategy can be chosen for a single element with the {@code inputStrategy} request
+   * parameter, or for the whole session through the command configuration. Without either, the
+   * {@code nativeEvents} configuration decides between key events and setting the text.
+   */
+  TextInputStrategy getInputStrategy(HttpRequest request) throws JSONException {
+    JSONObject payload = getPayload(request);
+    if (payload.has(Session.INPUT_STRATEGY_PROPERTY)) {
+      return TextInputStrategy.fromString(payload.getString(Session.INPUT_STRATEGY_PROPERTY));
+    }
+    JSONObject config =
+        getSelendroidDriver(request).getSession().getCommandConfiguration(
+            Session.SEND_KEYS_TO_ELEMENT);
+    if (config != null && config.has(Session.INPUT_STRATEGY_PROPERTY)) {
+      return TextInputStrategy.fromString(config.getString(Session.INPUT_STRATEGY_PROPERTY));
+    }
+    return isNativeEvents(request) ? TextInputStrategy.KEY_EVENTS : TextInputStrategy.SET_TEXT;
+  }
+
   boolean isNativeEvents(HttpRequest request) {
     JSONObject config =
         getSelendroidDriver(request).getSession().getCommandConfiguration(
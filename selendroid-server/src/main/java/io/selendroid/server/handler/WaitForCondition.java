@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.handler;
+
+import io.selendroid.server.ServerInstrumentationProvider;
+import io.selendroid.server.android.ViewChangeWait;
+import io.selendroid.server.common.Response;
+import io.selendroid.server.common.SelendroidResponse;
+import io.selendroid.server.common.StatusCode;
+import io.selendroid.server.common.exceptions.NoSuchElementException;
+import io.selendroid.server.common.exceptions.SelendroidException;
+import io.selendroid.server.common.exceptions.StaleElementReferenceException;
+import io.selendroid.server.common.exceptions.TimeoutException;
+import io.selendroid.server.common.http.HttpRequest;
+import io.selendroid.server.model.AndroidElement;
+import io.selendroid.server.model.By;
+import io.selendroid.server.model.SelendroidDriver;
+import io.selendroid.server.model.internal.NativeAndroidBySelector;
+import io.selendroid.server.util.Function;
+import io.selendroid.server.util.SelendroidLogger;
+
+import android.view.View;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Waits on the device until a condition is satisfied, so clients do not have to poll it with one
+ * request per attempt. The payload contains the {@code condition} and the {@code timeout} in
+ * milliseconds. Supported condition types are:
+ * <ul>
+ * <li>{@code elementExists}: an element located by {@code using}/{@code value} exists, the
+ * element is returned</li>
+ * <li>{@code elementTextEquals}, {@code elementTextContains}: the text of the element, given by
+ * its {@code element} id or located by {@code using}/{@code value}, equals or contains
+ * {@code text}, the text is returned</li>
+ * <li>{@code elementHidden}: the element is not displayed, stale or does not exist</li>
+ * <li>{@code titleEquals}, {@code urlEquals}: the title or URL of the current page equals
+ * {@code text}</li>
+ * </ul>
+ * If the condition is not satisfied in time, a {@link StatusCode#TIMEOUT} response is returned.
+ */
+public class WaitForCondition extends SafeRequestHandler {
+  private static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+  public WaitForCondition(String mappedUri) {
+    super(mappedUri);
+  }
+
+  @Override
+  public Response safeHandle(HttpRequest request) throws JSONException {
+    JSONObject payload = getPayload(request);
+    long timeout = payload.optLong("timeout", DEFAULT_TIMEOUT_MILLIS);
+    Condition condition = createCondition(request, payload.getJSONObject("condition"));
+    SelendroidLogger.info("Waiting up to " + timeout + " ms for " + condition);
+
+    ViewChangeWait wait = new ViewChangeWait(getRootView(), timeout);
+    try {
+      Object value = wait.until(condition);
+      return new SelendroidResponse(getSessionId(request), condition.toResult(value));
+    } catch (TimeoutException e) {
+      return new SelendroidResponse(getSessionId(request), StatusCode.TIMEOUT,
+          new TimeoutException("Condition timed out after " + timeout + " ms: " + condition));
+    }
+  }
+
+  /**
+   * @return the root view whose changes trigger a re-evaluation of the condition, or {@code null}
+   *         to only poll
+   */
+  protected View getRootView() {
+    return ServerInstrumentationProvider.getServerInstrumentationInstance().getRootView();
+  }
+
+  private Condition createCondition(final HttpRequest request, final JSONObject json)
+      throws JSONException {
+    final SelendroidDriver driver = getSelendroidDriver(request);
+    String type = json.getString("type");
+    if ("elementExists".equals(type)) {
+      final By by = getLocator(json);
+      return new Condition(type + " " + by) {
+        @Override
+        Object evaluate() {
+          return driver.findElementWithoutWaiting(by);
+        }
+
+        @Override
+        Object toResult(Object value) throws JSONException {
+          JSONObject element = new JSONObject();
+          element.put("ELEMENT", getIdOfKnownElement(request, (AndroidElement) value));
+          return element;
+        }
+      };
+    } else if ("elementTextEquals".equals(type) || "elementTextContains".equals(type)) {
+      final String expected = json.getString("text");
+      final boolean contains = "elementTextContains".equals(type);
+      return new Condition(type + " '" + expected + "'") {
+        @Override
+        Object evaluate() {
+          String text = findElement(request, json).getText();
+          lastValue = text;
+          boolean satisfied = contains ? text.contains(expected) : expected.equals(text);
+          return satisfied ? text : null;
+        }
+      };
+    } else if ("elementHidden".equals(type)) {
+      return new Condition(type) {
+        @Override
+        Object evaluate() {
+          try {
+            return !findElement(request, json).isDisplayed();
+          } catch (NoSuchElementException e) {
+            return true;
+          } catch (StaleElementReferenceException e) {
+            return true;
+          }
+        }
+      };
+    } else if ("titleEquals".equals(type) || "urlEquals".equals(type)) {
+      final String expected = json.getString("text");
+      final boolean title = "titleEquals".equals(type);
+      return new Condition(type + " '" + expected + "'") {
+        @Override
+        Object evaluate() {
+          String actual = title ? driver.getTitle() : driver.getCurrentUrl();
+          lastValue = actual;
+          return expected.equals(actual) ? actual : null;
+        }
+      };
+    }
+    throw new SelendroidException("Unknown wait condition type: " + type);
+  }
+
+  private By getLocator(JSONObject json) throws JSONException {
+    return new NativeAndroidBySelector().pickFrom(json.getString("using"), json.getString("value"));
+  }
+
+  private AndroidElement findElement(HttpRequest request, JSONObject json) {
+    try {
+      if (json.has("element")) {
+        return getElementFromCache(request, json.getString("element"));
+      }
+      AndroidElement element = getSelendroidDriver(request).findElementWithoutWaiting(
+          getLocator(json));
+      if (element == null) {
+        throw new NoSuchElementException("No element found for " + json);
+      }
+      return element;
+    } catch (JSONException e) {
+      throw new SelendroidException(e);
+    }
+  }
+
+  /**
+   * A condition that is satisfied once {@link #evaluate()} returns neither {@code null} nor
+   * {@code false}.
+   */
+  private abstract static class Condition implements Function<Void, Object> {
+    private final String description;
+    protected String lastValue;
+
+    Condition(String description) {
+      this.description = description;
+    }
+
+    abstract Object evaluate();
+
+    Object toResult(Object value) throws JSONException {
+      return value;
+    }
+
+    @Override
+    public Object apply(Void input) {
+      return evaluate();
+    }
+
+    @Override
+    public String toString() {
+      return lastValue == null ? description : description + ", last value: '" + lastValue + "'";
+    }
+  }
+}
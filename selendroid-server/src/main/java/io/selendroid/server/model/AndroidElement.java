@@ -34,6 +34,8 @@ public interface AndroidElement {
   
   public void setText(CharSequence... keysToSend);
 
+  public void commitText(CharSequence... keysToSend);
+
   public String getText();
 
   public void click();
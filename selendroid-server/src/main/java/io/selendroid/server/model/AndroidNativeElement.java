@@ -16,6 +16,7 @@ package io.selendroid.server.model;
 import android.app.Activity;
 import android.view.ViewParent;
 import io.selendroid.server.ServerInstrumentation;
+import io.selendroid.server.android.AndroidKeys;
 import io.selendroid.server.android.AndroidWait;
 import io.selendroid.server.android.KeySender;
 import io.selendroid.server.android.ViewHierarchyAnalyzer;
@@ -47,6 +48,8 @@ import android.os.SystemClock;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewTreeObserver;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputConnection;
 import android.webkit.JsResult;
 import android.webkit.WebChromeClient;
 import android.webkit.WebView;
@@ -71,6 +74,8 @@ public class AndroidNativeElement implements AndroidElement {
   private KnownElements ke;
   private int hashCode;
   static final long UI_TIMEOUT = 3000L;
+  // Keeps single commits small enough for input connections which copy the committed text
+  private static final int COMMIT_TEXT_CHUNK_SIZE = 4096;
   private final String id;
 
   public AndroidNativeElement(View view, ServerInstrumentation instrumentation, KeySender keys,
@@ -667,15 +672,73 @@ public class AndroidNativeElement implements AndroidElement {
     for (CharSequence keys : keysToSend) {
       sb.append(keys);
     }
-    final String text = getText() + sb;
+    final String text = sb.toString();
     instrumentation.getInstrumentation().runOnMainSync(new Runnable() {
       @Override
       public void run() {
-        ((EditText) viewview).setText(text);
+        // Appending to the editable content notifies the text watchers once for the whole
+        // payload, without reading the current text back first.
+        appendText((TextView) viewview, text);
       }
     });
   }
 
+  @Override
+  public void commitText(CharSequence... keysToSend) {
+    requestFocus();
+    StringBuilder sb = new StringBuilder();
+    for (CharSequence keys : keysToSend) {
+      sb.append(keys);
+    }
+
+    int currentIndex = 0;
+    while (currentIndex < sb.length()) {
+      int nextSpecialKey = AndroidKeys.indexOfSpecialKey(sb, currentIndex);
+      if (nextSpecialKey == currentIndex) {
+        // Special keys have no text representation and must be sent as key events
+        send(sb.subSequence(currentIndex, currentIndex + 1));
+        currentIndex++;
+      } else {
+        commitToInputConnection(sb.substring(currentIndex, nextSpecialKey));
+        currentIndex = nextSpecialKey;
+      }
+    }
+  }
+
+  private void commitToInputConnection(final String text) {
+    final View viewview = getView();
+    final AtomicBoolean committed = new AtomicBoolean(false);
+    instrumentation.getInstrumentation().runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        InputConnection connection = viewview.onCreateInputConnection(new EditorInfo());
+        if (connection == null) {
+          return;
+        }
+        connection.beginBatchEdit();
+        for (int start = 0; start < text.length(); start += COMMIT_TEXT_CHUNK_SIZE) {
+          int end = Math.min(text.length(), start + COMMIT_TEXT_CHUNK_SIZE);
+          connection.commitText(text.substring(start, end), 1);
+        }
+        connection.endBatchEdit();
+        committed.set(true);
+      }
+    });
+    if (!committed.get()) {
+      SelendroidLogger.debug("View has no input connection, falling back to key events: "
+          + viewview.getClass().getSimpleName());
+      send(text);
+    }
+  }
+
+  private static void appendText(TextView view, CharSequence text) {
+    view.append(text);
+    if (view instanceof EditText) {
+      EditText editText = (EditText) view;
+      editText.setSelection(editText.length());
+    }
+  }
+
   @Override
   public String id() {
     return this.id;
@@ -122,6 +122,11 @@ public class AndroidRElement implements AndroidElement {
     throw new RuntimeException(NOT_IMPLEMENTED_ERROR_MSG);
   }
 
+  @Override
+  public void commitText(CharSequence... keysToSend) {
+    throw new RuntimeException(NOT_IMPLEMENTED_ERROR_MSG);
+  }
+
   @Override
   public String id() {
     return String.valueOf(id);
@@ -334,15 +334,24 @@ public class AndroidWebElement implements AndroidElement {
     }
     JSONArray parameter = new JSONArray();
     parameter.put(this);
-    parameter.put(getText() + sb.toString());
+    parameter.put(sb.toString());
 
-    driver.executeScript("arguments[0].value = arguments[1];" +
+    driver.executeScript("arguments[0].value += arguments[1];" +
             "var inputEvent = document.createEvent('Event');" +
             "inputEvent.initEvent('input', true, true);" +
             "arguments[0].dispatchEvent(inputEvent);"
             , parameter, ke);
   }
 
+  /**
+   * Web views have no input connection that can be reached from the instrumentation, so the
+   * text is set through JavaScript in a single call, the same way as {@link #setText}.
+   */
+  @Override
+  public void commitText(CharSequence... keysToSend) {
+    setText(keysToSend);
+  }
+
   @Override
   public String id() {
     return id;
@@ -20,6 +20,7 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Point;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.provider.Settings;
 import android.view.Display;
 import android.view.View;
@@ -58,6 +59,8 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
   public static final String ROTATABLE = "rotatable";
   public static final String ACCEPT_SSL_CERTS = "acceptSslCerts";
   public static final String SUPPORTS_NETWORK_CONNECTION = "networkConnectionEnabled";
+  // Only used for WEBP, PNG is lossless.
+  private static final int SCREENSHOT_QUALITY = 70;
   private boolean done = false;
   private SearchContext nativeSearchScope = null;
   private SearchContext webviewSearchScope = null;
@@ -104,6 +107,14 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
     return found;
   }
 
+  @Override
+  public AndroidElement findElementWithoutWaiting(By by) {
+    if (by == null) {
+      throw new IllegalArgumentException("By cannot be null.");
+    }
+    return by.findElement(getSearchContext());
+  }
+
   private long getTimeout() {
     return System.currentTimeMillis() + serverInstrumentation.getAndroidWait().getTimeoutInMillis();
   }
@@ -219,8 +230,19 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
    * @see org.openqa.selenium.android.server.AndroidDriver#takeScreenshot()
    */
   @Override
-  @SuppressWarnings("deprecation")
   public byte[] takeScreenshot() {
+    return takeScreenshot(ScreenshotFormat.PNG);
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public byte[] takeScreenshot(ScreenshotFormat format) {
+    if (format == ScreenshotFormat.WEBP
+        && Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+      throw new SelendroidException("WebP screenshots require API level 14 or higher.");
+    }
+    final Bitmap.CompressFormat compressFormat = format == ScreenshotFormat.WEBP
+        ? Bitmap.CompressFormat.WEBP : Bitmap.CompressFormat.PNG;
     ViewHierarchyAnalyzer viewAnalyzer = ViewHierarchyAnalyzer.getDefaultInstance();
 
     // TODO ddary review later, but with getRecentDecorView() it seems to work better
@@ -277,7 +299,7 @@ public class DefaultSelendroidDriver implements SelendroidDriver {
           view.draw(canvas);
 
           ByteArrayOutputStream stream = new ByteArrayOutputStream();
-          if (!bitmap.compress(Bitmap.CompressFormat.PNG, 70, stream)) {
+          if (!bitmap.compress(compressFormat, SCREENSHOT_QUALITY, stream)) {
             throw new RuntimeException("Error while compressing screenshot image.");
           }
           try {
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.model;
+
+/**
+ * The image formats screenshots can be encoded in.
+ */
+public enum ScreenshotFormat {
+  PNG("png", "image/png"),
+  /**
+   * Lossy, but considerably smaller and faster to transfer than PNG.
+   */
+  WEBP("webp", "image/webp");
+
+  private final String name;
+  private final String mimeType;
+
+  private ScreenshotFormat(String name, String mimeType) {
+    this.name = name;
+    this.mimeType = mimeType;
+  }
+
+  public String getMimeType() {
+    return mimeType;
+  }
+
+  public static ScreenshotFormat fromString(String name) {
+    for (ScreenshotFormat format : values()) {
+      if (format.name.equalsIgnoreCase(name)) {
+        return format;
+      }
+    }
+    throw new IllegalArgumentException("Unknown screenshot format: " + name);
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -28,6 +28,12 @@ public interface SelendroidDriver {
 
   public List<AndroidElement> findElements(By by);
 
+  /**
+   * Returns the element or {@code null} if it does not exist, without waiting for the implicit
+   * wait timeout.
+   */
+  public AndroidElement findElementWithoutWaiting(By by);
+
   public String getCurrentUrl();
 
   public Session getSession();
@@ -46,6 +52,8 @@ public interface SelendroidDriver {
 
   public byte[] takeScreenshot();
 
+  public byte[] takeScreenshot(ScreenshotFormat format);
+
   public Keyboard getKeyboard();
 
   public String getTitle();
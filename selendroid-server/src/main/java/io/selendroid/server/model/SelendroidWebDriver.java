@@ -29,6 +29,7 @@ import io.selendroid.server.common.exceptions.TimeoutException;
 import io.selendroid.server.model.internal.WebViewHandleMapper;
 import io.selendroid.server.model.js.AndroidAtoms;
 import io.selendroid.server.util.SelendroidLogger;
+import io.selendroid.server.util.Supplier;
 import org.apache.cordova.CordovaChromeClient;
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.CordovaWebView;
@@ -106,8 +107,14 @@ public class SelendroidWebDriver {
       toReturn.append((i > 0) ? "," : "");
       toReturn.append(convertToJsArgs(args.get(i), ke));
     }
-    SelendroidLogger.info("convertToJsArgs: " + toReturn.toString());
-    return toReturn.toString();
+    final String converted = toReturn.toString();
+    SelendroidLogger.debug(new Supplier<String>() {
+      @Override
+      public String get() {
+        return "convertToJsArgs: " + converted;
+      }
+    });
+    return converted;
   }
 
   private String convertToJsArgs(Object obj, KnownElements ke) throws JSONException {
@@ -164,8 +171,14 @@ public class SelendroidWebDriver {
       SelendroidLogger
           .info("failed to figure out what this is to convert to execute script:" + obj);
     }
-    SelendroidLogger.info("convertToJsArgs: " + toReturn.toString());
-    return toReturn.toString();
+    final String converted = toReturn.toString();
+    SelendroidLogger.debug(new Supplier<String>() {
+      @Override
+      public String get() {
+        return "convertToJsArgs: " + converted;
+      }
+    });
+    return converted;
   }
 
   public String getContextHandle() {
@@ -191,12 +204,16 @@ public class SelendroidWebDriver {
     String scriptInWindow =
         "(function(){ " + " var win; try{win=" + getWindowString() + "}catch(e){win=window;}"
             + "with(win){return (" + myScript + ")(" + convertToJsArgs(args, ke) + ")}})()";
-    String jsResult =
+    final String jsResult =
         executeJavascriptInWebView("alert('selendroid<' + document.charset + '>:'+"
             + scriptInWindow + ")");
 
-
-    SelendroidLogger.info("jsResult: " + jsResult);
+    SelendroidLogger.debug(new Supplier<String>() {
+      @Override
+      public String get() {
+        return "jsResult: " + jsResult;
+      }
+    });
     if (jsResult == null || "undefined".equals(jsResult)) {
       return null;
     }
@@ -22,6 +22,7 @@ import org.json.JSONObject;
 public class Session {
   public static final String SEND_KEYS_TO_ELEMENT = "sendKeysToElement";
   public static final String NATIVE_EVENTS_PROPERTY = "nativeEvents";
+  public static final String INPUT_STRATEGY_PROPERTY = "inputStrategy";
 
   private JSONObject capabilities = null;
   private KnownElements knownElements = null;
@@ -40,6 +41,10 @@ public class Session {
         nativeEvents = capabilities.getBoolean(NATIVE_EVENTS_PROPERTY);
       }
       configJsonObject.put(NATIVE_EVENTS_PROPERTY, nativeEvents);
+      if (capabilities.has(INPUT_STRATEGY_PROPERTY)) {
+        configJsonObject.put(INPUT_STRATEGY_PROPERTY,
+            capabilities.getString(INPUT_STRATEGY_PROPERTY));
+      }
     } catch (JSONException e) {
     }
     this.commandConfiguration.put(SEND_KEYS_TO_ELEMENT, configJsonObject);
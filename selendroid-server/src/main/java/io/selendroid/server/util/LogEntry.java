@@ -0,0 +1,95 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.util;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A single message written through {@link SelendroidLogger}.
+ */
+public class LogEntry {
+  private final long sequence;
+  private final long timestamp;
+  private final int level;
+  private final String thread;
+  private final String message;
+  private final Throwable throwable;
+
+  LogEntry(long sequence, long timestamp, int level, String thread, String message,
+      Throwable throwable) {
+    this.sequence = sequence;
+    this.timestamp = timestamp;
+    this.level = level;
+    this.thread = thread;
+    this.message = message;
+    this.throwable = throwable;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  public String getThread() {
+    return thread;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public Throwable getThrowable() {
+    return throwable;
+  }
+
+  public JSONObject toJson() throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("sequence", sequence);
+    json.put("timestamp", timestamp);
+    json.put("level", levelName(level));
+    json.put("thread", thread);
+    json.put("message", message);
+    if (throwable != null) {
+      json.put("throwable", throwable.toString());
+    }
+    return json;
+  }
+
+  static String levelName(int level) {
+    switch (level) {
+      case Log.VERBOSE:
+        return "VERBOSE";
+      case Log.DEBUG:
+        return "DEBUG";
+      case Log.INFO:
+        return "INFO";
+      case Log.WARN:
+        return "WARN";
+      case Log.ERROR:
+        return "ERROR";
+      default:
+        return "ASSERT";
+    }
+  }
+}
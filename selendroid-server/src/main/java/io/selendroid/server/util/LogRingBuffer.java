@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.server.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed size buffer of the most recent log entries. Entries get increasing sequence numbers,
+ * so readers can keep a cursor and ask for everything written after it. Once the buffer is full
+ * the oldest entries are overwritten.
+ */
+public class LogRingBuffer {
+  private final LogEntry[] entries;
+  private long nextSequence = 0;
+
+  public LogRingBuffer(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "capacity must be positive");
+    this.entries = new LogEntry[capacity];
+  }
+
+  public synchronized LogEntry append(int level, String thread, String message,
+      Throwable throwable) {
+    LogEntry entry = new LogEntry(nextSequence, System.currentTimeMillis(), level, thread,
+        message, throwable);
+    entries[(int) (nextSequence % entries.length)] = entry;
+    nextSequence++;
+    notifyAll();
+    return entry;
+  }
+
+  /**
+   * @return the sequence number the next appended entry will get
+   */
+  public synchronized long getNextSequence() {
+    return nextSequence;
+  }
+
+  /**
+   * Returns the buffered entries with a sequence number of at least {@code sequence}. Entries
+   * which have already been overwritten are skipped.
+   */
+  public synchronized List<LogEntry> readFrom(long sequence) {
+    long first = Math.max(sequence, nextSequence - entries.length);
+    first = Math.max(first, 0);
+    List<LogEntry> result = new ArrayList<LogEntry>((int) Math.max(0, nextSequence - first));
+    for (long i = first; i < nextSequence; i++) {
+      result.add(entries[(int) (i % entries.length)]);
+    }
+    return result;
+  }
+
+  /**
+   * Like {@link #readFrom(long)}, but blocks until at least one entry is available.
+   */
+  public synchronized List<LogEntry> awaitFrom(long sequence) throws InterruptedException {
+    while (nextSequence <= sequence) {
+      wait();
+    }
+    return readFrom(sequence);
+  }
+}
@@ -16,17 +16,41 @@ package io.selendroid.server.util;
 import android.util.Log;
 
 import java.lang.UnsatisfiedLinkError;
+import java.util.List;
 
+/**
+ * Logging facade of the selendroid server.
+ *
+ * Messages are only built if their level is loggable; callers with expensive messages should
+ * pass a {@link Supplier}. Entries are appended to an in-memory {@link LogRingBuffer} and written
+ * to logcat by a background thread, so request threads never block on logcat. The buffer can be
+ * read with {@link #getBufferedLogs(long)}. The calling class and method are only added to the
+ * message if the VERBOSE level is enabled, because walking the stack is expensive.
+ */
 public class SelendroidLogger {
   public static final String LOG_TAG = "SELENDROID";
+  private static final int BUFFER_CAPACITY = 2000;
+
+  private static final LogRingBuffer buffer = new LogRingBuffer(BUFFER_CAPACITY);
 
-  private static String formatMessage(String message) {
-    StackTraceElement stackTraceElement = Thread.currentThread().getStackTrace()[4];
-    return String.format("%s#%s:%d - %s", stackTraceElement.getClassName(),
-        stackTraceElement.getMethodName(), stackTraceElement.getLineNumber(), message);
+  static {
+    Thread writer = new Thread(new LogcatWriter(), "selendroid-logcat-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  private static String callerInfo(String message) {
+    // the number of frames above the caller differs between the JVM and Dalvik
+    for (StackTraceElement stackTraceElement : new Throwable().getStackTrace()) {
+      if (!SelendroidLogger.class.getName().equals(stackTraceElement.getClassName())) {
+        return String.format("%s#%s:%d - %s", stackTraceElement.getClassName(),
+            stackTraceElement.getMethodName(), stackTraceElement.getLineNumber(), message);
+      }
+    }
+    return message;
   }
 
-  private static boolean isLoggable(int logLevel) {
+  public static boolean isLoggable(int logLevel) {
     try {
       return Log.isLoggable(LOG_TAG, logLevel);
     } catch (UnsatisfiedLinkError e) { // this lets the tests run on the jvm as well.
@@ -34,63 +58,144 @@ public class SelendroidLogger {
     }
   }
 
+  private static void log(int logLevel, String message, Throwable e) {
+    if (isLoggable(Log.VERBOSE)) {
+      message = callerInfo(message);
+    }
+    buffer.append(logLevel, Thread.currentThread().getName(), message, e);
+  }
+
+  /**
+   * Returns the buffered log entries starting with the given sequence number. Pass 0 to get
+   * everything which is still buffered.
+   */
+  public static List<LogEntry> getBufferedLogs(long sinceSequence) {
+    return buffer.readFrom(sinceSequence);
+  }
+
   public static void error(String message) {
     if (isLoggable(Log.ERROR)) {
-      Log.e(LOG_TAG, formatMessage(message));
+      log(Log.ERROR, message, null);
     }
   }
 
   public static void error(String message, Throwable e) {
     if (isLoggable(Log.ERROR)) {
-      Log.e(LOG_TAG, formatMessage(message), e);
+      log(Log.ERROR, message, e);
+    }
+  }
+
+  public static void error(Supplier<String> message) {
+    if (isLoggable(Log.ERROR)) {
+      log(Log.ERROR, message.get(), null);
     }
   }
 
   public static void warning(String message) {
     if (isLoggable(Log.WARN)) {
-      Log.w(LOG_TAG, formatMessage(message));
+      log(Log.WARN, message, null);
     }
   }
 
   public static void warning(String message, Exception e) {
     if (isLoggable(Log.WARN)) {
-      Log.w(LOG_TAG, formatMessage(message), e);
+      log(Log.WARN, message, e);
+    }
+  }
+
+  public static void warning(Supplier<String> message) {
+    if (isLoggable(Log.WARN)) {
+      log(Log.WARN, message.get(), null);
     }
   }
 
   public static void info(String message) {
     if (isLoggable(Log.INFO)) {
-      Log.i(LOG_TAG, formatMessage(message));
+      log(Log.INFO, message, null);
     }
   }
 
   public static void info(String message, Exception e) {
     if (isLoggable(Log.INFO)) {
-      Log.i(LOG_TAG, formatMessage(message), e);
+      log(Log.INFO, message, e);
+    }
+  }
+
+  public static void info(Supplier<String> message) {
+    if (isLoggable(Log.INFO)) {
+      log(Log.INFO, message.get(), null);
     }
   }
 
   public static void debug(String message) {
     if (isLoggable(Log.DEBUG)) {
-      Log.d(LOG_TAG, formatMessage(message));
+      log(Log.DEBUG, message, null);
     }
   }
 
   public static void debug(String message, Exception e) {
     if (isLoggable(Log.DEBUG)) {
-      Log.d(LOG_TAG, formatMessage(message), e);
+      log(Log.DEBUG, message, e);
+    }
+  }
+
+  public static void debug(Supplier<String> message) {
+    if (isLoggable(Log.DEBUG)) {
+      log(Log.DEBUG, message.get(), null);
     }
   }
 
   public static void verbose(String message) {
     if (isLoggable(Log.VERBOSE)) {
-      Log.v(LOG_TAG, formatMessage(message));
+      log(Log.VERBOSE, message, null);
     }
   }
 
   public static void verbose(String message, Exception e) {
     if (isLoggable(Log.VERBOSE)) {
-      Log.v(LOG_TAG, formatMessage(message), e);
+      log(Log.VERBOSE, message, e);
+    }
+  }
+
+  public static void verbose(Supplier<String> message) {
+    if (isLoggable(Log.VERBOSE)) {
+      log(Log.VERBOSE, message.get(), null);
+    }
+  }
+
+  /**
+   * Drains the ring buffer to logcat. If logging outpaces the writer, overwritten entries are
+   * skipped and reported as dropped.
+   */
+  private static class LogcatWriter implements Runnable {
+    @Override
+    public void run() {
+      long cursor = 0;
+      while (!Thread.currentThread().isInterrupted()) {
+        List<LogEntry> entries;
+        try {
+          entries = buffer.awaitFrom(cursor);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        long dropped = entries.get(0).getSequence() - cursor;
+        if (dropped > 0) {
+          Log.w(LOG_TAG, "Dropped " + dropped + " log entries");
+        }
+        for (LogEntry entry : entries) {
+          write(entry);
+        }
+        cursor = entries.get(entries.size() - 1).getSequence() + 1;
+      }
+    }
+
+    private void write(LogEntry entry) {
+      String message = entry.getMessage();
+      if (entry.getThrowable() != null) {
+        message = message + '\n' + Log.getStackTraceString(entry.getThrowable());
+      }
+      Log.println(entry.getLevel(), LOG_TAG, message);
     }
   }
 }
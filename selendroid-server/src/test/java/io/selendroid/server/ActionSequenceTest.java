@@ -0,0 +1,91 @@
+package io.selendroid.server;
+
+import io.selendroid.server.action.ActionSequence;
+import io.selendroid.server.common.action.touch.TouchActionName;
+import io.selendroid.server.common.exceptions.UnsupportedOperationException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActionSequenceTest {
+
+  private JSONObject action(String name) throws JSONException {
+    JSONObject action = new JSONObject();
+    action.put("name", name);
+    return action;
+  }
+
+  private JSONObject pointerAction(String name, int x, int y) throws JSONException {
+    JSONObject action = action(name);
+    action.put("x", x);
+    action.put("y", y);
+    return action;
+  }
+
+  private JSONObject pause(int ms) throws JSONException {
+    JSONObject action = action(TouchActionName.PAUSE);
+    action.put("ms", ms);
+    return action;
+  }
+
+  private JSONObject chain(JSONObject... actions) throws JSONException {
+    JSONObject chain = new JSONObject();
+    JSONArray array = new JSONArray();
+    for (JSONObject action : actions) {
+      array.put(action);
+    }
+    chain.put("inputDevice", "touch");
+    chain.put("actions", array);
+    return chain;
+  }
+
+  private JSONArray payload(JSONObject... chains) {
+    JSONArray payload = new JSONArray();
+    for (JSONObject chain : chains) {
+      payload.put(chain);
+    }
+    return payload;
+  }
+
+  @Test
+  public void testCompilesParallelChainsIntoTicks() throws JSONException {
+    ActionSequence sequence = new ActionSequence(payload(
+        chain(pointerAction(TouchActionName.POINTER_DOWN, 1, 1), pause(100),
+            action(TouchActionName.POINTER_UP)),
+        chain(pointerAction(TouchActionName.POINTER_DOWN, 5, 5), pause(300))));
+
+    Assert.assertEquals(3, sequence.getTicks().size());
+    Assert.assertEquals(2, sequence.getTicks().get(0).getSteps().size());
+    Assert.assertEquals(0, sequence.getTicks().get(1).getSteps().size());
+    Assert.assertEquals(300, sequence.getTicks().get(1).getPauseMillis());
+    Assert.assertEquals(1, sequence.getTicks().get(2).getSteps().size());
+    Assert.assertEquals(300, sequence.getTotalPauseMillis());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRejectsPointerUpWithoutPointerDown() throws JSONException {
+    new ActionSequence(payload(chain(action(TouchActionName.POINTER_UP))));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRejectsMoveAfterCancel() throws JSONException {
+    new ActionSequence(payload(
+        chain(pointerAction(TouchActionName.POINTER_DOWN, 1, 1),
+            pointerAction(TouchActionName.POINTER_MOVE, 2, 2)),
+        chain(pause(0), action(TouchActionName.POINTER_CANCEL)),
+        chain(pause(0), pause(0), pointerAction(TouchActionName.POINTER_MOVE, 3, 3))));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsPointerDownWithoutPosition() throws JSONException {
+    new ActionSequence(payload(chain(action(TouchActionName.POINTER_DOWN))));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testRejectsUnknownAction() throws JSONException {
+    new ActionSequence(payload(chain(action("pinch"))));
+  }
+}
@@ -16,9 +16,14 @@ package io.selendroid.server;
 import io.netty.handler.codec.http.HttpMethod;
 import io.selendroid.server.ServerInstrumentation;
 import io.selendroid.server.common.exceptions.SelendroidException;
+import io.selendroid.server.handler.ExecuteBatch;
+import io.selendroid.server.handler.WaitForCondition;
 import io.selendroid.server.handlers.SessionAndIdExtractionTestHandler;
 import io.selendroid.server.handlers.SessionAndPayloadExtractionTestHandler;
 import io.selendroid.server.internal.Capabilities;
+import io.selendroid.server.model.SelendroidDriver;
+
+import android.view.View;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpHost;
@@ -107,7 +112,11 @@ public class BaseTest {
   /** Configuring AndroidServlet to use special test handler. */
   public class AndroidTestServlet extends AndroidServlet {
     public AndroidTestServlet() {
-      super(null, null);
+      this(null);
+    }
+
+    public AndroidTestServlet(SelendroidDriver driver) {
+      super(driver, null);
     }
 
     @Override
@@ -116,6 +125,13 @@ public class BaseTest {
           "/wd/hub/session/:sessionId/element"));
       register(postHandler, new SessionAndIdExtractionTestHandler(
           "/wd/hub/session/:sessionId/element/:id/click"));
+      register(postHandler, new ExecuteBatch("/wd/hub/session/:sessionId/selendroid/batch", this));
+      register(postHandler, new WaitForCondition("/wd/hub/session/:sessionId/selendroid/waitFor") {
+        @Override
+        protected View getRootView() {
+          return null;
+        }
+      });
     }
   }
 
@@ -16,21 +16,37 @@ package io.selendroid.server;
 import io.netty.handler.codec.http.HttpMethod;
 import io.selendroid.server.common.http.HttpServer;
 import io.selendroid.server.internal.SelendroidAssert;
+import io.selendroid.server.model.AndroidElement;
+import io.selendroid.server.model.By;
+import io.selendroid.server.model.KnownElements;
+import io.selendroid.server.model.SelendroidDriver;
+import io.selendroid.server.model.Session;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpResponse;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class HandlerRegisteredTest extends BaseTest {
   private HttpServer server = null;
+  private SelendroidDriver driver;
+  private KnownElements knownElements;
 
   @Override
   public void setup() throws Exception {
+    driver = mock(SelendroidDriver.class);
+    knownElements = new KnownElements();
+    Session session = mock(Session.class);
+    when(session.getKnownElements()).thenReturn(knownElements);
+    when(driver.getSession()).thenReturn(session);
     server = new HttpServer(port);
-    server.addHandler(new AndroidTestServlet());
+    server.addHandler(new AndroidTestServlet(driver));
     server.start();
   }
 
@@ -67,6 +83,154 @@ public class HandlerRegisteredTest extends BaseTest {
     SelendroidAssert.assertResponseIsResourceNotFound(response);
   }
 
+  @Test
+  public void batchedCommandsAreExecutedInOrder() throws Exception {
+    JSONObject find = new JSONObject();
+    find.put("method", "GET");
+    find.put("path", "/element");
+    find.put("body", new JSONObject().put("using", "id").put("value", "my_button_bar"));
+    JSONObject click = new JSONObject();
+    click.put("method", "POST");
+    click.put("path", "/element/815/click");
+    JSONObject unknown = new JSONObject();
+    unknown.put("method", "POST");
+    unknown.put("path", "/unknown");
+    JSONObject payload = new JSONObject();
+    payload.put("commands", new JSONArray().put(find).put(unknown).put(click));
+
+    String url = "http://" + host + ":" + port + "/wd/hub/session/12345/selendroid/batch";
+    HttpResponse response = executeRequestWithPayload(url, HttpMethod.POST, payload.toString());
+    SelendroidAssert.assertResponseIsOk(response);
+
+    JSONArray results = parseJsonResponse(response).getJSONArray("value");
+    assertEquals(3, results.length());
+    assertEquals(0, results.getJSONObject(0).getInt("status"));
+    assertEquals("sessionId#12345 using#id value#my_button_bar",
+        results.getJSONObject(0).getString("value"));
+    assertEquals(9, results.getJSONObject(1).getInt("status"));
+    assertEquals(0, results.getJSONObject(2).getInt("status"));
+    assertEquals("sessionId#12345 elementId#815", results.getJSONObject(2).getString("value"));
+  }
+
+  @Test
+  public void batchStopsAtFirstFailureIfRequested() throws Exception {
+    JSONObject unknown = new JSONObject();
+    unknown.put("method", "POST");
+    unknown.put("path", "/unknown");
+    JSONObject click = new JSONObject();
+    click.put("method", "POST");
+    click.put("path", "/element/815/click");
+    JSONObject payload = new JSONObject();
+    payload.put("commands", new JSONArray().put(unknown).put(click));
+    payload.put("stopOnError", true);
+
+    String url = "http://" + host + ":" + port + "/wd/hub/session/12345/selendroid/batch";
+    HttpResponse response = executeRequestWithPayload(url, HttpMethod.POST, payload.toString());
+    SelendroidAssert.assertResponseIsOk(response);
+
+    JSONArray results = parseJsonResponse(response).getJSONArray("value");
+    assertEquals(1, results.length());
+    assertEquals(9, results.getJSONObject(0).getInt("status"));
+  }
+
+  @Test
+  public void waitForTitleEquals() throws Exception {
+    when(driver.getTitle()).thenReturn("Home");
+    JSONObject result = waitFor(new JSONObject().put("type", "titleEquals").put("text", "Home"));
+    assertEquals(0, result.getInt("status"));
+    assertEquals("Home", result.getString("value"));
+  }
+
+  @Test
+  public void waitForUrlEquals() throws Exception {
+    when(driver.getCurrentUrl()).thenReturn("http://localhost/home");
+    JSONObject result = waitFor(new JSONObject().put("type", "urlEquals")
+        .put("text", "http://localhost/home"));
+    assertEquals(0, result.getInt("status"));
+    assertEquals("http://localhost/home", result.getString("value"));
+  }
+
+  @Test
+  public void waitForElementExists() throws Exception {
+    AndroidElement element = mockElement("815");
+    when(driver.findElementWithoutWaiting(any(By.class))).thenReturn(element);
+    JSONObject result = waitFor(new JSONObject().put("type", "elementExists")
+        .put("using", "id").put("value", "my_button_bar"));
+    assertEquals(0, result.getInt("status"));
+    assertEquals("815", result.getJSONObject("value").getString("ELEMENT"));
+  }
+
+  @Test
+  public void waitForElementTextEquals() throws Exception {
+    AndroidElement element = mockElement("815");
+    when(element.getText()).thenReturn("Hello world");
+    JSONObject result = waitFor(new JSONObject().put("type", "elementTextEquals")
+        .put("element", "815").put("text", "Hello world"));
+    assertEquals(0, result.getInt("status"));
+    assertEquals("Hello world", result.getString("value"));
+  }
+
+  @Test
+  public void waitForElementTextContains() throws Exception {
+    AndroidElement element = mockElement("815");
+    when(element.getText()).thenReturn("Hello world");
+    when(driver.findElementWithoutWaiting(any(By.class))).thenReturn(element);
+    JSONObject result = waitFor(new JSONObject().put("type", "elementTextContains")
+        .put("using", "id").put("value", "my_button_bar").put("text", "world"));
+    assertEquals(0, result.getInt("status"));
+    assertEquals("Hello world", result.getString("value"));
+  }
+
+  @Test
+  public void waitForElementHidden() throws Exception {
+    AndroidElement element = mockElement("815");
+    when(element.isDisplayed()).thenReturn(false);
+    JSONObject result = waitFor(new JSONObject().put("type", "elementHidden")
+        .put("element", "815"));
+    assertEquals(0, result.getInt("status"));
+    assertTrue(result.getBoolean("value"));
+  }
+
+  @Test
+  public void waitForElementHiddenIsSatisfiedByMissingElement() throws Exception {
+    JSONObject result = waitFor(new JSONObject().put("type", "elementHidden")
+        .put("using", "id").put("value", "my_button_bar"));
+    assertEquals(0, result.getInt("status"));
+    assertTrue(result.getBoolean("value"));
+  }
+
+  @Test
+  public void waitForUnknownConditionIsRejected() throws Exception {
+    JSONObject result = waitFor(new JSONObject().put("type", "alertPresent"));
+    assertFalse(0 == result.getInt("status"));
+    assertTrue(result.getJSONObject("value").getString("message").contains("alertPresent"));
+  }
+
+  @Test
+  public void waitForConditionTimesOut() throws Exception {
+    when(driver.getTitle()).thenReturn("Home");
+    JSONObject result = waitFor(new JSONObject().put("type", "titleEquals").put("text", "Login"));
+    assertEquals(21, result.getInt("status"));
+  }
+
+  private AndroidElement mockElement(String id) {
+    AndroidElement element = mock(AndroidElement.class);
+    when(element.id()).thenReturn(id);
+    knownElements.add(element);
+    return element;
+  }
+
+  private JSONObject waitFor(JSONObject condition) throws Exception {
+    JSONObject payload = new JSONObject();
+    payload.put("condition", condition);
+    payload.put("timeout", 300);
+
+    String url = "http://" + host + ":" + port + "/wd/hub/session/12345/selendroid/waitFor";
+    HttpResponse response = executeRequestWithPayload(url, HttpMethod.POST, payload.toString());
+    SelendroidAssert.assertResponseIsOk(response);
+    return parseJsonResponse(response);
+  }
+
   @Override
   public void tearDown() {
     server.stop();
@@ -146,6 +146,11 @@ public class SelendroidConfiguration {
       names = "-sessionTimeout")
   private int sessionTimeoutSeconds = 30 * 60; // 30 minutes
 
+  @Parameter(
+      description = "maximum time in seconds between two commands of a session. Session will be terminated if it is idle for longer. 0 disables the idle timeout.",
+      names = "-sessionIdleTimeout")
+  private int sessionIdleTimeoutSeconds = 0;
+
   @Parameter(names = "-forceReinstall",
              description = "Forces Selendroid Server and the app under test to be reinstalled (for Selendroid developers)")
   private boolean forceReinstall = false;
@@ -159,6 +164,18 @@ public class SelendroidConfiguration {
              arity = 1)
   private boolean deviceLog = true;
 
+  @Parameter(names = "-deviceLogBufferSize",
+             description = "Maximum number of adb log lines kept in memory per device")
+  private int deviceLogBufferSize = 10000;
+
+  @Parameter(names = "-deviceLogSpillDir",
+             description = "Directory adb log lines that no longer fit into memory are written to. If not specified, they are dropped.")
+  private String deviceLogSpillDir = null;
+
+  @Parameter(names = "-screenshotCompressionLevel",
+             description = "Deflate level of the PNG screenshots taken by the standalone server, from 1 (fastest) to 9 (smallest)")
+  private int screenshotCompressionLevel = 1;
+
   @Parameter(description = "Maximum time in milliseconds to wait for the selendroid-server to come up on the device",
       names = "-serverStartTimeout")
   private long serverStartTimeout = 20000;
@@ -196,6 +213,24 @@ public class SelendroidConfiguration {
   private String buildToolsVersion = null;
 
 
+  @Parameter(names = "-apkCacheDir", description = "Directory where resigned apps and built selendroid-server APKs are cached across restarts. Defaults to ~/.selendroid/apk-cache")
+  private String apkCacheDir = null;
+
+  @Parameter(names = "-apkCacheSize", description = "Maximum size of the APK cache in megabytes. 0 disables the cache.")
+  private long apkCacheSize = 1024;
+
+  @Parameter(names = "-deviceWaitTimeout", description = "Milliseconds a new session waits for a matching device to be released if all of them are in use. 0 fails right away.")
+  private long deviceWaitTimeout = 0;
+
+  @Parameter(names = "-sessionQueueDepth", description = "Maximum number of new session requests that wait for a matching device without holding a server thread. Requests are admitted by their sessionPriority capability and take turns by their sessionClient capability. 0 disables the queue.")
+  private int sessionQueueDepth = 0;
+
+  @Parameter(names = "-sessionQueueTimeout", description = "Milliseconds a queued session request waits for a matching device before it fails. 0 waits forever.")
+  private long sessionQueueTimeout = 60000;
+
+  @Parameter(names = "-warmEmulators", description = "Maximum number of emulators per target platform that are kept booted for upcoming sessions, depending on recent demand. Pooled emulators are reset with a snapshot between sessions. 0 disables the pool.")
+  private int warmEmulators = 0;
+
   @Parameter(names ="-avdManager", description = "Absolute path to avdmanager command line utility")
   private String avdManagerHome = null;
 
@@ -207,6 +242,54 @@ public class SelendroidConfiguration {
     this.avdManagerHome = avdManagerHome;
   }
 
+  public String getApkCacheDir() {
+    return apkCacheDir;
+  }
+
+  public void setApkCacheDir(String apkCacheDir) {
+    this.apkCacheDir = apkCacheDir;
+  }
+
+  public long getApkCacheSize() {
+    return apkCacheSize;
+  }
+
+  public void setApkCacheSize(long apkCacheSize) {
+    this.apkCacheSize = apkCacheSize;
+  }
+
+  public int getWarmEmulators() {
+    return warmEmulators;
+  }
+
+  public void setWarmEmulators(int warmEmulators) {
+    this.warmEmulators = warmEmulators;
+  }
+
+  public long getDeviceWaitTimeout() {
+    return deviceWaitTimeout;
+  }
+
+  public void setDeviceWaitTimeout(long deviceWaitTimeout) {
+    this.deviceWaitTimeout = deviceWaitTimeout;
+  }
+
+  public int getSessionQueueDepth() {
+    return sessionQueueDepth;
+  }
+
+  public void setSessionQueueDepth(int sessionQueueDepth) {
+    this.sessionQueueDepth = sessionQueueDepth;
+  }
+
+  public long getSessionQueueTimeout() {
+    return sessionQueueTimeout;
+  }
+
+  public void setSessionQueueTimeout(long sessionQueueTimeout) {
+    this.sessionQueueTimeout = sessionQueueTimeout;
+  }
+
   public void setKeystore(String keystore) {
     this.keystore = keystore;
   }
@@ -350,6 +433,14 @@ public class SelendroidConfiguration {
     this.sessionTimeoutSeconds = sessionTimeoutSeconds;
   }
 
+  public int getSessionIdleTimeoutMillis() {
+    return sessionIdleTimeoutSeconds * 1000;
+  }
+
+  public void setSessionIdleTimeoutSeconds(int sessionIdleTimeoutSeconds) {
+    this.sessionIdleTimeoutSeconds = sessionIdleTimeoutSeconds;
+  }
+
   public boolean isForceReinstall() {
     return forceReinstall;
   }
@@ -374,6 +465,30 @@ public class SelendroidConfiguration {
     this.deviceLog = deviceLog;
   }
 
+  public int getDeviceLogBufferSize() {
+    return deviceLogBufferSize;
+  }
+
+  public void setDeviceLogBufferSize(int deviceLogBufferSize) {
+    this.deviceLogBufferSize = deviceLogBufferSize;
+  }
+
+  public int getScreenshotCompressionLevel() {
+    return screenshotCompressionLevel;
+  }
+
+  public void setScreenshotCompressionLevel(int screenshotCompressionLevel) {
+    this.screenshotCompressionLevel = screenshotCompressionLevel;
+  }
+
+  public String getDeviceLogSpillDir() {
+    return deviceLogSpillDir;
+  }
+
+  public void setDeviceLogSpillDir(String deviceLogSpillDir) {
+    this.deviceLogSpillDir = deviceLogSpillDir;
+  }
+
   public long getServerStartTimeout() {
     return serverStartTimeout;
   }
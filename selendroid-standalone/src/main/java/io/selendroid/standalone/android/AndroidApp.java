@@ -29,6 +29,9 @@ public interface AndroidApp {
   public void deleteFileFromWithinApk(String file) throws ShellCommandException,
       AndroidSdkException;
 
+  public void deleteFilesFromWithinApk(String... files) throws ShellCommandException,
+      AndroidSdkException;
+
   public String getAppId() throws AndroidSdkException;
 
   /**
@@ -24,6 +24,7 @@ import org.openqa.selenium.logging.LogEntry;
 
 import com.google.common.base.Predicates;
 
+import java.io.File;
 import java.util.List;
 import java.util.Locale;
 
@@ -56,6 +57,25 @@ public interface AndroidDevice {
 
   public List<LogEntry> getLogs();
 
+  /**
+   * @return the buffered device log entries matching the given filter, oldest first.
+   */
+  public List<LogcatEntry> getLogcat(LogcatFilter filter);
+
+  public void setLogcatBufferSize(int logcatBufferSize);
+
+  /**
+   * Sets the directory device log entries evicted from the in-memory buffer are written to.
+   * {@code null} (the default) drops them.
+   */
+  public void setLogcatSpillDirectory(File logcatSpillDirectory);
+
+  /**
+   * Sets the deflate level screenshots are encoded with, from 1 (fastest, the default) to 9
+   * (smallest).
+   */
+  public void setScreenshotCompressionLevel(int screenshotCompressionLevel);
+
   public boolean isLoggingEnabled();
 
   public void setLoggingEnabled(boolean loggingEnabled);
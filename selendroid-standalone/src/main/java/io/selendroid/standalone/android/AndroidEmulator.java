@@ -58,6 +58,16 @@ public interface AndroidEmulator {
 
   public void setWasStartedBySelendroid(boolean wasStartedBySelendroid);
 
+  /**
+   * Saves the current state of the running emulator as a snapshot with the given name.
+   */
+  public void saveSnapshot(String name) throws AndroidDeviceException;
+
+  /**
+   * Resets the running emulator to the state saved with {@link #saveSnapshot(String)}.
+   */
+  public void loadSnapshot(String name) throws AndroidDeviceException;
+
   public String getModel();
 
   public String getAPITargetType();
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android;
+
+import io.selendroid.standalone.exceptions.AndroidSdkException;
+import io.selendroid.standalone.exceptions.ShellCommandException;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+
+/**
+ * Executes commands on a single device, e.g. over the persistent connection ddmlib keeps to the
+ * adb server or by forking the adb command line tool for every command.
+ */
+public interface DeviceCommandChannel {
+  /**
+   * @return the trimmed output of the command executed in the device shell.
+   */
+  public String shell(String command, long timeoutMillis) throws ShellCommandException;
+
+  /**
+   * Installs the apk, replacing an existing installation and allowing version code downgrades.
+   */
+  public void install(String apkPath) throws AndroidSdkException;
+
+  public void uninstall(String packageName) throws AndroidSdkException;
+
+  /**
+   * @return the forwarded local port, which is chosen by adb if {@code localPort} is 0.
+   */
+  public int forward(int localPort, int remotePort) throws ShellCommandException;
+
+  public void removeForward(int localPort, int remotePort) throws ShellCommandException;
+
+  /**
+   * Streams the device log until the returned handle is closed.
+   *
+   * @param output receives the raw logcat output.
+   * @param args the logcat arguments, e.g. filter specs and the output format.
+   */
+  public Closeable logcat(OutputStream output, String... args) throws ShellCommandException;
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android;
+
+import org.openqa.selenium.logging.LogEntry;
+
+import java.util.logging.Level;
+
+/**
+ * A single line of the device log, parsed from the output of {@code adb logcat -v time}.
+ */
+public class LogcatEntry {
+  private final long sequence;
+  private final long timestamp;
+  private final Level level;
+  private final String tag;
+  private final String line;
+
+  public LogcatEntry(long sequence, long timestamp, Level level, String tag, String line) {
+    this.sequence = sequence;
+    this.timestamp = timestamp;
+    this.level = level;
+    this.tag = tag;
+    this.line = line;
+  }
+
+  /**
+   * @return the position of this entry in the device log, starting at 0.
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return the time the line was logged on the device, in milliseconds since the epoch.
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public Level getLevel() {
+    return level;
+  }
+
+  public String getTag() {
+    return tag;
+  }
+
+  /**
+   * @return the complete line as printed by logcat.
+   */
+  public String getLine() {
+    return line;
+  }
+
+  public LogEntry toLogEntry() {
+    return new LogEntry(level, timestamp, line);
+  }
+
+  @Override
+  public String toString() {
+    return line;
+  }
+}
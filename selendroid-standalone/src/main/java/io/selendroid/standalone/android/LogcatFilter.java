@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android;
+
+import java.util.logging.Level;
+
+/**
+ * Selects entries of the device log. All criteria are optional; an empty filter matches every
+ * buffered entry.
+ */
+public class LogcatFilter {
+  private long sinceSequence = 0;
+  private Level minimumLevel = null;
+  private String tag = null;
+  private long fromTimestamp = 0;
+  private long toTimestamp = Long.MAX_VALUE;
+
+  /**
+   * Only entries with a sequence number equal to or greater than the given one are matched.
+   * Used as a cursor to read the log incrementally.
+   */
+  public LogcatFilter since(long sequence) {
+    this.sinceSequence = sequence;
+    return this;
+  }
+
+  public LogcatFilter minimumLevel(Level level) {
+    this.minimumLevel = level;
+    return this;
+  }
+
+  public LogcatFilter tag(String tag) {
+    this.tag = tag;
+    return this;
+  }
+
+  /**
+   * Only entries logged on the device between the given times (inclusive, in milliseconds since
+   * the epoch) are matched.
+   */
+  public LogcatFilter between(long fromTimestamp, long toTimestamp) {
+    this.fromTimestamp = fromTimestamp;
+    this.toTimestamp = toTimestamp;
+    return this;
+  }
+
+  public long getSinceSequence() {
+    return sinceSequence;
+  }
+
+  public boolean matches(LogcatEntry entry) {
+    if (entry.getSequence() < sinceSequence) {
+      return false;
+    }
+    if (minimumLevel != null && entry.getLevel().intValue() < minimumLevel.intValue()) {
+      return false;
+    }
+    if (tag != null && !tag.equals(entry.getTag())) {
+      return false;
+    }
+    return entry.getTimestamp() >= fromTimestamp && entry.getTimestamp() <= toTimestamp;
+  }
+}
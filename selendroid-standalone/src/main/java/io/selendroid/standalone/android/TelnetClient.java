@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.io.FileUtils;
@@ -97,6 +99,46 @@ public class TelnetClient {
     }
   }
 
+  /**
+   * Sends a command and waits for the console to confirm it.
+   *
+   * @param timeoutMillis how long to wait for the confirmation, e.g. loading a snapshot takes a
+   *        few seconds
+   * @return the lines the console printed before the final <code>OK</code>
+   * @throws AndroidDeviceException if the console answers with <code>KO</code>, doesn't answer in
+   *         time or closes the connection
+   */
+  public List<String> execute(String command, long timeoutMillis) throws AndroidDeviceException {
+    List<String> output = new ArrayList<String>();
+    try {
+      socket.setSoTimeout((int) timeoutMillis);
+      sendQuietly(command);
+      while (true) {
+        String line = in.readLine();
+        if (line == null) {
+          throw new AndroidDeviceException(
+              "The emulator console closed the connection while executing '" + command + "'.");
+        }
+        if (line.equals("OK")) {
+          return output;
+        }
+        if (line.startsWith("KO")) {
+          throw new AndroidDeviceException(
+              "The emulator console failed to execute '" + command + "': " + line);
+        }
+        output.add(line);
+      }
+    } catch (IOException e) {
+      throw new AndroidDeviceException("Error executing '" + command + "' on the emulator console.", e);
+    } finally {
+      try {
+        socket.setSoTimeout(0);
+      } catch (IOException e) {
+        // the connection is broken anyway
+      }
+    }
+  }
+
   public void sendQuietly(String command) {
     try {
       out.write(command);
@@ -18,6 +18,7 @@ import com.android.ddmlib.IDevice;
 import com.android.ddmlib.RawImage;
 import com.android.ddmlib.TimeoutException;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.ObjectArrays;
 import io.selendroid.common.SelendroidCapabilities;
@@ -27,10 +28,15 @@ import io.selendroid.server.common.utils.SelendroidArguments;
 import io.selendroid.standalone.android.AndroidApp;
 import io.selendroid.standalone.android.AndroidDevice;
 import io.selendroid.standalone.android.AndroidSdk;
+import io.selendroid.standalone.android.DeviceCommandChannel;
+import io.selendroid.standalone.android.KeyEvent;
 import io.selendroid.standalone.android.InstrumentationProcessListener;
+import io.selendroid.standalone.android.LogcatEntry;
+import io.selendroid.standalone.android.LogcatFilter;
 import io.selendroid.standalone.exceptions.AndroidDeviceException;
 import io.selendroid.standalone.exceptions.AndroidSdkException;
 import io.selendroid.standalone.exceptions.ShellCommandException;
+import io.selendroid.standalone.io.ReadinessProbe;
 import io.selendroid.standalone.io.ShellCommand;
 import org.apache.commons.exec.*;
 import org.apache.commons.io.IOUtils;
@@ -44,17 +50,20 @@ import org.openqa.selenium.logging.LogEntry;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
 
 public abstract class AbstractDevice implements AndroidDevice {
   private static final Logger log = Logger.getLogger(AbstractDevice.class.getName());
@@ -64,9 +73,20 @@ public abstract class AbstractDevice implements AndroidDevice {
   protected String model = null;
   protected String apiTargetType = "android";
   protected IDevice device;
-  private ByteArrayOutputStream logoutput;
-  private ExecuteWatchdog logcatWatchdog;
+  private volatile LogcatBuffer logcat;
+  private int logcatBufferSize = LogcatBuffer.DEFAULT_CAPACITY;
+  private int screenshotCompressionLevel = Deflater.BEST_SPEED;
+  private File logcatSpillDirectory = null;
+  private Closeable logcatReader;
+  private volatile DeviceCommandChannel commandChannel;
   private static final Integer COMMAND_TIMEOUT = 20000;
+  private static final long PACKAGE_READINESS_TIMEOUT_MS = 10000;
+  private static final long APP_START_READINESS_TIMEOUT_MS = 5000;
+  private static final long INPUT_READINESS_TIMEOUT_MS = 500;
+  // keys that may open, close or switch a window; other keys are handled within the window
+  private static final Set<Integer> NAVIGATION_KEYCODES = ImmutableSet.of(KeyEvent.KEYCODE_HOME,
+      KeyEvent.KEYCODE_BACK, KeyEvent.KEYCODE_DPAD_CENTER, KeyEvent.KEYCODE_ENTER,
+      KeyEvent.KEYCODE_MENU, KeyEvent.KEYCODE_SEARCH);
   private boolean loggingEnabled = true;
   private final List<InstrumentationProcessListener> instrumentationProcessListeners = new ArrayList();
 
@@ -114,10 +134,9 @@ public abstract class AbstractDevice implements AndroidDevice {
 
   @Override
   public boolean isDeviceReady() {
-    CommandLine command = adbCommand("shell", "getprop init.svc.bootanim");
     String bootAnimDisplayed = null;
     try {
-      bootAnimDisplayed = ShellCommand.exec(command);
+      bootAnimDisplayed = getCommandChannel().shell("getprop init.svc.bootanim", COMMAND_TIMEOUT);
     } catch (ShellCommandException e) {
       log.log(Level.INFO, "Could not get property init.svc.bootanim", e);
     }
@@ -126,12 +145,9 @@ public abstract class AbstractDevice implements AndroidDevice {
 
   @Override
   public boolean isInstalled(String appBasePackage) throws AndroidSdkException {
-    CommandLine command = adbCommand("shell", "pm", "list", "packages");
-
-    command.addArgument(appBasePackage, false);
     String result = null;
     try {
-      result = ShellCommand.exec(command);
+      result = getCommandChannel().shell("pm list packages " + appBasePackage, COMMAND_TIMEOUT);
     } catch (ShellCommandException e) {}
 
     return result != null && result.contains("package:" + appBasePackage);
@@ -148,20 +164,9 @@ public abstract class AbstractDevice implements AndroidDevice {
     if (isInstalled(app)) {
       uninstall(app);
     }
-    // -r: replace existing application
-    // -d: allow version code downgrade
-    CommandLine command = adbCommand("install", "-r", "-d", app.getAbsolutePath());
-
-    String out = executeCommandQuietly(command, COMMAND_TIMEOUT * 6);
-    try {
-      // give it a second to recover from the install
-      Thread.sleep(1000);
-    } catch (InterruptedException ie) {
-      throw new RuntimeException(ie);
-    }
-    if (!out.contains("Success")) {
-      throw new AndroidSdkException("APK installation failed. Output:\n" + out);
-    }
+    getCommandChannel().install(app.getAbsolutePath());
+    // the package manager may list the app a moment after adb reported the install
+    awaitPackageState("device.install", app.getBasePackage(), true);
   }
 
   public boolean start(AndroidApp app) throws AndroidSdkException {
@@ -170,16 +175,19 @@ public abstract class AbstractDevice implements AndroidDevice {
     }
 
     String mainActivity = app.getMainActivity().replace(app.getBasePackage(), "");
-    CommandLine command =
-        adbCommand("shell", "am", "start", "-a", "android.intent.action.MAIN", "-n",
-            app.getBasePackage() + "/" + mainActivity);
-
-    String out = executeCommandQuietly(command);
-    try {
-      // give it a second to recover from the activity start
-      Thread.sleep(1000);
-    } catch (InterruptedException ie) {
-      throw new RuntimeException(ie);
+    String out = shellQuietly(
+        "am start -a android.intent.action.MAIN -n " + app.getBasePackage() + "/" + mainActivity);
+    final String basePackage = app.getBasePackage();
+    boolean focused = ReadinessProbe.named("device.startApp")
+        .withTimeout(APP_START_READINESS_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+        .await(new ReadinessProbe.Condition() {
+          @Override
+          public boolean isReady() {
+            return getFocusedWindow().contains(basePackage);
+          }
+        });
+    if (!focused) {
+      log.warning("No window of " + basePackage + " got the focus after starting it.");
     }
     return out.contains("Starting: Intent");
   }
@@ -198,64 +206,139 @@ public abstract class AbstractDevice implements AndroidDevice {
     }
   }
 
+  protected String shellQuietly(String command) {
+    try {
+      return getCommandChannel().shell(command, COMMAND_TIMEOUT);
+    } catch (ShellCommandException e) {
+      String logMessage = String.format("Could not execute shell command: %s", command);
+      log.log(Level.WARNING, logMessage, e);
+      return "";
+    }
+  }
+
+  /**
+   * Replaces the channel device commands are executed with, e.g. by a fake in tests.
+   */
+  public void setCommandChannel(DeviceCommandChannel commandChannel) {
+    this.commandChannel = commandChannel;
+  }
+
+  /**
+   * @return the configured channel or, by default, ddmlib's connection to the device as soon as
+   *         ddmlib knows it, falling back to the adb command line tool.
+   */
+  protected DeviceCommandChannel getCommandChannel() {
+    DeviceCommandChannel channel = commandChannel;
+    if (channel != null) {
+      return channel;
+    }
+    AdbCommandLineChannel adb = new AdbCommandLineChannel(serial);
+    return device == null ? adb : new DdmlibCommandChannel(device, adb);
+  }
+
   @Override
   public void uninstall(AndroidApp app) throws AndroidSdkException {
-    CommandLine command = adbCommand("uninstall", app.getBasePackage());
-
-    executeCommandQuietly(command);
     try {
-      // give it a second to recover from the uninstall
-      Thread.sleep(1000);
-    } catch (InterruptedException ie) {
-      throw new RuntimeException(ie);
+      getCommandChannel().uninstall(app.getBasePackage());
+    } catch (AndroidSdkException e) {
+      log.log(Level.WARNING, e.getMessage(), e);
+    }
+    awaitPackageState("device.uninstall", app.getBasePackage(), false);
+  }
+
+  private void awaitPackageState(String probeName, final String basePackage,
+      final boolean installed) {
+    boolean ready = ReadinessProbe.named(probeName)
+        .withTimeout(PACKAGE_READINESS_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+        .await(new ReadinessProbe.Condition() {
+          @Override
+          public boolean isReady() throws Exception {
+            return isInstalled(basePackage) == installed;
+          }
+        });
+    if (!ready) {
+      log.warning(String.format("The package manager doesn't list %s as %s yet.", basePackage,
+          installed ? "installed" : "uninstalled"));
+    }
+  }
+
+  /**
+   * @return the line of {@code dumpsys window windows} that names the window with the input focus,
+   *         or an empty string if it cannot be determined.
+   */
+  protected String getFocusedWindow() {
+    String windows = shellQuietly("dumpsys window windows");
+    for (String line : Splitter.on("\n").split(windows)) {
+      if (line.contains("mCurrentFocus")) {
+        return line.trim();
+      }
     }
+    return "";
+  }
+
+  /**
+   * Executes a shell command that may move the input focus to another window and waits a beat
+   * for the UI to respond, i.e. until the focus moved. Like the fixed sleep this replaces, the
+   * command returns at most {@link #INPUT_READINESS_TIMEOUT_MS} after it was issued.
+   */
+  private void shellAndAwaitFocusChange(String probeName, String command) {
+    long deadline = System.currentTimeMillis() + INPUT_READINESS_TIMEOUT_MS;
+    final String previousFocus = getFocusedWindow();
+    shellQuietly(command);
+    long remainingMillis = deadline - System.currentTimeMillis();
+    if (remainingMillis <= 0) {
+      return;
+    }
+    ReadinessProbe.named(probeName)
+        .withInitialInterval(50)
+        .withMaxInterval(200)
+        .withJitterCap(25)
+        .withTimeout(remainingMillis, TimeUnit.MILLISECONDS)
+        .await(new ReadinessProbe.Condition() {
+          @Override
+          public boolean isReady() {
+            return !previousFocus.equals(getFocusedWindow());
+          }
+        });
   }
 
   @Override
   public void clearUserData(AndroidApp app) throws AndroidSdkException {
-    CommandLine command = adbCommand("shell", "pm", "clear", app.getBasePackage());
-    executeCommandQuietly(command);
+    shellQuietly("pm clear " + app.getBasePackage());
   }
 
   @Override
   public void kill(AndroidApp aut) throws AndroidDeviceException, AndroidSdkException {
     try {
-      CommandLine command = adbCommand("shell", "am", "force-stop", aut.getBasePackage());
-      executeCommandQuietly(command);
+      shellQuietly("am force-stop " + aut.getBasePackage());
     } finally {
       killProcesses(aut.getBasePackage());
       freeSelendroidPort();
     }
 
-    if (logcatWatchdog != null && logcatWatchdog.isWatching()) {
-      logcatWatchdog.destroyProcess();
-      logcatWatchdog = null;
+    if (logcatReader != null) {
+      IOUtils.closeQuietly(logcatReader);
+      logcatReader = null;
+    }
+    if (logcat != null) {
+      IOUtils.closeQuietly(logcat);
     }
   }
 
   private void killProcesses(String packageName) {
-    CommandLine command = adbCommand("shell", "ps");
-    String processes = "";
-    try {
-      processes = ShellCommand.exec(command);
-    } catch (ShellCommandException e) {
-      String logMessage = String.format("Could not execute command: %s", command);
-      log.log(Level.WARNING, logMessage, e);
-    }
+    String processes = shellQuietly("ps");
 
     for (String process: processes.split("\\r\\n|\\r|\\n")) {
       if (process.endsWith(packageName)) {
         String pid = process.split("\\s+")[1];
-        command = adbCommand("shell", "run-as", packageName, "kill", pid);
-        executeCommandQuietly(command);
+        shellQuietly("run-as " + packageName + " kill " + pid);
       }
     }
   }
 
   private void freeSelendroidPort() {
-  CommandLine command = adbCommand("forward", "--remove", "tcp:" + localPort);
     try {
-      ShellCommand.exec(command, 20000);
+      getCommandChannel().removeForward(localPort, remotePort);
     } catch (ShellCommandException e) {
       log.log(Level.WARNING, "Could not free Selendroid port", e);
     }
@@ -325,21 +408,19 @@ public abstract class AbstractDevice implements AndroidDevice {
   }
 
   public int forwardPort(int local, int remote) {
-    CommandLine command = adbCommand("forward", "tcp:" + local, "tcp:" + remote);
     try {
-      String portStr = ShellCommand.exec(command);
-      return local == 0 ? Integer.parseInt(portStr) : local;
+      return getCommandChannel().forward(local, remote);
     } catch (ShellCommandException forwardException) {
       String debugForwardList;
       try {
-        debugForwardList = ShellCommand.exec(adbCommand("forward", "--list"), 10000);
+        debugForwardList = new AdbCommandLineChannel(serial).listForwards();
       } catch (ShellCommandException listException) {
         debugForwardList = "Could not get list of forwarded ports.";
       }
 
       throw new SelendroidException(
-          "Could not forward port: " + command + "\nList of forwarded ports:\n" + debugForwardList,
-          forwardException);
+          "Could not forward port: tcp:" + local + " tcp:" + remote + "\nList of forwarded ports:\n"
+              + debugForwardList, forwardException);
     }
   }
 
@@ -383,26 +464,37 @@ public abstract class AbstractDevice implements AndroidDevice {
   @Override
   public List<LogEntry> getLogs() {
     List<LogEntry> logs = Lists.newArrayList();
-    String result = logoutput != null ? logoutput.toString() : "";
-    String[] lines = result.split("\\r?\\n");
-    log.fine("getting logcat");
-    for (String line : lines) {
-      Level l;
-      if (line.startsWith("I")) {
-        l = Level.INFO;
-      } else if (line.startsWith("W")) {
-        l = Level.WARNING;
-      } else if (line.startsWith("S")) {
-        l = Level.SEVERE;
-      } else {
-        l = Level.FINE;
-      }
-      logs.add(new LogEntry(l, System.currentTimeMillis(), line));
-      log.fine(line);
+    for (LogcatEntry entry : getLogcat(new LogcatFilter())) {
+      logs.add(entry.toLogEntry());
     }
     return logs;
   }
 
+  @Override
+  public List<LogcatEntry> getLogcat(LogcatFilter filter) {
+    LogcatBuffer buffer = logcat;
+    if (buffer == null) {
+      return Lists.newArrayList();
+    }
+    return buffer.read(filter);
+  }
+
+  @Override
+  public void setLogcatBufferSize(int logcatBufferSize) {
+    this.logcatBufferSize = logcatBufferSize;
+  }
+
+  @Override
+  public void setLogcatSpillDirectory(File logcatSpillDirectory) {
+    if (logcatSpillDirectory != null && !logcatSpillDirectory.isDirectory()
+        && !logcatSpillDirectory.mkdirs()) {
+      log.warning("Could not create the device log directory " + logcatSpillDirectory
+          + ", log lines that no longer fit into memory are dropped.");
+      logcatSpillDirectory = null;
+    }
+    this.logcatSpillDirectory = logcatSpillDirectory;
+  }
+
   @Override
   public boolean isLoggingEnabled() {
     return loggingEnabled;
@@ -414,25 +506,24 @@ public abstract class AbstractDevice implements AndroidDevice {
   }
 
   private void startLogging() {
-    logoutput = new ByteArrayOutputStream();
-    DefaultExecutor exec = new DefaultExecutor();
-    exec.setStreamHandler(new PumpStreamHandler(logoutput));
-    CommandLine command = adbCommand("logcat", "ResourceType:S", "dalvikvm:S", "Trace:S", "SurfaceFlinger:S",
-        "StrictMode:S", "ExchangeService:S", "SVGAndroid:S", "skia:S", "LoaderManager:S", "ActivityThread:S", "-v", "time");
+    File spillFile = null;
+    if (logcatSpillDirectory != null) {
+      spillFile = new File(logcatSpillDirectory,
+          "logcat-" + serial.replaceAll("[^\\w.-]", "_") + "-" + System.currentTimeMillis() + ".log");
+    }
+    logcat = new LogcatBuffer(logcatBufferSize, spillFile);
     log.info("starting logcat:");
-    log.fine(command.toString());
     try {
-      exec.execute(command, new DefaultExecuteResultHandler());
-      logcatWatchdog = new ExecuteWatchdog(ExecuteWatchdog.INFINITE_TIMEOUT);
-      exec.setWatchdog(logcatWatchdog);
-    } catch (IOException e) {
+      logcatReader = getCommandChannel().logcat(logcat, "ResourceType:S", "dalvikvm:S", "Trace:S",
+          "SurfaceFlinger:S", "StrictMode:S", "ExchangeService:S", "SVGAndroid:S", "skia:S",
+          "LoaderManager:S", "ActivityThread:S", "-v", "time");
+    } catch (ShellCommandException e) {
       log.log(Level.SEVERE, e.getMessage(), e);
     }
   }
 
   protected String getProp(String key) {
-    CommandLine command = adbCommand("shell", "getprop", key);
-    String prop = executeCommandQuietly(command);
+    String prop = shellQuietly("getprop " + key);
 
     return prop == null ? "" : prop.replace("\r", "").replace("\n", "");
   }
@@ -469,6 +560,9 @@ public abstract class AbstractDevice implements AndroidDevice {
       return null;
     }
     log.fine("running command: adb " + parameter);
+    if (parameter.startsWith("shell ")) {
+      return shellQuietly(parameter.substring("shell ".length()).trim()).trim();
+    }
     CommandLine command = adbCommand();
 
     String[] params = parameter.split(" ");
@@ -500,46 +594,21 @@ public abstract class AbstractDevice implements AndroidDevice {
     // device/adb not available?
     if (rawImage == null) return null;
 
-    BufferedImage image =
-        new BufferedImage(rawImage.width, rawImage.height, BufferedImage.TYPE_3BYTE_BGR);
-
-    int index = 0;
-    int IndexInc = rawImage.bpp >> 3;
-    for (int y = 0; y < rawImage.height; y++) {
-      for (int x = 0; x < rawImage.width; x++) {
-        image.setRGB(x, y, rawImage.getARGB(index));
-        index += IndexInc;
-      }
-    }
-    return toByteArray(image);
+    return toByteArray(FrameBufferConverter.toBufferedImage(rawImage));
   }
 
   protected byte[] toByteArray(BufferedImage image) throws AndroidDeviceException {
-    ByteArrayOutputStream stream = new ByteArrayOutputStream();
-
     try {
-      if (!ImageIO.write(image, "png", stream)) {
-        throw new IOException("Failed to find png writer");
-      }
+      return new PngEncoder(screenshotCompressionLevel).encode(image);
     } catch (IOException e) {
       log.log(Level.SEVERE, "Cannot take screenshot", e);
       throw new AndroidDeviceException(e.getMessage());
     }
-    byte[] raw = null;
-    try {
-      stream.flush();
-      raw = stream.toByteArray();
-      stream.close();
-    } catch (IOException e) {
-      throw new RuntimeException("I/O Error while capturing screenshot: " + e.getMessage());
-    } finally {
-      try {
-        stream.close();
-      } catch (IOException ioe) {
-        // ignore
-      }
-    }
-    return raw;
+  }
+
+  @Override
+  public void setScreenshotCompressionLevel(int screenshotCompressionLevel) {
+    this.screenshotCompressionLevel = screenshotCompressionLevel;
   }
 
   /**
@@ -551,22 +620,33 @@ public abstract class AbstractDevice implements AndroidDevice {
    * @param value - Key to be sent to 'adb shell input keyevent'
    */
   public void inputKeyevent(int value) {
-    executeCommandQuietly(adbCommand("shell", "input", "keyevent", "" + value));
-    // need to wait a beat for the UI to respond
-    sleep(500);
+    if (NAVIGATION_KEYCODES.contains(value)) {
+      shellAndAwaitFocusChange("device.inputKeyevent", "input keyevent " + value);
+    } else {
+      // input events are dispatched in order, there is no need to wait for this one
+      shellQuietly("input keyevent " + value);
+    }
   }
 
   public void invokeActivity(String activity) {
-    executeCommandQuietly(adbCommand("shell", "am", "start", "-a", activity));
-    // need to wait a beat for the UI to respond
-    sleep(500);
+    shellAndAwaitFocusChange("device.invokeActivity", "am start -a " + activity);
   }
 
   public void restartADB() {
     executeCommandQuietly(adbCommand("kill-server"));
-    sleep(500);
-    // make sure it's backup again
-    executeCommandQuietly(adbCommand("devices"));
+    // make sure it's back up again
+    boolean restarted = ReadinessProbe.named("device.restartAdb")
+        .withInitialInterval(50)
+        .withTimeout(COMMAND_TIMEOUT, TimeUnit.MILLISECONDS)
+        .await(new ReadinessProbe.Condition() {
+          @Override
+          public boolean isReady() {
+            return executeCommandQuietly(adbCommand("devices")).contains("List of devices");
+          }
+        });
+    if (!restarted) {
+      log.warning("The adb server didn't come back up after restarting it.");
+    }
   }
 
   private CommandLine adbCommand() {
@@ -579,15 +659,7 @@ public abstract class AbstractDevice implements AndroidDevice {
   }
 
   private CommandLine adbCommand(String... args) {
-    CommandLine command = adbCommand();
-    for (String arg : args) {
-      command.addArgument(arg, false);
-    }
-    String commandString = command.toString();
-    if (commandString != null && commandString.length() > MAX_ADB_COMMAND_LENGTH) {
-      throw new RuntimeException("Adb command must be under " + MAX_ADB_COMMAND_LENGTH);
-    }
-    return command;
+    return AdbCommandLineChannel.adbCommand(serial, args);
   }
 
   public String getExternalStoragePath() {
@@ -603,9 +675,9 @@ public abstract class AbstractDevice implements AndroidDevice {
     if (!crashLogDirPath.endsWith("/")) {
       crashLogDirPath += "/";  // Make sure it ends with '/' so we're listing directory contents.
     }
-    String directoryList = executeCommandQuietly(adbCommand("shell", "ls", crashLogDirPath));
+    String directoryList = shellQuietly("ls " + crashLogDirPath);
     if (directoryList.contains(crashLogFileName)) {
-      return executeCommandQuietly(adbCommand("shell", "cat", crashLogDirPath + crashLogFileName));
+      return shellQuietly("cat " + crashLogDirPath + crashLogFileName);
     }
 
     return "";
@@ -626,15 +698,6 @@ public abstract class AbstractDevice implements AndroidDevice {
     return sb.toString();
   }
 
-  private void sleep(int millis) {
-    try {
-      Thread.sleep(millis);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-      log.log(Level.SEVERE, e.getMessage(), e);
-    }
-  }
-
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
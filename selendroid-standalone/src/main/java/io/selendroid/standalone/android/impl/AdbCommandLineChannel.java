@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import io.selendroid.standalone.android.AndroidSdk;
+import io.selendroid.standalone.android.DeviceCommandChannel;
+import io.selendroid.standalone.exceptions.AndroidSdkException;
+import io.selendroid.standalone.exceptions.ShellCommandException;
+import io.selendroid.standalone.io.ShellCommand;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecuteResultHandler;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.exec.PumpStreamHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Logger;
+
+/**
+ * Forks the adb command line tool for every command. Works whether or not ddmlib is connected to
+ * the device, e.g. while an emulator is still booting.
+ */
+public class AdbCommandLineChannel implements DeviceCommandChannel {
+  private static final Logger log = Logger.getLogger(AdbCommandLineChannel.class.getName());
+  private static final long COMMAND_TIMEOUT = 20000;
+  private static final long INSTALL_TIMEOUT = COMMAND_TIMEOUT * 6;
+
+  private final String serial;
+
+  public AdbCommandLineChannel(String serial) {
+    this.serial = serial;
+  }
+
+  static CommandLine adbCommand(String serial, String... args) {
+    CommandLine command = new CommandLine(AndroidSdk.adb());
+    if (serial != null && !serial.isEmpty()) {
+      command.addArgument("-s", false);
+      command.addArgument(serial, false);
+    }
+    for (String arg : args) {
+      command.addArgument(arg, false);
+    }
+    String commandString = command.toString();
+    if (commandString != null && commandString.length() > AbstractDevice.MAX_ADB_COMMAND_LENGTH) {
+      throw new RuntimeException("Adb command must be under " + AbstractDevice.MAX_ADB_COMMAND_LENGTH);
+    }
+    return command;
+  }
+
+  @Override
+  public String shell(String command, long timeoutMillis) throws ShellCommandException {
+    return ShellCommand.exec(adbCommand(serial, "shell", command), timeoutMillis);
+  }
+
+  @Override
+  public void install(String apkPath) throws AndroidSdkException {
+    // -r: replace existing application
+    // -d: allow version code downgrade
+    String out;
+    try {
+      out = ShellCommand.exec(adbCommand(serial, "install", "-r", "-d", apkPath), INSTALL_TIMEOUT);
+    } catch (ShellCommandException e) {
+      throw new AndroidSdkException("APK installation failed", e);
+    }
+    if (!out.contains("Success")) {
+      throw new AndroidSdkException("APK installation failed. Output:\n" + out);
+    }
+  }
+
+  @Override
+  public void uninstall(String packageName) throws AndroidSdkException {
+    try {
+      ShellCommand.exec(adbCommand(serial, "uninstall", packageName), COMMAND_TIMEOUT);
+    } catch (ShellCommandException e) {
+      throw new AndroidSdkException("Uninstalling " + packageName + " failed", e);
+    }
+  }
+
+  @Override
+  public int forward(int localPort, int remotePort) throws ShellCommandException {
+    String port = ShellCommand.exec(
+        adbCommand(serial, "forward", "tcp:" + localPort, "tcp:" + remotePort), COMMAND_TIMEOUT);
+    return localPort == 0 ? Integer.parseInt(port) : localPort;
+  }
+
+  @Override
+  public void removeForward(int localPort, int remotePort) throws ShellCommandException {
+    ShellCommand.exec(adbCommand(serial, "forward", "--remove", "tcp:" + localPort), COMMAND_TIMEOUT);
+  }
+
+  /**
+   * @return the ports currently forwarded by the adb server, for troubleshooting.
+   */
+  public String listForwards() throws ShellCommandException {
+    return ShellCommand.exec(adbCommand(serial, "forward", "--list"), 10000);
+  }
+
+  @Override
+  public Closeable logcat(OutputStream output, String... args) throws ShellCommandException {
+    String[] logcatArgs = new String[args.length + 1];
+    logcatArgs[0] = "logcat";
+    System.arraycopy(args, 0, logcatArgs, 1, args.length);
+    CommandLine command = adbCommand(serial, logcatArgs);
+    log.fine(command.toString());
+
+    final ExecuteWatchdog watchdog = new ExecuteWatchdog(ExecuteWatchdog.INFINITE_TIMEOUT);
+    DefaultExecutor exec = new DefaultExecutor();
+    exec.setStreamHandler(new PumpStreamHandler(output));
+    exec.setWatchdog(watchdog);
+    try {
+      exec.execute(command, new DefaultExecuteResultHandler());
+    } catch (IOException e) {
+      throw new ShellCommandException("Could not start logcat: " + command, e);
+    }
+    return new Closeable() {
+      @Override
+      public void close() {
+        if (watchdog.isWatching()) {
+          watchdog.destroyProcess();
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The details of an apk that are read from its binary <code>AndroidManifest.xml</code>. This
+ * replaces running <code>aapt dump badging</code> for every field: the manifest is decoded once,
+ * in process, and the result is immutable.
+ */
+public final class ApkManifest {
+  public static final String MANIFEST_ENTRY = "AndroidManifest.xml";
+
+  private final String packageName;
+  private final String versionName;
+  private final String versionCode;
+  private final String launchableActivity;
+
+  ApkManifest(String packageName, String versionName, String versionCode,
+      String launchableActivity) {
+    this.packageName = packageName;
+    this.versionName = versionName;
+    this.versionCode = versionCode;
+    this.launchableActivity = launchableActivity;
+  }
+
+  public String getPackageName() {
+    return packageName;
+  }
+
+  public String getVersionName() {
+    return versionName;
+  }
+
+  public String getVersionCode() {
+    return versionCode;
+  }
+
+  /**
+   * @return the fully qualified name of the first activity that handles the
+   *         <code>MAIN</code> action in the <code>LAUNCHER</code> category, or <code>null</code>.
+   */
+  public String getLaunchableActivity() {
+    return launchableActivity;
+  }
+
+  /**
+   * Reads and decodes the manifest of the given apk. Only the manifest entry is inflated.
+   *
+   * @throws IOException if the apk cannot be read, has no manifest or the manifest is malformed
+   */
+  public static ApkManifest read(File apk) throws IOException {
+    ZipFile zip = new ZipFile(apk);
+    try {
+      ZipEntry entry = zip.getEntry(MANIFEST_ENTRY);
+      if (entry == null) {
+        throw new IOException(apk.getName() + " does not contain an " + MANIFEST_ENTRY);
+      }
+      InputStream in = zip.getInputStream(entry);
+      try {
+        return parse(IOUtils.toByteArray(in));
+      } finally {
+        in.close();
+      }
+    } finally {
+      zip.close();
+    }
+  }
+
+  /**
+   * Decodes a manifest in the binary XML format aapt compiles it to.
+   */
+  static ApkManifest parse(byte[] manifest) throws IOException {
+    try {
+      return new BinaryXmlParser(manifest).parse();
+    } catch (RuntimeException e) {
+      // buffer underflows and bad offsets of a truncated or corrupt manifest
+      throw new IOException("The " + MANIFEST_ENTRY + " is malformed.", e);
+    }
+  }
+
+  private static class BinaryXmlParser {
+    private static final int RES_STRING_POOL_TYPE = 0x0001;
+    private static final int RES_XML_TYPE = 0x0003;
+    private static final int RES_XML_START_ELEMENT_TYPE = 0x0102;
+    private static final int RES_XML_END_ELEMENT_TYPE = 0x0103;
+    private static final int RES_XML_RESOURCE_MAP_TYPE = 0x0180;
+
+    private static final int UTF8_FLAG = 1 << 8;
+    private static final int NO_ENTRY = 0xFFFFFFFF;
+
+    private static final int TYPE_REFERENCE = 0x01;
+    private static final int TYPE_STRING = 0x03;
+    private static final int TYPE_INT_DEC = 0x10;
+    private static final int TYPE_INT_HEX = 0x11;
+    private static final int TYPE_INT_BOOLEAN = 0x12;
+
+    // attribute resource ids, used when the attribute names have been stripped from the pool
+    private static final int ATTR_NAME = 0x01010003;
+    private static final int ATTR_VERSION_CODE = 0x0101021b;
+    private static final int ATTR_VERSION_NAME = 0x0101021c;
+
+    private static final String ACTION_MAIN = "android.intent.action.MAIN";
+    private static final String CATEGORY_LAUNCHER = "android.intent.category.LAUNCHER";
+
+    private final ByteBuffer buffer;
+    private String[] strings = new String[0];
+    private int[] resourceIds = new int[0];
+
+    private String packageName;
+    private String versionName;
+    private String versionCode;
+    private String launchableActivity;
+
+    // state of the activity (or alias) currently being decoded
+    private String activity;
+    private boolean inIntentFilter;
+    private boolean hasMainAction;
+    private boolean hasLauncherCategory;
+
+    BinaryXmlParser(byte[] manifest) {
+      this.buffer = ByteBuffer.wrap(manifest).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    ApkManifest parse() throws IOException {
+      if (buffer.getShort(0) != RES_XML_TYPE) {
+        throw new IOException("The " + MANIFEST_ENTRY + " is not a binary XML document.");
+      }
+      int end = Math.min(buffer.getInt(4), buffer.limit());
+      int offset = buffer.getShort(2) & 0xFFFF;
+      while (offset + 8 <= end) {
+        int type = buffer.getShort(offset) & 0xFFFF;
+        int size = buffer.getInt(offset + 4);
+        if (size < 8) {
+          throw new IOException("Invalid chunk size " + size + " at offset " + offset);
+        }
+        switch (type) {
+          case RES_STRING_POOL_TYPE:
+            readStringPool(offset);
+            break;
+          case RES_XML_RESOURCE_MAP_TYPE:
+            readResourceMap(offset, size);
+            break;
+          case RES_XML_START_ELEMENT_TYPE:
+            startElement(offset);
+            break;
+          case RES_XML_END_ELEMENT_TYPE:
+            endElement(offset);
+            break;
+          default:
+            // namespaces and character data carry nothing we need
+        }
+        offset += size;
+      }
+      if (packageName == null) {
+        throw new IOException("The " + MANIFEST_ENTRY + " does not declare a package.");
+      }
+      return new ApkManifest(packageName, versionName, versionCode, launchableActivity);
+    }
+
+    private void readStringPool(int chunk) {
+      int headerSize = buffer.getShort(chunk + 2) & 0xFFFF;
+      int count = buffer.getInt(chunk + 8);
+      int flags = buffer.getInt(chunk + 16);
+      int stringsStart = chunk + buffer.getInt(chunk + 20);
+      boolean utf8 = (flags & UTF8_FLAG) != 0;
+
+      strings = new String[count];
+      for (int i = 0; i < count; i++) {
+        int position = stringsStart + buffer.getInt(chunk + headerSize + i * 4);
+        strings[i] = utf8 ? readUtf8(position) : readUtf16(position);
+      }
+    }
+
+    private String readUtf8(int position) {
+      // the length in UTF-16 code units comes first, followed by the length in bytes
+      position += (buffer.get(position) & 0x80) != 0 ? 2 : 1;
+      int length = buffer.get(position) & 0xFF;
+      if ((length & 0x80) != 0) {
+        length = ((length & 0x7F) << 8) | (buffer.get(position + 1) & 0xFF);
+        position += 2;
+      } else {
+        position += 1;
+      }
+      return new String(buffer.array(), position, length, Charset.forName("UTF-8"));
+    }
+
+    private String readUtf16(int position) {
+      int length = buffer.getShort(position) & 0xFFFF;
+      if ((length & 0x8000) != 0) {
+        length = ((length & 0x7FFF) << 16) | (buffer.getShort(position + 2) & 0xFFFF);
+        position += 4;
+      } else {
+        position += 2;
+      }
+      char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        chars[i] = buffer.getChar(position + i * 2);
+      }
+      return new String(chars);
+    }
+
+    private void readResourceMap(int chunk, int size) {
+      int headerSize = buffer.getShort(chunk + 2) & 0xFFFF;
+      resourceIds = new int[(size - headerSize) / 4];
+      for (int i = 0; i < resourceIds.length; i++) {
+        resourceIds[i] = buffer.getInt(chunk + headerSize + i * 4);
+      }
+    }
+
+    private void startElement(int chunk) {
+      int ext = chunk + (buffer.getShort(chunk + 2) & 0xFFFF);
+      String element = string(buffer.getInt(ext + 4));
+      int attributeStart = buffer.getShort(ext + 8) & 0xFFFF;
+      int attributeSize = buffer.getShort(ext + 10) & 0xFFFF;
+      int attributeCount = buffer.getShort(ext + 12) & 0xFFFF;
+
+      if ("manifest".equals(element)) {
+        for (int i = 0; i < attributeCount; i++) {
+          int attribute = ext + attributeStart + i * attributeSize;
+          if (isAttribute(attribute, "package", 0)) {
+            packageName = value(attribute);
+          } else if (isAttribute(attribute, "versionName", ATTR_VERSION_NAME)) {
+            versionName = value(attribute);
+          } else if (isAttribute(attribute, "versionCode", ATTR_VERSION_CODE)) {
+            versionCode = value(attribute);
+          }
+        }
+      } else if ("activity".equals(element) || "activity-alias".equals(element)) {
+        activity = null;
+        for (int i = 0; i < attributeCount; i++) {
+          int attribute = ext + attributeStart + i * attributeSize;
+          if (isAttribute(attribute, "name", ATTR_NAME)) {
+            activity = value(attribute);
+          }
+        }
+      } else if ("intent-filter".equals(element)) {
+        inIntentFilter = true;
+        hasMainAction = false;
+        hasLauncherCategory = false;
+      } else if (inIntentFilter && ("action".equals(element) || "category".equals(element))) {
+        String name = null;
+        for (int i = 0; i < attributeCount; i++) {
+          int attribute = ext + attributeStart + i * attributeSize;
+          if (isAttribute(attribute, "name", ATTR_NAME)) {
+            name = value(attribute);
+          }
+        }
+        hasMainAction |= "action".equals(element) && ACTION_MAIN.equals(name);
+        hasLauncherCategory |= "category".equals(element) && CATEGORY_LAUNCHER.equals(name);
+      }
+    }
+
+    private void endElement(int chunk) {
+      int ext = chunk + (buffer.getShort(chunk + 2) & 0xFFFF);
+      String element = string(buffer.getInt(ext + 4));
+      if ("intent-filter".equals(element)) {
+        if (hasMainAction && hasLauncherCategory && activity != null
+            && launchableActivity == null) {
+          launchableActivity = qualify(activity);
+        }
+        inIntentFilter = false;
+      } else if ("activity".equals(element) || "activity-alias".equals(element)) {
+        activity = null;
+      }
+    }
+
+    private boolean isAttribute(int attribute, String name, int resourceId) {
+      int index = buffer.getInt(attribute + 4);
+      if (name.equals(string(index))) {
+        return true;
+      }
+      return resourceId != 0 && index >= 0 && index < resourceIds.length
+          && resourceIds[index] == resourceId;
+    }
+
+    private String value(int attribute) {
+      int rawValue = buffer.getInt(attribute + 8);
+      if (rawValue != NO_ENTRY) {
+        return string(rawValue);
+      }
+      int dataType = buffer.get(attribute + 15) & 0xFF;
+      int data = buffer.getInt(attribute + 16);
+      switch (dataType) {
+        case TYPE_STRING:
+          return string(data);
+        case TYPE_INT_DEC:
+          return String.valueOf(data);
+        case TYPE_INT_HEX:
+          return "0x" + Integer.toHexString(data);
+        case TYPE_INT_BOOLEAN:
+          return String.valueOf(data != 0);
+        case TYPE_REFERENCE:
+          return "@0x" + Integer.toHexString(data);
+        default:
+          return String.valueOf(data);
+      }
+    }
+
+    private String string(int index) {
+      return index >= 0 && index < strings.length ? strings[index] : null;
+    }
+
+    /**
+     * Resolves a component name relative to the package, the same way aapt does.
+     */
+    private String qualify(String name) {
+      if (packageName == null) {
+        return name;
+      }
+      if (name.startsWith(".")) {
+        return packageName + name;
+      }
+      if (name.indexOf('.') < 0) {
+        return packageName + "." + name;
+      }
+      return name;
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import com.android.ddmlib.CollectingOutputReceiver;
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
+import com.android.ddmlib.InstallException;
+import com.android.ddmlib.ShellCommandUnresponsiveException;
+import com.google.common.base.Joiner;
+import io.selendroid.standalone.android.DeviceCommandChannel;
+import io.selendroid.standalone.exceptions.AndroidSdkException;
+import io.selendroid.standalone.exceptions.ShellCommandException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes commands over the connection ddmlib keeps to the adb server instead of forking adb for
+ * every command. Falls back to another channel, usually the adb command line tool, if the device is
+ * offline for ddmlib, if the adb server rejects the request or for features ddmlib doesn't offer.
+ */
+public class DdmlibCommandChannel implements DeviceCommandChannel {
+  private static final Logger log = Logger.getLogger(DdmlibCommandChannel.class.getName());
+
+  private final IDevice device;
+  private final DeviceCommandChannel fallback;
+
+  public DdmlibCommandChannel(IDevice device, DeviceCommandChannel fallback) {
+    this.device = device;
+    this.fallback = fallback;
+  }
+
+  @Override
+  public String shell(String command, long timeoutMillis) throws ShellCommandException {
+    if (!device.isOnline()) {
+      return fallback.shell(command, timeoutMillis);
+    }
+    CollectingOutputReceiver receiver = new CollectingOutputReceiver();
+    try {
+      device.executeShellCommand(command, receiver, timeoutMillis, TimeUnit.MILLISECONDS);
+      return receiver.getOutput().trim();
+    } catch (ShellCommandUnresponsiveException e) {
+      // the command is running, executing it again wouldn't help
+      throw new ShellCommandException(
+          String.format("No output of '%s' within %d ms", command, timeoutMillis), e);
+    } catch (Exception e) {
+      logFallback(command, e);
+      return fallback.shell(command, timeoutMillis);
+    }
+  }
+
+  @Override
+  public void install(String apkPath) throws AndroidSdkException {
+    if (!device.isOnline()) {
+      fallback.install(apkPath);
+      return;
+    }
+    String error;
+    try {
+      error = device.installPackage(apkPath, true, "-d");
+    } catch (InstallException e) {
+      throw new AndroidSdkException("APK installation failed", e);
+    }
+    if (error != null) {
+      throw new AndroidSdkException("APK installation failed. Output:\n" + error);
+    }
+  }
+
+  @Override
+  public void uninstall(String packageName) throws AndroidSdkException {
+    if (!device.isOnline()) {
+      fallback.uninstall(packageName);
+      return;
+    }
+    String error;
+    try {
+      error = device.uninstallPackage(packageName);
+    } catch (InstallException e) {
+      throw new AndroidSdkException("Uninstalling " + packageName + " failed", e);
+    }
+    if (error != null) {
+      throw new AndroidSdkException("Uninstalling " + packageName + " failed: " + error);
+    }
+  }
+
+  @Override
+  public int forward(int localPort, int remotePort) throws ShellCommandException {
+    // only the adb command line tool reports the port it picked
+    if (localPort == 0 || !device.isOnline()) {
+      return fallback.forward(localPort, remotePort);
+    }
+    try {
+      device.createForward(localPort, remotePort);
+      return localPort;
+    } catch (Exception e) {
+      logFallback("forward tcp:" + localPort + " tcp:" + remotePort, e);
+      return fallback.forward(localPort, remotePort);
+    }
+  }
+
+  @Override
+  public void removeForward(int localPort, int remotePort) throws ShellCommandException {
+    if (!device.isOnline()) {
+      fallback.removeForward(localPort, remotePort);
+      return;
+    }
+    try {
+      device.removeForward(localPort, remotePort);
+    } catch (Exception e) {
+      logFallback("forward --remove tcp:" + localPort, e);
+      fallback.removeForward(localPort, remotePort);
+    }
+  }
+
+  @Override
+  public Closeable logcat(final OutputStream output, String... args) throws ShellCommandException {
+    if (!device.isOnline()) {
+      return fallback.logcat(output, args);
+    }
+    final String command = "logcat " + Joiner.on(' ').join(args);
+    final AtomicBoolean closed = new AtomicBoolean(false);
+    final IShellOutputReceiver receiver = new IShellOutputReceiver() {
+      @Override
+      public void addOutput(byte[] data, int offset, int length) {
+        try {
+          output.write(data, offset, length);
+        } catch (IOException e) {
+          closed.set(true);
+        }
+      }
+
+      @Override
+      public void flush() {
+        try {
+          output.flush();
+        } catch (IOException e) {
+          closed.set(true);
+        }
+      }
+
+      @Override
+      public boolean isCancelled() {
+        return closed.get();
+      }
+    };
+    Thread reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          // 0: the log may be quiet for any amount of time
+          device.executeShellCommand(command, receiver, 0, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+          if (!closed.get()) {
+            log.log(Level.WARNING, "Logcat of " + device.getSerialNumber() + " stopped", e);
+          }
+        }
+      }
+    }, "selendroid-logcat-" + device.getSerialNumber());
+    reader.setDaemon(true);
+    reader.start();
+    return new Closeable() {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+  }
+
+  private void logFallback(String command, Exception e) {
+    log.log(Level.FINE, "ddmlib could not execute '" + command + "', falling back to adb", e);
+  }
+}
@@ -15,43 +15,47 @@ package io.selendroid.standalone.android.impl;
 
 import io.selendroid.server.common.exceptions.SelendroidException;
 import io.selendroid.standalone.android.AndroidApp;
-import io.selendroid.standalone.android.AndroidSdk;
 import io.selendroid.standalone.exceptions.AndroidSdkException;
 import io.selendroid.standalone.exceptions.ShellCommandException;
-import io.selendroid.standalone.io.ShellCommand;
 
 import java.io.File;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.apache.commons.exec.CommandLine;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
 
 
 public class DefaultAndroidApp implements AndroidApp {
   private File apkFile;
-  private String mainPackage = null;
+  private volatile ApkManifest manifest = null;
   protected String mainActivity = null;
-  private String versionName = null;
 
   public DefaultAndroidApp(File apkFile) {
     this.apkFile = apkFile;
   }
 
-  private String extractApkDetails(String regex) throws ShellCommandException, AndroidSdkException {
-    CommandLine line = new CommandLine(AndroidSdk.aapt());
-
-    line.addArgument("dump", false);
-    line.addArgument("badging", false);
-    line.addArgument(apkFile.getAbsolutePath(), false);
-    String output = ShellCommand.exec(line, 20000);
-
-    Pattern pattern = Pattern.compile(regex);
-    Matcher matcher = pattern.matcher(output);
-    if (matcher.find()) {
-      return matcher.group(1);
+  private ApkManifest getManifest(String detail) {
+    ApkManifest details = manifest;
+    if (details == null) {
+      try {
+        details = ApkManifest.read(apkFile);
+      } catch (IOException e) {
+        throw new SelendroidException("The " + detail + " of the apk " + apkFile.getName()
+            + " cannot be extracted.", e);
+      }
+      manifest = details;
     }
-
-    return null;
+    return details;
   }
 
   /*
@@ -61,16 +65,7 @@ public class DefaultAndroidApp implements AndroidApp {
    */
   @Override
   public String getBasePackage() throws AndroidSdkException {
-    if (mainPackage == null) {
-      try {
-        mainPackage = extractApkDetails("package: name='(.*?)'");
-      } catch (ShellCommandException e) {
-        throw new SelendroidException("The base package name of the apk " + apkFile.getName()
-            + " cannot be extracted.");
-      }
-
-    }
-    return mainPackage;
+    return getManifest("base package name").getPackageName();
   }
 
   /*
@@ -81,12 +76,7 @@ public class DefaultAndroidApp implements AndroidApp {
   @Override
   public String getMainActivity() throws AndroidSdkException {
     if (mainActivity == null) {
-      try {
-        mainActivity = extractApkDetails("launchable-activity: name='(.*?)'");
-      } catch (ShellCommandException e) {
-        throw new SelendroidException("The main activity of the apk " + apkFile.getName()
-            + " cannot be extracted.");
-      }
+      mainActivity = getManifest("main activity").getLaunchableActivity();
     }
     return mainActivity;
   }
@@ -104,12 +94,75 @@ public class DefaultAndroidApp implements AndroidApp {
   @Override
   public void deleteFileFromWithinApk(String file) throws ShellCommandException,
       AndroidSdkException {
-    CommandLine line = new CommandLine(AndroidSdk.aapt());
-    line.addArgument("remove", false);
-    line.addArgument(apkFile.getAbsolutePath(), false);
-    line.addArgument(file, false);
+    deleteFilesFromWithinApk(file);
+  }
 
-    ShellCommand.exec(line, 20000);
+  /**
+   * Removes the given entries in a single pass by copying the remaining ones into a new archive,
+   * which then replaces the apk. Entries that don't exist are ignored.
+   */
+  @Override
+  public void deleteFilesFromWithinApk(String... files) throws ShellCommandException,
+      AndroidSdkException {
+    Set<String> toDelete = new HashSet<String>(Arrays.asList(files));
+    File rewritten = null;
+    try {
+      ZipFile zip = new ZipFile(apkFile);
+      try {
+        boolean found = false;
+        for (String file : toDelete) {
+          found |= zip.getEntry(file) != null;
+        }
+        if (!found) {
+          return;
+        }
+        rewritten = File.createTempFile("rewritten-", ".apk", apkFile.getAbsoluteFile().getParentFile());
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(rewritten));
+        try {
+          copyEntries(zip, out, toDelete);
+        } finally {
+          out.close();
+        }
+      } finally {
+        zip.close();
+      }
+      Files.move(rewritten.toPath(), apkFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      rewritten = null;
+    } catch (IOException e) {
+      throw new ShellCommandException("The files " + toDelete + " cannot be removed from the apk "
+          + apkFile.getName(), e);
+    } finally {
+      if (rewritten != null) {
+        rewritten.delete();
+      }
+    }
+    if (toDelete.contains(ApkManifest.MANIFEST_ENTRY)) {
+      manifest = null;
+    }
+  }
+
+  private static void copyEntries(ZipFile zip, ZipOutputStream out, Set<String> toDelete)
+      throws IOException {
+    Enumeration<? extends ZipEntry> entries = zip.entries();
+    while (entries.hasMoreElements()) {
+      ZipEntry entry = entries.nextElement();
+      if (toDelete.contains(entry.getName())) {
+        continue;
+      }
+      ZipEntry copy = new ZipEntry(entry);
+      if (copy.getMethod() != ZipEntry.STORED) {
+        // the deflater may produce a different size than the original one
+        copy.setCompressedSize(-1);
+      }
+      out.putNextEntry(copy);
+      InputStream in = zip.getInputStream(entry);
+      try {
+        IOUtils.copy(in, out);
+      } finally {
+        in.close();
+      }
+      out.closeEntry();
+    }
   }
 
   /*
@@ -124,15 +177,7 @@ public class DefaultAndroidApp implements AndroidApp {
 
   @Override
   public String getVersionName() throws AndroidSdkException {
-    if (versionName == null) {
-      try {
-        versionName = extractApkDetails("versionName='(.*?)'");
-      } catch (ShellCommandException e) {
-        throw new SelendroidException("The versionName of the apk " + apkFile.getName()
-            + " cannot be extracted.");
-      }
-    }
-    return versionName;
+    return getManifest("versionName").getVersionName();
   }
 
   public String getAppId() throws AndroidSdkException {
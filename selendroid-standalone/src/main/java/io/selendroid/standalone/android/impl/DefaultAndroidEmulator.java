@@ -43,6 +43,7 @@ import io.selendroid.standalone.android.AndroidSdk;
 import io.selendroid.standalone.android.TelnetClient;
 import io.selendroid.standalone.exceptions.AndroidDeviceException;
 import io.selendroid.standalone.exceptions.ShellCommandException;
+import io.selendroid.standalone.io.ReadinessProbe;
 import io.selendroid.standalone.io.ShellCommand;
 
 public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmulator {
@@ -50,6 +51,9 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
   private static final Logger log = Logger.getLogger(DefaultAndroidEmulator.class.getName());
   public static final String ANDROID_EMULATOR_HARDWARE_CONFIG = "hardware-qemu.ini";
   public static final String FILE_LOCKING_SUFIX = ".lock";
+  private static final long SNAPSHOT_TIMEOUT_MILLIS = 60000;
+  private static final long EMULATOR_BOOT_GRACE_MS = 1000;
+  private static final long EMULATOR_STOP_TIMEOUT_MS = 60000;
   private static final ImmutableMap<String, Dimension> SKIN_NAME_DIMENSIONS = new
       ImmutableMap.Builder<String, Dimension>()
       .put("QVGA", new Dimension(240, 320))
@@ -356,7 +360,7 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
   }
 
   @Override
-  public void start(Locale locale, int emulatorPort, Map<String, Object> options)
+  public void start(Locale locale, final int emulatorPort, Map<String, Object> options)
       throws AndroidDeviceException {
     if (isEmulatorStarted()) {
       throw new SelendroidException("Error - Android emulator is already started " + this);
@@ -403,60 +407,44 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
       cmd.addArguments(emulatorOptions.split(" "), false);
     }
 
-    long start = System.currentTimeMillis();
-    long timeoutEnd = start + timeout;
+    final long start = System.currentTimeMillis();
     try {
       ShellCommand.execAsync(display, cmd);
     } catch (ShellCommandException e) {
       throw new SelendroidException("unable to start the emulator: " + this);
     }
     setSerial(emulatorPort);
-    Boolean adbKillServerAttempted = false;
 
-    // Without this one seconds, the call to "isDeviceReady" is
-    // too quickly sent while the emulator is still starting and
-    // not ready to receive any commands. Because of this the
-    // while loops failed and sometimes hung in isDeviceReady function.
-    try {
-      Thread.sleep(1000);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-    }
-
-    while (!isDeviceReady()) {
-      if (!adbKillServerAttempted && System.currentTimeMillis() - start > 10000) {
-        CommandLine adbDevicesCmd = new CommandLine(AndroidSdk.adb());
-        adbDevicesCmd.addArgument("devices", false);
-
-        String devices = "";
-        try {
-          devices = ShellCommand.exec(adbDevicesCmd, 20000);
-        } catch (ShellCommandException e) {
-          // pass
-        }
-        if (!devices.contains(String.valueOf(emulatorPort))) {
-          CommandLine resetAdb = new CommandLine(AndroidSdk.adb());
-          resetAdb.addArgument("kill-server", false);
-
-          try {
-            ShellCommand.exec(resetAdb, 20000);
-          } catch (ShellCommandException e) {
-            throw new SelendroidException("unable to kill the adb server");
+    boolean started = ReadinessProbe.named("emulator.start")
+        .withInitialInterval(EMULATOR_BOOT_GRACE_MS)
+        .withMaxInterval(2000)
+        .withJitterCap(250)
+        .withTimeout(timeout, TimeUnit.MILLISECONDS)
+        .await(new ReadinessProbe.Condition() {
+          private boolean adbKillServerAttempted = false;
+
+          @Override
+          public boolean isReady() {
+            // Calling "isDeviceReady" while the emulator is still starting and not ready to receive
+            // any commands sometimes hangs.
+            long elapsed = System.currentTimeMillis() - start;
+            if (elapsed < EMULATOR_BOOT_GRACE_MS) {
+              return false;
+            }
+            if (isDeviceReady()) {
+              return true;
+            }
+            if (!adbKillServerAttempted && elapsed > 10000) {
+              restartAdbIfEmulatorIsMissing(emulatorPort);
+              adbKillServerAttempted = true;
+            }
+            return false;
           }
-        }
-        adbKillServerAttempted = true;
-      }
-      if (timeoutEnd >= System.currentTimeMillis()) {
-        try {
-          Thread.sleep(2000);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-        }
-      } else {
-        throw new AndroidDeviceException("The emulator with avd '" + getAvdName()
-            + "' was not started after " + (System.currentTimeMillis() - start) / 1000
-            + " seconds.");
-      }
+        });
+    if (!started) {
+      throw new AndroidDeviceException("The emulator with avd '" + getAvdName()
+          + "' was not started after " + (System.currentTimeMillis() - start) / 1000
+          + " seconds.");
     }
 
     log.info("Emulator start took: " + (System.currentTimeMillis() - start) / 1000 + " seconds");
@@ -482,6 +470,28 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
     setWasStartedBySelendroid(true);
   }
 
+  private void restartAdbIfEmulatorIsMissing(int emulatorPort) {
+    CommandLine adbDevicesCmd = new CommandLine(AndroidSdk.adb());
+    adbDevicesCmd.addArgument("devices", false);
+
+    String devices = "";
+    try {
+      devices = ShellCommand.exec(adbDevicesCmd, 20000);
+    } catch (ShellCommandException e) {
+      // pass
+    }
+    if (!devices.contains(String.valueOf(emulatorPort))) {
+      CommandLine resetAdb = new CommandLine(AndroidSdk.adb());
+      resetAdb.addArgument("kill-server", false);
+
+      try {
+        ShellCommand.exec(resetAdb, 20000);
+      } catch (ShellCommandException e) {
+        throw new SelendroidException("unable to kill the adb server");
+      }
+    }
+  }
+
   public void unlockScreen() throws AndroidDeviceException {
     // Send menu key event
     CommandLine menuKeyCommand = getAdbCommand();
@@ -592,26 +602,59 @@ public class DefaultAndroidEmulator extends AbstractDevice implements AndroidEmu
     }
   }
 
+  @Override
+  public void saveSnapshot(String name) throws AndroidDeviceException {
+    executeConsoleCommand("avd snapshot save " + name);
+  }
+
+  @Override
+  public void loadSnapshot(String name) throws AndroidDeviceException {
+    executeConsoleCommand("avd snapshot load " + name);
+  }
+
+  private List<String> executeConsoleCommand(String command) throws AndroidDeviceException {
+    Integer port = getPort();
+    if (port == null) {
+      throw new AndroidDeviceException("The emulator with avd '" + getAvdName() + "' is not running.");
+    }
+    TelnetClient client = new TelnetClient(port);
+    try {
+      return client.execute(command, SNAPSHOT_TIMEOUT_MILLIS);
+    } finally {
+      client.close();
+    }
+  }
+
   @Override
   public void stop() throws AndroidDeviceException {
     if (wasStartedBySelendroid) {
       stopEmulator();
-      Boolean killed = false;
-      while (isEmulatorStarted()) {
-        log.info("emulator still running, sleeping 0.5, waiting for it to release the lock");
-        try {
-          Thread.sleep(500);
-        } catch (InterruptedException ie) {
-          Thread.currentThread().interrupt();
-        }
-
-        if (!killed) {
-          try {
-            stopEmulator();
-          } catch (AndroidDeviceException sce) {
-            killed = true;
-          }
-        }
+      boolean stopped = ReadinessProbe.named("emulator.stop")
+          .withInitialInterval(100)
+          .withMaxInterval(1000)
+          .withTimeout(EMULATOR_STOP_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+          .await(new ReadinessProbe.Condition() {
+            private boolean killed = false;
+
+            @Override
+            public boolean isReady() {
+              if (!isEmulatorStarted()) {
+                return true;
+              }
+              log.info("emulator still running, waiting for it to release the lock");
+              if (!killed) {
+                try {
+                  stopEmulator();
+                } catch (AndroidDeviceException sce) {
+                  killed = true;
+                }
+              }
+              return false;
+            }
+          });
+      if (!stopped) {
+        log.warning("The emulator with avd '" + getAvdName() + "' is still running after "
+            + EMULATOR_STOP_TIMEOUT_MS / 1000 + " seconds.");
       }
     }
   }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import com.android.ddmlib.RawImage;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * Converts ddmlib's frame buffer into a {@link BufferedImage} by writing the pixels directly into
+ * the image's data buffer. The common layouts (RGB 565 and 8 bit channels in 32 bits per pixel)
+ * have their own loops, all other layouts go through {@link RawImage#getARGB(int)}. The colors are
+ * the same ones {@link RawImage#getARGB(int)} returns.
+ */
+public class FrameBufferConverter {
+  private static final int[] FIVE_BIT_TO_EIGHT_BIT = scaleTable(31);
+  private static final int[] SIX_BIT_TO_EIGHT_BIT = scaleTable(63);
+
+  private static int[] scaleTable(int max) {
+    int[] table = new int[max + 1];
+    for (int i = 0; i <= max; i++) {
+      table[i] = i * 255 / max;
+    }
+    return table;
+  }
+
+  /**
+   * @return an image of type {@link BufferedImage#TYPE_3BYTE_BGR}.
+   */
+  public static BufferedImage toBufferedImage(RawImage rawImage) {
+    BufferedImage image =
+        new BufferedImage(rawImage.width, rawImage.height, BufferedImage.TYPE_3BYTE_BGR);
+    byte[] bgr = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    int pixels = rawImage.width * rawImage.height;
+
+    if (rawImage.bpp == 16) {
+      convertRgb565(rawImage.data, bgr, pixels);
+    } else if (rawImage.bpp == 32 && hasByteAlignedChannels(rawImage)) {
+      convertByteAligned32(rawImage, bgr, pixels);
+    } else if (rawImage.bpp == 32) {
+      convertMasked32(rawImage, bgr, pixels);
+    } else {
+      convertGeneric(rawImage, bgr, pixels);
+    }
+    return image;
+  }
+
+  private static void convertRgb565(byte[] data, byte[] bgr, int pixels) {
+    for (int pixel = 0, in = 0, out = 0; pixel < pixels; pixel++, in += 2, out += 3) {
+      int value = (data[in] & 0xFF) | ((data[in + 1] & 0xFF) << 8);
+      bgr[out] = (byte) FIVE_BIT_TO_EIGHT_BIT[value & 0x1F];
+      bgr[out + 1] = (byte) SIX_BIT_TO_EIGHT_BIT[(value >>> 5) & 0x3F];
+      bgr[out + 2] = (byte) FIVE_BIT_TO_EIGHT_BIT[(value >>> 11) & 0x1F];
+    }
+  }
+
+  private static boolean hasByteAlignedChannels(RawImage rawImage) {
+    return rawImage.red_length == 8 && rawImage.green_length == 8 && rawImage.blue_length == 8
+        && rawImage.red_offset % 8 == 0 && rawImage.green_offset % 8 == 0
+        && rawImage.blue_offset % 8 == 0;
+  }
+
+  private static void convertByteAligned32(RawImage rawImage, byte[] bgr, int pixels) {
+    byte[] data = rawImage.data;
+    // the pixel values are little endian, i.e. the channel at bit offset 8 is the second byte
+    int red = rawImage.red_offset >> 3;
+    int green = rawImage.green_offset >> 3;
+    int blue = rawImage.blue_offset >> 3;
+    for (int pixel = 0, in = 0, out = 0; pixel < pixels; pixel++, in += 4, out += 3) {
+      bgr[out] = data[in + blue];
+      bgr[out + 1] = data[in + green];
+      bgr[out + 2] = data[in + red];
+    }
+  }
+
+  private static void convertMasked32(RawImage rawImage, byte[] bgr, int pixels) {
+    byte[] data = rawImage.data;
+    int redOffset = rawImage.red_offset;
+    int redMask = (1 << rawImage.red_length) - 1;
+    int redShift = 8 - rawImage.red_length;
+    int greenOffset = rawImage.green_offset;
+    int greenMask = (1 << rawImage.green_length) - 1;
+    int greenShift = 8 - rawImage.green_length;
+    int blueOffset = rawImage.blue_offset;
+    int blueMask = (1 << rawImage.blue_length) - 1;
+    int blueShift = 8 - rawImage.blue_length;
+    for (int pixel = 0, in = 0, out = 0; pixel < pixels; pixel++, in += 4, out += 3) {
+      int value = (data[in] & 0xFF) | ((data[in + 1] & 0xFF) << 8)
+          | ((data[in + 2] & 0xFF) << 16) | ((data[in + 3] & 0xFF) << 24);
+      bgr[out] = (byte) (((value >>> blueOffset) & blueMask) << blueShift);
+      bgr[out + 1] = (byte) (((value >>> greenOffset) & greenMask) << greenShift);
+      bgr[out + 2] = (byte) (((value >>> redOffset) & redMask) << redShift);
+    }
+  }
+
+  private static void convertGeneric(RawImage rawImage, byte[] bgr, int pixels) {
+    int increment = rawImage.bpp >> 3;
+    for (int pixel = 0, in = 0, out = 0; pixel < pixels; pixel++, in += increment, out += 3) {
+      int argb = rawImage.getARGB(in);
+      bgr[out] = (byte) argb;
+      bgr[out + 1] = (byte) (argb >> 8);
+      bgr[out + 2] = (byte) (argb >> 16);
+    }
+  }
+}
@@ -62,6 +62,12 @@ public class InstalledAndroidApp implements AndroidApp {
     // no-op
   }
 
+  @Override
+  public void deleteFilesFromWithinApk(String... files) throws ShellCommandException,
+      AndroidSdkException {
+    // no-op
+  }
+
   @Override
   public String getAppId() throws AndroidSdkException {
     return packageName + ":" + version;
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import com.google.common.collect.Lists;
+import io.selendroid.standalone.android.LogcatEntry;
+import io.selendroid.standalone.android.LogcatFilter;
+import org.apache.commons.exec.LogOutputStream;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded buffer of the parsed output of {@code adb logcat -v time}. Lines are parsed once as
+ * they are pumped from the logcat process. When the buffer is full, the oldest entries are
+ * dropped or, if a spill file has been configured, appended to that file first.
+ */
+public class LogcatBuffer extends LogOutputStream {
+  private static final Logger log = Logger.getLogger(LogcatBuffer.class.getName());
+  public static final int DEFAULT_CAPACITY = 10000;
+  // e.g. "03-17 12:34:56.789 I/ActivityManager(  123): Start proc"
+  private static final Pattern LOGCAT_LINE = Pattern.compile(
+      "^(\\d\\d)-(\\d\\d) (\\d\\d):(\\d\\d):(\\d\\d)\\.(\\d{3}) ([VDIWEFA])/(.*?)\\(\\s*\\d+\\):.*");
+
+  private final LogcatEntry[] entries;
+  private File spillFile;
+  private Writer spillWriter;
+  private boolean closed = false;
+  private long nextSequence = 0;
+  private long lastTimestamp = System.currentTimeMillis();
+
+  public LogcatBuffer() {
+    this(DEFAULT_CAPACITY, null);
+  }
+
+  /**
+   * @param capacity the maximum number of entries kept in memory.
+   * @param spillFile the file evicted entries are appended to, or {@code null} to drop them. If
+   *        the file cannot be written, evicted entries are dropped from then on.
+   */
+  public LogcatBuffer(int capacity, File spillFile) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive but was " + capacity);
+    }
+    this.entries = new LogcatEntry[capacity];
+    this.spillFile = spillFile;
+  }
+
+  @Override
+  protected void processLine(String line, int logLevel) {
+    add(line);
+  }
+
+  /**
+   * Parses the given logcat line and adds it to the buffer. Lines that are not in logcat's
+   * {@code time} format (e.g. "--------- beginning of main") get the timestamp of the previous
+   * entry.
+   */
+  public synchronized LogcatEntry add(String line) {
+    Level level = Level.FINE;
+    String tag = "";
+    Matcher matcher = LOGCAT_LINE.matcher(line);
+    if (matcher.matches()) {
+      try {
+        lastTimestamp = parseTimestamp(matcher);
+      } catch (IllegalArgumentException e) {
+        // e.g. Feb 29 from the previous year, keep the last known timestamp
+      }
+      level = toLevel(matcher.group(7).charAt(0));
+      tag = matcher.group(8).trim();
+    }
+
+    LogcatEntry entry = new LogcatEntry(nextSequence, lastTimestamp, level, tag, line);
+    int index = (int) (nextSequence % entries.length);
+    if (entries[index] != null) {
+      spill(entries[index]);
+    }
+    entries[index] = entry;
+    nextSequence++;
+    return entry;
+  }
+
+  /**
+   * @return the buffered entries matching the filter, oldest first.
+   */
+  public synchronized List<LogcatEntry> read(LogcatFilter filter) {
+    long first = Math.max(filter.getSinceSequence(), nextSequence - entries.length);
+    List<LogcatEntry> result = Lists.newArrayList();
+    for (long sequence = Math.max(first, 0); sequence < nextSequence; sequence++) {
+      LogcatEntry entry = entries[(int) (sequence % entries.length)];
+      if (filter.matches(entry)) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the sequence number the next entry will get, to be used as cursor for the next read.
+   */
+  public synchronized long getNextSequence() {
+    return nextSequence;
+  }
+
+  public synchronized File getSpillFile() {
+    return spillFile;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    super.close();
+    closed = true;
+    if (spillWriter != null) {
+      spillWriter.close();
+      spillWriter = null;
+    }
+  }
+
+  private void closeSpillWriter() {
+    if (spillWriter != null) {
+      try {
+        spillWriter.close();
+      } catch (IOException e) {
+        // the file is not written any more anyway
+      }
+      spillWriter = null;
+    }
+  }
+
+  private void spill(LogcatEntry entry) {
+    if (spillFile == null || closed) {
+      return;
+    }
+    try {
+      if (spillWriter == null) {
+        spillWriter = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(spillFile, true), StandardCharsets.UTF_8));
+      }
+      spillWriter.write(entry.getLine());
+      spillWriter.write('\n');
+    } catch (IOException e) {
+      log.log(Level.WARNING, "Could not write device log to " + spillFile
+          + ", log lines that no longer fit into memory are dropped from now on.", e);
+      spillFile = null;
+      closeSpillWriter();
+    }
+  }
+
+  private static long parseTimestamp(Matcher matcher) {
+    long now = System.currentTimeMillis();
+    Calendar time = Calendar.getInstance();
+    time.setTimeInMillis(now);
+    // rejects dates which don't exist instead of rolling them over
+    time.setLenient(false);
+    time.set(Calendar.MONTH, Integer.parseInt(matcher.group(1)) - 1);
+    time.set(Calendar.DAY_OF_MONTH, Integer.parseInt(matcher.group(2)));
+    time.set(Calendar.HOUR_OF_DAY, Integer.parseInt(matcher.group(3)));
+    time.set(Calendar.MINUTE, Integer.parseInt(matcher.group(4)));
+    time.set(Calendar.SECOND, Integer.parseInt(matcher.group(5)));
+    time.set(Calendar.MILLISECOND, Integer.parseInt(matcher.group(6)));
+    // logcat doesn't print the year, so lines from late December read in January
+    // belong to the previous year
+    if (time.getTimeInMillis() > now + TimeUnit.DAYS.toMillis(1)) {
+      time.add(Calendar.YEAR, -1);
+    }
+    return time.getTimeInMillis();
+  }
+
+  private static Level toLevel(char priority) {
+    switch (priority) {
+      case 'V':
+        return Level.FINEST;
+      case 'D':
+        return Level.FINE;
+      case 'I':
+        return Level.INFO;
+      case 'W':
+        return Level.WARNING;
+      default:
+        return Level.SEVERE;
+    }
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Streams an image as 8 bit RGB PNG. The scanlines are deflated one by one straight into fixed size
+ * IDAT chunks, so neither the filtered image nor the compressed data is ever held in memory as a
+ * whole.
+ */
+public class PngEncoder {
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final byte FILTER_NONE = 0;
+
+  private final int compressionLevel;
+
+  /**
+   * @param compressionLevel the deflate level from {@link Deflater#BEST_SPEED} to
+   *        {@link Deflater#BEST_COMPRESSION}.
+   */
+  public PngEncoder(int compressionLevel) {
+    if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid PNG compression level: " + compressionLevel);
+    }
+    this.compressionLevel = compressionLevel;
+  }
+
+  public byte[] encode(BufferedImage image) throws IOException {
+    // screenshots mostly consist of plain areas and compress to a fraction of the raw size
+    ByteArrayOutputStream out =
+        new ByteArrayOutputStream(Math.max(1024, image.getWidth() * image.getHeight() / 4));
+    encode(image, out);
+    return out.toByteArray();
+  }
+
+  public void encode(BufferedImage image, OutputStream out) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    DataOutputStream data = new DataOutputStream(out);
+    data.write(SIGNATURE);
+
+    ChunkOutputStream header = new ChunkOutputStream(data, "IHDR", 13);
+    DataOutputStream headerData = new DataOutputStream(header);
+    headerData.writeInt(width);
+    headerData.writeInt(height);
+    headerData.writeByte(8); // bit depth
+    headerData.writeByte(2); // color type: RGB
+    headerData.writeByte(0); // compression: deflate
+    headerData.writeByte(0); // filter method
+    headerData.writeByte(0); // no interlace
+    header.close();
+
+    Deflater deflater = new Deflater(compressionLevel);
+    try {
+      ChunkOutputStream idat = new ChunkOutputStream(data, "IDAT", CHUNK_SIZE);
+      DeflaterOutputStream compressed = new DeflaterOutputStream(idat, deflater, CHUNK_SIZE);
+      byte[] row = new byte[1 + width * 3];
+      row[0] = FILTER_NONE;
+      if (image.getType() == BufferedImage.TYPE_3BYTE_BGR
+          && image.getRaster().getDataBuffer() instanceof DataBufferByte
+          && image.getRaster().getParent() == null) {
+        writeBgrRows(((DataBufferByte) image.getRaster().getDataBuffer()).getData(), width,
+            height, row, compressed);
+      } else {
+        writeRgbRows(image, width, height, row, compressed);
+      }
+      compressed.finish();
+      idat.close();
+    } finally {
+      deflater.end();
+    }
+
+    new ChunkOutputStream(data, "IEND", 0).close();
+    data.flush();
+  }
+
+  private void writeBgrRows(byte[] bgr, int width, int height, byte[] row, OutputStream out)
+      throws IOException {
+    int stride = width * 3;
+    for (int y = 0, offset = 0; y < height; y++, offset += stride) {
+      for (int x = 0, in = offset, rgb = 1; x < width; x++, in += 3, rgb += 3) {
+        row[rgb] = bgr[in + 2];
+        row[rgb + 1] = bgr[in + 1];
+        row[rgb + 2] = bgr[in];
+      }
+      out.write(row);
+    }
+  }
+
+  private void writeRgbRows(BufferedImage image, int width, int height, byte[] row,
+      OutputStream out) throws IOException {
+    int[] argb = new int[width];
+    for (int y = 0; y < height; y++) {
+      image.getRGB(0, y, width, 1, argb, 0, width);
+      for (int x = 0, rgb = 1; x < width; x++, rgb += 3) {
+        row[rgb] = (byte) (argb[x] >> 16);
+        row[rgb + 1] = (byte) (argb[x] >> 8);
+        row[rgb + 2] = (byte) argb[x];
+      }
+      out.write(row);
+    }
+  }
+
+  /**
+   * Writes everything written to it as chunks of the given type, each holding at most
+   * {@code maxLength} bytes. Closing it writes the last (possibly empty) chunk, but doesn't close
+   * the underlying stream.
+   */
+  private static class ChunkOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final byte[] type;
+    private final byte[] buffer;
+    private final CRC32 crc = new CRC32();
+    private int length = 0;
+    private boolean written = false;
+
+    ChunkOutputStream(DataOutputStream out, String type, int maxLength) {
+      this.out = out;
+      this.type = type.getBytes();
+      this.buffer = new byte[maxLength];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (length == buffer.length) {
+        writeChunk();
+      }
+      buffer[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int count) throws IOException {
+      while (count > 0) {
+        if (length == buffer.length) {
+          writeChunk();
+        }
+        int n = Math.min(count, buffer.length - length);
+        System.arraycopy(bytes, offset, buffer, length, n);
+        length += n;
+        offset += n;
+        count -= n;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (length > 0 || !written) {
+        writeChunk();
+      }
+    }
+
+    private void writeChunk() throws IOException {
+      crc.reset();
+      crc.update(type);
+      crc.update(buffer, 0, length);
+      out.writeInt(length);
+      out.write(type);
+      out.write(buffer, 0, length);
+      out.writeInt((int) crc.getValue());
+      length = 0;
+      written = true;
+    }
+  }
+}
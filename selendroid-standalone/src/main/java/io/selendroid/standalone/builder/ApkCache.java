@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.builder;
+
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent cache of APK files, addressed by a key derived from everything the content of the
+ * APK depends on (e.g. the SHA-256 of the original app, the keystore and the selendroid version).
+ * The least recently used files are evicted once the cache exceeds its maximum size. Files handed
+ * out by this instance are never evicted by it, since they may still be installed on devices.
+ */
+public class ApkCache {
+  private static final Logger log = Logger.getLogger(ApkCache.class.getName());
+  private static final String APK_SUFFIX = ".apk";
+
+  private final File directory;
+  private final long maxSizeBytes;
+  private final Set<File> inUse = Collections.synchronizedSet(new HashSet<File>());
+
+  public ApkCache(File directory, long maxSizeBytes) {
+    this.directory = directory.getAbsoluteFile();
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * @return the cached APK for the given key, or {@code null} if there is none.
+   */
+  public File get(String key) {
+    File cached = fileFor(key);
+    if (!cached.isFile()) {
+      return null;
+    }
+    // the modification time is used as access time for the LRU eviction
+    if (!cached.setLastModified(System.currentTimeMillis())) {
+      log.fine("Could not update the access time of " + cached);
+    }
+    log.info("Using cached APK " + cached.getAbsolutePath());
+    inUse.add(cached);
+    return cached;
+  }
+
+  /**
+   * Copies the given APK into the cache.
+   *
+   * @return the cached copy.
+   */
+  public File put(String key, File apk) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create APK cache directory " + directory);
+    }
+    File cached = fileFor(key);
+    // copy under a temporary name first so that concurrent readers never see partial files
+    File tmp = File.createTempFile(key, ".tmp", directory);
+    try {
+      Files.copy(apk, tmp);
+      java.nio.file.Files.move(tmp.toPath(), cached.toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      if (tmp.exists() && !tmp.delete()) {
+        tmp.deleteOnExit();
+      }
+    }
+    inUse.add(cached);
+    evict();
+    return cached;
+  }
+
+  /**
+   * Marks an APK handed out by this cache as no longer used, e.g. because the app it was built
+   * for has been replaced, so that it is evicted first once the cache gets too big.
+   */
+  public void release(File cached) {
+    File file = cached.getAbsoluteFile();
+    if (inUse.remove(file) && !file.setLastModified(0)) {
+      log.fine("Could not reset the access time of " + file);
+    }
+  }
+
+  /**
+   * Removes the least recently used APKs until the cache fits into its maximum size.
+   */
+  synchronized void evict() {
+    File[] files = directory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        return file.isFile() && file.getName().endsWith(APK_SUFFIX);
+      }
+    });
+    if (files == null) {
+      return;
+    }
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+    }
+    if (size <= maxSizeBytes) {
+      return;
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        return Long.compare(a.lastModified(), b.lastModified());
+      }
+    });
+    for (File file : files) {
+      if (size <= maxSizeBytes) {
+        break;
+      }
+      if (inUse.contains(file)) {
+        continue;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        size -= length;
+        log.info("Evicted " + file.getName() + " from the APK cache");
+      } else {
+        log.log(Level.WARNING, "Could not evict " + file + " from the APK cache");
+      }
+    }
+  }
+
+  /**
+   * Builds a cache key out of the given parts, e.g. file hashes and versions.
+   */
+  public static String key(String... parts) {
+    return Hashing.sha256().hashString(Joiner.on('\n').useForNull("").join(parts),
+        StandardCharsets.UTF_8).toString();
+  }
+
+  public static String sha256(File file) throws IOException {
+    return Files.hash(file, Hashing.sha256()).toString();
+  }
+
+  private File fileFor(String key) {
+    return new File(directory, key + APK_SUFFIX);
+  }
+}
@@ -29,6 +29,8 @@ import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 
 import java.io.File;
@@ -43,6 +45,8 @@ import java.nio.charset.Charset;
 import java.security.KeyStore;
 import java.security.cert.X509Certificate;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 import java.util.logging.Level;
@@ -67,6 +71,8 @@ public class SelendroidServerBuilder {
   private String storepass = "android";
   private String alias = "androiddebugkey";
   private X509Certificate cert509;
+  private ApkCache apkCache = null;
+  private final Map<String, String> resourceHashes = new HashMap<String, String>();
 
   /**
    * FOR TESTING ONLY
@@ -85,6 +91,12 @@ public class SelendroidServerBuilder {
     this.selendroidPrebuildServerPath = selendroidPrebuildServerPath;
     this.selendroidApplicationXmlTemplate = selendroidApplicationXmlTemplate;
     this.serverConfiguration = selendroidConfiguration;
+    if (selendroidConfiguration != null && selendroidConfiguration.getApkCacheSize() > 0) {
+      File cacheDir = selendroidConfiguration.getApkCacheDir() != null
+          ? new File(selendroidConfiguration.getApkCacheDir())
+          : new File(FileUtils.getUserDirectory(), ".selendroid" + File.separator + "apk-cache");
+      apkCache = new ApkCache(cacheDir, selendroidConfiguration.getApkCacheSize() * 1024 * 1024);
+    }
   }
 
   public SelendroidServerBuilder(SelendroidConfiguration selendroidConfiguration) {
@@ -110,6 +122,27 @@ public class SelendroidServerBuilder {
                                                                   ShellCommandException,
                                                                   AndroidSdkException {
     log.info("create SelendroidServer for apk: " + aut.getAbsolutePath());
+    String cacheKey = null;
+    if (apkCache != null) {
+      // the server only depends on the package of the app under test, not on its content
+      cacheKey = ApkCache.key("selendroid-server", aut.getBasePackage(), getJarVersionNumber(),
+          resourceSha256(selendroidPrebuildServerPath),
+          resourceSha256(selendroidApplicationXmlTemplate), keystoreFingerprint());
+      File cached = apkCache.get(cacheKey);
+      if (cached != null) {
+        return new DefaultAndroidApp(cached);
+      }
+    }
+    AndroidApp server = buildSelendroidServer(aut);
+    if (apkCache != null) {
+      return new DefaultAndroidApp(apkCache.put(cacheKey, new File(server.getAbsolutePath())));
+    }
+    return server;
+  }
+
+  private AndroidApp buildSelendroidServer(AndroidApp aut) throws IOException,
+                                                                  ShellCommandException,
+                                                                  AndroidSdkException {
     init(aut);
     cleanUpPrebuildServer();
     File selendroidServer = createAndAddCustomizedAndroidManifestToSelendroidServer();
@@ -123,38 +156,68 @@ public class SelendroidServerBuilder {
     return signTestServer(selendroidServer, outputFile);
   }
 
-  private void deleteFileFromAppSilently(AndroidApp app, String file) throws AndroidSdkException {
+  private void deleteFilesFromAppSilently(AndroidApp app, String... files) throws AndroidSdkException {
     if (app == null) {
       throw new IllegalArgumentException("Required parameter 'app' is null.");
     }
-    if (file == null || file.isEmpty()) {
-      throw new IllegalArgumentException("Required parameter 'file' is null or empty.");
+    if (files == null || files.length == 0) {
+      throw new IllegalArgumentException("Required parameter 'files' is null or empty.");
     }
     try {
-      app.deleteFileFromWithinApk(file);
+      app.deleteFilesFromWithinApk(files);
     } catch (ShellCommandException e) {
       // don't care, can happen if file does not exist
     }
   }
 
   public AndroidApp resignApp(File appFile) throws ShellCommandException, AndroidSdkException, IOException {
-    AndroidApp app = new DefaultAndroidApp(appFile);
-    // Delete existing certificates
-    deleteFileFromAppSilently(app, "META-INF/MANIFEST.MF");
-    deleteFileFromAppSilently(app, "META-INF/CERT.RSA");
-    deleteFileFromAppSilently(app, "META-INF/CERT.SF");
-    deleteFileFromAppSilently(app, "META-INF/ANDROIDD.SF");
-    deleteFileFromAppSilently(app, "META-INF/ANDROIDD.RSA");
-    deleteFileFromAppSilently(app, "META-INF/NDKEYSTO.SF");
-    deleteFileFromAppSilently(app, "META-INF/NDKEYSTO.RSA");
-    deleteFileFromAppSilently(app, "META-INF/BNDLTOOL.SF");
-    deleteFileFromAppSilently(app, "META-INF/BNDLTOOL.RSA");
-
-    File outputFile = File.createTempFile("resigned-", appFile.getName());
-    if (deleteTmpFiles()) {
-      outputFile.deleteOnExit();
+    String cacheKey = null;
+    if (apkCache != null) {
+      cacheKey = ApkCache.key("resigned-app", ApkCache.sha256(appFile), getJarVersionNumber(),
+          keystoreFingerprint());
+      File cached = apkCache.get(cacheKey);
+      if (cached != null) {
+        return new DefaultAndroidApp(cached);
+      }
+    }
+    AndroidApp resigned = stripAndSignApp(appFile);
+    if (apkCache != null) {
+      return new DefaultAndroidApp(apkCache.put(cacheKey, new File(resigned.getAbsolutePath())));
+    }
+    return resigned;
+  }
+
+  /**
+   * Invalidates the resigned build of an app that has been replaced or removed, so that it is no
+   * longer kept in the APK cache. The file itself stays, sessions might still be installing it.
+   */
+  public void releaseResignedApp(AndroidApp resigned) {
+    if (apkCache != null && resigned != null) {
+      apkCache.release(new File(resigned.getAbsolutePath()));
+    }
+  }
+
+  private AndroidApp stripAndSignApp(File appFile) throws ShellCommandException, AndroidSdkException, IOException {
+    // The certificates are removed from a copy, the app file itself stays as it is so that its
+    // hash still matches the cached build the next time
+    File strippedFile = File.createTempFile("stripped-", appFile.getName());
+    try {
+      FileUtils.copyFile(appFile, strippedFile);
+      AndroidApp app = new DefaultAndroidApp(strippedFile);
+      // Delete existing certificates
+      deleteFilesFromAppSilently(app, "META-INF/MANIFEST.MF", "META-INF/CERT.RSA",
+          "META-INF/CERT.SF", "META-INF/ANDROIDD.SF", "META-INF/ANDROIDD.RSA",
+          "META-INF/NDKEYSTO.SF", "META-INF/NDKEYSTO.RSA", "META-INF/BNDLTOOL.SF",
+          "META-INF/BNDLTOOL.RSA");
+
+      File outputFile = File.createTempFile("resigned-", appFile.getName());
+      if (deleteTmpFiles()) {
+        outputFile.deleteOnExit();
+      }
+      return signTestServer(strippedFile, outputFile);
+    } finally {
+      FileUtils.deleteQuietly(strippedFile);
     }
-    return signTestServer(appFile, outputFile);
   }
 
   /* package */File createAndAddCustomizedAndroidManifestToSelendroidServer() throws IOException,
@@ -260,6 +323,32 @@ public class SelendroidServerBuilder {
     if (outputFileName == null) {
       throw new IllegalArgumentException("outputFileName parameter is null.");
     }
+    File androidKeyStore = ensureKeystore();
+
+    // Sign the jar
+    CommandLine commandline = new CommandLine(JavaSdk.jarsigner());
+
+    commandline.addArgument("-sigalg", false);
+    commandline.addArgument(getSigAlg(), false);
+    commandline.addArgument("-digestalg", false);
+    commandline.addArgument("SHA1", false);
+    commandline.addArgument("-signedjar", false);
+    commandline.addArgument(outputFileName.getAbsolutePath(), false);
+    commandline.addArgument("-storepass", false);
+    commandline.addArgument(storepass, false);
+    commandline.addArgument("-keystore", false);
+    commandline.addArgument(androidKeyStore.toString(), false);
+    commandline.addArgument(customSelendroidServer.getAbsolutePath(), false);
+    commandline.addArgument(alias, false);
+    String output = ShellCommand.exec(commandline, 20000);
+    if (log.isLoggable(Level.INFO)) {
+      log.info("App signing output: " + output);
+    }
+    log.info("The app has been signed: " + outputFileName.getAbsolutePath());
+    return new DefaultAndroidApp(outputFileName);
+  }
+
+  private synchronized File ensureKeystore() throws ShellCommandException {
     File androidKeyStore = androidDebugKeystore();
 
     if (!androidKeyStore.isFile()) {
@@ -290,28 +379,29 @@ public class SelendroidServerBuilder {
       String output = ShellCommand.exec(commandline, 20000);
       log.info("A new keystore has been created: " + output);
     }
+    return androidKeyStore;
+  }
 
-    // Sign the jar
-    CommandLine commandline = new CommandLine(JavaSdk.jarsigner());
+  /**
+   * Identifies the key APKs are signed with, as part of the cache keys.
+   */
+  private String keystoreFingerprint() throws ShellCommandException, IOException {
+    File keystore = ensureKeystore();
+    return keystore.getAbsolutePath() + ":" + alias + ":" + ApkCache.sha256(keystore);
+  }
 
-    commandline.addArgument("-sigalg", false);
-    commandline.addArgument(getSigAlg(), false);
-    commandline.addArgument("-digestalg", false);
-    commandline.addArgument("SHA1", false);
-    commandline.addArgument("-signedjar", false);
-    commandline.addArgument(outputFileName.getAbsolutePath(), false);
-    commandline.addArgument("-storepass", false);
-    commandline.addArgument(storepass, false);
-    commandline.addArgument("-keystore", false);
-    commandline.addArgument(androidKeyStore.toString(), false);
-    commandline.addArgument(customSelendroidServer.getAbsolutePath(), false);
-    commandline.addArgument(alias, false);
-    String output = ShellCommand.exec(commandline, 20000);
-    if (log.isLoggable(Level.INFO)) {
-      log.info("App signing output: " + output);
+  private synchronized String resourceSha256(String resource) throws IOException {
+    String hash = resourceHashes.get(resource);
+    if (hash == null) {
+      InputStream is = getResourceAsStream(resource);
+      try {
+        hash = Hashing.sha256().hashBytes(ByteStreams.toByteArray(is)).toString();
+      } finally {
+        IOUtils.closeQuietly(is);
+      }
+      resourceHashes.put(resource, hash);
     }
-    log.info("The app has been signed: " + outputFileName.getAbsolutePath());
-    return new DefaultAndroidApp(outputFileName);
+    return hash;
   }
 
   private File androidDebugKeystore() {
@@ -335,8 +425,7 @@ public class SelendroidServerBuilder {
    * {@link #init(AndroidApp)} must be called upfront for initialization
    */
   /* package */void cleanUpPrebuildServer() throws ShellCommandException, AndroidSdkException {
-    selendroidServer.deleteFileFromWithinApk("AndroidManifest.xml");
-    selendroidServer.deleteFileFromWithinApk("META-INF/CERT.RSA");
+    selendroidServer.deleteFilesFromWithinApk("AndroidManifest.xml", "META-INF/CERT.RSA");
     //selendroidServer.deleteFileFromWithinApk("META-INF/CERT.SF");
   }
 
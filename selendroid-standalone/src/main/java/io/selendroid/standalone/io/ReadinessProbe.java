@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.io;
+
+import io.selendroid.standalone.server.model.StandaloneMetrics;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls a readiness condition with exponential backoff instead of sleeping for a fixed time.
+ *
+ * The interval starts at {@code initialIntervalMillis} and doubles after each unsuccessful poll up
+ * to {@code maxIntervalMillis}. A random jitter of at most {@code jitterCapMillis} (and never more
+ * than half of the current interval) is added so that concurrent probes against the same adb
+ * server don't poll in lock step. The time until the condition was met (or the probe gave up) is
+ * recorded per probe name, so the defaults can be tuned from observed data.
+ */
+public class ReadinessProbe {
+  private static final Logger log = Logger.getLogger(ReadinessProbe.class.getName());
+  private static final StandaloneMetrics statistics = new StandaloneMetrics();
+
+  private final String name;
+  private final Random random = new Random();
+  private long initialIntervalMillis = 100;
+  private long maxIntervalMillis = 2000;
+  private long jitterCapMillis = 100;
+  private long timeoutMillis = 10000;
+
+  public interface Condition {
+    boolean isReady() throws Exception;
+  }
+
+  private ReadinessProbe(String name) {
+    this.name = name;
+  }
+
+  public static ReadinessProbe named(String name) {
+    return new ReadinessProbe(name);
+  }
+
+  public ReadinessProbe withInitialInterval(long millis) {
+    this.initialIntervalMillis = Math.max(1, millis);
+    return this;
+  }
+
+  public ReadinessProbe withMaxInterval(long millis) {
+    this.maxIntervalMillis = millis;
+    return this;
+  }
+
+  public ReadinessProbe withJitterCap(long millis) {
+    this.jitterCapMillis = millis;
+    return this;
+  }
+
+  public ReadinessProbe withTimeout(long timeout, TimeUnit unit) {
+    this.timeoutMillis = unit.toMillis(timeout);
+    return this;
+  }
+
+  /**
+   * Polls the condition until it is met or the timeout elapsed. Checked exceptions thrown by the
+   * condition count as 'not ready yet', runtime exceptions abort the probe.
+   *
+   * @return {@code true} if the condition was met, {@code false} if the probe timed out or the
+   *         current thread was interrupted.
+   */
+  public boolean await(Condition condition) {
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    long interval = initialIntervalMillis;
+    while (true) {
+      if (isReady(condition)) {
+        record(name, start);
+        return true;
+      }
+      long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remainingMillis <= 0) {
+        record(name + ".timeout", start);
+        log.info(String.format("'%s' was not ready after %d ms", name, timeoutMillis));
+        return false;
+      }
+      try {
+        Thread.sleep(Math.min(interval + jitter(interval), remainingMillis));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        record(name + ".interrupted", start);
+        return false;
+      }
+      interval = Math.min(interval * 2, maxIntervalMillis);
+    }
+  }
+
+  /* package */ long jitter(long interval) {
+    long bound = Math.min(jitterCapMillis, interval / 2);
+    if (bound <= 0) {
+      return 0;
+    }
+    synchronized (random) {
+      return (long) (random.nextDouble() * bound);
+    }
+  }
+
+  private boolean isReady(Condition condition) {
+    try {
+      return condition.isReady();
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      log.log(Level.FINE, "Readiness condition of '" + name + "' failed", e);
+      return false;
+    }
+  }
+
+  private static void record(String name, long start) {
+    statistics.recordTiming(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  /**
+   * @return the observed wait times of all probes, keyed by probe name. Probes that gave up are
+   *         recorded with the suffix {@code .timeout}.
+   */
+  public static StandaloneMetrics getStatistics() {
+    return statistics;
+  }
+}
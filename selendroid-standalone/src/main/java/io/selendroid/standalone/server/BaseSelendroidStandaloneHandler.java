@@ -55,7 +55,12 @@ public abstract class BaseSelendroidStandaloneHandler extends BaseRequestHandler
       log.warning("Cannot get session, no selendroid driver.");
       return null;
     }
-    return driver.getActiveSession(getSessionId(request));
+    ActiveSession session = driver.getActiveSession(getSessionId(request));
+    if (session != null) {
+      // every command sent to a session counts as activity, whether it is proxied or not
+      session.touch();
+    }
+    return session;
   }
 
   private void logHandlerCalled(JSONObject payload) {
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import io.selendroid.server.common.Response;
+
+/**
+ * Response that is not known yet when the handler returns, e.g. of a session request that waits
+ * in the session queue. The HTTP response is suspended and sent once the future completes, so no
+ * server thread is held in the meantime.
+ */
+public class DeferredResponse implements Response {
+  private final ListenableFuture<? extends Response> response;
+
+  public DeferredResponse(ListenableFuture<? extends Response> response) {
+    this.response = response;
+  }
+
+  public ListenableFuture<? extends Response> getResponse() {
+    return response;
+  }
+
+  @Override
+  public String getSessionId() {
+    return null;
+  }
+
+  @Override
+  public String render() {
+    return Futures.getUnchecked(response).render();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server;
+
+import io.selendroid.server.common.Response;
+import io.selendroid.server.common.http.HttpResponse;
+import org.apache.commons.io.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Response of the selendroid-server on the device which is passed through to the client
+ * unchanged. The body is read straight from the device connection into the outgoing response.
+ */
+public class DeviceResponse implements Response {
+  private final String sessionId;
+  private final String contentType;
+  private final InputStream content;
+  private final long contentLength;
+  private final Closeable connection;
+
+  /**
+   * @param connection released once the content has been consumed.
+   */
+  public DeviceResponse(String sessionId, String contentType, InputStream content,
+      long contentLength, Closeable connection) {
+    this.sessionId = sessionId;
+    this.contentType = contentType;
+    this.content = content;
+    this.contentLength = contentLength;
+    this.connection = connection;
+  }
+
+  @Override
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  public void writeTo(HttpResponse response) throws IOException {
+    try {
+      response.setStatus(200);
+      response.setContentType(contentType != null ? contentType : "application/json");
+      response.setContent(content, contentLength);
+    } finally {
+      connection.close();
+    }
+  }
+
+  @Override
+  public String render() {
+    try {
+      return IOUtils.toString(content, StandardCharsets.UTF_8.name());
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read the response of the device", e);
+    } finally {
+      IOUtils.closeQuietly(connection);
+    }
+  }
+}
@@ -13,8 +13,13 @@
  */
 package io.selendroid.standalone.server;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import io.selendroid.server.common.BaseRequestHandler;
 import io.selendroid.server.common.BaseServlet;
+import io.selendroid.server.common.BinaryResponse;
 import io.selendroid.server.common.Response;
 import io.selendroid.server.common.SelendroidResponse;
 import io.selendroid.server.common.UiResponse;
@@ -24,6 +29,7 @@ import io.selendroid.standalone.SelendroidConfiguration;
 import io.selendroid.standalone.server.handler.*;
 import io.selendroid.standalone.server.model.SelendroidStandaloneDriver;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
@@ -45,12 +51,15 @@ public class SelendroidServlet extends BaseServlet {
   protected void init() {
     register(postHandler, new CreateSessionHandler("/wd/hub/session"));
     register(getHandler, new ListSessionsHandler("/wd/hub/sessions"));
+    register(getHandler, new GetMetricsHandler("/wd/hub/selendroid/metrics"));
     register(getHandler, new GetCapabilities("/wd/hub/session/:sessionId"));
 
     register(getHandler, new GetLogTypes("/wd/hub/session/:sessionId/log/types"));
     register(postHandler, new GetLogs("/wd/hub/session/:sessionId/log"));
     if (!conf.isDeviceScreenshot()) {
       register(getHandler, new CaptureScreenshot("/wd/hub/session/:sessionId/screenshot"));
+      register(getHandler, new CaptureScreenshotBytes(
+          "/wd/hub/session/:sessionId/selendroid/screenshot"));
     } // otherwise the request will be automatically forwarded to the device
 
     register(getHandler, new InspectorTreeHandler("/inspector/session/:sessionId/tree"));
@@ -134,8 +143,55 @@ public class SelendroidServlet extends BaseServlet {
       replyWithServerError(response);
       return;
     }
+    if (result instanceof DeferredResponse) {
+      writeDeferredResponse(request, response, (DeferredResponse) result);
+    } else {
+      writeResponse(request, response, result);
+    }
+  }
+
+  private void writeDeferredResponse(final HttpRequest request, final HttpResponse response,
+      DeferredResponse result) {
+    final ListenableFuture<? extends Response> deferred = result.getResponse();
+    response.suspend();
+    response.onCancel(new Runnable() {
+      @Override
+      public void run() {
+        log.info("Client disconnected before the response was ready: " + request.uri());
+        deferred.cancel(false);
+      }
+    });
+    Futures.addCallback(deferred, new FutureCallback<Response>() {
+      @Override
+      public void onSuccess(Response ready) {
+        writeResponse(request, response, ready);
+      }
+
+      @Override
+      public void onFailure(Throwable e) {
+        if (deferred.isCancelled()) {
+          return;
+        }
+        log.log(Level.SEVERE, "Error handling request", e);
+        replyWithServerError(response);
+      }
+    });
+  }
+
+  private void writeResponse(HttpRequest request, HttpResponse response, Response result) {
     if (result instanceof SelendroidResponse) {
       handleResponse(request, response, (SelendroidResponse) result);
+    } else if (result instanceof BinaryResponse) {
+      handleBinaryResponse(response, (BinaryResponse) result);
+    } else if (result instanceof DeviceResponse) {
+      try {
+        ((DeviceResponse) result).writeTo(response);
+      } catch (IOException e) {
+        log.log(Level.SEVERE, "Error passing through the response of the device", e);
+        replyWithServerError(response);
+        return;
+      }
+      response.end();
     } else if (result instanceof JsResult) {
       JsResult js = (JsResult) result;
       response.setContentType("application/x-javascript");
@@ -21,6 +21,7 @@ import io.selendroid.standalone.exceptions.AndroidSdkException;
 import io.selendroid.standalone.server.grid.SelfRegisteringRemote;
 import io.selendroid.standalone.server.model.SelendroidStandaloneDriver;
 
+import java.io.IOException;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.logging.Level;
@@ -31,6 +32,8 @@ public class SelendroidStandaloneServer {
   private HttpServer webServer;
   private SelendroidConfiguration config;
   private SelendroidStandaloneDriver driver = null;
+  private SelfRegisteringRemote selfRegisteringRemote = null;
+  private Timer registrationTimer = null;
 
   /**
    * for testing only
@@ -75,11 +78,12 @@ public class SelendroidStandaloneServer {
 
   private void selfRegisterInGrid() {
     config.setPort(webServer.getPort()); // Update configuration to include randomly assigned port
-    final SelfRegisteringRemote selfRegisteringRemote = new SelfRegisteringRemote(config, driver);
+    selfRegisteringRemote = new SelfRegisteringRemote(config, driver);
 
     if (config.getRegisterCycle() > 0) {
       log.info("Scheduling periodic task for self registration in GRID.");
-      new Timer().schedule(new TimerTask() {
+      registrationTimer = new Timer("selendroid-grid-registration");
+      registrationTimer.schedule(new TimerTask() {
         @Override
         public void run() {
           selfRegisteringRemote.performRegistrationIfNotRegistered();
@@ -96,6 +100,16 @@ public class SelendroidStandaloneServer {
 
   public void stop() {
     log.info("Stopping selendroid-standalone server");
+    if (registrationTimer != null) {
+      registrationTimer.cancel();
+    }
+    if (selfRegisteringRemote != null) {
+      try {
+        selfRegisteringRemote.close();
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Error closing the grid hub connection.", e);
+      }
+    }
     driver.quitSelendroid();
     webServer.stop();
   }
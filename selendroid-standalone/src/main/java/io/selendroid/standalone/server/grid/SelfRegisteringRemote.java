@@ -17,12 +17,15 @@ import com.google.gson.Gson;
 import io.selendroid.common.SelendroidCapabilities;
 import io.selendroid.server.common.exceptions.SelendroidException;
 import io.selendroid.standalone.SelendroidConfiguration;
+import io.selendroid.standalone.server.model.DeviceHints;
 import io.selendroid.standalone.server.model.SelendroidStandaloneDriver;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.message.BasicHttpRequest;
 import org.apache.http.util.EntityUtils;
@@ -31,6 +34,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.openqa.selenium.remote.CapabilityType;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -40,25 +44,47 @@ import java.util.logging.Logger;
 import static io.selendroid.standalone.server.model.SelendroidStandaloneDriver.APP_BASE_PACKAGE;
 import static io.selendroid.standalone.server.model.SelendroidStandaloneDriver.APP_ID;
 
-public class SelfRegisteringRemote {
+/**
+ * Registers the standalone server as a node at a Selenium Grid hub.
+ *
+ * The registration document is built once per inventory version of the driver and reused until
+ * an app or a device is added or removed. The periodic registration cycle only posts it again
+ * when the hub no longer knows the node, or when that version changed and no session is running:
+ * the hub releases all slots of a node that registers again, which would abort running tests.
+ * Otherwise it just asks the hub whether the node is still registered, over a connection that is
+ * kept alive between cycles.
+ */
+public class SelfRegisteringRemote implements Closeable {
   private static final Logger log = Logger.getLogger(SelfRegisteringRemote.class.getName());
   public static final String ANDROIDDRIVER_APP = "io.selendroid.androiddriver";
+  private static final long NOT_REGISTERED = -1;
   private SelendroidConfiguration config;
   private SelendroidStandaloneDriver driver;
   private boolean isFirstTime = true;
   private final URL hub;
+  private final HttpHost hubHost;
+  private final Gson gson = new Gson();
+  private CloseableHttpClient httpClient;
+  private String nodeConfig;
+  private long nodeConfigVersion = NOT_REGISTERED;
+  private long registeredVersion = NOT_REGISTERED;
 
   public SelfRegisteringRemote(SelendroidConfiguration config, SelendroidStandaloneDriver driver) {
     this.config = config;
     this.driver = driver;
     this.hub = getGridHubUrl(config.getRegistrationUrl());
+    this.hubHost = new HttpHost(hub.getHost(), hub.getPort(), hub.getProtocol());
   }
 
-  public void performRegistrationIfNotRegistered() {
+  public synchronized void performRegistrationIfNotRegistered() {
     try {
       if (isFirstTime) {
         performRegistration();
         isFirstTime = false;
+      } else if (registeredVersion != driver.getInventoryVersion()
+          && driver.getActiveSessions().isEmpty()) {
+        log.info("Apps or devices changed, updating the registration at the grid hub.");
+        performRegistration();
       } else if (!isRegistered()) {
         performRegistration();
       }
@@ -67,8 +93,9 @@ public class SelfRegisteringRemote {
     }
   }
 
-  public void performRegistration() throws Exception {
-    String nodeConfigString = getNodeConfig().toString();
+  public synchronized void performRegistration() throws Exception {
+    long version = driver.getInventoryVersion();
+    String nodeConfigString = getNodeConfig(version);
     log.info("Registering Selendroid node with following config:\n" + nodeConfigString + "\n" +
             "at Selenium Grid hub: " + hub.toExternalForm());
 
@@ -76,35 +103,62 @@ public class SelfRegisteringRemote {
             hub.toExternalForm());
     request.setEntity(new StringEntity(nodeConfigString));
 
-    HttpResponse response = getHttpClient().execute(getHttpHost(), request);
-
-    if (response.getStatusLine().getStatusCode() != 200) {
-      throw new SelendroidException("Error sending the registration request. Response from server: " +
-              response.getStatusLine().toString());
+    HttpResponse response = getHttpClient().execute(hubHost, request);
+    try {
+      if (response.getStatusLine().getStatusCode() != 200) {
+        throw new SelendroidException("Error sending the registration request. Response from server: " +
+                response.getStatusLine().toString());
+      }
+    } finally {
+      EntityUtils.consumeQuietly(response.getEntity());
     }
+    registeredVersion = version;
   }
 
   // for testing purpose
-  protected HttpClient getHttpClient() {
-    return HttpClientBuilder.create().build();
+  protected synchronized HttpClient getHttpClient() {
+    if (httpClient == null) {
+      PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+      connectionManager.setDefaultMaxPerRoute(1);
+      httpClient = HttpClientBuilder.create().setConnectionManager(connectionManager).build();
+    }
+    return httpClient;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (httpClient != null) {
+      httpClient.close();
+      httpClient = null;
+    }
   }
 
   /**
-   * Get the node configuration and capabilities for Grid registration
+   * Get the node configuration and capabilities for Grid registration. The document is only
+   * rebuilt when the inventory version of the driver changed since it was built last.
    *
    * @return The configuration
    */
-  private JSONObject getNodeConfig() {
+  private String getNodeConfig(long version) {
+    if (nodeConfig == null || nodeConfigVersion != version) {
+      nodeConfig = buildNodeConfig().toString();
+      nodeConfigVersion = version;
+    }
+    return nodeConfig;
+  }
+
+  private JSONObject buildNodeConfig() {
     JSONObject res = new JSONObject();
     try {
+      JSONArray devices = driver.getSupportedDevices();
       res.put("class", "org.openqa.grid.common.RegistrationRequest");
-      res.put("configuration", getConfiguration());
+      res.put("configuration", getConfiguration(devices.length()));
       JSONArray caps = new JSONArray();
-      JSONArray devices = driver.getSupportedDevices();
+      JSONArray apps = devices.length() > 0 ? driver.getSupportedApps() : new JSONArray();
       for (int i = 0; i < devices.length(); i++) {
         JSONObject device = (JSONObject) devices.get(i);
-        for (int x = 0; x < driver.getSupportedApps().length(); x++) {
-          caps.put(getDeviceConfig(device, driver.getSupportedApps().getJSONObject(x)));
+        for (int x = 0; x < apps.length(); x++) {
+          caps.put(getDeviceConfig(device, apps.getJSONObject(x)));
         }
       }
       res.put("capabilities", caps);
@@ -116,6 +170,8 @@ public class SelfRegisteringRemote {
 
   private JSONObject getDeviceConfig(final JSONObject device, final JSONObject supportedApp) throws JSONException {
     JSONObject capa = new JSONObject(device, JSONObject.getNames(device));
+    // the hints change with every session, the hub reads them from the status of the node instead
+    capa.remove(DeviceHints.KEY);
     // For each device, register as "android" for WebView tests and also selendroid if an aut is specified
     if (ANDROIDDRIVER_APP.equals(supportedApp.get(APP_BASE_PACKAGE))) {
       //it's possible the user does not want to register the device as capable to recieve webview tests
@@ -139,7 +195,7 @@ public class SelfRegisteringRemote {
    * @return The configuration
    * @throws JSONException On JSON errors.
    */
-  private JSONObject getConfiguration() throws JSONException {
+  private JSONObject getConfiguration(int deviceCount) throws JSONException {
     JSONObject configuration = new JSONObject();
 
     configuration.put("port", config.getPort());
@@ -153,7 +209,7 @@ public class SelfRegisteringRemote {
     configuration.put("role", "node");
     configuration.put("registerCycle", config.getRegisterCycle());
     if (config.getMaxSession() == 0) {
-      configuration.put("maxSession", driver.getSupportedDevices().length());
+      configuration.put("maxSession", deviceCount);
     } else {
       configuration.put("maxSession", config.getMaxSession());
     }
@@ -179,24 +235,21 @@ public class SelfRegisteringRemote {
   protected boolean isRegistered() {
     try {
       URL hubProxyApiUrl = new URL(hub.getProtocol(), hub.getHost(), hub.getPort(), "/grid/api/proxy");
-      HttpResponse response = getHttpClient().execute(getHttpHost(), new BasicHttpRequest("GET",
+      HttpResponse response = getHttpClient().execute(hubHost, new BasicHttpRequest("GET",
               hubProxyApiUrl.toExternalForm() + "?id=http://" + config.getServerHost() + ":" + config.getPort()));
 
       if (response.getStatusLine().getStatusCode() != 200) {
+        EntityUtils.consumeQuietly(response.getEntity());
         throw new RuntimeException("Hub is down or not responding. Response was: " + response.getStatusLine().toString());
       }
 
-      GridResponse gridResponse = new Gson().fromJson(EntityUtils.toString(response.getEntity()), GridResponse.class);
+      GridResponse gridResponse = gson.fromJson(EntityUtils.toString(response.getEntity()), GridResponse.class);
       return gridResponse.success;
     } catch (IOException e) {
       throw new SelendroidException("Hub is down or not responding.", e);
     }
   }
 
-  private HttpHost getHttpHost() {
-    return new HttpHost(hub.getHost(), hub.getPort(), hub.getProtocol());
-  }
-
   private URL getGridHubUrl(String connectionString) {
       try {
         return new URL(connectionString);
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.handler;
+
+import io.selendroid.server.common.BinaryResponse;
+import io.selendroid.server.common.Response;
+import io.selendroid.server.common.SelendroidResponse;
+import io.selendroid.server.common.StatusCode;
+import io.selendroid.server.common.http.HttpRequest;
+import io.selendroid.standalone.exceptions.AndroidDeviceException;
+import io.selendroid.standalone.server.BaseSelendroidStandaloneHandler;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Returns the screenshot taken with adb as raw PNG bytes. Screenshots taken with adb are always
+ * PNG, the {@code format} query parameter the device supports is ignored.
+ */
+public class CaptureScreenshotBytes extends BaseSelendroidStandaloneHandler {
+  private static final Logger log = Logger.getLogger(CaptureScreenshotBytes.class.getName());
+
+  public CaptureScreenshotBytes(String mappedUri) {
+    super(mappedUri);
+  }
+
+  @Override
+  public Response handleRequest(HttpRequest request, JSONObject payload) throws JSONException {
+    try {
+      return new BinaryResponse(getSessionId(request), "image/png",
+          getSelendroidDriver(request).takeScreenshot(getSessionId(request)));
+    } catch (AndroidDeviceException e) {
+      log.log(Level.SEVERE, "Cannot take screenshot", e);
+      return new SelendroidResponse(getSessionId(request), StatusCode.UNKNOWN_ERROR, e);
+    }
+  }
+}
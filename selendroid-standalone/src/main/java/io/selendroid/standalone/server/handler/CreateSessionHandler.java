@@ -16,7 +16,15 @@ package io.selendroid.standalone.server.handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
 import io.selendroid.standalone.server.BaseSelendroidStandaloneHandler;
+import io.selendroid.standalone.server.DeferredResponse;
+import io.selendroid.standalone.server.model.SelendroidStandaloneDriver;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -36,14 +44,41 @@ public class CreateSessionHandler extends BaseSelendroidStandaloneHandler {
   @Override
   public Response handleRequest(HttpRequest request, JSONObject payload) throws JSONException {
     JSONObject desiredCapabilities = payload.getJSONObject("desiredCapabilities");
-    try {
-      String sessionID = getSelendroidDriver(request).createNewTestSession(desiredCapabilities);
-      SelendroidCapabilities caps = getSelendroidDriver(request).getSessionCapabilities(sessionID);
-
-      return new SelendroidResponse(sessionID, new JSONObject(caps.asMap()));
-    } catch (Exception e) {
-      log.log(Level.SEVERE, "Error while creating new session", e);
-      return new SelendroidResponse("", StatusCode.SESSION_NOT_CREATED_EXCEPTION, e);
-    }
+    final SelendroidStandaloneDriver driver = getSelendroidDriver(request);
+    // answered once a device is free and the session has been started on it
+    final SettableFuture<Response> response = SettableFuture.create();
+    final ListenableFuture<String> session = driver.queueNewTestSession(desiredCapabilities);
+    // the response is cancelled if the client disconnects, the request is then taken off the queue
+    response.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (response.isCancelled()) {
+          session.cancel(false);
+        }
+      }
+    }, MoreExecutors.sameThreadExecutor());
+    Futures.addCallback(session,
+        new FutureCallback<String>() {
+          @Override
+          public void onSuccess(String sessionID) {
+            try {
+              SelendroidCapabilities caps = driver.getSessionCapabilities(sessionID);
+              response.set(new SelendroidResponse(sessionID, new JSONObject(caps.asMap())));
+            } catch (Exception e) {
+              onFailure(e);
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable e) {
+            log.log(Level.SEVERE, "Error while creating new session", e);
+            try {
+              response.set(new SelendroidResponse("", StatusCode.SESSION_NOT_CREATED_EXCEPTION, e));
+            } catch (JSONException jsonError) {
+              response.setException(jsonError);
+            }
+          }
+        });
+    return new DeferredResponse(response);
   }
 }
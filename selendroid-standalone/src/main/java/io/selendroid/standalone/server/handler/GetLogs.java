@@ -13,17 +13,31 @@
  */
 package io.selendroid.standalone.server.handler;
 
+import io.selendroid.standalone.android.LogcatEntry;
+import io.selendroid.standalone.android.LogcatFilter;
 import io.selendroid.standalone.server.BaseSelendroidStandaloneHandler;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.openqa.selenium.logging.LogEntry;
 
 import io.selendroid.server.common.Response;
 import io.selendroid.server.common.SelendroidResponse;
 import io.selendroid.server.common.http.HttpRequest;
 import io.selendroid.standalone.server.model.ActiveSession;
 
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Returns the device log entries that have not been returned yet for this session. The payload
+ * may contain these optional parameters:
+ * <ul>
+ * <li>{@code since}: sequence number to read from instead of the session's cursor</li>
+ * <li>{@code level}: minimum level, e.g. {@code WARNING}</li>
+ * <li>{@code tag}: logcat tag the entries must have</li>
+ * <li>{@code from} and {@code to}: device time range in milliseconds since the epoch</li>
+ * </ul>
+ */
 public class GetLogs extends BaseSelendroidStandaloneHandler {
 
   public GetLogs(String mappedUri) {
@@ -33,9 +47,23 @@ public class GetLogs extends BaseSelendroidStandaloneHandler {
   @Override
   public Response handleRequest(HttpRequest request, JSONObject payload) throws JSONException {
     ActiveSession session = getActiveSession(request);
+    long since = payload.optLong("since", session.getLogcatCursor());
+    LogcatFilter filter = new LogcatFilter().since(since)
+        .between(payload.optLong("from", 0), payload.optLong("to", Long.MAX_VALUE));
+    if (payload.has("level")) {
+      filter.minimumLevel(Level.parse(payload.getString("level")));
+    }
+    if (payload.has("tag")) {
+      filter.tag(payload.getString("tag"));
+    }
+
+    List<LogcatEntry> entries = session.getDevice().getLogcat(filter);
     JSONArray logs = new JSONArray();
-    for (LogEntry l : session.getDevice().getLogs()) {
-      logs.put(l.toString());
+    for (LogcatEntry entry : entries) {
+      logs.put(entry.toLogEntry().toString());
+    }
+    if (!entries.isEmpty()) {
+      session.setLogcatCursor(entries.get(entries.size() - 1).getSequence() + 1);
     }
     return new SelendroidResponse(getSessionId(request), logs);
   }
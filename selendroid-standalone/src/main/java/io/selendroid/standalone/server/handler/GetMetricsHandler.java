@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.handler;
+
+import io.selendroid.server.common.Response;
+import io.selendroid.server.common.SelendroidResponse;
+import io.selendroid.server.common.http.HttpRequest;
+import io.selendroid.standalone.io.ReadinessProbe;
+import io.selendroid.standalone.server.BaseSelendroidStandaloneHandler;
+import io.selendroid.standalone.server.model.SelendroidStandaloneDriver;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Returns the timings collected by the standalone server, e.g. of each session startup stage, and
+ * the observed wait times of the readiness probes, the active session timers and the session
+ * queue.
+ */
+public class GetMetricsHandler extends BaseSelendroidStandaloneHandler {
+  public GetMetricsHandler(String mappedUri) {
+    super(mappedUri);
+  }
+
+  @Override
+  public Response handleRequest(HttpRequest request, JSONObject payload) throws JSONException {
+    SelendroidStandaloneDriver driver = getSelendroidDriver(request);
+    JSONObject metrics = driver.getMetrics().toJson();
+    metrics.put("sessionTimers", driver.getSessionTimeoutScheduler().toJson());
+    metrics.put("readiness", ReadinessProbe.getStatistics().toJson());
+    if (driver.getSessionQueue() != null) {
+      metrics.put("sessionQueue", driver.getSessionQueue().toJson());
+    }
+    return new SelendroidResponse(null, metrics);
+  }
+}
@@ -13,11 +13,8 @@
  */
 package io.selendroid.standalone.server.handler;
 
-import com.google.common.base.Function;
 import com.google.common.base.Joiner;
-import com.google.common.base.Strings;
 
-import io.netty.handler.codec.http.HttpMethod;
 import io.selendroid.server.common.Response;
 import io.selendroid.server.common.SelendroidResponse;
 import io.selendroid.server.common.StatusCode;
@@ -27,25 +24,22 @@ import io.selendroid.server.common.http.HttpRequest;
 import io.selendroid.standalone.android.AndroidDevice;
 import io.selendroid.standalone.android.InstrumentationProcessOutput;
 import io.selendroid.standalone.server.BaseSelendroidStandaloneHandler;
+import io.selendroid.standalone.server.DeviceResponse;
 import io.selendroid.standalone.server.model.ActiveSession;
-import io.selendroid.standalone.server.util.HttpClientUtil;
+import io.selendroid.standalone.server.util.DeviceProxyClient;
 
-import org.apache.http.HttpResponse;
 import org.apache.http.NoHttpResponseException;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.openqa.selenium.TimeoutException;
-import org.openqa.selenium.logging.LogEntry;
-import org.openqa.selenium.support.ui.FluentWait;
-import org.openqa.selenium.support.ui.Wait;
 
+import java.io.IOException;
 import java.net.SocketException;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Proxies the request as-is to the device.
+ * Proxies the request as-is to the device. The response of the device is passed through to the
+ * client without being parsed, unless the standalone has to answer the request itself.
  */
 public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
   private static final Logger log = Logger.getLogger(ProxyToDeviceHandler.class.getName());
@@ -82,52 +76,14 @@ public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
                   "This happens if a hardware device was disconnected but a " +
                   "test session was still active on the device."));
     }
-    String url = "http://localhost:" + session.getSelendroidServerPort() + request.uri();
-
-    String method = request.method();
-
     final AndroidDevice device = session.getDevice();
+    DeviceProxyClient proxyClient = getSelendroidDriver(request).getDeviceProxyClient();
 
-    try {
-      Wait<AndroidDevice> wait =
-        new FluentWait<AndroidDevice>(device)
-          .withTimeout(PROXY_REQUEST_ATTEMPT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-          .pollingEvery(PROXY_REQUEST_ATTEMPT_INTERVAL_MS, TimeUnit.MILLISECONDS);
-      return wait.until(new Function<AndroidDevice, Response>() {
-        @Override
-        public Response apply(AndroidDevice device) {
-          try {
-            // Check if the instrumentation process died in the middle of the request
-            if (session.instrumentationProcessFinished()) {
-              return respondWithInstrumentationProcessFinished(
-                sessionId,
-                session.getInstrumentationProcessOutput(),
-                session.getInstrumentationProcessError(),
-                device);
-            }
-
-            JSONObject response = proxyRequestToDevice(request, session, url, method);
-            if (response == null) { // Unknown command
-              return new SelendroidResponse(sessionId, StatusCode.UNKNOWN_COMMAND);
-            }
-
-            Object value = response.opt("value");
-            int statusCode = response.getInt("status");
-            log.fine(
-              String.format(
-                "Response from selendroid-server, status %d:\n%s",
-                statusCode,
-                value));
-
-            return new SelendroidResponse(sessionId, StatusCode.fromInteger(statusCode), value);
-          } catch (Exception e) {
-            log.log(Level.SEVERE, "Failed to proxy request to Selendroid Server, retrying.", e);
-            return null;
-          }
-        }
-      });
-    } catch (TimeoutException e) {
-      // Check if we timed out because of the instrumentation process dying
+    // Only failures to reach the device are retried, e.g. while the port forwarding is being
+    // re-established or a pooled connection was closed by the device.
+    long deadline = System.currentTimeMillis() + PROXY_REQUEST_ATTEMPT_TIMEOUT_MS;
+    while (true) {
+      // Check if the instrumentation process died in the middle of the request
       if (session.instrumentationProcessFinished()) {
         return respondWithInstrumentationProcessFinished(
           sessionId,
@@ -136,11 +92,64 @@ public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
           device);
       }
 
-      // Last resort, we really don't know what happened
-      return respondWithFailure(
+      try {
+        DeviceResponse response = proxyClient.forward(session.getSelendroidServerPort(),
+            sessionId, request.method(), request.uri(), request.body());
+        if (response == null) { // Unknown command
+          return new SelendroidResponse(sessionId, StatusCode.UNKNOWN_COMMAND);
+        }
+        return response;
+      } catch (SocketException e) {
+        if (!awaitRetry(deadline, e)) {
+          break;
+        }
+      } catch (NoHttpResponseException e) {
+        if (!awaitRetry(deadline, e)) {
+          break;
+        }
+      } catch (IOException e) {
+        log.log(Level.SEVERE, "Failed to proxy request to Selendroid Server.", e);
+        if (session.instrumentationProcessFinished()) {
+          continue;
+        }
+        return respondWithFailure(sessionId,
+            new SelendroidException("Failed to proxy request to the selendroid server", e));
+      }
+    }
+
+    // Check if we gave up because of the instrumentation process dying
+    if (session.instrumentationProcessFinished()) {
+      return respondWithInstrumentationProcessFinished(
         sessionId,
-        new SelendroidException("Selendroid server on the device became unreachable"));
+        session.getInstrumentationProcessOutput(),
+        session.getInstrumentationProcessError(),
+        device);
     }
+
+    // Last resort, we really don't know what happened
+    return respondWithFailure(
+      sessionId,
+      new SelendroidException("Selendroid server on the device became unreachable"));
+  }
+
+  /**
+   * Waits before the request is sent again, after the device dropped the connection.
+   *
+   * @return false if the request should not be retried anymore.
+   */
+  private boolean awaitRetry(long deadline, IOException e) {
+    if (System.currentTimeMillis() >= deadline) {
+      log.log(Level.SEVERE, "Failed to proxy request to Selendroid Server.", e);
+      return false;
+    }
+    log.log(Level.WARNING, "Failed to proxy request to Selendroid Server, retrying.", e);
+    try {
+      Thread.sleep(PROXY_REQUEST_ATTEMPT_INTERVAL_MS);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
   }
 
   private SelendroidResponse respondWithInstrumentationProcessFinished(
@@ -172,27 +181,4 @@ public class ProxyToDeviceHandler extends BaseSelendroidStandaloneHandler {
   private SelendroidResponse respondWithFailure(String sessionId, Exception e) throws JSONException {
     return new SelendroidResponse(sessionId, StatusCode.UNKNOWN_ERROR, e);
   }
-
-  private JSONObject proxyRequestToDevice(HttpRequest request, ActiveSession session, String url, String method)
-      throws Exception {
-    HttpResponse r;
-    if ("get".equalsIgnoreCase(method)) {
-      log.fine("Proxy GET to the device: " + url);
-      r = HttpClientUtil.executeRequest(url, HttpMethod.GET);
-    } else if ("post".equalsIgnoreCase(method)) {
-      JSONObject payload = getPayload(request);
-      log.fine("Proxy POST to the device: " + url + ", payload:\n" + payload);
-      r = HttpClientUtil.executeRequestWithPayload(
-          url, session.getSelendroidServerPort(), HttpMethod.POST, payload.toString());
-    } else if ("delete".equalsIgnoreCase(method)) {
-      log.fine("Proxy DELETE to the device: " + url);
-      r = HttpClientUtil.executeRequest(url, HttpMethod.DELETE);
-    } else {
-      throw new SelendroidException("HTTP method not supported: " + method);
-    }
-    if (r.getStatusLine().getStatusCode() == 404) { // Unknown command
-      return null;
-    }
-    return HttpClientUtil.parseJsonResponse(r);
-  }
 }
@@ -18,7 +18,6 @@ import io.selendroid.standalone.android.AndroidApp;
 import io.selendroid.standalone.android.AndroidDevice;
 import io.selendroid.standalone.android.InstrumentationProcessListener;
 
-import java.util.Timer;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ActiveSession {
@@ -28,11 +27,12 @@ public class ActiveSession {
   private SelendroidCapabilities desiredCapabilities;
   private final int selendroidServerPort;
   private boolean invalid = false;
-  private final Timer stopSessionTimer = new Timer(true);
+  private final SessionTimeoutScheduler.SessionTimer timer;
 
   private AtomicBoolean instrumentationProcessFinished = new AtomicBoolean(false);
   private Exception instrumentationProcessError;
   private String instrumentationProcessOutput;
+  private volatile long logcatCursor = 0;
 
   ActiveSession(String sessionId, SelendroidCapabilities desiredCapabilities, AndroidApp aut,
       AndroidDevice device, int selendroidPort, SelendroidStandaloneDriver driver) {
@@ -41,8 +41,9 @@ public class ActiveSession {
     this.aut = aut;
     this.device = device;
     this.desiredCapabilities = desiredCapabilities;
-    stopSessionTimer.schedule(new SessionTimeoutTask(driver, sessionId), driver
-        .getSelendroidConfiguration().getSessionTimeoutMillis());
+    this.timer = driver.getSessionTimeoutScheduler().schedule(sessionId,
+        driver.getSelendroidConfiguration().getSessionTimeoutMillis(),
+        driver.getSelendroidConfiguration().getSessionIdleTimeoutMillis());
     this.device.addInstrumentationProcessListener(
       new InstrumentationProcessListener() {
         @Override
@@ -114,8 +115,26 @@ public class ActiveSession {
     this.invalid = true;
   }
 
+  /**
+   * Records that a command was sent to the session, which restarts its idle timeout.
+   */
+  public void touch() {
+    timer.touch();
+  }
+
   public void stopSessionTimer() {
-    stopSessionTimer.cancel();
+    timer.cancel();
+  }
+
+  /**
+   * @return the sequence number of the first device log entry not yet returned to the client.
+   */
+  public long getLogcatCursor() {
+    return logcatCursor;
+  }
+
+  public void setLogcatCursor(long logcatCursor) {
+    this.logcatCursor = logcatCursor;
   }
 
   public boolean instrumentationProcessFinished() {
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import io.selendroid.standalone.android.AndroidDevice;
+import io.selendroid.standalone.android.AndroidEmulator;
+import io.selendroid.standalone.exceptions.AndroidDeviceException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Scheduling hints about the devices of the store, published with the supported devices so that
+ * a grid hub can prefer devices a session starts fast on: whether the device is running, which
+ * apps under test recent sessions installed on it (together with their selendroid-server) and
+ * how long starting those sessions took.
+ *
+ * The hints are best effort. They are only updated from the session life cycle, so an app that
+ * was uninstalled by hand is still reported as installed until the device is reset.
+ */
+public class DeviceHints {
+  public static final String KEY = "slotHints";
+  public static final String WARM = "warm";
+  public static final String INSTALLED_APPS = "installedApps";
+  public static final String RECENT_SESSION_START_MILLIS = "recentSessionStartMillis";
+
+  private final ConcurrentMap<String, Hint> hints = new ConcurrentHashMap<String, Hint>();
+
+  /**
+   * Records that a session for the given app has been started on the device.
+   */
+  public void onSessionStarted(AndroidDevice device, String appId, long startMillis) {
+    String key = keyOf(device);
+    if (key == null) {
+      return;
+    }
+    Hint hint = hints.get(key);
+    if (hint == null) {
+      Hint newHint = new Hint();
+      hint = hints.putIfAbsent(key, newHint);
+      if (hint == null) {
+        hint = newHint;
+      }
+    }
+    if (appId != null) {
+      hint.installedApps.add(appId);
+    }
+    hint.recordSessionStart(startMillis);
+  }
+
+  /**
+   * Forgets the apps installed on the device, e.g. because it has been reset to a snapshot.
+   */
+  public void onDeviceReset(AndroidDevice device) {
+    String key = keyOf(device);
+    Hint hint = key == null ? null : hints.get(key);
+    if (hint != null) {
+      hint.installedApps.clear();
+    }
+  }
+
+  /**
+   * Forgets the given app on all devices, because a new build of it has been added.
+   */
+  public void onAppReplaced(String appId) {
+    for (Hint hint : hints.values()) {
+      hint.installedApps.remove(appId);
+    }
+  }
+
+  /**
+   * @return whether a session installed the given app on the device since it has last been
+   *         replaced or the device has been reset.
+   */
+  public boolean isInstalled(AndroidDevice device, String appId) {
+    String key = keyOf(device);
+    Hint hint = key == null ? null : hints.get(key);
+    return hint != null && hint.installedApps.contains(appId);
+  }
+
+  public void forget(AndroidDevice device) {
+    String key = keyOf(device);
+    if (key != null) {
+      hints.remove(key);
+    }
+  }
+
+  public JSONObject toJson(AndroidDevice device) throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put(WARM, isWarm(device));
+    String key = keyOf(device);
+    Hint hint = key == null ? null : hints.get(key);
+    json.put(INSTALLED_APPS, hint == null ? new JSONArray() : new JSONArray(hint.installedApps));
+    json.put(RECENT_SESSION_START_MILLIS, hint == null ? 0 : hint.recentSessionStartMillis);
+    return json;
+  }
+
+  private static boolean isWarm(AndroidDevice device) {
+    if (!(device instanceof AndroidEmulator)) {
+      return true;
+    }
+    try {
+      return ((AndroidEmulator) device).isEmulatorStarted();
+    } catch (AndroidDeviceException e) {
+      return false;
+    }
+  }
+
+  /**
+   * The serial of an emulator changes whenever it is started, so emulators are identified by the
+   * name of their AVD.
+   */
+  private static String keyOf(AndroidDevice device) {
+    if (device instanceof AndroidEmulator) {
+      return ((AndroidEmulator) device).getAvdName();
+    }
+    return device.getSerial();
+  }
+
+  private static class Hint {
+    private final Set<String> installedApps =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile long recentSessionStartMillis = 0;
+
+    synchronized void recordSessionStart(long startMillis) {
+      // smoothed, so that a single outlier does not move a device to the end of the line
+      recentSessionStartMillis = recentSessionStartMillis == 0
+          ? startMillis : (recentSessionStartMillis + startMillis) / 2;
+    }
+  }
+}
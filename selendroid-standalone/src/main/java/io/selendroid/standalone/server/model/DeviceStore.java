@@ -13,13 +13,8 @@
  */
 package io.selendroid.standalone.server.model;
 
-import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
-import com.google.common.base.Predicates;
 import com.google.common.base.Strings;
-import com.google.common.collect.FluentIterable;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
 import io.selendroid.common.SelendroidCapabilities;
@@ -41,22 +36,53 @@ import io.selendroid.standalone.server.model.impl.DefaultPortFinder;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Keeps track of the available devices and which of them are in use.
+ *
+ * Devices are indexed by target platform and serial. All state is guarded by a single lock that
+ * is only held for in-memory bookkeeping; everything that may talk to a device or touch the file
+ * system (readiness checks, emulator state, killing apps, stopping emulators) happens outside of
+ * it. If no device is free, callers can wait for one in FIFO order up to the configured
+ * {@link #setDeviceWaitTimeout(long) wait timeout}, or {@link #tryClaim(SelendroidCapabilities)
+ * claim} one without waiting and be notified when a device becomes free.
+ */
 public class DeviceStore {
   private static final Logger log = Logger.getLogger(DeviceStore.class.getName());
-  private List<AndroidDevice> devicesInUse = new ArrayList<AndroidDevice>();
-  private Map<DeviceTargetPlatform, List<AndroidDevice>> androidDevices =
+  private final ReentrantLock lock = new ReentrantLock();
+  // identity based: the hash code of a device depends on its IDevice, which an emulator only
+  // gets once it has been started
+  private final Set<AndroidDevice> devicesInUse =
+      Collections.newSetFromMap(new IdentityHashMap<AndroidDevice, Boolean>());
+  private final Map<DeviceTargetPlatform, List<AndroidDevice>> androidDevices =
       new HashMap<DeviceTargetPlatform, List<AndroidDevice>>();
+  private final Map<String, AndroidDevice> devicesBySerial = new HashMap<String, AndroidDevice>();
+  private final Deque<DeviceRequest> waitingRequests = new ArrayDeque<DeviceRequest>();
+  private final AtomicLong version = new AtomicLong();
+  private final DeviceHints hints = new DeviceHints();
   private EmulatorPortFinder androidEmulatorPortFinder = null;
-  private boolean clearData = true;
-  private boolean keepEmulator = false;
+  private volatile boolean clearData = true;
+  private volatile boolean keepEmulator = false;
+  private volatile long deviceWaitTimeout = 0;
+  private volatile EmulatorPool emulatorPool = null;
+  private volatile Runnable deviceAvailableListener = null;
   private AndroidEmulatorPowerStateListener emulatorPowerStateListener = null;
   private DeviceManager deviceManager = null;
 
@@ -84,27 +110,39 @@ public class DeviceStore {
    */
   public void release(AndroidDevice device, AndroidApp aut) {
     log.info("Releasing device " + device);
-    if (devicesInUse.contains(device)) {
+    lock.lock();
+    try {
+      if (!devicesInUse.contains(device)) {
+        return;
+      }
+    } finally {
+      lock.unlock();
+    }
 
-      if (aut != null) {
-        // stop the app anyway - better in case people do use snapshots
-        try {
-          device.kill(aut);
-        } catch (Exception e) {
-          log.log(Level.WARNING, "Failed to kill android application when releasing device", e);
-        }
+    if (aut != null) {
+      // stop the app anyway - better in case people do use snapshots
+      try {
+        device.kill(aut);
+      } catch (Exception e) {
+        log.log(Level.WARNING, "Failed to kill android application when releasing device", e);
+      }
 
-        if (clearData) {
-          try {
-            device.clearUserData(aut);
-          } catch (AndroidSdkException e) {
-            log.log(Level.WARNING, "Failed to clear user data of application", e);
-          }
+      if (clearData) {
+        try {
+          device.clearUserData(aut);
+        } catch (AndroidSdkException e) {
+          log.log(Level.WARNING, "Failed to clear user data of application", e);
         }
       }
+    }
 
-      if (device instanceof AndroidEmulator && !(aut instanceof InstalledAndroidApp) && !keepEmulator) {
-        AndroidEmulator emulator = (AndroidEmulator) device;
+    if (device instanceof AndroidEmulator && !(aut instanceof InstalledAndroidApp) && !keepEmulator) {
+      AndroidEmulator emulator = (AndroidEmulator) device;
+      EmulatorPool pool = emulatorPool;
+      if (pool != null && pool.reset(emulator)) {
+        hints.onDeviceReset(device);
+        log.info("Emulator has been reset and is kept running: " + emulator.getAvdName());
+      } else {
         try {
           emulator.stop();
         } catch (AndroidDeviceException e) {
@@ -112,7 +150,17 @@ public class DeviceStore {
         }
         androidEmulatorPortFinder.release(emulator.getPort());
       }
-      devicesInUse.remove(device);
+    }
+
+    boolean available;
+    lock.lock();
+    try {
+      available = devicesInUse.remove(device) && !handOver(device);
+    } finally {
+      lock.unlock();
+    }
+    if (available) {
+      notifyDeviceAvailable();
     }
   }
 
@@ -135,7 +183,7 @@ public class DeviceStore {
   }
 
 
-  public synchronized void addDevice(AndroidDevice androidDevice) throws AndroidDeviceException {
+  public void addDevice(AndroidDevice androidDevice) throws AndroidDeviceException {
     if (androidDevice == null) {
       log.info("No Android devices were found.");
       return;
@@ -150,18 +198,24 @@ public class DeviceStore {
     }
   }
 
-  public synchronized void updateDevice(AndroidDevice device) throws AndroidDeviceException {
-    boolean deviceRemoved = false;
-    for (DeviceTargetPlatform targetPlatform : androidDevices.keySet()) {
-      List<AndroidDevice> platformDevices = androidDevices.get(targetPlatform);
-      // Attempt to remove the device from this target platform;
-      deviceRemoved |= platformDevices.remove(device);
-    }
+  public void updateDevice(AndroidDevice device) throws AndroidDeviceException {
+    DeviceTargetPlatform targetPlatform = device.getTargetPlatform();
+    device.getScreenSize();
+    lock.lock();
+    try {
+      boolean deviceRemoved = false;
+      for (List<AndroidDevice> platformDevices : androidDevices.values()) {
+        // Attempt to remove the device from this target platform;
+        deviceRemoved |= platformDevices.remove(device);
+      }
 
-    if (deviceRemoved) {
-      addDeviceToStore(device);
-    } else {
-      log.warning("Attempted to update device which did could not be found in the device store");
+      if (deviceRemoved) {
+        index(device, targetPlatform);
+      } else {
+        log.warning("Attempted to update device which did could not be found in the device store");
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -183,76 +237,310 @@ public class DeviceStore {
    * @param device The device to add.
    * @throws AndroidDeviceException
    */
-  protected synchronized void addDeviceToStore(AndroidDevice device) throws AndroidDeviceException {
-    if (androidDevices.containsKey(device.getTargetPlatform())) {
-      List<AndroidDevice> platformDevices = androidDevices.get(device.getTargetPlatform());
-      if (!platformDevices.contains(device)) {
-        platformDevices.add(device);
-      }
-    } else {
-      androidDevices.put(device.getTargetPlatform(), Lists.newArrayList(device));
+  protected void addDeviceToStore(AndroidDevice device) throws AndroidDeviceException {
+    // hardware devices read these properties through adb, so they are read (and cached by the
+    // device) before the lock is taken; the screen size even takes a screenshot
+    DeviceTargetPlatform targetPlatform = device.getTargetPlatform();
+    device.getModel();
+    device.getSerial();
+    device.getScreenSize();
+
+    boolean available;
+    lock.lock();
+    try {
+      index(device, targetPlatform);
+      available = !devicesInUse.contains(device) && !handOver(device);
+    } finally {
+      lock.unlock();
+    }
+    if (available) {
+      notifyDeviceAvailable();
     }
   }
 
+  private void index(AndroidDevice device, DeviceTargetPlatform targetPlatform) {
+    List<AndroidDevice> platformDevices = androidDevices.get(targetPlatform);
+    if (platformDevices == null) {
+      androidDevices.put(targetPlatform, Lists.newArrayList(device));
+    } else if (!platformDevices.contains(device)) {
+      platformDevices.add(device);
+    }
+    String serial = device.getSerial();
+    if (serial != null) {
+      devicesBySerial.put(serial, device);
+    }
+    version.incrementAndGet();
+  }
+
   /**
    * Finds a device for the requested capabilities. <b>important note:</b> if the device is not any
    * longer used, call the {@link #release(AndroidDevice, AndroidApp)} method.
    *
+   * If all matching devices are in use, this waits for one of them to be released, up to the
+   * {@link #setDeviceWaitTimeout(long) device wait timeout}. Requests are served in the order they
+   * started waiting.
+   *
    * @param caps The desired test session capabilities.
    * @return Matching device for a test session.
    * @throws DeviceStoreException
    * @see {@link #release(AndroidDevice, AndroidApp)}
    */
-  public synchronized AndroidDevice findAndroidDevice(SelendroidCapabilities caps) throws DeviceStoreException {
+  public AndroidDevice findAndroidDevice(SelendroidCapabilities caps) throws DeviceStoreException {
+    return findAndroidDevice(caps, true);
+  }
 
+  /**
+   * Claims a free device for the capabilities like {@link #findAndroidDevice(SelendroidCapabilities)},
+   * but never waits for one to be released.
+   *
+   * @return the claimed device, or <code>null</code> if all matching devices are in use.
+   * @throws DeviceStoreException if no device of the store matches the capabilities at all.
+   */
+  public AndroidDevice tryClaim(SelendroidCapabilities caps) throws DeviceStoreException {
+    return findAndroidDevice(caps, false);
+  }
+
+  private AndroidDevice findAndroidDevice(SelendroidCapabilities caps, boolean mayWait)
+      throws DeviceStoreException {
     Preconditions.checkArgument(caps != null, "Error: capabilities are null");
 
-    if (androidDevices.isEmpty()) {
-      throw new DeviceStoreException("Fatal Error: Device Store does not contain any Android Device.");
+    while (true) {
+      List<AndroidDevice> freeDevices;
+      DeviceRequest request = null;
+      lock.lock();
+      try {
+        if (androidDevices.isEmpty()) {
+          throw new DeviceStoreException("Fatal Error: Device Store does not contain any Android Device.");
+        }
+        freeDevices = findFreeDevices(caps);
+        if (freeDevices.isEmpty()) {
+          if (!anyDeviceMatches(caps)) {
+            throw noDevicesFound();
+          }
+          if (!mayWait) {
+            return null;
+          }
+          if (deviceWaitTimeout <= 0) {
+            throw noDevicesFound();
+          }
+          request = new DeviceRequest(caps);
+          waitingRequests.addLast(request);
+        }
+      } finally {
+        lock.unlock();
+      }
+
+      if (request != null) {
+        return onClaimed(awaitDevice(request));
+      }
+
+      // Whether an emulator is running is checked on the file system, so running devices are
+      // sorted first without holding the lock, then claimed if nobody else was faster.
+      List<AndroidDevice> candidates = new ArrayList<AndroidDevice>(freeDevices.size());
+      List<AndroidDevice> stoppedDevices = new ArrayList<AndroidDevice>();
+      for (AndroidDevice candidate : freeDevices) {
+        if (isRunning(candidate)) {
+          candidates.add(candidate);
+        } else {
+          stoppedDevices.add(candidate);
+        }
+      }
+      int runningDevices = candidates.size();
+      candidates.addAll(stoppedDevices);
+
+      AndroidDevice claimed = null;
+      lock.lock();
+      try {
+        for (int i = 0; i < candidates.size() && claimed == null; i++) {
+          AndroidDevice candidate = candidates.get(i);
+          if (isIndexed(candidate) && devicesInUse.add(candidate)) {
+            if (i >= runningDevices) {
+              log.info("Using potential match: " + candidate);
+            }
+            claimed = candidate;
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (claimed != null) {
+        return onClaimed(claimed);
+      }
+      // all candidates have been claimed concurrently, look again
     }
+  }
 
-    String platformVersion = caps.getPlatformVersion();
+  private AndroidDevice onClaimed(AndroidDevice device) {
+    EmulatorPool pool = emulatorPool;
+    if (pool != null) {
+      pool.recordDemand(device.getTargetPlatform());
+    }
+    return device;
+  }
 
-    Iterable<AndroidDevice> candidateDevices = Strings.isNullOrEmpty(platformVersion) ?
-        Iterables.concat(androidDevices.values()) : androidDevices.get(DeviceTargetPlatform.fromPlatformVersion(platformVersion));
+  /**
+   * Marks the given device as in use, e.g. while the {@link EmulatorPool} boots it.
+   *
+   * @return <code>false</code> if the device is in use already
+   */
+  /* package */boolean claim(AndroidDevice device) {
+    lock.lock();
+    try {
+      return isIndexed(device) && devicesInUse.add(device);
+    } finally {
+      lock.unlock();
+    }
+  }
 
-    candidateDevices = MoreObjects.firstNonNull(candidateDevices, Collections.EMPTY_LIST);
+  /**
+   * Makes a device {@link #claim(AndroidDevice) claimed} before available again, without any of
+   * the clean up {@link #release(AndroidDevice, AndroidApp)} does.
+   */
+  /* package */void unclaim(AndroidDevice device) {
+    boolean available;
+    lock.lock();
+    try {
+      available = devicesInUse.remove(device) && !handOver(device);
+    } finally {
+      lock.unlock();
+    }
+    if (available) {
+      notifyDeviceAvailable();
+    }
+  }
 
-    FluentIterable<AndroidDevice> allMatchingDevices = FluentIterable.from(candidateDevices)
-        .filter(deviceNotInUse())
-        .filter(deviceSatisfiesCapabilities(caps));
+  public boolean isInUse(AndroidDevice device) {
+    lock.lock();
+    try {
+      return devicesInUse.contains(device);
+    } finally {
+      lock.unlock();
+    }
+  }
 
-    if (!allMatchingDevices.isEmpty()) {
+  private AndroidDevice awaitDevice(DeviceRequest request) throws DeviceStoreException {
+    log.info("All matching devices are in use, waiting up to " + deviceWaitTimeout
+        + " ms for one to be released.");
+    boolean interrupted = false;
+    try {
+      request.assigned.await(deviceWaitTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      interrupted = true;
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    lock.lock();
+    try {
+      waitingRequests.remove(request);
+      if (request.device != null) {
+        // the device might have been handed over while timing out
+        return request.device;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (interrupted) {
+      throw new DeviceStoreException("Interrupted while waiting for a device.");
+    }
+    throw noDevicesFound();
+  }
 
-      AndroidDevice matchingDevice = allMatchingDevices.filter(deviceRunning()).first()
-          .or(allMatchingDevices.first()).get();
+  /**
+   * Hands a device that just became free over to the longest waiting request it matches. Must
+   * be called holding the lock.
+   *
+   * @return whether a waiting request took the device
+   */
+  private boolean handOver(AndroidDevice device) {
+    Iterator<DeviceRequest> requests = waitingRequests.iterator();
+    while (requests.hasNext()) {
+      DeviceRequest request = requests.next();
+      if (matchesPlatform(device, request.capabilities)
+          && satisfiesCapabilities(device, request.capabilities)) {
+        requests.remove();
+        devicesInUse.add(device);
+        request.device = device;
+        request.assigned.countDown();
+        return true;
+      }
+    }
+    return false;
+  }
 
-      if (!deviceRunning().apply(matchingDevice)) {
-        log.info("Using potential match: " + matchingDevice);
+  private List<AndroidDevice> findFreeDevices(SelendroidCapabilities caps) {
+    List<AndroidDevice> freeDevices = new ArrayList<AndroidDevice>();
+    for (AndroidDevice candidate : candidateDevices(caps)) {
+      if (!devicesInUse.contains(candidate) && satisfiesCapabilities(candidate, caps)) {
+        freeDevices.add(candidate);
       }
+    }
+    return freeDevices;
+  }
 
-      devicesInUse.add(matchingDevice);
-      return matchingDevice;
+  private boolean anyDeviceMatches(SelendroidCapabilities caps) {
+    for (AndroidDevice candidate : candidateDevices(caps)) {
+      if (satisfiesCapabilities(candidate, caps)) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-    } else {
-      throw new DeviceStoreException("No devices are found. "
-          + "This can happen if the devices are in use or no device screen "
-          + "matches the required capabilities.");
+  private Collection<AndroidDevice> candidateDevices(SelendroidCapabilities caps) {
+    String serial = caps.getSerial();
+    if (StringUtils.isNotBlank(serial)) {
+      AndroidDevice device = devicesBySerial.get(serial);
+      // the serial of an emulator changes when it is started, so a stale entry falls back to the
+      // platform index below
+      if (device != null && serial.equals(device.getSerial()) && matchesPlatform(device, caps)) {
+        return Lists.newArrayList(device);
+      }
+    }
+    String platformVersion = caps.getPlatformVersion();
+    if (Strings.isNullOrEmpty(platformVersion)) {
+      return getDevicesUnlocked();
     }
+    List<AndroidDevice> platformDevices =
+        androidDevices.get(DeviceTargetPlatform.fromPlatformVersion(platformVersion));
+    return platformDevices == null ? new ArrayList<AndroidDevice>() : platformDevices;
   }
 
-  private boolean isEmulatorSwitchedOff(AndroidDevice device) throws DeviceStoreException {
-    if (device instanceof AndroidEmulator) {
-      try {
-        return !((AndroidEmulator) device).isEmulatorStarted();
-      } catch (AndroidDeviceException e) {
-        throw new DeviceStoreException(e);
+  private boolean matchesPlatform(AndroidDevice device, SelendroidCapabilities caps) {
+    String platformVersion = caps.getPlatformVersion();
+    if (Strings.isNullOrEmpty(platformVersion)) {
+      return true;
+    }
+    List<AndroidDevice> platformDevices =
+        androidDevices.get(DeviceTargetPlatform.fromPlatformVersion(platformVersion));
+    return platformDevices != null && platformDevices.contains(device);
+  }
+
+  private boolean isIndexed(AndroidDevice device) {
+    for (List<AndroidDevice> platformDevices : androidDevices.values()) {
+      if (platformDevices.contains(device)) {
+        return true;
       }
     }
-    return true;
+    return false;
+  }
+
+  private DeviceStoreException noDevicesFound() {
+    return new DeviceStoreException("No devices are found. "
+        + "This can happen if the devices are in use or no device screen "
+        + "matches the required capabilities.");
   }
 
   public List<AndroidDevice> getDevices() {
+    lock.lock();
+    try {
+      return getDevicesUnlocked();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private List<AndroidDevice> getDevicesUnlocked() {
     List<AndroidDevice> devices = new ArrayList<AndroidDevice>();
     for (Map.Entry<DeviceTargetPlatform, List<AndroidDevice>> entry : androidDevices.entrySet()) {
       devices.addAll(entry.getValue());
@@ -263,7 +551,7 @@ public class DeviceStore {
   /**
    * For testing only
    */
-  /* package */List<AndroidDevice> getDevicesInUse() {
+  /* package */Set<AndroidDevice> getDevicesInUse() {
     return devicesInUse;
   }
 
@@ -274,6 +562,18 @@ public class DeviceStore {
     return androidDevices;
   }
 
+  /**
+   * For testing only
+   */
+  /* package */int getWaitingRequestCount() {
+    lock.lock();
+    try {
+      return waitingRequests.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
   /**
    * Removes the given device from store so that it cannot be any longer be used for testing. This
    * can happen if e.g. the hardware device gets unplugged from the computer.
@@ -291,24 +591,50 @@ public class DeviceStore {
     }
 
     release(device, null);
+    hints.forget(device);
     DeviceTargetPlatform apiLevel = device.getTargetPlatform();
-    if (androidDevices.containsKey(apiLevel)) {
-      log.info("Removing: " + device);
-      androidDevices.get(apiLevel).remove(device);
-      if (androidDevices.get(apiLevel).isEmpty()) {
-        androidDevices.remove(apiLevel);
+    lock.lock();
+    try {
+      // the device might have been handed over to a waiting request while being released
+      devicesInUse.remove(device);
+      if (device.getSerial() != null && devicesBySerial.get(device.getSerial()) == device) {
+        devicesBySerial.remove(device.getSerial());
       }
-    } else {
-      for (List<AndroidDevice> targetDevices : androidDevices.values()) {
-        if (targetDevices.contains(device)) {
-          log.warning("Device in devicestore");
+      version.incrementAndGet();
+      if (androidDevices.containsKey(apiLevel)) {
+        log.info("Removing: " + device);
+        androidDevices.get(apiLevel).remove(device);
+        if (androidDevices.get(apiLevel).isEmpty()) {
+          androidDevices.remove(apiLevel);
         }
+      } else {
+        for (List<AndroidDevice> targetDevices : androidDevices.values()) {
+          if (targetDevices.contains(device)) {
+            log.warning("Device in devicestore");
+          }
+        }
+        log.warning("The target platform version of the device is not found in device store.");
+        log.warning("The device was propably already removed.");
       }
-      log.warning("The target platform version of the device is not found in device store.");
-      log.warning("The device was propably already removed.");
+    } finally {
+      lock.unlock();
     }
   }
 
+  /**
+   * @return a number that changes whenever a device is added, updated or removed.
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * @return the scheduling hints published for the devices of this store.
+   */
+  public DeviceHints getHints() {
+    return hints;
+  }
+
   public void setClearData(boolean clearData) {
     this.clearData = clearData;
   }
@@ -317,41 +643,67 @@ public class DeviceStore {
     this.keepEmulator = keepEmulator;
   }
 
-  private Predicate<AndroidDevice> deviceNotInUse() {
-    return new Predicate<AndroidDevice>() {
-      @Override
-      public boolean apply(AndroidDevice candidate) {
-        return !devicesInUse.contains(candidate);
-      }
-    };
-  }
-
-  private Predicate<AndroidDevice> deviceSatisfiesCapabilities(final SelendroidCapabilities capabilities) {
-    return new Predicate<AndroidDevice>() {
-      @Override
-      public boolean apply(AndroidDevice candidate) {
-        ArrayList<Boolean> booleanExpressions = Lists.newArrayList(
-            candidate.screenSizeMatches(capabilities.getScreenSize()),
-            capabilities.getEmulator() == null ? true : capabilities.getEmulator() ?
-                candidate instanceof DefaultAndroidEmulator : candidate instanceof DefaultHardwareDevice,
-            StringUtils.isNotBlank(capabilities.getSerial()) ? capabilities.getSerial().equals(candidate.getSerial()) : true,
-            StringUtils.isNotBlank(capabilities.getModel()) ? candidate.getModel().contains(capabilities.getModel()) : true,
-            StringUtils.isNotBlank(capabilities.getAPITargetType()) ? candidate.getAPITargetType() != null
-                && candidate.getAPITargetType().contains(capabilities.getAPITargetType()) : true
-        );
-
-        return Iterables.all(booleanExpressions, Predicates.equalTo(true));
-      }
-    };
+  public void setEmulatorPool(EmulatorPool emulatorPool) {
+    this.emulatorPool = emulatorPool;
   }
 
-  private Predicate<AndroidDevice> deviceRunning() {
-    return new Predicate<AndroidDevice>() {
-      @Override
-      public boolean apply(AndroidDevice candidate) {
-        return !(candidate instanceof DefaultAndroidEmulator && !((DefaultAndroidEmulator) candidate).isEmulatorStarted());
-      }
-    };
+  /**
+   * @param listener notified, without any lock held, whenever a device may have become free for
+   *        {@link #tryClaim(SelendroidCapabilities)}: it has been added or released and no waiting
+   *        request took it over.
+   */
+  public void setDeviceAvailableListener(Runnable listener) {
+    this.deviceAvailableListener = listener;
+  }
+
+  private void notifyDeviceAvailable() {
+    Runnable listener = deviceAvailableListener;
+    if (listener != null) {
+      listener.run();
+    }
+  }
+
+  /**
+   * @param deviceWaitTimeout how long {@link #findAndroidDevice(SelendroidCapabilities)} waits
+   *        for a matching device to be released, in milliseconds. 0 fails right away.
+   */
+  public void setDeviceWaitTimeout(long deviceWaitTimeout) {
+    this.deviceWaitTimeout = deviceWaitTimeout;
+  }
+
+  private boolean satisfiesCapabilities(AndroidDevice candidate, SelendroidCapabilities capabilities) {
+    if (!candidate.screenSizeMatches(capabilities.getScreenSize())) {
+      return false;
+    }
+    if (capabilities.getEmulator() != null && (capabilities.getEmulator()
+        ? !(candidate instanceof DefaultAndroidEmulator) : !(candidate instanceof DefaultHardwareDevice))) {
+      return false;
+    }
+    if (StringUtils.isNotBlank(capabilities.getSerial())
+        && !capabilities.getSerial().equals(candidate.getSerial())) {
+      return false;
+    }
+    if (StringUtils.isNotBlank(capabilities.getModel())
+        && !candidate.getModel().contains(capabilities.getModel())) {
+      return false;
+    }
+    return !StringUtils.isNotBlank(capabilities.getAPITargetType())
+        || (candidate.getAPITargetType() != null
+            && candidate.getAPITargetType().contains(capabilities.getAPITargetType()));
+  }
+
+  private boolean isRunning(AndroidDevice candidate) {
+    return !(candidate instanceof DefaultAndroidEmulator && !((DefaultAndroidEmulator) candidate).isEmulatorStarted());
+  }
+
+  private static class DeviceRequest {
+    private final SelendroidCapabilities capabilities;
+    private final CountDownLatch assigned = new CountDownLatch(1);
+    private AndroidDevice device;
+
+    DeviceRequest(SelendroidCapabilities capabilities) {
+      this.capabilities = capabilities;
+    }
   }
 
   class DefaultEmulatorPowerStateListener implements AndroidEmulatorPowerStateListener {
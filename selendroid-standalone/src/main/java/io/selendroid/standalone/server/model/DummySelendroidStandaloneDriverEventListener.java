@@ -23,4 +23,9 @@ public class DummySelendroidStandaloneDriverEventListener implements SelendroidS
   public void onAfterDeviceServerStart() {
 
   }
+
+  @Override
+  public void onSessionStartupStage(SessionStartupStage stage, long durationMillis) {
+
+  }
 }
\ No newline at end of file
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.selendroid.common.device.DeviceTargetPlatform;
+import io.selendroid.standalone.android.AndroidDevice;
+import io.selendroid.standalone.android.AndroidEmulator;
+import io.selendroid.standalone.exceptions.AndroidDeviceException;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps up to a configured number of emulators per target platform booted, so that sessions
+ * don't have to wait for a cold boot.
+ *
+ * Emulators are warmed up for the platforms sessions were recently requested for. Once booted, a
+ * snapshot of the clean emulator is saved through the emulator console. When a session releases
+ * a pooled emulator it is reset by loading that snapshot instead of being stopped, which takes
+ * seconds instead of the minute a boot takes.
+ */
+public class EmulatorPool implements Closeable {
+  private static final Logger log = Logger.getLogger(EmulatorPool.class.getName());
+  public static final String SNAPSHOT_NAME = "selendroid-warm";
+  private static final long DEMAND_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(15);
+  private static final long MAINTENANCE_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  /**
+   * Boots an emulator the same way a session would.
+   */
+  public interface EmulatorStarter {
+    void start(AndroidEmulator emulator) throws AndroidDeviceException;
+  }
+
+  private final DeviceStore deviceStore;
+  private final EmulatorStarter starter;
+  private final int emulatorsPerPlatform;
+  private final StandaloneMetrics metrics;
+  // emulators that have a clean snapshot and can be reset
+  private final Set<AndroidEmulator> pooledEmulators =
+      Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<AndroidEmulator, Boolean>()));
+  private final Map<DeviceTargetPlatform, Deque<Long>> demand =
+      new HashMap<DeviceTargetPlatform, Deque<Long>>();
+  private final ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("selendroid-emulator-pool").setDaemon(true).build());
+
+  public EmulatorPool(DeviceStore deviceStore, EmulatorStarter starter, int emulatorsPerPlatform,
+      StandaloneMetrics metrics) {
+    this.deviceStore = deviceStore;
+    this.starter = starter;
+    this.emulatorsPerPlatform = emulatorsPerPlatform;
+    this.metrics = metrics;
+  }
+
+  public void start() {
+    deviceStore.setEmulatorPool(this);
+    maintenance.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          maintain();
+        } catch (Exception e) {
+          log.log(Level.WARNING, "Error maintaining the emulator pool", e);
+        }
+      }
+    }, 0, MAINTENANCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Records that a session was started on a device of the given platform.
+   */
+  public void recordDemand(DeviceTargetPlatform platform) {
+    long now = System.currentTimeMillis();
+    synchronized (demand) {
+      Deque<Long> requests = demand.get(platform);
+      if (requests == null) {
+        requests = new ArrayDeque<Long>();
+        demand.put(platform, requests);
+      }
+      requests.addLast(now);
+      expire(requests, now);
+    }
+    maintenance.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          maintain();
+        } catch (Exception e) {
+          log.log(Level.WARNING, "Error maintaining the emulator pool", e);
+        }
+      }
+    });
+  }
+
+  /**
+   * The number of idle emulators to keep booted for the platform: one per session requested
+   * within the demand window, up to the configured maximum.
+   */
+  /* package */int getTargetSize(DeviceTargetPlatform platform) {
+    synchronized (demand) {
+      Deque<Long> requests = demand.get(platform);
+      if (requests == null) {
+        return 0;
+      }
+      expire(requests, System.currentTimeMillis());
+      return Math.min(emulatorsPerPlatform, requests.size());
+    }
+  }
+
+  private void expire(Deque<Long> requests, long now) {
+    while (!requests.isEmpty() && requests.peekFirst() < now - DEMAND_WINDOW_MILLIS) {
+      requests.removeFirst();
+    }
+  }
+
+  /**
+   * Resets an emulator a session is done with, if the pool still needs it.
+   *
+   * @return <code>true</code> if the emulator has been reset and should be kept running,
+   *         <code>false</code> if it should be stopped
+   */
+  public boolean reset(AndroidEmulator emulator) {
+    if (!pooledEmulators.contains(emulator)) {
+      return false;
+    }
+    if (countIdle(emulator.getTargetPlatform(), emulator) >= getTargetSize(emulator.getTargetPlatform())) {
+      log.info("Emulator pool is full, stopping " + emulator.getAvdName());
+      pooledEmulators.remove(emulator);
+      return false;
+    }
+    long start = System.nanoTime();
+    try {
+      emulator.loadSnapshot(SNAPSHOT_NAME);
+      emulator.unlockScreen();
+    } catch (Exception e) {
+      log.log(Level.WARNING, "Failed to reset emulator " + emulator.getAvdName()
+          + ", it will be stopped.", e);
+      pooledEmulators.remove(emulator);
+      return false;
+    }
+    metrics.recordTiming("emulatorPool.reset",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    return true;
+  }
+
+  /**
+   * Boots emulators for the platforms that have fewer idle ones than their target size.
+   */
+  /* package */void maintain() {
+    for (DeviceTargetPlatform platform : demandedPlatforms()) {
+      int missing = getTargetSize(platform) - countIdle(platform, null);
+      for (AndroidEmulator emulator : stoppedEmulators(platform)) {
+        if (missing <= 0) {
+          break;
+        }
+        if (warmUp(emulator)) {
+          missing--;
+        }
+      }
+    }
+  }
+
+  private boolean warmUp(AndroidEmulator emulator) {
+    AndroidDevice device = (AndroidDevice) emulator;
+    if (!deviceStore.claim(device)) {
+      return false;
+    }
+    try {
+      log.info("Warming up emulator " + emulator.getAvdName());
+      long start = System.nanoTime();
+      starter.start(emulator);
+      emulator.saveSnapshot(SNAPSHOT_NAME);
+      pooledEmulators.add(emulator);
+      metrics.recordTiming("emulatorPool.warmUp",
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return true;
+    } catch (Exception e) {
+      log.log(Level.WARNING, "Failed to warm up emulator " + emulator.getAvdName(), e);
+      try {
+        emulator.stop();
+      } catch (AndroidDeviceException stopError) {
+        log.log(Level.WARNING, "Failed to stop emulator " + emulator.getAvdName(), stopError);
+      }
+      return false;
+    } finally {
+      deviceStore.unclaim(device);
+    }
+  }
+
+  private List<DeviceTargetPlatform> demandedPlatforms() {
+    synchronized (demand) {
+      return new ArrayList<DeviceTargetPlatform>(demand.keySet());
+    }
+  }
+
+  private int countIdle(DeviceTargetPlatform platform, AndroidEmulator except) {
+    int idle = 0;
+    for (AndroidEmulator emulator : emulators(platform)) {
+      if (emulator != except && pooledEmulators.contains(emulator)
+          && !deviceStore.isInUse((AndroidDevice) emulator) && isStarted(emulator)) {
+        idle++;
+      }
+    }
+    return idle;
+  }
+
+  private List<AndroidEmulator> stoppedEmulators(DeviceTargetPlatform platform) {
+    List<AndroidEmulator> stopped = new ArrayList<AndroidEmulator>();
+    for (AndroidEmulator emulator : emulators(platform)) {
+      if (!deviceStore.isInUse((AndroidDevice) emulator) && !isStarted(emulator)) {
+        stopped.add(emulator);
+      }
+    }
+    return stopped;
+  }
+
+  private List<AndroidEmulator> emulators(DeviceTargetPlatform platform) {
+    List<AndroidEmulator> emulators = new ArrayList<AndroidEmulator>();
+    for (AndroidDevice device : deviceStore.getDevices()) {
+      if (device instanceof AndroidEmulator && device.getTargetPlatform() == platform) {
+        emulators.add((AndroidEmulator) device);
+      }
+    }
+    return emulators;
+  }
+
+  private boolean isStarted(AndroidEmulator emulator) {
+    try {
+      return emulator.isEmulatorStarted();
+    } catch (AndroidDeviceException e) {
+      return false;
+    }
+  }
+
+  /**
+   * For testing only
+   */
+  /* package */boolean isPooled(AndroidEmulator emulator) {
+    return pooledEmulators.contains(emulator);
+  }
+
+  /**
+   * Stops the maintenance and all idle emulators the pool has started.
+   */
+  @Override
+  public void close() {
+    maintenance.shutdownNow();
+    List<AndroidEmulator> emulators;
+    synchronized (pooledEmulators) {
+      emulators = new ArrayList<AndroidEmulator>(pooledEmulators);
+      pooledEmulators.clear();
+    }
+    for (AndroidEmulator emulator : emulators) {
+      AndroidDevice device = (AndroidDevice) emulator;
+      if (deviceStore.claim(device)) {
+        try {
+          emulator.stop();
+        } catch (AndroidDeviceException e) {
+          log.log(Level.WARNING, "Failed to stop emulator " + emulator.getAvdName(), e);
+        } finally {
+          deviceStore.unclaim(device);
+        }
+      }
+    }
+  }
+}
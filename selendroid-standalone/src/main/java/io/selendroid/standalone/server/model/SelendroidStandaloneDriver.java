@@ -15,6 +15,9 @@ package io.selendroid.standalone.server.model;
 
 import com.beust.jcommander.internal.Lists;
 import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.handler.codec.http.HttpMethod;
 import io.selendroid.common.SelendroidCapabilities;
 import io.selendroid.server.common.ServerDetails;
@@ -37,6 +40,8 @@ import io.selendroid.standalone.builder.AndroidDriverAPKBuilder;
 import io.selendroid.standalone.builder.SelendroidServerBuilder;
 import io.selendroid.standalone.exceptions.AndroidDeviceException;
 import io.selendroid.standalone.exceptions.AndroidSdkException;
+import io.selendroid.standalone.io.ReadinessProbe;
+import io.selendroid.standalone.server.util.DeviceProxyClient;
 import io.selendroid.standalone.server.util.FolderMonitor;
 import io.selendroid.standalone.server.util.HttpClientUtil;
 import io.selendroid.server.common.exceptions.AppCrashedException;
@@ -44,6 +49,9 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
 import org.openqa.selenium.By;
 import org.openqa.selenium.remote.BrowserType;
 import org.openqa.selenium.remote.RemoteWebDriver;
@@ -57,12 +65,25 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.concurrent.TimeUnit;
@@ -74,17 +95,47 @@ public class SelendroidStandaloneDriver
   public static final String WD_RESP_KEY_SESSION_ID = "sessionId";
   public static final String APP_BASE_PACKAGE = "basePackage";
   public static final String APP_ID = "appId";
-  private static int selendroidServerPort = 38080;
+  private static final AtomicInteger selendroidServerPort = new AtomicInteger(38080);
   private static final Logger log = Logger.getLogger(SelendroidStandaloneDriver.class.getName());
-  private Map<String, AndroidApp> appsStore = new HashMap<String, AndroidApp>();
-  private Map<String, AndroidApp> selendroidServers = new HashMap<String, AndroidApp>();
-  private Map<String, ActiveSession> sessions = new HashMap<String, ActiveSession>();
+  private static final long SESSION_READINESS_TIMEOUT_MS = 5000;
+  private static final long SESSION_READINESS_POLLING_INTERVAL_MS = 50;
+  private static final int APP_STORE_MAX_WORKERS = 4;
+  private static final long APP_STORE_INIT_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+  private ConcurrentMap<String, AndroidApp> appsStore = new ConcurrentHashMap<String, AndroidApp>();
+  private volatile CountDownLatch pendingApps = new CountDownLatch(0);
+  // by app id, a build is shared by all sessions that request the server while it is running
+  private final ConcurrentMap<String, Future<AndroidApp>> selendroidServers =
+      new ConcurrentHashMap<String, Future<AndroidApp>>();
+  private final ConcurrentMap<String, ActiveSession> sessions =
+      new ConcurrentHashMap<String, ActiveSession>();
+  // read-mostly views served by the status handler, rebuilt when the inventory changes
+  private volatile InventorySnapshot<JSONArray> supportedApps;
+  private volatile InventorySnapshot<List<DeviceInfo>> supportedDevices;
   private DeviceStore deviceStore = null;
   private SelendroidServerBuilder selendroidApkBuilder = null;
   private AndroidDriverAPKBuilder androidDriverAPKBuilder = null;
   private SelendroidConfiguration serverConfiguration = null;
   private DeviceManager deviceManager;
   private FolderMonitor folderMonitor = null;
+  private EmulatorPool emulatorPool = null;
+  private SessionQueue sessionQueue = null;
+  private final DeviceProxyClient deviceProxyClient;
+  private final StandaloneMetrics metrics = new StandaloneMetrics();
+  private final AtomicLong appsStoreVersion = new AtomicLong();
+  // by absolute path of the APK the app has been read from
+  private final ConcurrentMap<String, AppSource> appSources =
+      new ConcurrentHashMap<String, AppSource>();
+  private final Set<String> replacedApps =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final SessionTimeoutScheduler sessionTimeoutScheduler = new SessionTimeoutScheduler(
+      new SessionTimeoutScheduler.ExpirationHandler() {
+        @Override
+        public void onExpired(String sessionId, String reason) {
+          new SessionTimeoutTask(SelendroidStandaloneDriver.this, sessionId, reason).run();
+        }
+      });
+  private final ExecutorService sessionStartupExecutor = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("selendroid-session-startup-%d").setDaemon(true).build());
   private SelendroidStandaloneDriverEventListener eventListener
       = new DummySelendroidStandaloneDriverEventListener();
   private AtomicBoolean instrumentationProcessFinished = new AtomicBoolean(false);
@@ -98,7 +149,8 @@ public class SelendroidStandaloneDriver
     selendroidApkBuilder = new SelendroidServerBuilder(serverConfiguration);
     androidDriverAPKBuilder = new AndroidDriverAPKBuilder();
 
-    selendroidServerPort = serverConfiguration.getSelendroidServerPort();
+    selendroidServerPort.set(serverConfiguration.getSelendroidServerPort());
+    deviceProxyClient = new DeviceProxyClient(serverConfiguration.getMaxSession());
 
     if (serverConfiguration.getAppFolderToMonitor() != null) {
       startFolderMonitor();
@@ -107,6 +159,14 @@ public class SelendroidStandaloneDriver
     initAndroidDevices();
     deviceStore.setClearData(!serverConfiguration.isNoClearData());
     deviceStore.setKeepEmulator(serverConfiguration.isKeepEmulator());
+    deviceStore.setDeviceWaitTimeout(serverConfiguration.getDeviceWaitTimeout());
+    if (serverConfiguration.getWarmEmulators() > 0) {
+      startEmulatorPool(serverConfiguration.getWarmEmulators());
+    }
+    if (serverConfiguration.getSessionQueueDepth() > 0) {
+      startSessionQueue(serverConfiguration.getSessionQueueDepth(),
+          serverConfiguration.getSessionQueueTimeout());
+    }
   }
 
   /**
@@ -117,6 +177,7 @@ public class SelendroidStandaloneDriver
     this.selendroidApkBuilder = builder;
     this.deviceManager = deviceManager;
     this.androidDriverAPKBuilder = androidDriverAPKBuilder;
+    this.deviceProxyClient = new DeviceProxyClient(DeviceProxyClient.DEFAULT_MAX_DEVICES);
   }
 
   /**
@@ -128,27 +189,94 @@ public class SelendroidStandaloneDriver
    * @throws AndroidSdkException
    */
   public void addToAppsStore(File file) throws AndroidSdkException {
-    AndroidApp app = null;
+    AndroidApp app = resignApp(file);
+    String appId = readAppId(app, file);
+    if (appId != null && appsStore.putIfAbsent(appId, app) == null) {
+      appSources.put(file.getAbsolutePath(), new AppSource(appId, file));
+      appsStoreVersion.incrementAndGet();
+      log.info("App " + appId
+          + " has been added to selendroid standalone server.");
+    }
+  }
+
+  /**
+   * Hot-replaces the app that has been read from the given file with the current content of the
+   * file, e.g. after it has been overwritten in the monitored app folder. Sessions that are
+   * already running keep using the previous build, new sessions install the new one. If the app
+   * has not been read from this file before, it is added.
+   *
+   * @param file - The file the app has been read from
+   * @throws AndroidSdkException
+   */
+  public void replaceInAppsStore(File file) throws AndroidSdkException {
+    AppSource source = appSources.get(file.getAbsolutePath());
+    if (source == null) {
+      addToAppsStore(file);
+      return;
+    }
+    if (source.isUnchanged(file)) {
+      log.fine("App " + source.appId + " has not changed: " + file.getAbsolutePath());
+      return;
+    }
+    AndroidApp app = resignApp(file);
+    String appId = readAppId(app, file);
+    if (appId == null) {
+      return;
+    }
+    AndroidApp overwritten = appsStore.put(appId, app);
+    AndroidApp removed = appId.equals(source.appId) ? null : appsStore.remove(source.appId);
+    appSources.put(file.getAbsolutePath(), new AppSource(appId, file));
+    // devices still have the previous build of the app installed under the same package
+    replacedApps.add(appId);
+    if (deviceStore != null) {
+      deviceStore.getHints().onAppReplaced(appId);
+    }
+    for (AndroidApp previous : Arrays.asList(overwritten, removed)) {
+      if (previous != null && !previous.getAbsolutePath().equals(app.getAbsolutePath())) {
+        selendroidApkBuilder.releaseResignedApp(previous);
+      }
+    }
+    appsStoreVersion.incrementAndGet();
+    log.info("App " + appId + " has been replaced with " + file.getAbsolutePath());
+  }
+
+  /**
+   * Removes the app that has been read from the given file from the app store, e.g. after it has
+   * been deleted from the monitored app folder. Running sessions are not affected.
+   *
+   * @param file - The file the app has been read from
+   */
+  public void removeFromAppsStore(File file) {
+    AppSource source = appSources.remove(file.getAbsolutePath());
+    if (source == null) {
+      return;
+    }
+    AndroidApp removed = appsStore.remove(source.appId);
+    if (removed != null) {
+      selendroidApkBuilder.releaseResignedApp(removed);
+      appsStoreVersion.incrementAndGet();
+      log.info("App " + source.appId + " has been removed from selendroid standalone server.");
+    }
+  }
+
+  private AndroidApp resignApp(File file) {
     try {
-      app = selendroidApkBuilder.resignApp(file);
+      return selendroidApkBuilder.resignApp(file);
     } catch (Exception e) {
       throw new SessionNotCreatedException(
           "An error occurred while resigning the app '" + file.getName()
               + "'. ", e);
     }
-    String appId = null;
+  }
+
+  private String readAppId(AndroidApp app, File file) {
     try {
-      appId = app.getAppId();
+      return app.getAppId();
     } catch (AndroidSdkException e) {
       log.info("Ignoring app because an error occurred reading the app details: "
           + file.getAbsolutePath());
       log.info(e.getMessage());
-    }
-    if (appId != null && !appsStore.containsKey(appId)) {
-      appsStore.put(appId, app);
-
-      log.info("App " + appId
-          + " has been added to selendroid standalone server.");
+      return null;
     }
   }
 
@@ -160,35 +288,123 @@ public class SelendroidStandaloneDriver
     this.serverConfiguration = serverConfiguration;
 
     // each of the apps specified on the command line need to get resigned
-    // and 'stored' to be installed on the device
+    // and 'stored' to be installed on the device. Resigning and reading the app details is done
+    // on a small pool, sessions for apps that are ready can be created while the rest is
+    // still being processed.
+    List<Runnable> tasks = new ArrayList<Runnable>();
     for (String appPath : serverConfiguration.getSupportedApps()) {
-      File file = new File(appPath);
+      final File file = new File(appPath);
       if (file.exists()) {
-        addToAppsStore(file);
+        tasks.add(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              addToAppsStore(file);
+            } catch (Exception e) {
+              log.log(Level.SEVERE, "Ignoring app because it could not be added to the app store: "
+                  + file.getAbsolutePath(), e);
+            }
+          }
+        });
       } else {
         log.severe("Ignoring app because it was not found: " + file.getAbsolutePath());
       }
     }
 
     if (!serverConfiguration.isNoWebViewApp()) {
-      // extract the 'AndroidDriver' app and show it as available
-      try {
-        // using "android" as the app name, because that is the desired capability default in
-        // selenium for
-        // DesiredCapabilities.ANDROID
-        File androidAPK = androidDriverAPKBuilder.extractAndroidDriverAPK();
-        if(serverConfiguration != null && serverConfiguration.isDeleteTmpFiles()) {
-          androidAPK.deleteOnExit(); //Deletes temporary files if flag set
+      final boolean deleteTmpFiles = serverConfiguration.isDeleteTmpFiles();
+      tasks.add(new Runnable() {
+        @Override
+        public void run() {
+          // extract the 'AndroidDriver' app and show it as available
+          try {
+            // using "android" as the app name, because that is the desired capability default in
+            // selenium for
+            // DesiredCapabilities.ANDROID
+            File androidAPK = androidDriverAPKBuilder.extractAndroidDriverAPK();
+            if (deleteTmpFiles) {
+              androidAPK.deleteOnExit(); //Deletes temporary files if flag set
+            }
+            AndroidApp app =
+                selendroidApkBuilder.resignApp(androidAPK);
+            appsStore.put(BrowserType.ANDROID, app);
+            appsStoreVersion.incrementAndGet();
+          } catch (Exception e) {
+            log.log(Level.SEVERE, "The AndroidDriver app could not be added to the app store.", e);
+          }
         }
-        AndroidApp app =
-            selendroidApkBuilder.resignApp(androidAPK);
-        appsStore.put(BrowserType.ANDROID, app);
-      } catch (Exception e) {
-        throw new RuntimeException(e);
+      });
+    }
+    initAppsStore(tasks);
+  }
+
+  private void initAppsStore(List<Runnable> tasks) {
+    if (tasks.isEmpty()) {
+      return;
+    }
+    final int total = tasks.size();
+    final AtomicInteger processed = new AtomicInteger();
+    final CountDownLatch pending = new CountDownLatch(total);
+    pendingApps = pending;
+
+    int workers = Math.min(total,
+        Math.min(APP_STORE_MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+    ExecutorService executor = Executors.newFixedThreadPool(workers,
+        new ThreadFactoryBuilder().setNameFormat("selendroid-app-store-%d").setDaemon(true).build());
+    for (final Runnable task : tasks) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          long start = System.nanoTime();
+          try {
+            task.run();
+          } finally {
+            metrics.recordTiming("appStore.addApp",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            pending.countDown();
+            log.info(processed.incrementAndGet() + " of " + total
+                + " apps have been processed for the app store.");
+          }
+        }
+      });
+    }
+    executor.shutdown();
+  }
+
+  /**
+   * Waits until the apps passed at start up have been processed, but not longer than
+   * {@link #APP_STORE_INIT_TIMEOUT_MS}.
+   */
+  private void awaitAppsStore() {
+    try {
+      if (!pendingApps.await(APP_STORE_INIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        log.warning("Timed out waiting for the app store to be initialized.");
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SelendroidException(e);
     }
   }
 
+  /**
+   * Resolves the app under test. If the app store is still being initialized and the requested
+   * app isn't known yet (or no explicit version was requested, so a newer one could still
+   * show up), this waits for the initialization to complete.
+   */
+  private String getDesiredAut(SelendroidCapabilities desiredCapabilities) {
+    String desiredAut = desiredCapabilities.getDefaultApp(appsStore.keySet());
+    if (pendingApps.getCount() > 0) {
+      String requested = desiredCapabilities.getAut();
+      if (desiredAut == null || !appsStore.containsKey(desiredAut) || requested == null
+          || !requested.contains(":")) {
+        log.info("Waiting for the app store to be initialized.");
+        awaitAppsStore();
+        desiredAut = desiredCapabilities.getDefaultApp(appsStore.keySet());
+      }
+    }
+    return desiredAut;
+  }
+
   /* package */void initAndroidDevices() throws AndroidDeviceException {
     deviceManager =
         new DefaultDeviceManager(AndroidSdk.adb().getAbsolutePath(),
@@ -198,6 +414,37 @@ public class SelendroidStandaloneDriver
         serverConfiguration.shouldKeepAdbAlive());
   }
 
+  private void startEmulatorPool(int emulatorsPerPlatform) {
+    emulatorPool = new EmulatorPool(deviceStore, new EmulatorPool.EmulatorStarter() {
+      @Override
+      public void start(AndroidEmulator emulator) throws AndroidDeviceException {
+        emulator.start(null, deviceStore.nextEmulatorPort(), getEmulatorStartOptions(null));
+        emulator.setIDevice(deviceManager.getVirtualDevice(emulator.getAvdName()));
+      }
+    }, emulatorsPerPlatform, metrics);
+    emulatorPool.start();
+  }
+
+  private void startSessionQueue(int maxDepth, long waitTimeoutMillis) {
+    sessionQueue = new SessionQueue(deviceStore, new SessionQueue.SessionStarter() {
+      @Override
+      public String start(JSONObject desiredCapabilities, AndroidDevice device) {
+        return createNewTestSession(desiredCapabilities,
+            serverConfiguration.getServerStartRetries(), device);
+      }
+
+      @Override
+      public void abandon(String sessionId) {
+        try {
+          stopSession(sessionId);
+        } catch (AndroidDeviceException e) {
+          log.log(Level.WARNING, "Error stopping abandoned session " + sessionId, e);
+        }
+      }
+    }, maxDepth, waitTimeoutMillis);
+    sessionQueue.start();
+  }
+
   @Override
   public String getServerVersion() {
     return SelendroidServerBuilder.getJarVersionNumber();
@@ -227,83 +474,178 @@ public class SelendroidStandaloneDriver
   }
 
   public String createNewTestSession(JSONObject caps, Integer retries) {
+    return createNewTestSession(caps, retries, null);
+  }
+
+  /**
+   * Creates a new session like {@link #createNewTestSession(JSONObject)}, but if the session queue
+   * is enabled, requests for which all matching devices are in use wait in the queue instead of
+   * blocking the calling thread.
+   *
+   * @return the id of the session, once it has been created.
+   */
+  public ListenableFuture<String> queueNewTestSession(JSONObject caps) {
+    if (sessionQueue == null) {
+      try {
+        return Futures.immediateFuture(createNewTestSession(caps));
+      } catch (Exception e) {
+        return Futures.immediateFailedFuture(e);
+      }
+    }
+    SelendroidCapabilities desiredCapabilities;
+    try {
+      desiredCapabilities = getSelendroidCapabilities(caps);
+    } catch (Exception e) {
+      return Futures.immediateFailedFuture(e);
+    }
+    return sessionQueue.submit(caps, desiredCapabilities);
+  }
+
+  /**
+   * @param reservedDevice the device the session queue has claimed for the first attempt, or
+   *        <code>null</code> to find one in the device store.
+   */
+  private String createNewTestSession(JSONObject caps, Integer retries,
+      AndroidDevice reservedDevice) {
     AndroidDevice device = null;
     AndroidApp app = null;
     Exception lastException = null;
     while (retries >= 0) {
+      long sessionStart = System.nanoTime();
       try {
-        SelendroidCapabilities desiredCapabilities = getSelendroidCapabilities(caps);
-        String desiredAut = desiredCapabilities.getDefaultApp(appsStore.keySet());
-        app = getAndroidApp(desiredCapabilities, desiredAut);
+        final SelendroidCapabilities desiredCapabilities = getSelendroidCapabilities(caps);
+        String desiredAut = getDesiredAut(desiredCapabilities);
+        final AndroidApp aut = getAndroidApp(desiredCapabilities, desiredAut);
+        app = aut;
         log.info("'" + desiredAut + "' will be used as app under test.");
-        device = deviceStore.findAndroidDevice(desiredCapabilities);
-
-        // If we are using an emulator need to start it up
-        if (device instanceof AndroidEmulator) {
-          startAndroidEmulator(desiredCapabilities, (AndroidEmulator) device);
-          // If we are using an android device
+        long stageStart = System.nanoTime();
+        if (reservedDevice != null) {
+          device = reservedDevice;
+          reservedDevice = null;
         } else {
-          device.unlockScreen();
+          device = deviceStore.findAndroidDevice(desiredCapabilities);
         }
-
-        boolean appInstalledOnDevice = device.isInstalled(app) || app instanceof InstalledAndroidApp;
-        if (!appInstalledOnDevice || serverConfiguration.isForceReinstall()) {
-          device.install(app);
+        onStageCompleted(SessionStartupStage.FIND_DEVICE, stageStart);
+        final AndroidDevice sessionDevice = device;
+
+        // Booting an emulator takes long, so the selendroid-server is built in the meantime. It
+        // is only installed if it isn't on the device yet, but built servers are kept anyway.
+        final Future<AndroidApp> serverApk;
+        List<Future<?>> stages = new ArrayList<Future<?>>();
+        stages.add(submitStage(SessionStartupStage.START_DEVICE, new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            // If we are using an emulator need to start it up
+            if (sessionDevice instanceof AndroidEmulator) {
+              startAndroidEmulator(desiredCapabilities, (AndroidEmulator) sessionDevice);
+              // If we are using an android device
+            } else {
+              sessionDevice.unlockScreen();
+            }
+            return null;
+          }
+        }));
+        if (sessionDevice instanceof AndroidEmulator
+            && !((AndroidEmulator) sessionDevice).isEmulatorStarted()) {
+          serverApk = submitStage(SessionStartupStage.BUILD_SERVER_APK, buildServerApk(aut));
+          stages.add(serverApk);
         } else {
-          log.info("the app under test is already installed.");
-        }
-
-        if(!serverConfiguration.isNoClearData()) {
-          device.clearUserData(app);
+          serverApk = null;
         }
+        awaitStages(stages);
+
+        // The app under test, the selendroid-server and the files needed by the server are
+        // independent of each other, so they are transferred to the device concurrently.
+        stages.clear();
+        stages.add(submitStage(SessionStartupStage.INSTALL_APP, new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            boolean appInstalledOnDevice =
+                sessionDevice.isInstalled(aut) || aut instanceof InstalledAndroidApp;
+            if (appInstalledOnDevice && isOutdatedOn(sessionDevice, aut)) {
+              log.info("the app under test has been replaced, installing the new build.");
+              appInstalledOnDevice = false;
+            }
+            if (!appInstalledOnDevice || serverConfiguration.isForceReinstall()) {
+              sessionDevice.install(aut);
+            } else {
+              log.info("the app under test is already installed.");
+            }
+
+            if (!serverConfiguration.isNoClearData()) {
+              sessionDevice.clearUserData(aut);
+            }
+            return null;
+          }
+        }));
+        stages.add(submitStage(SessionStartupStage.INSTALL_SERVER_APK, new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            boolean serverInstalled =
+                sessionDevice.isInstalled("io.selendroid." + aut.getBasePackage());
+            if (!serverInstalled || serverConfiguration.isForceReinstall()) {
+              try {
+                sessionDevice.install(serverApk != null ? serverApk.get()
+                    : runStage(SessionStartupStage.BUILD_SERVER_APK, buildServerApk(aut)));
+              } catch (AndroidSdkException e) {
+                throw new SessionNotCreatedException(
+                    "Could not install selendroid-server on the device", e);
+              }
+            } else {
+              log.info(
+                  "Not creating and installing selendroid-server because it is already installed for this app under test.");
+            }
+            return null;
+          }
+        }));
+        stages.add(submitStage(SessionStartupStage.PUSH_FILES, new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            // Push extension dex to device if specified
+            String extensionFile = desiredCapabilities.getSelendroidExtensions();
+            pushExtensionsToDevice(sessionDevice, extensionFile);
+
+            pushExtraArgsToDevice(sessionDevice, desiredCapabilities);
+            return null;
+          }
+        }));
+        awaitStages(stages);
 
         int port = serverConfiguration.isReuseSelendroidServerPort()
             ? serverConfiguration.getSelendroidServerPort()
             : getNextSelendroidServerPort();
 
-        boolean serverInstalled = device.isInstalled("io.selendroid." + app.getBasePackage());
-        if (!serverInstalled || serverConfiguration.isForceReinstall()) {
-          try {
-            device.install(createSelendroidServerApk(app));
-          } catch (AndroidSdkException e) {
-            throw new SessionNotCreatedException("Could not install selendroid-server on the device", e);
-          }
-        } else {
-          log.info(
-              "Not creating and installing selendroid-server because it is already installed for this app under test.");
-        }
-
-        // Run any adb commands requested in the capabilities
+        // Run any adb commands requested in the capabilities, they may rely on the app under test
+        // being installed
+        stageStart = System.nanoTime();
         List<String> preSessionAdbCommands = desiredCapabilities.getPreSessionAdbCommands();
         runPreSessionCommands(device, preSessionAdbCommands);
-
-        // Push extension dex to device if specified
-        String extensionFile = desiredCapabilities.getSelendroidExtensions();
-        pushExtensionsToDevice(device, extensionFile);
-
-        pushExtraArgsToDevice(device, desiredCapabilities);
+        onStageCompleted(SessionStartupStage.RUN_PRE_SESSION_COMMANDS, stageStart);
 
         // Configure logging on the device
         device.setLoggingEnabled(serverConfiguration.isDeviceLog());
+        device.setLogcatBufferSize(serverConfiguration.getDeviceLogBufferSize());
+        device.setScreenshotCompressionLevel(serverConfiguration.getScreenshotCompressionLevel());
+        if (serverConfiguration.getDeviceLogSpillDir() != null) {
+          device.setLogcatSpillDirectory(new File(serverConfiguration.getDeviceLogSpillDir()));
+        }
 
         // It's GO TIME!
         // start the selendroid server on the device and make sure it's up
         eventListener.onBeforeDeviceServerStart();
+        stageStart = System.nanoTime();
         device.startSelendroid(app, port, desiredCapabilities);
         device.addInstrumentationProcessListener(this);
+        onStageCompleted(SessionStartupStage.START_SERVER, stageStart);
+        stageStart = System.nanoTime();
         waitForServerStart(device);
+        // the server may answer status requests before it is able to create sessions
+        waitForServerReadyForSessions(device);
+        onStageCompleted(SessionStartupStage.WAIT_FOR_SERVER, stageStart);
         eventListener.onAfterDeviceServerStart();
 
-        // arbitrary sleeps? yay...
-        // looks like after the server starts responding
-        // we need to give it a moment before starting a session?
-        try {
-          Thread.sleep(500);
-        } catch (InterruptedException e1) {
-          Thread.currentThread().interrupt();
-        }
-
         // create the new session on the device server
+        stageStart = System.nanoTime();
         RemoteWebDriver driver =
           new RemoteWebDriver(new URL("http://localhost:" + device.getSelendroidsPort() + "/wd/hub"), desiredCapabilities);
         String sessionId = driver.getSessionId().toString();
@@ -318,6 +660,10 @@ public class SelendroidStandaloneDriver
         if (BrowserType.ANDROID.equals(desiredCapabilities.getAut())) {
           switchToWebView(driver);
         }
+        onStageCompleted(SessionStartupStage.CREATE_DEVICE_SESSION, stageStart);
+        onStageCompleted(SessionStartupStage.TOTAL, sessionStart);
+        deviceStore.getHints().onSessionStarted(device, app.getAppId(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sessionStart));
 
         return sessionId;
       } catch (Exception e) {
@@ -326,6 +672,11 @@ public class SelendroidStandaloneDriver
         retries--;
 
         // Return device to store
+        if (reservedDevice != null) {
+          // failed before the session got to the device, e.g. because the app is unknown
+          deviceStore.unclaim(reservedDevice);
+          reservedDevice = null;
+        }
         if (device != null) {
           deviceStore.release(device, app);
           device = null;
@@ -341,6 +692,71 @@ public class SelendroidStandaloneDriver
     }
   }
 
+  /**
+   * @return whether the app has been hot-replaced and the device might still have a previous build
+   *         of it installed.
+   */
+  private boolean isOutdatedOn(AndroidDevice device, AndroidApp aut) throws AndroidSdkException {
+    if (aut instanceof InstalledAndroidApp || !replacedApps.contains(aut.getAppId())) {
+      return false;
+    }
+    return !deviceStore.getHints().isInstalled(device, aut.getAppId());
+  }
+
+  private Callable<AndroidApp> buildServerApk(final AndroidApp aut) {
+    return new Callable<AndroidApp>() {
+      @Override
+      public AndroidApp call() throws Exception {
+        return createSelendroidServerApk(aut);
+      }
+    };
+  }
+
+  private <T> Future<T> submitStage(final SessionStartupStage stage, final Callable<T> task) {
+    return sessionStartupExecutor.submit(new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        return runStage(stage, task);
+      }
+    });
+  }
+
+  private <T> T runStage(SessionStartupStage stage, Callable<T> task) throws Exception {
+    long start = System.nanoTime();
+    try {
+      return task.call();
+    } finally {
+      onStageCompleted(stage, start);
+    }
+  }
+
+  /**
+   * Waits for all stages to complete, even if one of them fails, so that no stage is still
+   * running on the device when it is released. The first failure is rethrown.
+   */
+  private void awaitStages(List<Future<?>> stages) throws Exception {
+    Exception failure = null;
+    for (Future<?> stage : stages) {
+      try {
+        stage.get();
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void onStageCompleted(SessionStartupStage stage, long startNanos) {
+    long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    log.fine("Session startup stage " + stage + " took " + durationMillis + " ms");
+    metrics.recordTiming(stage.getMetricName(), durationMillis);
+    eventListener.onSessionStartupStage(stage, durationMillis);
+  }
+
   private void switchToWebView(RemoteWebDriver driver) {
     // arbitrarily high wait time, will this cover our slowest possible device/emulator?
     WebDriverWait wait = new WebDriverWait(driver, 60);
@@ -395,6 +811,28 @@ public class SelendroidStandaloneDriver
     log.info("Selendroid server has started.");
   }
 
+  /**
+   * Polls the device server until it is able to list its sessions, which replaces the fixed pause
+   * that used to follow the status check.
+   */
+  private void waitForServerReadyForSessions(final AndroidDevice device) {
+    boolean ready = ReadinessProbe.named("selendroidServer.sessions")
+        .withInitialInterval(SESSION_READINESS_POLLING_INTERVAL_MS)
+        .withMaxInterval(500)
+        .withJitterCap(50)
+        .withTimeout(SESSION_READINESS_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+        .await(new ReadinessProbe.Condition() {
+          @Override
+          public boolean isReady() {
+            return HttpClientUtil.isServerStarted(device.getSelendroidsPort());
+          }
+        });
+    if (!ready) {
+      // creating the session will fail and be retried if the server really isn't ready
+      log.warning("Selendroid server doesn't list its sessions yet, trying to create the session anyway.");
+    }
+  }
+
   private void pushExtraArgsToDevice(
     AndroidDevice device,
     SelendroidCapabilities caps
@@ -449,16 +887,7 @@ public class SelendroidStandaloneDriver
     if (emulator.isEmulatorStarted()) {
       emulator.unlockScreen();
     } else {
-      Map<String, Object> config = new HashMap<String, Object>();
-      if (serverConfiguration.getEmulatorOptions() != null) {
-        config.put(AndroidEmulator.EMULATOR_OPTIONS, serverConfiguration.getEmulatorOptions());
-      }
-      config.put(AndroidEmulator.TIMEOUT_OPTION, serverConfiguration.getTimeoutEmulatorStart());
-      if (desiredCapabilities.asMap().containsKey(SelendroidCapabilities.DISPLAY)) {
-        Object d = desiredCapabilities.getCapability(SelendroidCapabilities.DISPLAY);
-        config.put(AndroidEmulator.DISPLAY_OPTION, String.valueOf(d));
-      }
-
+      Map<String, Object> config = getEmulatorStartOptions(desiredCapabilities);
       Locale locale = parseLocale(desiredCapabilities);
       emulator.start(locale, deviceStore.nextEmulatorPort(), config);
     }
@@ -466,8 +895,22 @@ public class SelendroidStandaloneDriver
     emulator.setIDevice(deviceManager.getVirtualDevice(emulator.getAvdName()));
   }
 
+  private Map<String, Object> getEmulatorStartOptions(SelendroidCapabilities desiredCapabilities) {
+    Map<String, Object> config = new HashMap<String, Object>();
+    if (serverConfiguration.getEmulatorOptions() != null) {
+      config.put(AndroidEmulator.EMULATOR_OPTIONS, serverConfiguration.getEmulatorOptions());
+    }
+    config.put(AndroidEmulator.TIMEOUT_OPTION, serverConfiguration.getTimeoutEmulatorStart());
+    if (desiredCapabilities != null
+        && desiredCapabilities.asMap().containsKey(SelendroidCapabilities.DISPLAY)) {
+      Object d = desiredCapabilities.getCapability(SelendroidCapabilities.DISPLAY);
+      config.put(AndroidEmulator.DISPLAY_OPTION, String.valueOf(d));
+    }
+    return config;
+  }
+
   private AndroidApp getAndroidApp(SelendroidCapabilities desiredCapabilities, String aut) {
-    AndroidApp app = appsStore.get(aut);
+    AndroidApp app = aut == null ? null : appsStore.get(aut);
     if (app == null) {
       if (desiredCapabilities.getLaunchActivity() != null) {
         String appInfo = String.format("%s/%s", aut, desiredCapabilities.getLaunchActivity());
@@ -508,18 +951,34 @@ public class SelendroidStandaloneDriver
     return app;
   }
 
-  private AndroidApp createSelendroidServerApk(AndroidApp aut) throws AndroidSdkException {
-    if (!selendroidServers.containsKey(aut.getAppId())) {
-      try {
-        AndroidApp selendroidServer = selendroidApkBuilder.createSelendroidServer(aut);
-        selendroidServers.put(aut.getAppId(), selendroidServer);
-      } catch (Exception e) {
-        log.log(Level.SEVERE, "Cannot build the Selendroid server APK", e);
-        throw new SessionNotCreatedException(
-            "Cannot build the Selendroid server APK for application '" + aut + "': " + e.getMessage());
+  private AndroidApp createSelendroidServerApk(final AndroidApp aut) throws AndroidSdkException {
+    Future<AndroidApp> build = selendroidServers.get(aut.getAppId());
+    if (build == null) {
+      FutureTask<AndroidApp> newBuild = new FutureTask<AndroidApp>(new Callable<AndroidApp>() {
+        @Override
+        public AndroidApp call() throws Exception {
+          return selendroidApkBuilder.createSelendroidServer(aut);
+        }
+      });
+      build = selendroidServers.putIfAbsent(aut.getAppId(), newBuild);
+      if (build == null) {
+        build = newBuild;
+        newBuild.run();
       }
     }
-    return selendroidServers.get(aut.getAppId());
+    try {
+      return build.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SessionNotCreatedException(
+          "Interrupted while building the Selendroid server APK for application '" + aut + "'");
+    } catch (ExecutionException e) {
+      // the next session tries again
+      selendroidServers.remove(aut.getAppId(), build);
+      log.log(Level.SEVERE, "Cannot build the Selendroid server APK", e.getCause());
+      throw new SessionNotCreatedException("Cannot build the Selendroid server APK for application '"
+          + aut + "': " + e.getCause().getMessage());
+    }
   }
 
   private Locale parseLocale(SelendroidCapabilities capa) {
@@ -549,6 +1008,7 @@ public class SelendroidStandaloneDriver
    * For testing only
    */
   /* package */Map<String, AndroidApp> getConfiguredApps() {
+    awaitAppsStore();
     return Collections.unmodifiableMap(appsStore);
   }
 
@@ -559,8 +1019,8 @@ public class SelendroidStandaloneDriver
     this.deviceStore = store;
   }
 
-  private synchronized int getNextSelendroidServerPort() {
-    return selendroidServerPort++;
+  private int getNextSelendroidServerPort() {
+    return selendroidServerPort.getAndIncrement();
   }
 
   /**
@@ -575,18 +1035,22 @@ public class SelendroidStandaloneDriver
   }
 
   public void stopSession(String sessionId) throws AndroidDeviceException {
-    if (isValidSession(sessionId)) {
-      ActiveSession session = sessions.get(sessionId);
+    // removing the session first makes sure that only one of the threads stopping it concurrently
+    // (e.g. a client and the session timeout) releases the device
+    ActiveSession session = sessionId == null ? null : sessions.remove(sessionId);
+    if (session != null) {
       session.stopSessionTimer();
       try {
-        HttpClientUtil.executeRequest(
+        HttpResponse response = HttpClientUtil.executeRequest(
             "http://localhost:" + session.getSelendroidServerPort() + "/wd/hub/session/" + sessionId,
             HttpMethod.DELETE);
+        // hands the connection back to the pool shared by all sessions
+        EntityUtils.consumeQuietly(response.getEntity());
       } catch (Exception e) {
         log.log(Level.WARNING, "Error stopping session, safe to ignore", e);
       }
       deviceStore.release(session.getDevice(), session.getAut());
-      sessions.remove(sessionId);
+      deviceProxyClient.closeExpiredConnections();
     }
   }
 
@@ -601,60 +1065,120 @@ public class SelendroidStandaloneDriver
         }
       }
     }
+    if (folderMonitor != null) {
+      folderMonitor.stop();
+    }
+    if (emulatorPool != null) {
+      emulatorPool.close();
+    }
+    if (sessionQueue != null) {
+      sessionQueue.close();
+    }
     deviceManager.shutdown();
+    IOUtils.closeQuietly(deviceProxyClient);
+    sessionTimeoutScheduler.close();
+    sessionStartupExecutor.shutdownNow();
+  }
+
+  /**
+   * @return the queue of session requests waiting for a device, or <code>null</code> if queueing
+   *         is disabled.
+   */
+  public SessionQueue getSessionQueue() {
+    return sessionQueue;
+  }
+
+  /**
+   * @return the scheduler enforcing the absolute and idle timeouts of the sessions.
+   */
+  public SessionTimeoutScheduler getSessionTimeoutScheduler() {
+    return sessionTimeoutScheduler;
+  }
+
+  /**
+   * @return the client used to proxy commands to the selendroid-server on the devices.
+   */
+  public DeviceProxyClient getDeviceProxyClient() {
+    return deviceProxyClient;
+  }
+
+  public StandaloneMetrics getMetrics() {
+    return metrics;
   }
 
   public SelendroidCapabilities getSessionCapabilities(String sessionId) {
-    if (sessions.containsKey(sessionId)) {
-      return sessions.get(sessionId).getDesiredCapabilities();
-    }
-    return null;
+    ActiveSession session = getActiveSession(sessionId);
+    return session == null ? null : session.getDesiredCapabilities();
   }
 
   public ActiveSession getActiveSession(String sessionId) {
-    if (sessionId != null && sessions.containsKey(sessionId)) {
-      return sessions.get(sessionId);
-    }
+    return sessionId == null ? null : sessions.get(sessionId);
+  }
 
-    return null;
+  /**
+   * @return a number that changes whenever an app or a device is added to or removed from the
+   *         standalone server, i.e. whenever {@link #getSupportedApps()} or
+   *         {@link #getSupportedDevices()} may have changed.
+   */
+  public long getInventoryVersion() {
+    DeviceStore store = deviceStore;
+    return appsStoreVersion.get() + (store == null ? 0 : store.getVersion());
   }
 
+  /**
+   * @return the apps of the app store. The array is a snapshot that is shared with other callers,
+   *         it must not be modified.
+   */
   @Override
-  public synchronized JSONArray getSupportedApps() {
-    JSONArray list = new JSONArray();
-    for (AndroidApp app : appsStore.values()) {
-      JSONObject appInfo = new JSONObject();
-      try {
-        appInfo.put(APP_ID, app.getAppId());
-        appInfo.put(APP_BASE_PACKAGE, app.getBasePackage());
-        appInfo.put("mainActivity", app.getMainActivity());
-        list.put(appInfo);
-      } catch (Exception e) {
+  public JSONArray getSupportedApps() {
+    long version = appsStoreVersion.get();
+    InventorySnapshot<JSONArray> snapshot = supportedApps;
+    if (snapshot == null || snapshot.version != version) {
+      JSONArray list = new JSONArray();
+      for (AndroidApp app : appsStore.values()) {
+        JSONObject appInfo = new JSONObject();
+        try {
+          appInfo.put(APP_ID, app.getAppId());
+          appInfo.put(APP_BASE_PACKAGE, app.getBasePackage());
+          appInfo.put("mainActivity", app.getMainActivity());
+          list.put(appInfo);
+        } catch (Exception e) {
+        }
       }
+      // if the store changed meanwhile, the next call rebuilds the snapshot
+      snapshot = new InventorySnapshot<JSONArray>(version, list);
+      supportedApps = snapshot;
     }
-    return list;
+    return snapshot.value;
   }
 
+  /**
+   * The properties of the devices are only read when a device is added to or updated in the device
+   * store, the hints are added on every call because they change with every session.
+   */
   @Override
-  public synchronized JSONArray getSupportedDevices() {
-    JSONArray list = new JSONArray();
-    for (AndroidDevice device : deviceStore.getDevices()) {
-      JSONObject deviceInfo = new JSONObject();
-      try {
-        if (device instanceof DefaultAndroidEmulator) {
-          deviceInfo.put(SelendroidCapabilities.EMULATOR, true);
-          deviceInfo.put("avdName", ((DefaultAndroidEmulator) device).getAvdName());
-        } else {
-          deviceInfo.put(SelendroidCapabilities.EMULATOR, false);
-          deviceInfo.put(SelendroidCapabilities.MODEL, ((DefaultHardwareDevice) device).getModel());
-          deviceInfo.put(SelendroidCapabilities.SERIAL,((DefaultHardwareDevice) device).getSerial());
+  public JSONArray getSupportedDevices() {
+    long version = deviceStore.getVersion();
+    InventorySnapshot<List<DeviceInfo>> snapshot = supportedDevices;
+    if (snapshot == null || snapshot.version != version) {
+      List<DeviceInfo> devices = new ArrayList<DeviceInfo>();
+      for (AndroidDevice device : deviceStore.getDevices()) {
+        try {
+          devices.add(new DeviceInfo(device, describe(device)));
+        } catch (Exception e) {
+          log.log(Level.WARNING, "Error occurred when building supported device info", e);
         }
-        deviceInfo.put(SelendroidCapabilities.API_TARGET_TYPE,
-            device.getAPITargetType());
-        deviceInfo
-          .put(SelendroidCapabilities.PLATFORM_VERSION, device.getTargetPlatform().getApi());
-        deviceInfo.put(SelendroidCapabilities.SCREEN_SIZE, device.getScreenSize());
+      }
+      snapshot = new InventorySnapshot<List<DeviceInfo>>(version,
+          Collections.unmodifiableList(devices));
+      supportedDevices = snapshot;
+    }
 
+    JSONArray list = new JSONArray();
+    for (DeviceInfo device : snapshot.value) {
+      try {
+        JSONObject deviceInfo = new JSONObject(device.info, JSONObject.getNames(device.info));
+        deviceInfo.put(DeviceHints.KEY, deviceStore.getHints().toJson(device.device));
         list.put(deviceInfo);
       } catch (Exception e) {
         log.log(Level.WARNING, "Error occurred when building supported device info", e);
@@ -663,6 +1187,22 @@ public class SelendroidStandaloneDriver
     return list;
   }
 
+  private JSONObject describe(AndroidDevice device) throws JSONException {
+    JSONObject deviceInfo = new JSONObject();
+    if (device instanceof DefaultAndroidEmulator) {
+      deviceInfo.put(SelendroidCapabilities.EMULATOR, true);
+      deviceInfo.put("avdName", ((DefaultAndroidEmulator) device).getAvdName());
+    } else {
+      deviceInfo.put(SelendroidCapabilities.EMULATOR, false);
+      deviceInfo.put(SelendroidCapabilities.MODEL, ((DefaultHardwareDevice) device).getModel());
+      deviceInfo.put(SelendroidCapabilities.SERIAL, ((DefaultHardwareDevice) device).getSerial());
+    }
+    deviceInfo.put(SelendroidCapabilities.API_TARGET_TYPE, device.getAPITargetType());
+    deviceInfo.put(SelendroidCapabilities.PLATFORM_VERSION, device.getTargetPlatform().getApi());
+    deviceInfo.put(SelendroidCapabilities.SCREEN_SIZE, device.getScreenSize());
+    return deviceInfo;
+  }
+
   protected ActiveSession findActiveSession(AndroidDevice device) {
     for (ActiveSession session : sessions.values()) {
       if (session.getDevice().equals(device)) {
@@ -674,10 +1214,11 @@ public class SelendroidStandaloneDriver
   }
 
   public byte[] takeScreenshot(String sessionId) throws AndroidDeviceException {
-    if (sessionId == null || !sessions.containsKey(sessionId)) {
+    ActiveSession session = getActiveSession(sessionId);
+    if (session == null) {
       throw new SelendroidException("The given session id '" + sessionId + "' was not found.");
     }
-    return sessions.get(sessionId).getDevice().takeScreenshot();
+    return session.getDevice().takeScreenshot();
   }
 
   public void setEventListener(SelendroidStandaloneDriverEventListener eventListener) {
@@ -708,4 +1249,47 @@ public class SelendroidStandaloneDriver
     instrumentationProcessOutput = output;
     instrumentationProcessError = error;
   }
+
+  /**
+   * The file an app of the app store has been read from, as it was at that time.
+   */
+  private static class AppSource {
+    private final String appId;
+    private final long length;
+    private final long lastModified;
+
+    AppSource(String appId, File file) {
+      this.appId = appId;
+      this.length = file.length();
+      this.lastModified = file.lastModified();
+    }
+
+    boolean isUnchanged(File file) {
+      return file.length() == length && file.lastModified() == lastModified;
+    }
+  }
+
+  /**
+   * An immutable view of the app or device store, tagged with the version of the store it has been
+   * built from.
+   */
+  private static class InventorySnapshot<T> {
+    private final long version;
+    private final T value;
+
+    InventorySnapshot(long version, T value) {
+      this.version = version;
+      this.value = value;
+    }
+  }
+
+  private static class DeviceInfo {
+    private final AndroidDevice device;
+    private final JSONObject info;
+
+    DeviceInfo(AndroidDevice device, JSONObject info) {
+      this.device = device;
+      this.info = info;
+    }
+  }
 }
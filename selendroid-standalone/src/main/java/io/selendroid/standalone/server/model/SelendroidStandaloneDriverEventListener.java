@@ -17,4 +17,9 @@ public interface SelendroidStandaloneDriverEventListener {
   public void onBeforeDeviceServerStart();
 
   public void onAfterDeviceServerStart();
+
+  /**
+   * Called when a stage of creating a new test session has completed, successfully or not.
+   */
+  public void onSessionStartupStage(SessionStartupStage stage, long durationMillis);
 }
\ No newline at end of file
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.selendroid.common.SelendroidCapabilities;
+import io.selendroid.server.common.exceptions.SessionNotCreatedException;
+import io.selendroid.standalone.android.AndroidDevice;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Admission control for new sessions. A request for which all matching devices are in use waits
+ * in a bounded queue until the {@link DeviceStore} reports a free device. Waiting requests are
+ * plain entries of the queue, they don't hold a thread. The device is claimed for the request
+ * before the session is started on it, so requests don't race each other for released devices.
+ *
+ * Requests with a higher {@link SelendroidCapabilities#SESSION_PRIORITY priority} are admitted
+ * first. Among requests of the same priority the {@link SelendroidCapabilities#SESSION_CLIENT
+ * clients} take turns: the oldest request of every client is admitted before the second oldest
+ * request of any client, and the client that has been served least recently goes first. A request no device of the store can serve fails right away, a request
+ * that doesn't get a device within the wait timeout fails then.
+ */
+public class SessionQueue implements Closeable {
+  private static final Logger log = Logger.getLogger(SessionQueue.class.getName());
+
+  /**
+   * Starts a session on a device that has been claimed for it.
+   */
+  public interface SessionStarter {
+    String start(JSONObject desiredCapabilities, AndroidDevice device) throws Exception;
+
+    /**
+     * Stops a session that has been started for a request that was cancelled in the meantime.
+     */
+    void abandon(String sessionId);
+  }
+
+  private final DeviceStore deviceStore;
+  private final SessionStarter starter;
+  private final int maxDepth;
+  private final long waitTimeoutMillis;
+  // in the order the requests arrived, guarded by itself
+  private final List<QueuedRequest> queue = new ArrayList<QueuedRequest>();
+  private long sequence = 0;
+  private int peakDepth = 0;
+  // admission and timeouts run on the same thread, so only one admission runs at a time
+  private final ScheduledThreadPoolExecutor scheduler;
+  private final ExecutorService startupExecutor = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("selendroid-session-queue-start-%d").setDaemon(true).build());
+  private final AtomicBoolean admissionScheduled = new AtomicBoolean(false);
+  // only accessed by admissions, the number of the admission each client has last been served by
+  private final Map<String, Long> lastServed = new HashMap<String, Long>();
+  private long admissions = 0;
+  private final AtomicLong enqueued = new AtomicLong();
+  private final AtomicLong admitted = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+  private final AtomicLong timedOut = new AtomicLong();
+  private final AtomicLong cancelled = new AtomicLong();
+  private final AtomicLong totalWaitMillis = new AtomicLong();
+  private final AtomicLong maxWaitMillis = new AtomicLong();
+
+  /**
+   * @param maxDepth the maximum number of waiting requests, further requests fail right away
+   *        unless a device is free for them.
+   * @param waitTimeoutMillis how long a request waits for a device, 0 waits forever.
+   */
+  public SessionQueue(DeviceStore deviceStore, SessionStarter starter, int maxDepth,
+      long waitTimeoutMillis) {
+    this.deviceStore = deviceStore;
+    this.starter = starter;
+    this.maxDepth = maxDepth;
+    this.waitTimeoutMillis = waitTimeoutMillis;
+    this.scheduler = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setNameFormat("selendroid-session-queue").setDaemon(true).build());
+    this.scheduler.setRemoveOnCancelPolicy(true);
+  }
+
+  public void start() {
+    deviceStore.setDeviceAvailableListener(new Runnable() {
+      @Override
+      public void run() {
+        scheduleAdmission();
+      }
+    });
+  }
+
+  /**
+   * @return the id of the session, once a device is free and the session has been started on it.
+   */
+  public ListenableFuture<String> submit(JSONObject desiredCapabilities,
+      SelendroidCapabilities capabilities) {
+    QueuedRequest request;
+    try {
+      request = new QueuedRequest(desiredCapabilities, capabilities);
+    } catch (RuntimeException e) {
+      // e.g. a priority that is not a number
+      return failed(e);
+    }
+    boolean full;
+    synchronized (queue) {
+      full = queue.size() >= maxDepth;
+      if (!full) {
+        request.sequence = sequence++;
+        queue.add(request);
+        peakDepth = Math.max(peakDepth, queue.size());
+      }
+    }
+    if (full) {
+      return admitOrReject(request);
+    }
+    enqueued.incrementAndGet();
+    if (waitTimeoutMillis > 0) {
+      final QueuedRequest expiring = request;
+      request.timeout = scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          expire(expiring);
+        }
+      }, waitTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    // e.g. the client disconnected, the request gives up its place without claiming a device
+    final QueuedRequest cancellable = request;
+    request.result.addListener(new Runnable() {
+      @Override
+      public void run() {
+        if (cancellable.result.isCancelled() && remove(cancellable)) {
+          cancelled.incrementAndGet();
+          if (cancellable.timeout != null) {
+            cancellable.timeout.cancel(false);
+          }
+        }
+      }
+    }, MoreExecutors.sameThreadExecutor());
+    scheduleAdmission();
+    return request.result;
+  }
+
+  /**
+   * The queue is full, but the waiting requests may all be for other devices than this one.
+   */
+  private ListenableFuture<String> admitOrReject(QueuedRequest request) {
+    AndroidDevice device;
+    try {
+      device = deviceStore.tryClaim(request.capabilities);
+    } catch (Exception e) {
+      return failed(e);
+    }
+    if (device == null) {
+      rejected.incrementAndGet();
+      return failed(new SessionNotCreatedException(String.format(
+          "All matching devices are in use and the session queue is full (%d requests waiting).",
+          maxDepth)));
+    }
+    start(request, device);
+    return request.result;
+  }
+
+  public int getDepth() {
+    synchronized (queue) {
+      return queue.size();
+    }
+  }
+
+  public JSONObject toJson() throws JSONException {
+    JSONObject json = new JSONObject();
+    synchronized (queue) {
+      json.put("depth", queue.size());
+      json.put("peakDepth", peakDepth);
+    }
+    json.put("maxDepth", maxDepth);
+    json.put("enqueued", enqueued.get());
+    json.put("admitted", admitted.get());
+    json.put("rejected", rejected.get());
+    json.put("timedOut", timedOut.get());
+    json.put("cancelled", cancelled.get());
+    long admittedCount = admitted.get();
+    json.put("averageWaitMillis", admittedCount > 0 ? totalWaitMillis.get() / admittedCount : 0);
+    json.put("maxWaitMillis", maxWaitMillis.get());
+    return json;
+  }
+
+  @Override
+  public void close() {
+    deviceStore.setDeviceAvailableListener(null);
+    scheduler.shutdownNow();
+    startupExecutor.shutdownNow();
+    List<QueuedRequest> waiting;
+    synchronized (queue) {
+      waiting = new ArrayList<QueuedRequest>(queue);
+      queue.clear();
+    }
+    for (QueuedRequest request : waiting) {
+      request.result.setException(
+          new SessionNotCreatedException("The selendroid-standalone server is shutting down."));
+    }
+  }
+
+  /**
+   * Coalesces the notifications of released devices into a single pass over the queue.
+   */
+  private void scheduleAdmission() {
+    if (admissionScheduled.compareAndSet(false, true)) {
+      try {
+        scheduler.execute(new Runnable() {
+          @Override
+          public void run() {
+            admissionScheduled.set(false);
+            try {
+              admit();
+            } catch (Exception e) {
+              log.log(Level.WARNING, "Error admitting queued session requests", e);
+            }
+          }
+        });
+      } catch (RuntimeException e) {
+        // rejected because the queue has been closed
+        admissionScheduled.set(false);
+      }
+    }
+  }
+
+  private void admit() {
+    for (QueuedRequest request : inAdmissionOrder()) {
+      if (request.result.isDone()) {
+        // cancelled since the queue has been read
+        continue;
+      }
+      AndroidDevice device;
+      try {
+        device = deviceStore.tryClaim(request.capabilities);
+      } catch (Exception e) {
+        // the matching devices have been removed from the store meanwhile
+        if (remove(request)) {
+          request.result.setException(e);
+        }
+        continue;
+      }
+      if (device == null) {
+        continue;
+      }
+      if (remove(request)) {
+        lastServed.put(request.client, admissions++);
+        start(request, device);
+      } else {
+        // timed out meanwhile
+        deviceStore.unclaim(device);
+      }
+    }
+  }
+
+  private List<QueuedRequest> inAdmissionOrder() {
+    List<QueuedRequest> ordered;
+    synchronized (queue) {
+      ordered = new ArrayList<QueuedRequest>(queue);
+    }
+    // the n-th request of a client only goes before the n+1-th request of any other client
+    Map<String, Integer> requestsPerClient = new HashMap<String, Integer>();
+    for (QueuedRequest request : ordered) {
+      Integer count = requestsPerClient.get(request.client);
+      request.turn = count == null ? 0 : count;
+      requestsPerClient.put(request.client, request.turn + 1);
+    }
+    Collections.sort(ordered, new Comparator<QueuedRequest>() {
+      @Override
+      public int compare(QueuedRequest first, QueuedRequest second) {
+        if (first.priority != second.priority) {
+          return first.priority > second.priority ? -1 : 1;
+        }
+        if (first.turn != second.turn) {
+          return first.turn < second.turn ? -1 : 1;
+        }
+        long firstServed = lastServed(first.client);
+        long secondServed = lastServed(second.client);
+        if (firstServed != secondServed) {
+          return firstServed < secondServed ? -1 : 1;
+        }
+        return first.sequence < second.sequence ? -1 : (first.sequence == second.sequence ? 0 : 1);
+      }
+    });
+    return ordered;
+  }
+
+  private long lastServed(String client) {
+    Long admission = lastServed.get(client);
+    return admission == null ? -1 : admission;
+  }
+
+  private boolean remove(QueuedRequest request) {
+    synchronized (queue) {
+      return queue.remove(request);
+    }
+  }
+
+  private void expire(QueuedRequest request) {
+    if (remove(request)) {
+      timedOut.incrementAndGet();
+      request.result.setException(new SessionNotCreatedException(String.format(
+          "No matching device became free within %d ms.", waitTimeoutMillis)));
+    }
+  }
+
+  private void start(final QueuedRequest request, final AndroidDevice device) {
+    if (request.timeout != null) {
+      request.timeout.cancel(false);
+    }
+    long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - request.enqueuedAt);
+    admitted.incrementAndGet();
+    totalWaitMillis.addAndGet(waited);
+    long max;
+    do {
+      max = maxWaitMillis.get();
+    } while (waited > max && !maxWaitMillis.compareAndSet(max, waited));
+
+    try {
+      startupExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            String sessionId = starter.start(request.desiredCapabilities, device);
+            if (!request.result.set(sessionId)) {
+              log.info("Session request has been cancelled while starting, stopping " + sessionId);
+              starter.abandon(sessionId);
+            }
+          } catch (Throwable e) {
+            request.result.setException(e);
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      deviceStore.unclaim(device);
+      request.result.setException(e);
+    }
+  }
+
+  private static ListenableFuture<String> failed(Throwable e) {
+    SettableFuture<String> result = SettableFuture.create();
+    result.setException(e);
+    return result;
+  }
+
+  private static class QueuedRequest {
+    private final JSONObject desiredCapabilities;
+    private final SelendroidCapabilities capabilities;
+    private final int priority;
+    private final String client;
+    private final long enqueuedAt = System.nanoTime();
+    private final SettableFuture<String> result = SettableFuture.create();
+    private long sequence;
+    private int turn;
+    private ScheduledFuture<?> timeout;
+
+    QueuedRequest(JSONObject desiredCapabilities, SelendroidCapabilities capabilities) {
+      this.desiredCapabilities = desiredCapabilities;
+      this.capabilities = capabilities;
+      this.priority = capabilities.getSessionPriority();
+      String client = capabilities.getSessionClient();
+      this.client = client == null ? "" : client;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+/**
+ * The stages of creating a new test session, as reported to the
+ * {@link SelendroidStandaloneDriverEventListener} and the {@link StandaloneMetrics}.
+ */
+public enum SessionStartupStage {
+  FIND_DEVICE,
+  START_DEVICE,
+  BUILD_SERVER_APK,
+  INSTALL_APP,
+  INSTALL_SERVER_APK,
+  PUSH_FILES,
+  RUN_PRE_SESSION_COMMANDS,
+  START_SERVER,
+  WAIT_FOR_SERVER,
+  CREATE_DEVICE_SESSION,
+  TOTAL;
+
+  public String getMetricName() {
+    return "sessionStartup." + name().toLowerCase();
+  }
+}
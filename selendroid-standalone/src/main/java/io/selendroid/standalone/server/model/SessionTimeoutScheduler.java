@@ -0,0 +1,196 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Enforces the timeouts of all sessions on a single scheduler thread. A session expires once it
+ * exists longer than the absolute timeout or hasn't been used for longer than the idle timeout.
+ *
+ * Recording activity is a single volatile write. The idle check is only rescheduled when it fires
+ * early, so sessions receiving many commands don't churn the scheduler's queue.
+ */
+public class SessionTimeoutScheduler implements Closeable {
+  private static final Logger log = Logger.getLogger(SessionTimeoutScheduler.class.getName());
+
+  public interface ExpirationHandler {
+    void onExpired(String sessionId, String reason);
+  }
+
+  private final ExpirationHandler expirationHandler;
+  private final ConcurrentMap<String, SessionTimer> timers =
+      new ConcurrentHashMap<String, SessionTimer>();
+  private final ScheduledThreadPoolExecutor scheduler;
+  // stopping a session can take a while, so it mustn't delay the expiry of the other sessions
+  private final ExecutorService expiryExecutor = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("selendroid-session-expiry-%d").setDaemon(true).build());
+  private final AtomicLong absoluteExpirations = new AtomicLong();
+  private final AtomicLong idleExpirations = new AtomicLong();
+
+  public SessionTimeoutScheduler(ExpirationHandler expirationHandler) {
+    this.expirationHandler = expirationHandler;
+    this.scheduler = new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder().setNameFormat("selendroid-session-timeouts").setDaemon(true).build());
+    this.scheduler.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * Starts the timeouts of the session, replacing any timeouts scheduled for it before.
+   *
+   * @param absoluteTimeoutMillis the maximum duration of the session, 0 disables it.
+   * @param idleTimeoutMillis the maximum time between two commands, 0 disables it.
+   */
+  public SessionTimer schedule(String sessionId, long absoluteTimeoutMillis,
+      long idleTimeoutMillis) {
+    SessionTimer timer = new SessionTimer(sessionId, idleTimeoutMillis);
+    SessionTimer previous = timers.put(sessionId, timer);
+    if (previous != null) {
+      previous.cancelFutures();
+    }
+    if (absoluteTimeoutMillis > 0) {
+      timer.absoluteFuture = scheduler.schedule(timer.new AbsoluteTimeout(),
+          absoluteTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    if (idleTimeoutMillis > 0) {
+      timer.idleFuture = scheduler.schedule(timer.new IdleTimeout(),
+          idleTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    return timer;
+  }
+
+  /**
+   * Cancels the timeouts of the session. Does nothing if the session has none (anymore).
+   */
+  public void cancel(String sessionId) {
+    SessionTimer timer = timers.remove(sessionId);
+    if (timer != null) {
+      timer.cancelFutures();
+    }
+  }
+
+  public int getActiveTimerCount() {
+    return timers.size();
+  }
+
+  public JSONObject toJson() throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("active", timers.size());
+    json.put("absoluteExpirations", absoluteExpirations.get());
+    json.put("idleExpirations", idleExpirations.get());
+    return json;
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    expiryExecutor.shutdownNow();
+    timers.clear();
+  }
+
+  private void expire(final SessionTimer timer, final String reason, AtomicLong counter) {
+    // whichever timeout fires first wins, the session is stopped only once
+    if (!timers.remove(timer.sessionId, timer)) {
+      return;
+    }
+    timer.cancelFutures();
+    counter.incrementAndGet();
+    expiryExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          expirationHandler.onExpired(timer.sessionId, reason);
+        } catch (RuntimeException e) {
+          log.log(Level.SEVERE, "Error while expiring session " + timer.sessionId, e);
+        }
+      }
+    });
+  }
+
+  /**
+   * The timeouts of a single session.
+   */
+  public class SessionTimer {
+    private final String sessionId;
+    private final long idleTimeoutNanos;
+    private volatile long lastActivity = System.nanoTime();
+    private volatile ScheduledFuture<?> absoluteFuture;
+    private volatile ScheduledFuture<?> idleFuture;
+
+    private SessionTimer(String sessionId, long idleTimeoutMillis) {
+      this.sessionId = sessionId;
+      this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+    }
+
+    /**
+     * Records that the session was used, which restarts its idle timeout.
+     */
+    public void touch() {
+      lastActivity = System.nanoTime();
+    }
+
+    /**
+     * Cancels the timeouts, e.g. because the session was stopped.
+     */
+    public void cancel() {
+      timers.remove(sessionId, this);
+      cancelFutures();
+    }
+
+    private void cancelFutures() {
+      ScheduledFuture<?> future = absoluteFuture;
+      if (future != null) {
+        future.cancel(false);
+      }
+      future = idleFuture;
+      if (future != null) {
+        future.cancel(false);
+      }
+    }
+
+    private class AbsoluteTimeout implements Runnable {
+      @Override
+      public void run() {
+        expire(SessionTimer.this, "session timeout", absoluteExpirations);
+      }
+    }
+
+    private class IdleTimeout implements Runnable {
+      @Override
+      public void run() {
+        long idleNanos = System.nanoTime() - lastActivity;
+        if (idleNanos >= idleTimeoutNanos) {
+          expire(SessionTimer.this, "idle timeout", idleExpirations);
+        } else if (timers.get(sessionId) == SessionTimer.this && !scheduler.isShutdown()) {
+          idleFuture = scheduler.schedule(this, idleTimeoutNanos - idleNanos, TimeUnit.NANOSECONDS);
+        }
+      }
+    }
+  }
+}
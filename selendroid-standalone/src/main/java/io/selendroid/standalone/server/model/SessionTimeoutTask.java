@@ -15,24 +15,26 @@ package io.selendroid.standalone.server.model;
 
 import io.selendroid.standalone.exceptions.AndroidDeviceException;
 
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
-public class SessionTimeoutTask extends TimerTask {
+/**
+ * Stops a session that exceeded one of its timeouts.
+ */
+public class SessionTimeoutTask implements Runnable {
   private static final Logger log = Logger.getLogger(SessionTimeoutTask.class.getName());
   private String sessionId;
+  private String reason;
   private SelendroidStandaloneDriver driver;
 
-  public SessionTimeoutTask(SelendroidStandaloneDriver driver, String sessionId) {
+  public SessionTimeoutTask(SelendroidStandaloneDriver driver, String sessionId, String reason) {
     this.sessionId = sessionId;
+    this.reason = reason;
     this.driver = driver;
   }
 
   @Override
   public void run() {
-    int sessionTimeout = driver.getSelendroidConfiguration().getSessionTimeoutMillis();
-    log.info("Stopping session after configured session timeout of " + (sessionTimeout / 1000)
-        + " seconds.");
+    log.info("Stopping session " + sessionId + " after the configured " + reason + ".");
     try {
       driver.stopSession(sessionId);
     } catch (AndroidDeviceException e) {
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Timings of the operations of the standalone server, e.g. the stages of the session startup.
+ */
+public class StandaloneMetrics {
+  private final ConcurrentMap<String, Timing> timings = new ConcurrentHashMap<String, Timing>();
+
+  public void recordTiming(String name, long durationMillis) {
+    Timing timing = timings.get(name);
+    if (timing == null) {
+      Timing newTiming = new Timing();
+      timing = timings.putIfAbsent(name, newTiming);
+      if (timing == null) {
+        timing = newTiming;
+      }
+    }
+    timing.record(durationMillis);
+  }
+
+  public JSONObject toJson() throws JSONException {
+    JSONObject json = new JSONObject();
+    for (Map.Entry<String, Timing> entry : new TreeMap<String, Timing>(timings).entrySet()) {
+      json.put(entry.getKey(), entry.getValue().toJson());
+    }
+    return json;
+  }
+
+  private static class Timing {
+    private long count = 0;
+    private long totalMillis = 0;
+    private long maxMillis = 0;
+    private long lastMillis = 0;
+
+    synchronized void record(long durationMillis) {
+      count++;
+      totalMillis += durationMillis;
+      maxMillis = Math.max(maxMillis, durationMillis);
+      lastMillis = durationMillis;
+    }
+
+    synchronized JSONObject toJson() throws JSONException {
+      JSONObject json = new JSONObject();
+      json.put("count", count);
+      json.put("totalMillis", totalMillis);
+      json.put("averageMillis", count > 0 ? totalMillis / count : 0);
+      json.put("maxMillis", maxMillis);
+      json.put("lastMillis", lastMillis);
+      return json;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.util;
+
+import io.selendroid.server.common.exceptions.SelendroidException;
+import io.selendroid.standalone.server.DeviceResponse;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP client used to proxy commands to the selendroid-server on the devices. Every device is a
+ * separate route with its own bounded set of keep-alive connections; the total number of
+ * connections is sized from the maximum number of concurrent sessions.
+ */
+public class DeviceProxyClient implements Closeable {
+  private static final Logger log = Logger.getLogger(DeviceProxyClient.class.getName());
+
+  public static final int CONNECTIONS_PER_DEVICE = 4;
+  public static final int DEFAULT_MAX_DEVICES = 10;
+  static final int CONNECT_TIMEOUT_MS = 5000;
+  static final int CONNECTION_REQUEST_TIMEOUT_MS = 10000;
+  static final int SHORT_COMMAND_TIMEOUT_MS = 60000;
+  static final int COMMAND_TIMEOUT_MS = 2 * 60000;
+  static final int LONG_COMMAND_TIMEOUT_MS = 10 * 60000;
+  private static final long KEEP_ALIVE_MS = 30000;
+
+  // Commands which may legitimately block on the device for a long time: page loads, element
+  // lookups honouring the implicit wait, scripts, gestures and large responses.
+  private static final Pattern LONG_COMMANDS = Pattern.compile(
+      ".*/(url|elements?|execute|execute_async|actions|touch/[^/]+|screenshot|source|back|forward|refresh)"
+          + "(\\?.*)?$");
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient httpClient;
+
+  /**
+   * @param maxDevices the maximum number of devices that are used at the same time, usually the
+   *        value of {@code -maxSession}.
+   */
+  public DeviceProxyClient(int maxDevices) {
+    connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setDefaultMaxPerRoute(CONNECTIONS_PER_DEVICE);
+    connectionManager.setMaxTotal(
+        (maxDevices > 0 ? maxDevices : DEFAULT_MAX_DEVICES) * CONNECTIONS_PER_DEVICE);
+    httpClient = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+          @Override
+          public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = super.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : KEEP_ALIVE_MS;
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Sends a command to the selendroid-server listening on the given local port and returns its
+   * response without parsing it, so that it can be passed through to the client as-is.
+   *
+   * @return the response of the device, or {@code null} if the command is unknown to it.
+   */
+  public DeviceResponse forward(int port, String sessionId, String method, String uri,
+      String body) throws IOException {
+    HttpRequestBase request = newRequest(method, uri, body);
+    request.setConfig(requestConfigFor(method, uri));
+
+    final CloseableHttpResponse response =
+        httpClient.execute(new HttpHost("localhost", port), request);
+    HttpEntity entity = response.getEntity();
+    if (response.getStatusLine().getStatusCode() == 404 || entity == null) { // Unknown command
+      EntityUtils.consumeQuietly(entity);
+      response.close();
+      return null;
+    }
+    Header contentType = entity.getContentType();
+    return new DeviceResponse(sessionId, contentType != null ? contentType.getValue() : null,
+        entity.getContent(), entity.getContentLength(), new Closeable() {
+          @Override
+          public void close() throws IOException {
+            // hands the connection back to the pool
+            EntityUtils.consumeQuietly(response.getEntity());
+            response.close();
+          }
+        });
+  }
+
+  /**
+   * Closes the pooled connections that have not been used for longer than they are kept alive,
+   * e.g. those of devices whose session has ended. Connections of running sessions are left open.
+   */
+  public void closeExpiredConnections() {
+    connectionManager.closeExpiredConnections();
+    connectionManager.closeIdleConnections(KEEP_ALIVE_MS, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void close() throws IOException {
+    httpClient.close();
+  }
+
+  static RequestConfig requestConfigFor(String method, String uri) {
+    return RequestConfig.custom()
+        .setConnectTimeout(CONNECT_TIMEOUT_MS)
+        .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT_MS)
+        .setSocketTimeout(socketTimeoutFor(method, uri))
+        .setStaleConnectionCheckEnabled(true)
+        .build();
+  }
+
+  static int socketTimeoutFor(String method, String uri) {
+    if (LONG_COMMANDS.matcher(uri).matches()) {
+      return LONG_COMMAND_TIMEOUT_MS;
+    }
+    if ("post".equalsIgnoreCase(method)) {
+      return COMMAND_TIMEOUT_MS;
+    }
+    return SHORT_COMMAND_TIMEOUT_MS;
+  }
+
+  private static HttpRequestBase newRequest(String method, String uri, String body) {
+    if ("get".equalsIgnoreCase(method)) {
+      log.fine("Proxy GET to the device: " + uri);
+      return new HttpGet(uri);
+    } else if ("post".equalsIgnoreCase(method)) {
+      log.fine("Proxy POST to the device: " + uri);
+      HttpPost post = new HttpPost(uri);
+      // the payload is passed through as-is instead of being parsed and serialized again
+      post.setEntity(new StringEntity(body == null || body.isEmpty() ? "{}" : body,
+          ContentType.APPLICATION_JSON));
+      return post;
+    } else if ("delete".equalsIgnoreCase(method)) {
+      log.fine("Proxy DELETE to the device: " + uri);
+      return new HttpDelete(uri);
+    }
+    throw new SelendroidException("HTTP method not supported: " + method);
+  }
+}
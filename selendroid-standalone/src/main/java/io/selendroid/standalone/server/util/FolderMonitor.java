@@ -14,12 +14,14 @@
 
 package io.selendroid.standalone.server.util;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import io.selendroid.standalone.SelendroidConfiguration;
-import io.selendroid.standalone.exceptions.AndroidSdkException;
 import io.selendroid.standalone.server.model.SelendroidStandaloneDriver;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystems;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
@@ -28,23 +30,55 @@ import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Watches the app folder and keeps the app store of the driver in sync with it: new APKs are
+ * added, overwritten ones are hot-replaced and deleted ones are removed.
+ *
+ * The watcher thread blocks until the file system reports changes. Writes are debounced, an APK
+ * is only processed once its size and modification time have not changed for
+ * {@link #DEFAULT_DEBOUNCE_MILLIS}, so that partially copied files are not resigned. Resigning is
+ * done on a small background pool, one change per file at a time.
+ */
 public class FolderMonitor implements Runnable {
-
+  public static final long DEFAULT_DEBOUNCE_MILLIS = 1000;
+  private static final int WORKERS = 2;
   private static final Logger log = Logger.getLogger(FolderMonitor.class.getName());
   private SelendroidConfiguration selendroidConfiguration;
   private SelendroidStandaloneDriver selendroidStandaloneDriver;
   private WatchService folderWatcher;
-  private final Object stoppedLock;
-  private boolean stopped;
+  private final long debounceMillis;
+  private final ConcurrentMap<File, PendingChange> pendingChanges =
+      new ConcurrentHashMap<File, PendingChange>();
+  private final ConcurrentMap<File, PendingChange> processing =
+      new ConcurrentHashMap<File, PendingChange>();
+  private final ScheduledExecutorService debouncer = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("selendroid-app-folder-debounce").setDaemon(true)
+          .build());
+  private final ExecutorService workers = Executors.newFixedThreadPool(WORKERS,
+      new ThreadFactoryBuilder().setNameFormat("selendroid-app-folder-%d").setDaemon(true).build());
+  private volatile boolean stopped;
   private Thread thread;
 
   public FolderMonitor(SelendroidStandaloneDriver selendroidStandaloneDriver, SelendroidConfiguration selendroidConfiguration)
       throws IOException {
+    this(selendroidStandaloneDriver, selendroidConfiguration, DEFAULT_DEBOUNCE_MILLIS);
+  }
+
+  /* package */FolderMonitor(SelendroidStandaloneDriver selendroidStandaloneDriver,
+      SelendroidConfiguration selendroidConfiguration, long debounceMillis) throws IOException {
     this.selendroidStandaloneDriver = selendroidStandaloneDriver;
     this.selendroidConfiguration = selendroidConfiguration;
-    stoppedLock = new Object();
+    this.debounceMillis = debounceMillis;
     stopped = false;
     init();
     folderWatcher = FileSystems.getDefault().newWatchService();
@@ -76,24 +110,23 @@ public class FolderMonitor implements Runnable {
 
   @Override
   public void run() {
-    synchronized (stoppedLock) {
-      while (!stopped) {
-        checkForChanges();
-        try {
-          stoppedLock.wait(1000, 0);
-        } catch (InterruptedException ignore) {
-        }
+    while (!stopped) {
+      WatchKey key;
+      try {
+        key = folderWatcher.take();
+      } catch (InterruptedException e) {
+        continue;
+      } catch (ClosedWatchServiceException e) {
+        break;
       }
-    }
-  }
-
-  private void checkForChanges() {
-    final WatchKey key = folderWatcher.poll();
-
-    if (key != null) {
       for (WatchEvent<?> watchEvent : key.pollEvents()) {
-        final Path filePath = (Path) watchEvent.context();
         final WatchEvent.Kind<?> kind = watchEvent.kind();
+        if (kind.equals(StandardWatchEventKinds.OVERFLOW)) {
+          log.warning("Changes of the app folder were lost, rescanning it.");
+          rescan();
+          continue;
+        }
+        final Path filePath = (Path) watchEvent.context();
         log.fine(kind + " : " + filePath);
         handleFileChange(kind,
                          new File(selendroidConfiguration.getAppFolderToMonitor(),
@@ -101,27 +134,66 @@ public class FolderMonitor implements Runnable {
       }
 
       boolean valid = key.reset();
-      if (!valid) {
+      if (!valid && !stopped) {
         log.warning("Cannot monitor this folder anymore. Has it been deleted?");
-        stop();
+        stopped = true;
       }
     }
   }
 
-  private void handleFileChange(WatchEvent.Kind kind, File file) {
-    if (kind.equals(StandardWatchEventKinds.ENTRY_CREATE)) {
-      if (isApp(file)) {
-        // new file but only added to the list only 
-        // if they are not a resigned files.
-        if(!isResigned(file)) {
-            log.info("New app found! " + file.getName());
-            addToAppStore(file);
-        }
+  private void handleFileChange(WatchEvent.Kind<?> kind, File file) {
+    // the apps the driver resigned are not put into the folder, but older versions did
+    if (!isApp(file) || isResigned(file)) {
+      return;
+    }
+    if (kind.equals(StandardWatchEventKinds.ENTRY_DELETE)) {
+      schedule(file, true, 0);
+    } else {
+      // created or modified, the file might still be written to
+      schedule(file, false, debounceMillis);
+    }
+  }
+
+  private void rescan() {
+    File[] listOfFiles = new File(selendroidConfiguration.getAppFolderToMonitor()).listFiles();
+    if (listOfFiles == null) {
+      return;
+    }
+    for (File file : listOfFiles) {
+      if (isApp(file) && !isResigned(file)) {
+        schedule(file, false, debounceMillis);
+      }
+    }
+  }
+
+  /**
+   * (Re)starts the debounce period of a file. Every further event restarts it again.
+   */
+  private void schedule(final File file, boolean deleted, long delayMillis) {
+    PendingChange change = new PendingChange(file, deleted);
+    PendingChange previous = pendingChanges.put(file, change);
+    if (previous != null) {
+      previous.cancel();
+    }
+    change.schedule(delayMillis);
+  }
+
+  private void process(PendingChange change) {
+    File file = change.file;
+    try {
+      if (change.deleted) {
+        log.info("App deleted: " + file.getName());
+        selendroidStandaloneDriver.removeFromAppsStore(file);
+      } else {
+        log.info("New or modified app found! " + file.getName());
+        selendroidStandaloneDriver.replaceInAppsStore(file);
+        log.info("File added to app store:\n\t" + file.getAbsolutePath());
       }
-    } else if (kind.equals(StandardWatchEventKinds.ENTRY_MODIFY)) {
-      log.info("App modified - no handler implemented!");
-    } else if (kind.equals(StandardWatchEventKinds.ENTRY_DELETE)) {
-      log.info("App deleted - no handler implemented!");
+    } catch (Exception e) {
+      log.log(Level.WARNING, "An error occurred while accessing the details of'" + file.getName()
+          + "'. ", e);
+    } finally {
+      processing.remove(file);
     }
   }
 
@@ -136,20 +208,6 @@ public class FolderMonitor implements Runnable {
     }
   }
 
-  private void addToAppStore(File file) {
-    String app;
-    if (isApp(file)) {
-      app = file.getAbsolutePath();
-      try {
-        selendroidStandaloneDriver.addToAppsStore(file);
-        log.info("File added to app store:\n\t" + app);
-      }catch (AndroidSdkException e) {
-        log.info("An error occurred while accessing the details of'" + file.getName()
-                + "'. ");
-      }
-    }
-  }
-
   private boolean isApp(File file) {
     if (file != null) {
       return file.getAbsolutePath().endsWith(".apk");
@@ -161,8 +219,91 @@ public class FolderMonitor implements Runnable {
     return (isApp(file) && file.getAbsolutePath().contains("resigned"));
   }
 
+  /**
+   * A change of a file that waits for the file to become stable.
+   */
+  private class PendingChange implements Runnable {
+    private final File file;
+    private final boolean deleted;
+    private long length;
+    private long lastModified;
+    private volatile boolean cancelled = false;
+    private volatile ScheduledFuture<?> check;
+
+    PendingChange(File file, boolean deleted) {
+      this.file = file;
+      this.deleted = deleted;
+      this.length = file.length();
+      this.lastModified = file.lastModified();
+    }
+
+    void schedule(long delayMillis) {
+      try {
+        check = debouncer.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+      } catch (RuntimeException e) {
+        // rejected after the monitor has been stopped
+        pendingChanges.remove(file, this);
+      }
+    }
+
+    void cancel() {
+      cancelled = true;
+      ScheduledFuture<?> scheduled = check;
+      if (scheduled != null) {
+        scheduled.cancel(false);
+      }
+    }
+
+    @Override
+    public void run() {
+      if (cancelled) {
+        return;
+      }
+      if (!deleted) {
+        if (!file.exists()) {
+          // the delete event takes over
+          pendingChanges.remove(file, this);
+          return;
+        }
+        long currentLength = file.length();
+        long currentLastModified = file.lastModified();
+        if (currentLength != length || currentLastModified != lastModified) {
+          log.fine(file.getName() + " is still being written, waiting for it to be complete.");
+          length = currentLength;
+          lastModified = currentLastModified;
+          schedule(debounceMillis);
+          return;
+        }
+      }
+      if (processing.putIfAbsent(file, this) != null) {
+        // an earlier change of the file is still being processed
+        schedule(debounceMillis);
+        return;
+      }
+      if (!pendingChanges.remove(file, this)) {
+        // superseded by a newer change in the meantime
+        processing.remove(file, this);
+        return;
+      }
+      try {
+        workers.execute(new Runnable() {
+          @Override
+          public void run() {
+            process(PendingChange.this);
+          }
+        });
+      } catch (RuntimeException e) {
+        processing.remove(file, this);
+      }
+    }
+  }
+
   public void start() {
-    thread = new Thread(this);
+    if (stopped) {
+      return;
+    }
+    thread = new Thread(this, "selendroid-app-folder-monitor");
+    thread.setDaemon(true);
     thread.start();
     log.info("The Folder Monitor has been started with '"
         + selendroidConfiguration.getAppFolderToMonitor()
@@ -170,8 +311,15 @@ public class FolderMonitor implements Runnable {
   }
 
   public void stop() {
-    synchronized (stoppedLock) {
-      stopped = true;
+    stopped = true;
+    debouncer.shutdownNow();
+    workers.shutdownNow();
+    try {
+      if (folderWatcher != null) {
+        folderWatcher.close();
+      }
+    } catch (IOException e) {
+      log.log(Level.FINE, "Error closing the folder watcher", e);
     }
     try {
       if (thread != null) {
@@ -19,6 +19,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import io.selendroid.server.common.exceptions.SelendroidException;
+import io.selendroid.standalone.io.ReadinessProbe;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
@@ -36,14 +37,16 @@ import org.json.JSONObject;
 
 public class HttpClientUtil {
   private static final Logger log = Logger.getLogger(HttpClientUtil.class.getName());
-  private static HttpClient httpClient = null;
+  private static volatile HttpClient httpClient = null;
 
   public static HttpClient getHttpClient() {
     if (httpClient == null) {
       synchronized (HttpClientUtil.class) {
-        httpClient = HttpClients.custom()
-          .setConnectionManager(new PoolingHttpClientConnectionManager())
-          .build();
+        if (httpClient == null) {
+          httpClient = HttpClients.custom()
+            .setConnectionManager(new PoolingHttpClientConnectionManager())
+            .build();
+        }
       }
     }
 
@@ -98,18 +101,20 @@ public class HttpClientUtil {
     }
   }
 
-  public static void waitForServer(int port, long timeout, TimeUnit timeoutUnit) {
-    long end = System.currentTimeMillis() + timeoutUnit.toMillis(timeout);
-    while (!isServerStarted(port)) {
-      if (System.currentTimeMillis() > end) {
-        throw new SelendroidException(
-            String.format("Selendroid standalone server failed to start within %d %s", timeout, timeoutUnit));
-      }
-      try {
-        Thread.sleep(500);
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-      }
+  public static void waitForServer(final int port, long timeout, TimeUnit timeoutUnit) {
+    boolean started = ReadinessProbe.named("standalone.serverStart")
+        .withInitialInterval(50)
+        .withMaxInterval(500)
+        .withTimeout(timeout, timeoutUnit)
+        .await(new ReadinessProbe.Condition() {
+          @Override
+          public boolean isReady() {
+            return isServerStarted(port);
+          }
+        });
+    if (!started) {
+      throw new SelendroidException(
+          String.format("Selendroid standalone server failed to start within %d %s", timeout, timeoutUnit));
     }
   }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android;
+
+import io.selendroid.standalone.exceptions.AndroidDeviceException;
+import io.selendroid.standalone.server.support.EmulatorConsoleStub;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TelnetClientTest {
+  private EmulatorConsoleStub console;
+
+  @Before
+  public void startConsole() throws Exception {
+    console = new EmulatorConsoleStub("Nexus_5");
+  }
+
+  @After
+  public void stopConsole() throws Exception {
+    console.stop();
+  }
+
+  @Test
+  public void shouldReturnOutputOfCommand() throws Exception {
+    TelnetClient client = new TelnetClient(console.getPort());
+    try {
+      Assert.assertEquals(Arrays.asList("Nexus_5"), client.execute("avd name", 1000));
+      Assert.assertEquals("Nexus_5", client.sendCommand("avd name"));
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void shouldSaveAndLoadSnapshots() throws Exception {
+    TelnetClient client = new TelnetClient(console.getPort());
+    try {
+      Assert.assertEquals(Collections.emptyList(), client.execute("avd snapshot save clean", 1000));
+      Assert.assertEquals(Collections.emptyList(), client.execute("avd snapshot load clean", 1000));
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void shouldFailIfConsoleRejectsCommand() throws Exception {
+    TelnetClient client = new TelnetClient(console.getPort());
+    try {
+      client.execute("avd snapshot load missing", 1000);
+      Assert.fail("Expected loading an unknown snapshot to fail.");
+    } catch (AndroidDeviceException e) {
+      Assert.assertTrue(e.getMessage().contains("KO: snapshot 'missing'"));
+    } finally {
+      client.close();
+    }
+  }
+}
@@ -13,61 +13,42 @@
  */
 package io.selendroid.standalone.android.impl;
 
-import org.apache.commons.exec.CommandLine;
-import org.hamcrest.BaseMatcher;
-import org.hamcrest.Description;
-import org.hamcrest.Matcher;
-import org.junit.Ignore;
+import io.selendroid.standalone.android.KeyEvent;
+import io.selendroid.standalone.server.support.FakeDeviceCommandChannel;
+import org.junit.Before;
 import org.junit.Test;
 
-import java.util.regex.Pattern;
+import java.io.File;
+import java.util.Arrays;
 
 import static junit.framework.Assert.assertEquals;
-import static org.mockito.Mockito.anyString;
-import static org.mockito.Mockito.argThat;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 public class AbstractDeviceTest {
-  private static final Matcher<CommandLine> matchesCmdLine(final String cmdString) {
-    return new BaseMatcher<CommandLine>() {
-      @Override
-      public boolean matches(Object cmdLine) {
-        if (!(cmdLine instanceof CommandLine)) {
-          return false;
-        }
-        return Pattern.matches(cmdString, cmdLine.toString());
-      }
-
-      @Override
-      public void describeTo(Description description) {
-        description.appendText("command was not " + cmdString);
-      }
-    };
+  private FakeDeviceCommandChannel channel;
+  private AbstractDevice device;
+
+  @Before
+  public void setUp() {
+    channel = new FakeDeviceCommandChannel();
+    device = mock(AbstractDevice.class, CALLS_REAL_METHODS);
+    device.setCommandChannel(channel);
   }
 
   @Test
-  @Ignore
   public void testGetCrashLogContents() {
-    AbstractDevice device = mock(AbstractDevice.class);
-    when(device.getExternalStoragePath()).thenReturn("/storage");
-    when(device.getCrashLog()).thenCallRealMethod();
-    when(
-        device.executeCommandQuietly(argThat(matchesCmdLine(".*adb(\\.exe)?, shell, ls, /storage/]$"))))  // The trailing '/' is key
-        .thenReturn("some_file\nappcrash.log\nanother_file");
-    when(
-        device.executeCommandQuietly(argThat(matchesCmdLine(".*adb(\\.exe)?, shell, cat, /storage/appcrash\\.log]$"))))
-        .thenReturn("crash log contents");
+    channel.respondTo("echo \\$EXTERNAL_STORAGE", "/storage")
+        .respondTo("ls /storage/", "some_file\nappcrash.log\nanother_file")  // The trailing '/' is key
+        .respondTo("cat /storage/appcrash\\.log", "crash log contents");
 
     assertEquals("crash log contents", device.getCrashLog());
   }
 
   @Test
-  @Ignore
   public void testListThirdPartyProcesses() {
-    AbstractDevice device = mock(AbstractDevice.class);
-    when(device.listRunningThirdPartyProcesses()).thenCallRealMethod();
-    when(device.runAdbCommand(anyString())).thenCallRealMethod();
     String psOutput =
         "PID NAME\n" +
         "11 com.example.myapp\n" +
@@ -75,13 +56,79 @@ public class AbstractDeviceTest {
         "15 com.example.another\n" +
         "1 zygote\n" +
         "23 /system/bin/mediaserver";
-    when(
-        device.executeCommandQuietly(argThat(matchesCmdLine(".*adb(\\.exe)?, shell, ps]$"))))
-            .thenReturn(psOutput);
+    channel.respondTo("ps", psOutput);
     String expected =
         "PID NAME\n" +
         "11 com.example.myapp\n" +
         "15 com.example.another\n";
     assertEquals(expected, device.listRunningThirdPartyProcesses());
   }
+
+  @Test
+  public void testIsInstalledAsksThePackageManager() throws Exception {
+    channel.respondTo("pm list packages io\\.selendroid\\.testapp", "package:io.selendroid.testapp");
+
+    assertTrue(device.isInstalled("io.selendroid.testapp"));
+    assertFalse(device.isInstalled("io.selendroid.other"));
+    assertEquals(Arrays.asList("shell pm list packages io.selendroid.testapp",
+        "shell pm list packages io.selendroid.other"), channel.getCommands());
+  }
+
+  @Test
+  public void testShouldForwardToThePortPickedByAdb() {
+    int port = device.forwardPort(0, 8080);
+
+    assertEquals(8080, (int) channel.getForwards().get(port));
+  }
+
+  @Test
+  public void testRunAdbShellCommandUsesTheChannel() {
+    channel.respondTo("input text 'hello world'", "done");
+
+    assertEquals("done", device.runAdbCommand("shell input text 'hello world'"));
+    assertEquals(Arrays.asList("shell input text 'hello world'"), channel.getCommands());
+  }
+
+  @Test
+  public void testKeyEventsThatDontNavigateDontWait() {
+    device.inputKeyevent(KeyEvent.KEYCODE_DEL);
+
+    assertEquals(Arrays.asList("shell input keyevent " + KeyEvent.KEYCODE_DEL),
+        channel.getCommands());
+  }
+
+  @Test
+  public void testNavigationKeyEventsLookUpTheFocusBeforeTheInput() {
+    channel.respondTo("dumpsys window windows", "  mCurrentFocus=Window{1 io.selendroid.testapp}");
+    device.inputKeyevent(KeyEvent.KEYCODE_BACK);
+
+    assertEquals(Arrays.asList("shell dumpsys window windows", "shell input keyevent 4"),
+        channel.getCommands().subList(0, 2));
+  }
+
+  @Test
+  public void testInvokeActivityWaitsNoLongerThanTheInputTimeout() {
+    channel.respondTo("dumpsys window windows", "  mCurrentFocus=Window{1 io.selendroid.testapp}");
+    long start = System.currentTimeMillis();
+    device.invokeActivity("android.settings.AIRPLANE_MODE_SETTINGS");
+
+    assertTrue(System.currentTimeMillis() - start < 1000);
+    assertTrue(channel.getCommands().contains(
+        "shell am start -a android.settings.AIRPLANE_MODE_SETTINGS"));
+  }
+
+  @Test
+  public void testCreatesTheLogcatSpillDirectory() throws Exception {
+    File parent = File.createTempFile("logcat", "");
+    parent.delete();
+    File directory = new File(parent, "device-logs");
+    try {
+      device.setLogcatSpillDirectory(directory);
+
+      assertTrue(directory.isDirectory());
+    } finally {
+      directory.delete();
+      parent.delete();
+    }
+  }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ApkManifestTest {
+  private static final String APK_FILE = "src/test/resources/selendroid-test-app.apk";
+  private static final String SERVER_APK_FILE = "src/test/resources/selendroid-server.apk";
+  private static final String INVALID_APK_FILE =
+      "src/test/resources/selendroid-test-app-invalid.apk";
+
+  @Test
+  public void shouldReadManifestOfTestApp() throws Exception {
+    ApkManifest manifest = ApkManifest.read(new File(APK_FILE));
+    Assert.assertEquals("io.selendroid.testapp", manifest.getPackageName());
+    Assert.assertEquals("0.4-SNAPSHOT", manifest.getVersionName());
+    Assert.assertEquals("io.selendroid.testapp.HomeScreenActivity",
+        manifest.getLaunchableActivity());
+  }
+
+  @Test
+  public void shouldReadManifestOfServerApk() throws Exception {
+    ApkManifest manifest = ApkManifest.read(new File(SERVER_APK_FILE));
+    Assert.assertNotNull(manifest.getPackageName());
+    Assert.assertNull("The selendroid-server has no launcher activity",
+        manifest.getLaunchableActivity());
+  }
+
+  @Test(expected = IOException.class)
+  public void shouldFailIfApkHasNoManifest() throws Exception {
+    ApkManifest.read(new File(INVALID_APK_FILE));
+  }
+
+  @Test(expected = IOException.class)
+  public void shouldFailOnTruncatedManifest() throws Exception {
+    ApkManifest.parse(new byte[] {0x03, 0x00, 0x08, 0x00, 0x00, 0x10, 0x00, 0x00, 0x01, 0x00});
+  }
+}
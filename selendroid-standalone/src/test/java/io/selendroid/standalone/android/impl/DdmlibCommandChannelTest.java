@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import com.android.ddmlib.IDevice;
+import com.android.ddmlib.IShellOutputReceiver;
+import io.selendroid.standalone.exceptions.AndroidSdkException;
+import io.selendroid.standalone.server.support.FakeDeviceCommandChannel;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DdmlibCommandChannelTest {
+  private IDevice device;
+  private FakeDeviceCommandChannel fallback;
+  private DdmlibCommandChannel channel;
+
+  @Before
+  public void setUp() {
+    device = mock(IDevice.class);
+    when(device.isOnline()).thenReturn(true);
+    fallback = new FakeDeviceCommandChannel().respondTo("getprop ro.build.version.sdk", "fallback");
+    channel = new DdmlibCommandChannel(device, fallback);
+  }
+
+  @Test
+  public void shouldExecuteShellCommandsWithDdmlib() throws Exception {
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        byte[] output = "19\r\n".getBytes();
+        IShellOutputReceiver receiver = (IShellOutputReceiver) invocation.getArguments()[1];
+        receiver.addOutput(output, 0, output.length);
+        receiver.flush();
+        return null;
+      }
+    }).when(device).executeShellCommand(eq("getprop ro.build.version.sdk"),
+        any(IShellOutputReceiver.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+
+    Assert.assertEquals("19", channel.shell("getprop ro.build.version.sdk", 1000));
+    Assert.assertEquals(Collections.emptyList(), fallback.getCommands());
+  }
+
+  @Test
+  public void shouldFallBackIfTheConnectionToAdbFails() throws Exception {
+    doThrow(new IOException("connection reset")).when(device)
+        .executeShellCommand(eq("getprop ro.build.version.sdk"), any(IShellOutputReceiver.class),
+            anyLong(), eq(TimeUnit.MILLISECONDS));
+
+    Assert.assertEquals("fallback", channel.shell("getprop ro.build.version.sdk", 1000));
+  }
+
+  @Test
+  public void shouldFallBackIfTheDeviceIsOffline() throws Exception {
+    when(device.isOnline()).thenReturn(false);
+
+    Assert.assertEquals("fallback", channel.shell("getprop ro.build.version.sdk", 1000));
+    Assert.assertEquals(8080, channel.forward(8080, 8080));
+    Assert.assertEquals(Arrays.asList("shell getprop ro.build.version.sdk", "forward tcp:8080 tcp:8080"),
+        fallback.getCommands());
+  }
+
+  @Test
+  public void shouldLetAdbPickTheLocalPort() throws Exception {
+    int port = channel.forward(0, 8080);
+
+    Assert.assertEquals(8080, (int) fallback.getForwards().get(port));
+  }
+
+  @Test
+  public void shouldForwardWithDdmlib() throws Exception {
+    Assert.assertEquals(4444, channel.forward(4444, 8080));
+    channel.removeForward(4444, 8080);
+
+    verify(device).createForward(4444, 8080);
+    verify(device).removeForward(4444, 8080);
+    Assert.assertEquals(Collections.emptyList(), fallback.getCommands());
+  }
+
+  @Test
+  public void shouldReportInstallationErrors() throws Exception {
+    when(device.installPackage("/tmp/app.apk", true, "-d")).thenReturn("INSTALL_FAILED_OLDER_SDK");
+
+    try {
+      channel.install("/tmp/app.apk");
+      Assert.fail("The installation should fail.");
+    } catch (AndroidSdkException e) {
+      Assert.assertTrue(e.getMessage().contains("INSTALL_FAILED_OLDER_SDK"));
+    }
+  }
+}
@@ -14,7 +14,9 @@
 package io.selendroid.standalone.android.impl;
 
 import java.io.File;
+import java.util.zip.ZipFile;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -94,4 +96,25 @@ public class DefaultAndroidAppTest {
       // expected
     }
   }
+
+  @Test
+  public void testShouldDeleteFilesFromWithinApk() throws Exception {
+    File apk = File.createTempFile("selendroid-test-app", ".apk");
+    apk.deleteOnExit();
+    FileUtils.copyFile(new File(APK_FILE), apk);
+    AndroidApp app = new DefaultAndroidApp(apk);
+
+    app.deleteFilesFromWithinApk("assets/web/formPage.html", "assets/web/icon.gif",
+        "does/not/exist");
+
+    ZipFile zip = new ZipFile(apk);
+    try {
+      Assert.assertNull(zip.getEntry("assets/web/formPage.html"));
+      Assert.assertNull(zip.getEntry("assets/web/icon.gif"));
+      Assert.assertNotNull(zip.getEntry("assets/web/iframes.html"));
+    } finally {
+      zip.close();
+    }
+    Assert.assertEquals("io.selendroid.testapp:0.4-SNAPSHOT", app.getAppId());
+  }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import com.android.ddmlib.RawImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class FrameBufferConverterTest {
+  private static final int WIDTH = 37;
+  private static final int HEIGHT = 23;
+
+  static RawImage frame(int bpp, int redOffset, int redLength, int greenOffset, int greenLength,
+      int blueOffset, int blueLength, int width, int height, long seed) {
+    RawImage rawImage = new RawImage();
+    rawImage.bpp = bpp;
+    rawImage.width = width;
+    rawImage.height = height;
+    rawImage.red_offset = redOffset;
+    rawImage.red_length = redLength;
+    rawImage.green_offset = greenOffset;
+    rawImage.green_length = greenLength;
+    rawImage.blue_offset = blueOffset;
+    rawImage.blue_length = blueLength;
+    rawImage.size = width * height * bpp / 8;
+    rawImage.data = new byte[rawImage.size];
+    new Random(seed).nextBytes(rawImage.data);
+    return rawImage;
+  }
+
+  private void assertConvertedLikeDdmlib(RawImage rawImage) {
+    BufferedImage image = FrameBufferConverter.toBufferedImage(rawImage);
+
+    Assert.assertEquals(BufferedImage.TYPE_3BYTE_BGR, image.getType());
+    int index = 0;
+    for (int y = 0; y < rawImage.height; y++) {
+      for (int x = 0; x < rawImage.width; x++) {
+        Assert.assertEquals("Pixel " + x + "/" + y, rawImage.getARGB(index) | 0xFF000000,
+            image.getRGB(x, y));
+        index += rawImage.bpp >> 3;
+      }
+    }
+  }
+
+  @Test
+  public void shouldConvertRgb565() {
+    assertConvertedLikeDdmlib(frame(16, 11, 5, 5, 6, 0, 5, WIDTH, HEIGHT, 1));
+  }
+
+  @Test
+  public void shouldConvertRgba8888() {
+    assertConvertedLikeDdmlib(frame(32, 0, 8, 8, 8, 16, 8, WIDTH, HEIGHT, 2));
+  }
+
+  @Test
+  public void shouldConvertBgra8888() {
+    assertConvertedLikeDdmlib(frame(32, 16, 8, 8, 8, 0, 8, WIDTH, HEIGHT, 3));
+  }
+
+  @Test
+  public void shouldConvertChannelsThatAreNotByteAligned() {
+    assertConvertedLikeDdmlib(frame(32, 20, 6, 10, 6, 2, 6, WIDTH, HEIGHT, 4));
+  }
+}
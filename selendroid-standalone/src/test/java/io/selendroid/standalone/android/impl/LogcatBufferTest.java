@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import io.selendroid.standalone.android.LogcatEntry;
+import io.selendroid.standalone.android.LogcatFilter;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.List;
+import java.util.logging.Level;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogcatBufferTest {
+
+  @Test
+  public void testParsesLogcatTimeFormat() {
+    LogcatBuffer buffer = new LogcatBuffer();
+    LogcatEntry entry = buffer.add("01-02 03:04:05.678 W/ActivityManager(  123): Slow operation");
+
+    assertEquals(Level.WARNING, entry.getLevel());
+    assertEquals("ActivityManager", entry.getTag());
+    Calendar time = Calendar.getInstance();
+    time.setTimeInMillis(entry.getTimestamp());
+    assertEquals(Calendar.JANUARY, time.get(Calendar.MONTH));
+    assertEquals(2, time.get(Calendar.DAY_OF_MONTH));
+    assertEquals(3, time.get(Calendar.HOUR_OF_DAY));
+    assertEquals(4, time.get(Calendar.MINUTE));
+    assertEquals(5, time.get(Calendar.SECOND));
+    assertEquals(678, time.get(Calendar.MILLISECOND));
+  }
+
+  @Test
+  public void testLinesWithoutHeaderKeepPreviousTimestamp() {
+    LogcatBuffer buffer = new LogcatBuffer();
+    LogcatEntry first = buffer.add("01-02 03:04:05.678 I/Tag( 1): message");
+    LogcatEntry second = buffer.add("--------- beginning of main");
+
+    assertEquals(first.getTimestamp(), second.getTimestamp());
+    assertEquals(Level.FINE, second.getLevel());
+  }
+
+  @Test
+  public void testKeepsOnlyNewestEntries() {
+    LogcatBuffer buffer = new LogcatBuffer(3, null);
+    for (int i = 0; i < 5; i++) {
+      buffer.add("01-02 03:04:05.678 I/Tag( 1): line " + i);
+    }
+
+    List<LogcatEntry> entries = buffer.read(new LogcatFilter());
+    assertEquals(3, entries.size());
+    assertEquals(2, entries.get(0).getSequence());
+    assertTrue(entries.get(2).getLine().endsWith("line 4"));
+  }
+
+  @Test
+  public void testReadsFromCursor() {
+    LogcatBuffer buffer = new LogcatBuffer();
+    buffer.add("01-02 03:04:05.678 I/Tag( 1): first");
+    long cursor = buffer.getNextSequence();
+    buffer.add("01-02 03:04:05.679 I/Tag( 1): second");
+
+    List<LogcatEntry> entries = buffer.read(new LogcatFilter().since(cursor));
+    assertEquals(1, entries.size());
+    assertTrue(entries.get(0).getLine().endsWith("second"));
+  }
+
+  @Test
+  public void testFiltersByLevelAndTag() {
+    LogcatBuffer buffer = new LogcatBuffer();
+    buffer.add("01-02 03:04:05.678 D/Tag( 1): debug");
+    buffer.add("01-02 03:04:05.679 E/Tag( 1): error");
+    buffer.add("01-02 03:04:05.680 E/Other( 1): other error");
+
+    List<LogcatEntry> entries =
+        buffer.read(new LogcatFilter().minimumLevel(Level.WARNING).tag("Tag"));
+    assertEquals(1, entries.size());
+    assertTrue(entries.get(0).getLine().endsWith("error"));
+  }
+
+  @Test
+  public void testFiltersByTime() {
+    LogcatBuffer buffer = new LogcatBuffer();
+    LogcatEntry first = buffer.add("01-02 03:04:05.000 I/Tag( 1): first");
+    LogcatEntry second = buffer.add("01-02 03:04:06.000 I/Tag( 1): second");
+
+    List<LogcatEntry> entries =
+        buffer.read(new LogcatFilter().between(first.getTimestamp() + 1, second.getTimestamp()));
+    assertEquals(1, entries.size());
+    assertEquals(second.getSequence(), entries.get(0).getSequence());
+  }
+
+  @Test
+  public void testSpillsEvictedEntriesToFile() throws Exception {
+    File spillFile = File.createTempFile("logcat", ".log");
+    spillFile.deleteOnExit();
+    LogcatBuffer buffer = new LogcatBuffer(2, spillFile);
+    buffer.add("01-02 03:04:05.000 I/Tag( 1): first");
+    buffer.add("01-02 03:04:05.001 I/Tag( 1): second");
+    buffer.add("01-02 03:04:05.002 I/Tag( 1): third");
+    buffer.close();
+
+    List<String> spilled = FileUtils.readLines(spillFile, "UTF-8");
+    assertEquals(1, spilled.size());
+    assertTrue(spilled.get(0).endsWith("first"));
+  }
+
+  @Test
+  public void testStopsSpillingWhenTheFileCannotBeWritten() throws Exception {
+    File directory = File.createTempFile("logcat", "");
+    directory.deleteOnExit();
+    // a file can't be created below a regular file
+    LogcatBuffer buffer = new LogcatBuffer(1, new File(directory, "logcat.log"));
+    buffer.add("01-02 03:04:05.000 I/Tag( 1): first");
+    buffer.add("01-02 03:04:05.001 I/Tag( 1): second");
+    assertNull(buffer.getSpillFile());
+
+    buffer.add("01-02 03:04:05.002 I/Tag( 1): third");
+    assertEquals(1, buffer.read(new LogcatFilter()).size());
+    buffer.close();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+public class PngEncoderTest {
+
+  private void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+    Assert.assertEquals(expected.getWidth(), actual.getWidth());
+    Assert.assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        Assert.assertEquals("Pixel " + x + "/" + y, expected.getRGB(x, y), actual.getRGB(x, y));
+      }
+    }
+  }
+
+  private BufferedImage randomImage(int type, int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    Random random = new Random(42);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, 0xFF000000 | random.nextInt(0xFFFFFF));
+      }
+    }
+    return image;
+  }
+
+  @Test
+  public void shouldEncodeReadablePng() throws Exception {
+    BufferedImage image = randomImage(BufferedImage.TYPE_3BYTE_BGR, 61, 17);
+
+    byte[] png = new PngEncoder(Deflater.BEST_SPEED).encode(image);
+
+    assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(png)));
+  }
+
+  @Test
+  public void shouldSplitLargeImagesIntoSeveralChunks() throws Exception {
+    // random pixels don't compress, so the image data needs several 64 KiB chunks
+    BufferedImage image = randomImage(BufferedImage.TYPE_3BYTE_BGR, 400, 300);
+
+    byte[] png = new PngEncoder(Deflater.BEST_COMPRESSION).encode(image);
+
+    Assert.assertTrue(png.length > 2 * 64 * 1024);
+    assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(png)));
+  }
+
+  @Test
+  public void shouldEncodeOtherImageTypes() throws Exception {
+    BufferedImage image = randomImage(BufferedImage.TYPE_INT_ARGB, 20, 30);
+
+    byte[] png = new PngEncoder(6).encode(image);
+
+    assertSamePixels(image, ImageIO.read(new ByteArrayInputStream(png)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectInvalidCompressionLevels() {
+    new PngEncoder(10);
+  }
+}
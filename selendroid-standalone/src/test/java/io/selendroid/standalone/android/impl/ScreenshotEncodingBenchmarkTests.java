@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.android.impl;
+
+import com.android.ddmlib.RawImage;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageIO;
+
+/*
+ * Compares converting and encoding synthetic 1080p and 1440p frames pixel by pixel with ImageIO
+ * (as screenshots used to be taken) with the bulk conversion and the streaming PNG encoder. Only
+ * executed in manual mode.
+ */
+public class ScreenshotEncodingBenchmarkTests {
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int ITERATIONS = 20;
+  private static final int[][] RESOLUTIONS = {{1080, 1920}, {1440, 2560}};
+
+  @Ignore("Benchmark, run manually")
+  @Test
+  public void compareScreenshotEncoding() throws Exception {
+    for (int[] resolution : RESOLUTIONS) {
+      for (int bpp : new int[] {16, 32}) {
+        RawImage frame = syntheticFrame(bpp, resolution[0], resolution[1]);
+        report("pixel by pixel + ImageIO", frame, new Encoding() {
+          @Override
+          public byte[] encode(RawImage frame) throws Exception {
+            return encodePixelByPixel(frame);
+          }
+        });
+        for (final int level : new int[] {Deflater.BEST_SPEED, 6, Deflater.BEST_COMPRESSION}) {
+          report("bulk + streaming level " + level, frame, new Encoding() {
+            @Override
+            public byte[] encode(RawImage frame) throws Exception {
+              return new PngEncoder(level).encode(FrameBufferConverter.toBufferedImage(frame));
+            }
+          });
+        }
+      }
+    }
+  }
+
+  private interface Encoding {
+    byte[] encode(RawImage frame) throws Exception;
+  }
+
+  private void report(String name, RawImage frame, Encoding encoding) throws Exception {
+    int size = 0;
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      size = encoding.encode(frame).length;
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      encoding.encode(frame);
+    }
+    long averageMillis = (System.nanoTime() - start) / ITERATIONS / 1000000;
+    System.out.println(String.format("%dx%d@%dbpp %s: %d ms, %d bytes", frame.width,
+        frame.height, frame.bpp, name, averageMillis, size));
+  }
+
+  private byte[] encodePixelByPixel(RawImage rawImage) throws Exception {
+    BufferedImage image =
+        new BufferedImage(rawImage.width, rawImage.height, BufferedImage.TYPE_3BYTE_BGR);
+    int index = 0;
+    int indexInc = rawImage.bpp >> 3;
+    for (int y = 0; y < rawImage.height; y++) {
+      for (int x = 0; x < rawImage.width; x++) {
+        image.setRGB(x, y, rawImage.getARGB(index));
+        index += indexInc;
+      }
+    }
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", stream);
+    return stream.toByteArray();
+  }
+
+  /**
+   * A frame that looks roughly like an app: plain bars, a gradient and some noisy 'text' lines.
+   */
+  private RawImage syntheticFrame(int bpp, int width, int height) {
+    RawImage frame = bpp == 16
+        ? FrameBufferConverterTest.frame(16, 11, 5, 5, 6, 0, 5, width, height, 0)
+        : FrameBufferConverterTest.frame(32, 0, 8, 8, 8, 16, 8, width, height, 0);
+    int bytesPerPixel = bpp >> 3;
+    for (int y = 0; y < height; y++) {
+      boolean textLine = y % 48 < 16 && y > height / 8;
+      for (int x = 0; x < width; x++) {
+        int offset = (y * width + x) * bytesPerPixel;
+        if (textLine && x % 7 != 0) {
+          continue; // keep the random bytes
+        }
+        byte value = (byte) (y < height / 8 ? 0x30 : (x * 255 / width));
+        for (int i = 0; i < bytesPerPixel; i++) {
+          frame.data[offset + i] = value;
+        }
+      }
+    }
+    return frame;
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.builder;
+
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ApkCacheTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+  private File cacheDir;
+
+  @Before
+  public void setUp() throws IOException {
+    cacheDir = new File(folder.getRoot(), "cache");
+  }
+
+  @Test
+  public void testReturnsCachedCopy() throws Exception {
+    ApkCache cache = new ApkCache(cacheDir, 1024);
+    File apk = apk("app.apk", 10);
+
+    assertNull(cache.get("key"));
+    File cached = cache.put("key", apk);
+
+    assertEquals(cached, cache.get("key"));
+    assertEquals(10, cached.length());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedApks() throws Exception {
+    ApkCache previousRun = new ApkCache(cacheDir, 1024);
+    File oldest = previousRun.put("oldest", apk("a.apk", 400));
+    File recent = previousRun.put("recent", apk("b.apk", 400));
+    assertTrue(oldest.setLastModified(1000));
+    assertTrue(recent.setLastModified(2000));
+
+    ApkCache cache = new ApkCache(cacheDir, 1024);
+    File added = cache.put("added", apk("c.apk", 400));
+
+    assertFalse(oldest.exists());
+    assertTrue(recent.exists());
+    assertTrue(added.exists());
+  }
+
+  @Test
+  public void testDoesNotEvictApksInUse() throws Exception {
+    ApkCache cache = new ApkCache(cacheDir, 100);
+    File first = cache.put("first", apk("a.apk", 80));
+    File second = cache.put("second", apk("b.apk", 80));
+
+    assertTrue(first.exists());
+    assertTrue(second.exists());
+  }
+
+  @Test
+  public void testKeysDependOnAllParts() {
+    assertNotNull(ApkCache.key("a", "b"));
+    assertEquals(ApkCache.key("a", "b"), ApkCache.key("a", "b"));
+    assertNotEquals(ApkCache.key("a", "b"), ApkCache.key("a", "c"));
+    assertNotEquals(ApkCache.key("ab", ""), ApkCache.key("a", "b"));
+  }
+
+  private File apk(String name, int size) throws IOException {
+    File apk = folder.newFile(name);
+    Files.write(new byte[size], apk);
+    return apk;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.io;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReadinessProbeTest {
+
+  @Test
+  public void shouldReturnAsSoonAsTheConditionIsMet() {
+    final List<Long> polls = new ArrayList<Long>();
+    boolean ready = ReadinessProbe.named("test.ready")
+        .withInitialInterval(10)
+        .withJitterCap(0)
+        .withTimeout(5, TimeUnit.SECONDS)
+        .await(new ReadinessProbe.Condition() {
+          @Override
+          public boolean isReady() {
+            polls.add(System.nanoTime());
+            return polls.size() == 5;
+          }
+        });
+
+    Assert.assertTrue(ready);
+    Assert.assertEquals(5, polls.size());
+    // the intervals are 10, 20, 40 and 80 ms
+    for (int i = 2; i < polls.size(); i++) {
+      long previous = polls.get(i - 1) - polls.get(i - 2);
+      long current = polls.get(i) - polls.get(i - 1);
+      Assert.assertTrue("The interval should grow", current > previous);
+    }
+  }
+
+  @Test
+  public void shouldCapTheInterval() {
+    final List<Long> polls = new ArrayList<Long>();
+    ReadinessProbe.named("test.capped")
+        .withInitialInterval(20)
+        .withMaxInterval(20)
+        .withJitterCap(0)
+        .withTimeout(5, TimeUnit.SECONDS)
+        .await(new ReadinessProbe.Condition() {
+          @Override
+          public boolean isReady() {
+            polls.add(System.nanoTime());
+            return polls.size() == 6;
+          }
+        });
+
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(polls.get(5) - polls.get(0));
+    Assert.assertTrue("Took " + elapsedMillis + " ms", elapsedMillis >= 100 && elapsedMillis < 1000);
+  }
+
+  @Test
+  public void shouldGiveUpAfterTheTimeout() throws Exception {
+    long start = System.currentTimeMillis();
+    boolean ready = ReadinessProbe.named("test.timeout")
+        .withInitialInterval(10)
+        .withTimeout(200, TimeUnit.MILLISECONDS)
+        .await(new ReadinessProbe.Condition() {
+          @Override
+          public boolean isReady() throws Exception {
+            throw new Exception("not yet");
+          }
+        });
+    long elapsed = System.currentTimeMillis() - start;
+
+    Assert.assertFalse(ready);
+    Assert.assertTrue("Took " + elapsed + " ms", elapsed >= 200 && elapsed < 2000);
+    JSONObject statistics = ReadinessProbe.getStatistics().toJson();
+    Assert.assertFalse(statistics.has("test.timeout"));
+    Assert.assertEquals(1, statistics.getJSONObject("test.timeout.timeout").getInt("count"));
+  }
+
+  @Test
+  public void shouldRecordTheObservedWaitTime() throws Exception {
+    ReadinessProbe.named("test.recorded").await(new ReadinessProbe.Condition() {
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+    });
+
+    JSONObject timing = ReadinessProbe.getStatistics().toJson().getJSONObject("test.recorded");
+    Assert.assertEquals(1, timing.getInt("count"));
+  }
+
+  @Test
+  public void jitterShouldBeCapped() {
+    ReadinessProbe probe = ReadinessProbe.named("test.jitter").withJitterCap(30);
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertTrue(probe.jitter(1000) < 30);
+      Assert.assertTrue(probe.jitter(20) < 10);
+      Assert.assertEquals(0, probe.jitter(1));
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.e2e;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.net.URL;
+import java.util.Arrays;
+
+import io.selendroid.common.SelendroidCapabilities;
+import io.selendroid.common.device.DeviceTargetPlatform;
+
+/*
+ * Compares the time sendKeys takes with each text input strategy. Only executed in manual mode.
+ */
+public class TextInputStrategyBenchmarkE2ETests {
+  private static final String[] STRATEGIES = {"keyEvents", "setText", "inputConnection"};
+  private static final int[] PAYLOAD_SIZES = {100, 1000, 10000};
+
+  @Ignore("Fail. Requires an active android emulator")
+  @Test
+  public void compareTextInputStrategies() throws Exception {
+    for (String strategy : STRATEGIES) {
+      SelendroidCapabilities capa = SelendroidCapabilities.emulator(DeviceTargetPlatform.ANDROID16,
+          SessionCreationE2ETests.TEST_APP_ID);
+      capa.setInputStrategy(strategy);
+      WebDriver driver = new RemoteWebDriver(new URL("http://localhost:5555/wd/hub"), capa);
+      try {
+        driver.get("and-activity://io.selendroid.testapp.HomeScreenActivity");
+        for (int size : PAYLOAD_SIZES) {
+          // key events are too slow to be measured with the largest payload
+          if ("keyEvents".equals(strategy) && size > 1000) {
+            continue;
+          }
+          String text = payload(size);
+          WebElement inputField = driver.findElement(By.id("my_text_field"));
+          inputField.clear();
+
+          long start = System.currentTimeMillis();
+          inputField.sendKeys(text);
+          long duration = System.currentTimeMillis() - start;
+
+          Assert.assertEquals(text, inputField.getText());
+          System.out.println(String.format("%s: %d characters in %d ms", strategy, size, duration));
+        }
+      } finally {
+        driver.quit();
+      }
+    }
+  }
+
+  private String payload(int size) {
+    char[] chars = new char[size];
+    Arrays.fill(chars, 'a');
+    for (int i = 0; i < size; i += 10) {
+      chars[i] = (char) ('a' + (i / 10) % 26);
+    }
+    return new String(chars);
+  }
+}
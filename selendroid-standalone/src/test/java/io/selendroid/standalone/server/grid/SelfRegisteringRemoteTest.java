@@ -15,6 +15,7 @@ package io.selendroid.standalone.server.grid;
 
 import io.selendroid.server.common.exceptions.SelendroidException;
 import io.selendroid.standalone.SelendroidConfiguration;
+import io.selendroid.standalone.server.model.ActiveSession;
 import io.selendroid.standalone.server.model.SelendroidStandaloneDriver;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
@@ -33,6 +34,7 @@ import org.mockito.MockitoAnnotations;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.Collections;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -142,6 +144,63 @@ public class SelfRegisteringRemoteTest {
     verify(remote, times(2)).isRegistered();        // second call for check
   }
 
+  @Test
+  public void shouldReRegisterWithoutCheckWhenInventoryChanged() throws Exception {
+    givenSupportedDevices();
+    givenRegistrationUrl();
+    givenResponseWithStatusCode(HTTP_STATUS_CODE_OK);
+    when(driver.getInventoryVersion()).thenReturn(1L, 2L);
+    givenHttpClient();
+    givenSelfRegisteringRemote();
+
+    remote.performRegistrationIfNotRegistered();    // first registration - no check
+    remote.performRegistrationIfNotRegistered();    // app added - reg without check
+
+    verify(remote, times(2)).performRegistration();
+    verify(remote, times(0)).isRegistered();
+    verify(driver, times(2)).getSupportedDevices(); // config rebuilt for the new version
+  }
+
+  @Test
+  public void shouldNotReRegisterWhenInventoryChangedWhileSessionsAreRunning() throws Exception {
+    givenSupportedDevices();
+    givenRegistrationUrl();
+    givenResponseWithStatusCode(HTTP_STATUS_CODE_OK);
+    final byte[] bytes = "{ \"success\" : true }".getBytes(UTF_8);
+    when(responseEntity.getContent()).thenReturn(new ByteArrayInputStream(bytes));
+    when(response.getEntity()).thenReturn(responseEntity);
+    when(driver.getInventoryVersion()).thenReturn(1L, 2L);
+    when(driver.getActiveSessions()).thenReturn(
+        Collections.singletonList(Mockito.mock(ActiveSession.class)),
+        Collections.<ActiveSession>emptyList());
+    givenHttpClient();
+    givenSelfRegisteringRemote();
+
+    remote.performRegistrationIfNotRegistered();    // first registration - no check
+    remote.performRegistrationIfNotRegistered();    // app added, session running - only check
+    verify(remote, times(1)).performRegistration();
+    verify(remote, times(1)).isRegistered();
+
+    remote.performRegistrationIfNotRegistered();    // session finished - reg without check
+    verify(remote, times(2)).performRegistration();
+    verify(remote, times(1)).isRegistered();
+  }
+
+  @Test
+  public void shouldReuseNodeConfigWhenInventoryDidNotChange() throws Exception {
+    givenSupportedDevices();
+    givenRegistrationUrl();
+    givenResponseWithStatusCode(HTTP_STATUS_CODE_OK);
+    givenHttpClient();
+    givenSelfRegisteringRemote();
+
+    remote.performRegistration();
+    remote.performRegistration();
+
+    verify(client, times(2)).execute(any(HttpHost.class), any(HttpRequest.class));
+    verify(driver, times(1)).getSupportedDevices();
+  }
+
   protected void givenGridRestartedWhenCheckSecondTime() throws IOException {
     final byte[] bytesSuccess = "{ \"success\" : true }".getBytes(UTF_8); // first isRegistered check
     final byte[] bytesFail = "{ \"success\" : false }".getBytes(UTF_8);   // second isRegistered check
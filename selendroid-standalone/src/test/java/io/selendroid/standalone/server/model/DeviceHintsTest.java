@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.selendroid.standalone.android.AndroidDevice;
+import io.selendroid.standalone.android.AndroidEmulator;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeviceHintsTest {
+  private final DeviceHints hints = new DeviceHints();
+
+  @Test
+  public void shouldPublishInstalledAppsAndSmoothedStartTime() throws Exception {
+    AndroidDevice device = hardwareDevice("0123456789");
+    hints.onSessionStarted(device, "io.selendroid.testapp:0.18.0", 4000);
+    hints.onSessionStarted(device, "io.selendroid.testapp:0.18.0", 2000);
+
+    JSONObject json = hints.toJson(device);
+    Assert.assertTrue(json.getBoolean(DeviceHints.WARM));
+    Assert.assertEquals(1, json.getJSONArray(DeviceHints.INSTALLED_APPS).length());
+    Assert.assertEquals("io.selendroid.testapp:0.18.0",
+        json.getJSONArray(DeviceHints.INSTALLED_APPS).getString(0));
+    Assert.assertEquals(3000, json.getLong(DeviceHints.RECENT_SESSION_START_MILLIS));
+  }
+
+  @Test
+  public void shouldIdentifyEmulatorsByAvdName() throws Exception {
+    AndroidDevice started = emulator("Nexus_5", "emulator-5554", true);
+    hints.onSessionStarted(started, "io.selendroid.testapp:0.18.0", 1000);
+
+    // the serial is a different one once the emulator has been restarted
+    AndroidDevice restarted = emulator("Nexus_5", "emulator-5556", false);
+    JSONObject json = hints.toJson(restarted);
+    Assert.assertFalse(json.getBoolean(DeviceHints.WARM));
+    Assert.assertEquals(1, json.getJSONArray(DeviceHints.INSTALLED_APPS).length());
+  }
+
+  @Test
+  public void shouldForgetInstalledAppsOnReset() throws Exception {
+    AndroidDevice emulator = emulator("Nexus_5", "emulator-5554", true);
+    hints.onSessionStarted(emulator, "io.selendroid.testapp:0.18.0", 1000);
+    hints.onDeviceReset(emulator);
+
+    JSONObject json = hints.toJson(emulator);
+    Assert.assertEquals(0, json.getJSONArray(DeviceHints.INSTALLED_APPS).length());
+    Assert.assertEquals(1000, json.getLong(DeviceHints.RECENT_SESSION_START_MILLIS));
+  }
+
+  private AndroidDevice hardwareDevice(String serial) {
+    AndroidDevice device = mock(AndroidDevice.class);
+    when(device.getSerial()).thenReturn(serial);
+    return device;
+  }
+
+  private AndroidDevice emulator(String avdName, String serial, boolean started)
+      throws Exception {
+    AndroidDevice device =
+        mock(AndroidDevice.class, withSettings().extraInterfaces(AndroidEmulator.class));
+    AndroidEmulator emulator = (AndroidEmulator) device;
+    when(emulator.getAvdName()).thenReturn(avdName);
+    when(device.getSerial()).thenReturn(serial);
+    when(emulator.isEmulatorStarted()).thenReturn(started);
+    return device;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import static io.selendroid.standalone.server.model.DeviceStoreFixture.anDeviceManager;
+
+import io.selendroid.common.SelendroidCapabilities;
+import io.selendroid.common.device.DeviceTargetPlatform;
+import io.selendroid.standalone.android.AndroidDevice;
+import io.selendroid.standalone.android.AndroidEmulator;
+import io.selendroid.standalone.server.support.DeviceForTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Claims and releases fake devices from many threads at once, with more concurrent requests than
+ * devices, and checks that no device is ever handed out twice and that every request is served.
+ */
+public class DeviceStoreLoadTest {
+  private static final int DEVICES_PER_PLATFORM = 20;
+  private static final int CLIENTS = 80;
+  private static final int SESSIONS_PER_CLIENT = 50;
+  private static final DeviceTargetPlatform[] PLATFORMS =
+      {DeviceTargetPlatform.ANDROID16, DeviceTargetPlatform.ANDROID19};
+
+  @Test
+  public void shouldServeConcurrentRequestsWithoutDoubleAllocation() throws Exception {
+    final DeviceStore store = new DeviceStore(5560, anDeviceManager());
+    store.setKeepEmulator(true);
+    store.setDeviceWaitTimeout(30000);
+    List<AndroidEmulator> devices = new ArrayList<AndroidEmulator>();
+    for (DeviceTargetPlatform platform : PLATFORMS) {
+      for (int i = 0; i < DEVICES_PER_PLATFORM; i++) {
+        devices.add(new DeviceForTest(platform));
+      }
+    }
+    store.addEmulators(devices);
+
+    final Set<AndroidDevice> claimed =
+        Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<AndroidDevice, Boolean>()));
+    final AtomicInteger sessions = new AtomicInteger();
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    for (int c = 0; c < CLIENTS; c++) {
+      final DeviceTargetPlatform platform = PLATFORMS[c % PLATFORMS.length];
+      clients.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int i = 0; i < SESSIONS_PER_CLIENT; i++) {
+              SelendroidCapabilities caps = new SelendroidCapabilities();
+              caps.setPlatformVersion(platform);
+              AndroidDevice device = store.findAndroidDevice(caps);
+              if (!claimed.add(device)) {
+                throw new AssertionError("Device handed out twice: " + device);
+              }
+              Assert.assertEquals(platform, device.getTargetPlatform());
+              Thread.yield();
+              claimed.remove(device);
+              store.release(device, null);
+              sessions.incrementAndGet();
+            }
+          } catch (Throwable t) {
+            errors.add(t);
+          }
+        }
+      });
+    }
+
+    start.countDown();
+    clients.shutdown();
+    Assert.assertTrue("Load test did not finish in time",
+        clients.awaitTermination(60, TimeUnit.SECONDS));
+
+    if (!errors.isEmpty()) {
+      throw new AssertionError(errors.get(0));
+    }
+    Assert.assertEquals(CLIENTS * SESSIONS_PER_CLIENT, sessions.get());
+    Assert.assertTrue(store.getDevicesInUse().isEmpty());
+    Assert.assertEquals(0, store.getWaitingRequestCount());
+  }
+}
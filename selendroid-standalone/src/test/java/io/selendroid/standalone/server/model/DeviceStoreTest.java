@@ -44,6 +44,7 @@ import io.selendroid.standalone.exceptions.AndroidDeviceException;
 import io.selendroid.standalone.exceptions.DeviceStoreException;
 import io.selendroid.standalone.server.model.DeviceStore;
 import io.selendroid.standalone.server.model.EmulatorPortFinder;
+import io.selendroid.standalone.server.support.DeviceForTest;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -599,4 +600,87 @@ public class DeviceStoreTest {
           equalTo("No devices are found. This can happen if the devices are in use or no device screen matches the required capabilities."));
     }
   }
+
+  @Test
+  public void shouldHandReleasedDeviceToLongestWaitingRequest() throws Exception {
+    DeviceForTest device = new DeviceForTest(DeviceTargetPlatform.ANDROID16);
+    final DeviceStore store = new DeviceStore(EMULATOR_PORT, anDeviceManager());
+    store.setKeepEmulator(true);
+    store.setDeviceWaitTimeout(10000);
+    store.addEmulators(Arrays.asList(new AndroidEmulator[] {device}));
+    AndroidDevice claimed = store.findAndroidDevice(anyAndroid16Device());
+
+    final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+    Thread first = waitForDevice(store, "first", order);
+    while (store.getWaitingRequestCount() < 1) {
+      Thread.sleep(5);
+    }
+    Thread second = waitForDevice(store, "second", order);
+    while (store.getWaitingRequestCount() < 2) {
+      Thread.sleep(5);
+    }
+
+    store.release(claimed, null);
+    first.join(5000);
+    assertThat(order, contains("first"));
+    assertThat(store.getWaitingRequestCount(), is(1));
+
+    store.release(device, null);
+    second.join(5000);
+    assertThat(order, contains("first", "second"));
+  }
+
+  @Test
+  public void shouldFailAfterDeviceWaitTimeout() throws Exception {
+    DeviceForTest device = new DeviceForTest(DeviceTargetPlatform.ANDROID16);
+    DeviceStore store = new DeviceStore(EMULATOR_PORT, anDeviceManager());
+    store.setDeviceWaitTimeout(50);
+    store.addEmulators(Arrays.asList(new AndroidEmulator[] {device}));
+    store.findAndroidDevice(anyAndroid16Device());
+
+    long start = System.currentTimeMillis();
+    try {
+      store.findAndroidDevice(anyAndroid16Device());
+      Assert.fail("Expected the request to time out.");
+    } catch (DeviceStoreException e) {
+      assertThat(e.getMessage(), containsString("No devices are found"));
+    }
+    Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+    assertThat(store.getWaitingRequestCount(), is(0));
+  }
+
+  @Test(expected = DeviceStoreException.class)
+  public void shouldNotWaitIfNoDeviceCanEverMatch() throws Exception {
+    DeviceForTest device = new DeviceForTest(DeviceTargetPlatform.ANDROID16);
+    DeviceStore store = new DeviceStore(EMULATOR_PORT, anDeviceManager());
+    store.setDeviceWaitTimeout(60000);
+    store.addEmulators(Arrays.asList(new AndroidEmulator[] {device}));
+
+    SelendroidCapabilities capa = anyAndroid16Device();
+    capa.setEmulator(false);
+    store.findAndroidDevice(capa);
+  }
+
+  private Thread waitForDevice(final DeviceStore store, final String name, final List<String> order) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          store.findAndroidDevice(anyAndroid16Device());
+          order.add(name);
+        } catch (DeviceStoreException e) {
+          order.add(name + " failed");
+        }
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private static SelendroidCapabilities anyAndroid16Device() {
+    // DeviceForTest never matches a requested screen size
+    SelendroidCapabilities capabilities = new SelendroidCapabilities();
+    capabilities.setPlatformVersion(DeviceTargetPlatform.ANDROID16);
+    return capabilities;
+  }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import static io.selendroid.standalone.server.model.DeviceStoreFixture.anDeviceManager;
+
+import io.selendroid.common.SelendroidCapabilities;
+import io.selendroid.common.device.DeviceTargetPlatform;
+import io.selendroid.standalone.android.AndroidDevice;
+import io.selendroid.standalone.android.AndroidEmulator;
+import io.selendroid.standalone.exceptions.AndroidDeviceException;
+import io.selendroid.standalone.server.support.DeviceForTest;
+import io.selendroid.standalone.server.support.EmulatorConsoleStub;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EmulatorPoolTest {
+  private static final String SAVE_SNAPSHOT = "avd snapshot save " + EmulatorPool.SNAPSHOT_NAME;
+  private static final String LOAD_SNAPSHOT = "avd snapshot load " + EmulatorPool.SNAPSHOT_NAME;
+
+  private EmulatorConsoleStub console;
+  private DeviceStore store;
+  private EmulatorPool pool;
+
+  @Before
+  public void setUp() throws Exception {
+    console = new EmulatorConsoleStub("Nexus_5");
+    store = new DeviceStore(5560, anDeviceManager());
+    pool = new EmulatorPool(store, new EmulatorPool.EmulatorStarter() {
+      @Override
+      public void start(AndroidEmulator emulator) throws AndroidDeviceException {
+        emulator.start(null, 5560, null);
+      }
+    }, 1, new StandaloneMetrics());
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    pool.close();
+    console.stop();
+  }
+
+  @Test
+  public void shouldWarmUpEmulatorsForRecentDemand() throws Exception {
+    PooledEmulatorForTest first = new PooledEmulatorForTest(console.getPort());
+    PooledEmulatorForTest second = new PooledEmulatorForTest(console.getPort());
+    store.addEmulators(Arrays.<AndroidEmulator>asList(first, second));
+    pool.start();
+    Assert.assertEquals(0, pool.getTargetSize(DeviceTargetPlatform.ANDROID16));
+
+    pool.recordDemand(DeviceTargetPlatform.ANDROID16);
+    waitUntilPooled(first);
+
+    Assert.assertTrue(first.isEmulatorStarted());
+    Assert.assertFalse("Only one emulator is needed", second.isEmulatorStarted());
+    Assert.assertFalse(store.isInUse(first));
+    Assert.assertTrue(console.getCommands().contains(SAVE_SNAPSHOT));
+  }
+
+  @Test
+  public void shouldResetPooledEmulatorInsteadOfStoppingIt() throws Exception {
+    PooledEmulatorForTest emulator = warmEmulator();
+
+    AndroidDevice device = store.findAndroidDevice(android16());
+    Assert.assertSame(emulator, device);
+    store.release(device, null);
+
+    Assert.assertTrue(console.getCommands().contains(LOAD_SNAPSHOT));
+    Assert.assertTrue("A reset emulator is kept running", emulator.isEmulatorStarted());
+    Assert.assertEquals(1, emulator.starts);
+    Assert.assertFalse(store.isInUse(emulator));
+  }
+
+  @Test
+  public void shouldStopEmulatorIfResetFails() throws Exception {
+    PooledEmulatorForTest emulator = warmEmulator();
+    console.setFailSnapshotLoad(true);
+
+    AndroidDevice device = store.findAndroidDevice(android16());
+    store.release(device, null);
+
+    Assert.assertFalse(emulator.isEmulatorStarted());
+    Assert.assertFalse(pool.isPooled(emulator));
+  }
+
+  @Test
+  public void shouldStopUnpooledEmulatorOnRelease() throws Exception {
+    PooledEmulatorForTest emulator = new PooledEmulatorForTest(console.getPort());
+    store.addEmulators(Arrays.<AndroidEmulator>asList(emulator));
+    store.setEmulatorPool(pool);
+    emulator.start(null, 5560, null);
+
+    store.release(store.findAndroidDevice(android16()), null);
+
+    Assert.assertFalse(emulator.isEmulatorStarted());
+    Assert.assertFalse(console.getCommands().contains(LOAD_SNAPSHOT));
+  }
+
+  private PooledEmulatorForTest warmEmulator() throws Exception {
+    PooledEmulatorForTest emulator = new PooledEmulatorForTest(console.getPort());
+    store.addEmulators(Arrays.<AndroidEmulator>asList(emulator));
+    pool.start();
+    pool.recordDemand(DeviceTargetPlatform.ANDROID16);
+    waitUntilPooled(emulator);
+    return emulator;
+  }
+
+  private void waitUntilPooled(AndroidEmulator emulator) throws InterruptedException {
+    long end = System.currentTimeMillis() + 5000;
+    while (!pool.isPooled(emulator) || store.isInUse((AndroidDevice) emulator)) {
+      Assert.assertTrue("Emulator was not warmed up in time", System.currentTimeMillis() < end);
+      Thread.sleep(10);
+    }
+  }
+
+  private static SelendroidCapabilities android16() {
+    SelendroidCapabilities capabilities = new SelendroidCapabilities();
+    capabilities.setPlatformVersion(DeviceTargetPlatform.ANDROID16);
+    return capabilities;
+  }
+
+  private static class PooledEmulatorForTest extends DeviceForTest {
+    private final int consolePort;
+    private volatile int starts = 0;
+
+    PooledEmulatorForTest(int consolePort) {
+      super(DeviceTargetPlatform.ANDROID16);
+      this.consolePort = consolePort;
+    }
+
+    @Override
+    public void start(Locale locale, int number, Map<String, Object> timeout) {
+      starts++;
+      deviceReady = true;
+    }
+
+    @Override
+    public boolean isEmulatorStarted() {
+      return deviceReady;
+    }
+
+    @Override
+    public Integer getPort() {
+      return deviceReady ? consolePort : null;
+    }
+
+    @Override
+    public void unlockScreen() {
+    }
+  }
+}
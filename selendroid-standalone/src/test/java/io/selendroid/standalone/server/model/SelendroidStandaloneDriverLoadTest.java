@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import static io.selendroid.standalone.server.model.SelendroidStandaloneDriverFixture.getApkBuilder;
+import static io.selendroid.standalone.server.model.SelendroidStandaloneDriverFixture.getDeviceManager;
+import static io.selendroid.standalone.server.model.SelendroidStandaloneDriverFixture.getSelendroidStandaloneDriver;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import io.selendroid.common.SelendroidCapabilities;
+import io.selendroid.common.device.DeviceTargetPlatform;
+import io.selendroid.server.common.SelendroidResponse;
+import io.selendroid.standalone.SelendroidConfiguration;
+import io.selendroid.standalone.android.AndroidApp;
+import io.selendroid.standalone.android.AndroidDevice;
+import io.selendroid.standalone.builder.SelendroidServerBuilder;
+import io.selendroid.standalone.server.support.DeviceForTest;
+import io.selendroid.standalone.server.support.TestSessionListener;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Creates and stops sessions on fake devices from many threads at once, with more clients than
+ * devices, while another thread keeps reading the supported apps and devices, and checks that
+ * every session is created on a device of its own and that no state is left behind.
+ */
+public class SelendroidStandaloneDriverLoadTest {
+  private static final int DEVICES = 4;
+  private static final int CLIENTS = 12;
+  private static final int SESSIONS_PER_CLIENT = 3;
+
+  @Test
+  public void shouldServeConcurrentSessions() throws Exception {
+    SelendroidServerBuilder builder = getApkBuilder();
+    final SelendroidStandaloneDriver driver = getSelendroidStandaloneDriver(builder);
+    SelendroidConfiguration conf = new SelendroidConfiguration();
+    conf.addSupportedApp(new File(SelendroidStandaloneDriverTest.APK_FILE).getAbsolutePath());
+    driver.initApplicationsUnderTest(conf);
+    final int apps = driver.getConfiguredApps().size();
+
+    final DeviceStore store = new DeviceStore(5560, getDeviceManager());
+    store.setKeepEmulator(true);
+    store.setDeviceWaitTimeout(60000);
+    List<DeviceForTest> devices = new ArrayList<DeviceForTest>();
+    for (int i = 0; i < DEVICES; i++) {
+      DeviceForTest device = new DeviceForTest(DeviceTargetPlatform.ANDROID16) {
+        // the emulators keep running between the sessions
+        @Override
+        public boolean isEmulatorStarted() {
+          return true;
+        }
+
+        @Override
+        public void unlockScreen() {}
+      };
+      device.testSessionListener = new TestSessionListener(UUID.randomUUID().toString(), "test") {
+        @Override
+        public SelendroidResponse executeSelendroidRequest(Properties params) {
+          return null;
+        }
+      };
+      store.addDeviceToStore(device);
+      devices.add(device);
+    }
+    driver.setDeviceStore(store);
+
+    final Set<AndroidDevice> claimed =
+        Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<AndroidDevice, Boolean>()));
+    final AtomicInteger sessions = new AtomicInteger();
+    final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    for (int c = 0; c < CLIENTS; c++) {
+      clients.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int i = 0; i < SESSIONS_PER_CLIENT; i++) {
+              SelendroidCapabilities caps = new SelendroidCapabilities();
+              caps.setAut(SelendroidStandaloneDriverTest.TEST_APP_ID);
+              caps.setPlatformVersion(DeviceTargetPlatform.ANDROID16);
+              String sessionId = driver.createNewTestSession(new JSONObject(caps.asMap()), 0);
+
+              ActiveSession session = driver.getActiveSession(sessionId);
+              Assert.assertNotNull(session);
+              Assert.assertTrue(driver.isValidSession(sessionId));
+              if (!claimed.add(session.getDevice())) {
+                throw new AssertionError("Device used by two sessions: " + session.getDevice());
+              }
+              Thread.yield();
+              claimed.remove(session.getDevice());
+              driver.stopSession(sessionId);
+              sessions.incrementAndGet();
+            }
+          } catch (Throwable t) {
+            errors.add(t);
+          }
+        }
+      });
+    }
+
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicInteger reads = new AtomicInteger();
+    Thread reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (running.get()) {
+            Assert.assertEquals(apps, driver.getSupportedApps().length());
+            Assert.assertEquals(DEVICES, driver.getSupportedDevices().length());
+            Assert.assertTrue(driver.getActiveSessions().size() <= DEVICES);
+            reads.incrementAndGet();
+            Thread.sleep(1);
+          }
+        } catch (Throwable t) {
+          errors.add(t);
+        }
+      }
+    });
+
+    try {
+      reader.start();
+      start.countDown();
+      clients.shutdown();
+      Assert.assertTrue("Load test did not finish in time",
+          clients.awaitTermination(120, TimeUnit.SECONDS));
+      running.set(false);
+      reader.join();
+
+      if (!errors.isEmpty()) {
+        throw new AssertionError(errors.get(0));
+      }
+      Assert.assertEquals(CLIENTS * SESSIONS_PER_CLIENT, sessions.get());
+      Assert.assertTrue(driver.getActiveSessions().isEmpty());
+      Assert.assertTrue(store.getDevicesInUse().isEmpty());
+      // all sessions share one build of the selendroid-server
+      verify(builder, times(1)).createSelendroidServer(any(AndroidApp.class));
+      Assert.assertTrue("The inventory was never read during the test", reads.get() > 0);
+    } finally {
+      running.set(false);
+      clients.shutdownNow();
+      for (DeviceForTest device : devices) {
+        device.stop();
+      }
+    }
+  }
+}
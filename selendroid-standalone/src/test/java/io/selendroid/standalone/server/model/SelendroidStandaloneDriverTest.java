@@ -27,6 +27,8 @@ import io.selendroid.server.common.SelendroidResponse;
 import io.selendroid.server.common.exceptions.SelendroidException;
 import io.selendroid.standalone.SelendroidConfiguration;
 import io.selendroid.standalone.android.AndroidApp;
+import io.selendroid.standalone.builder.AndroidDriverAPKBuilder;
+import io.selendroid.standalone.builder.SelendroidServerBuilder;
 import io.selendroid.standalone.exceptions.DeviceStoreException;
 import io.selendroid.standalone.server.model.DeviceStore;
 import io.selendroid.standalone.server.model.SelendroidStandaloneDriver;
@@ -39,6 +41,7 @@ import java.util.Properties;
 import java.util.Random;
 import java.util.UUID;
 
+import org.apache.commons.io.FileUtils;
 import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Test;
@@ -94,6 +97,43 @@ public class SelendroidStandaloneDriverTest {
         .get(BrowserType.ANDROID).getAppId(), BrowserType.ANDROID);
   }
 
+  @Test
+  public void shouldHotReplaceAndRemoveAppsReadFromFiles() throws Exception {
+    SelendroidServerBuilder builder = mock(SelendroidServerBuilder.class);
+    SelendroidStandaloneDriver driver = new SelendroidStandaloneDriver(builder, getDeviceManager(),
+        mock(AndroidDriverAPKBuilder.class));
+    File apk = File.createTempFile("hot-replace", ".apk");
+    apk.deleteOnExit();
+    FileUtils.writeStringToFile(apk, "first build");
+    AndroidApp firstBuild = app("io.selendroid.testapp:1.0", "/tmp/resigned-first.apk");
+    AndroidApp secondBuild = app("io.selendroid.testapp:1.1", "/tmp/resigned-second.apk");
+    when(builder.resignApp(apk)).thenReturn(firstBuild, secondBuild);
+
+    driver.addToAppsStore(apk);
+    long version = driver.getInventoryVersion();
+    driver.replaceInAppsStore(apk);
+    Assert.assertEquals("unchanged files are not resigned", version, driver.getInventoryVersion());
+
+    FileUtils.writeStringToFile(apk, "second, longer build");
+    driver.replaceInAppsStore(apk);
+    Map<String, AndroidApp> apps = driver.getConfiguredApps();
+    Assert.assertEquals(1, apps.size());
+    Assert.assertSame(secondBuild, apps.get("io.selendroid.testapp:1.1"));
+    verify(builder).releaseResignedApp(firstBuild);
+
+    driver.removeFromAppsStore(apk);
+    Assert.assertTrue(driver.getConfiguredApps().isEmpty());
+    verify(builder).releaseResignedApp(secondBuild);
+    Assert.assertTrue(driver.getInventoryVersion() > version);
+  }
+
+  private AndroidApp app(String appId, String path) throws Exception {
+    AndroidApp app = mock(AndroidApp.class);
+    when(app.getAppId()).thenReturn(appId);
+    when(app.getAbsolutePath()).thenReturn(path);
+    return app;
+  }
+
   protected void assertThatTestAppHasBeenSuccessfullyRegistered(SelendroidStandaloneDriver driver) {
     Map<String, AndroidApp> apps = driver.getConfiguredApps();
     Assert.assertTrue("expecting 2 test app has been registered but was " + apps.size(),
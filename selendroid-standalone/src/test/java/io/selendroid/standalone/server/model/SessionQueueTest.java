@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import static io.selendroid.standalone.server.model.DeviceStoreFixture.anDeviceManager;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import io.selendroid.common.SelendroidCapabilities;
+import io.selendroid.common.device.DeviceTargetPlatform;
+import io.selendroid.server.common.exceptions.SessionNotCreatedException;
+import io.selendroid.standalone.android.AndroidDevice;
+import io.selendroid.standalone.android.AndroidEmulator;
+import io.selendroid.standalone.exceptions.DeviceStoreException;
+import io.selendroid.standalone.server.support.DeviceForTest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SessionQueueTest {
+  private DeviceStore store;
+  private AndroidDevice busyDevice;
+  private final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+  private SessionQueue queue;
+
+  @Before
+  public void setUp() throws Exception {
+    store = new DeviceStore(5560, anDeviceManager());
+    store.setKeepEmulator(true);
+    store.addEmulators(Arrays.<AndroidEmulator>asList(new DeviceForTest(DeviceTargetPlatform.ANDROID16)));
+    busyDevice = store.findAndroidDevice(capabilities("busy", 0, null));
+  }
+
+  @After
+  public void tearDown() {
+    if (queue != null) {
+      queue.close();
+    }
+  }
+
+  private SessionQueue startQueue(int maxDepth, long waitTimeoutMillis) {
+    queue = new SessionQueue(store, new SessionQueue.SessionStarter() {
+      @Override
+      public String start(JSONObject desiredCapabilities, AndroidDevice device) throws Exception {
+        String name = desiredCapabilities.getString("name");
+        started.add(name);
+        return name;
+      }
+
+      @Override
+      public void abandon(String sessionId) {
+        started.remove(sessionId);
+      }
+    }, maxDepth, waitTimeoutMillis);
+    queue.start();
+    return queue;
+  }
+
+  private static SelendroidCapabilities capabilities(String name, int priority, String client) {
+    SelendroidCapabilities caps = new SelendroidCapabilities();
+    caps.setPlatformVersion(DeviceTargetPlatform.ANDROID16);
+    caps.setCapability("name", name);
+    caps.setSessionPriority(priority);
+    if (client != null) {
+      caps.setSessionClient(client);
+    }
+    return caps;
+  }
+
+  private ListenableFuture<String> submit(SelendroidCapabilities caps) {
+    return queue.submit(new JSONObject(caps.asMap()), caps);
+  }
+
+  /**
+   * Releases the only device and waits for the next queued session to be started on it.
+   */
+  private String releaseAndAwait(ListenableFuture<String> next) throws Exception {
+    store.release(busyDevice, null);
+    return next.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void shouldAdmitByPriorityAndLetClientsTakeTurns() throws Exception {
+    startQueue(10, 0);
+    ListenableFuture<String> a1 = submit(capabilities("a1", 0, "a"));
+    ListenableFuture<String> a2 = submit(capabilities("a2", 0, "a"));
+    ListenableFuture<String> b1 = submit(capabilities("b1", 0, "b"));
+    ListenableFuture<String> c1 = submit(capabilities("c1", 5, "c"));
+    Assert.assertEquals(4, queue.getDepth());
+
+    Assert.assertEquals("c1", releaseAndAwait(c1));
+    Assert.assertEquals("a1", releaseAndAwait(a1));
+    Assert.assertEquals("b1", releaseAndAwait(b1));
+    Assert.assertEquals("a2", releaseAndAwait(a2));
+    Assert.assertEquals(Arrays.asList("c1", "a1", "b1", "a2"), started);
+    Assert.assertEquals(0, queue.getDepth());
+    Assert.assertEquals(4, queue.toJson().getLong("admitted"));
+  }
+
+  @Test
+  public void shouldRejectRequestsIfQueueIsFull() throws Exception {
+    startQueue(1, 0);
+    ListenableFuture<String> queued = submit(capabilities("queued", 0, null));
+    ListenableFuture<String> rejected = submit(capabilities("rejected", 0, null));
+
+    assertFailsWith(SessionNotCreatedException.class, rejected);
+    Assert.assertFalse(queued.isDone());
+    Assert.assertEquals(1, queue.toJson().getLong("rejected"));
+    Assert.assertEquals("queued", releaseAndAwait(queued));
+  }
+
+  @Test
+  public void shouldGiveUpPlaceOfCancelledRequests() throws Exception {
+    startQueue(1, 0);
+    ListenableFuture<String> cancelled = submit(capabilities("cancelled", 0, null));
+    Assert.assertTrue(cancelled.cancel(false));
+    Assert.assertEquals(0, queue.getDepth());
+    Assert.assertEquals(1, queue.toJson().getLong("cancelled"));
+
+    ListenableFuture<String> next = submit(capabilities("next", 0, null));
+    Assert.assertEquals("next", releaseAndAwait(next));
+    Assert.assertEquals(Arrays.asList("next"), started);
+  }
+
+  @Test
+  public void shouldFailRequestsThatWaitTooLong() throws Exception {
+    startQueue(10, 100);
+    ListenableFuture<String> request = submit(capabilities("late", 0, null));
+
+    assertFailsWith(SessionNotCreatedException.class, request);
+    Assert.assertEquals(0, queue.getDepth());
+    Assert.assertEquals(1, queue.toJson().getLong("timedOut"));
+    Assert.assertTrue(started.isEmpty());
+  }
+
+  @Test
+  public void shouldFailRequestsNoDeviceMatches() throws Exception {
+    startQueue(10, 0);
+    SelendroidCapabilities caps = capabilities("unknown", 0, null);
+    caps.setPlatformVersion(DeviceTargetPlatform.ANDROID19);
+
+    assertFailsWith(DeviceStoreException.class, submit(caps));
+    Assert.assertEquals(0, queue.getDepth());
+  }
+
+  private static void assertFailsWith(Class<? extends Exception> expected,
+      ListenableFuture<String> future) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      Assert.fail("Request should have failed");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause().toString(), expected.isInstance(e.getCause()));
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.model;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class SessionTimeoutSchedulerTest {
+  private final BlockingQueue<String> expired = new LinkedBlockingQueue<String>();
+  private SessionTimeoutScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    scheduler = new SessionTimeoutScheduler(new SessionTimeoutScheduler.ExpirationHandler() {
+      @Override
+      public void onExpired(String sessionId, String reason) {
+        expired.add(sessionId + ": " + reason);
+      }
+    });
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.close();
+  }
+
+  @Test
+  public void shouldExpireSessionAfterAbsoluteTimeout() throws Exception {
+    scheduler.schedule("a", 100, 0);
+    Assert.assertEquals(1, scheduler.getActiveTimerCount());
+
+    Assert.assertEquals("a: session timeout", expired.poll(5, TimeUnit.SECONDS));
+    Assert.assertEquals(0, scheduler.getActiveTimerCount());
+    Assert.assertEquals(1, scheduler.toJson().getLong("absoluteExpirations"));
+  }
+
+  @Test
+  public void shouldExpireIdleSession() throws Exception {
+    scheduler.schedule("a", 0, 100);
+
+    Assert.assertEquals("a: idle timeout", expired.poll(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void activityShouldPostponeIdleTimeout() throws Exception {
+    SessionTimeoutScheduler.SessionTimer timer = scheduler.schedule("a", 0, 300);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 10; i++) {
+      Thread.sleep(100);
+      timer.touch();
+    }
+    Assert.assertTrue(expired.isEmpty());
+
+    Assert.assertEquals("a: idle timeout", expired.poll(5, TimeUnit.SECONDS));
+    Assert.assertTrue(System.currentTimeMillis() - start >= 1300);
+  }
+
+  @Test
+  public void shouldExpireOnlyOnce() throws Exception {
+    scheduler.schedule("a", 100, 100);
+
+    Assert.assertNotNull(expired.poll(5, TimeUnit.SECONDS));
+    Assert.assertNull(expired.poll(300, TimeUnit.MILLISECONDS));
+    JSONObject metrics = scheduler.toJson();
+    Assert.assertEquals(1, metrics.getLong("absoluteExpirations") + metrics.getLong("idleExpirations"));
+  }
+
+  @Test
+  public void cancelledSessionShouldNotExpire() throws Exception {
+    SessionTimeoutScheduler.SessionTimer timer = scheduler.schedule("a", 100, 100);
+    scheduler.schedule("b", 100, 0);
+    timer.cancel();
+    scheduler.cancel("b");
+
+    Assert.assertEquals(0, scheduler.getActiveTimerCount());
+    Assert.assertNull(expired.poll(300, TimeUnit.MILLISECONDS));
+  }
+}
@@ -194,6 +194,11 @@ public class DeviceForTest extends DefaultAndroidEmulator {
     return false;
   }
 
+  @Override
+  public boolean isInstalled(String appBasePackage) throws AndroidSdkException {
+    return false;
+  }
+
   @Override
   public List<LogEntry> getLogs() {
     return null;
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.support;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A minimal emulator console that answers the commands selendroid sends over telnet. Snapshots
+ * are only remembered by name.
+ */
+public class EmulatorConsoleStub {
+  private final ServerSocket serverSocket;
+  private final String avdName;
+  private final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+  private final Set<String> snapshots = Collections.synchronizedSet(new HashSet<String>());
+  private volatile boolean failSnapshotLoad = false;
+
+  public EmulatorConsoleStub(String avdName) throws IOException {
+    this.avdName = avdName;
+    serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    Thread acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (!serverSocket.isClosed()) {
+          try {
+            handle(serverSocket.accept());
+          } catch (IOException e) {
+            // closed
+          }
+        }
+      }
+    }, "emulator-console-stub");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  private void handle(Socket socket) throws IOException {
+    try {
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+      PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+      out.print("Android Console: type 'help' for a list of commands\r\nOK\r\n");
+      out.flush();
+      String line;
+      while ((line = in.readLine()) != null) {
+        commands.add(line);
+        out.print(answer(line));
+        out.flush();
+        if (line.equals("kill")) {
+          break;
+        }
+      }
+    } finally {
+      socket.close();
+    }
+  }
+
+  private String answer(String command) {
+    if (command.equals("avd name")) {
+      return avdName + "\r\nOK\r\n";
+    }
+    if (command.startsWith("avd snapshot save ")) {
+      snapshots.add(command.substring("avd snapshot save ".length()));
+      return "OK\r\n";
+    }
+    if (command.startsWith("avd snapshot load ")) {
+      String name = command.substring("avd snapshot load ".length());
+      if (failSnapshotLoad || !snapshots.contains(name)) {
+        return "KO: snapshot '" + name + "' could not be loaded\r\n";
+      }
+      return "OK\r\n";
+    }
+    if (command.equals("kill")) {
+      return "OK: killing emulator, bye bye\r\n";
+    }
+    return "KO: unknown command, try 'help'\r\n";
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  public List<String> getCommands() {
+    synchronized (commands) {
+      return new ArrayList<String>(commands);
+    }
+  }
+
+  public void setFailSnapshotLoad(boolean failSnapshotLoad) {
+    this.failSnapshotLoad = failSnapshotLoad;
+  }
+
+  public void stop() throws IOException {
+    serverSocket.close();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.support;
+
+import io.selendroid.standalone.android.DeviceCommandChannel;
+import io.selendroid.standalone.exceptions.AndroidSdkException;
+import io.selendroid.standalone.exceptions.ShellCommandException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A device command channel that doesn't need adb. Shell commands are answered with the output
+ * configured for the first matching pattern, all commands are recorded.
+ */
+public class FakeDeviceCommandChannel implements DeviceCommandChannel {
+  private final Map<Pattern, String> shellOutputs = new LinkedHashMap<Pattern, String>();
+  private final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+  private final Map<Integer, Integer> forwards = new HashMap<Integer, Integer>();
+  private int nextLocalPort = 40000;
+  private String logcatOutput = "";
+
+  public synchronized FakeDeviceCommandChannel respondTo(String shellCommandRegex, String output) {
+    shellOutputs.put(Pattern.compile(shellCommandRegex), output);
+    return this;
+  }
+
+  public synchronized FakeDeviceCommandChannel withLogcatOutput(String logcatOutput) {
+    this.logcatOutput = logcatOutput;
+    return this;
+  }
+
+  public List<String> getCommands() {
+    synchronized (commands) {
+      return new ArrayList<String>(commands);
+    }
+  }
+
+  public synchronized Map<Integer, Integer> getForwards() {
+    return new HashMap<Integer, Integer>(forwards);
+  }
+
+  @Override
+  public synchronized String shell(String command, long timeoutMillis) throws ShellCommandException {
+    commands.add("shell " + command);
+    for (Map.Entry<Pattern, String> output : shellOutputs.entrySet()) {
+      if (output.getKey().matcher(command).matches()) {
+        return output.getValue();
+      }
+    }
+    return "";
+  }
+
+  @Override
+  public void install(String apkPath) throws AndroidSdkException {
+    commands.add("install " + apkPath);
+  }
+
+  @Override
+  public void uninstall(String packageName) throws AndroidSdkException {
+    commands.add("uninstall " + packageName);
+  }
+
+  @Override
+  public synchronized int forward(int localPort, int remotePort) throws ShellCommandException {
+    int port = localPort == 0 ? nextLocalPort++ : localPort;
+    commands.add("forward tcp:" + port + " tcp:" + remotePort);
+    forwards.put(port, remotePort);
+    return port;
+  }
+
+  @Override
+  public synchronized void removeForward(int localPort, int remotePort)
+      throws ShellCommandException {
+    commands.add("forward --remove tcp:" + localPort);
+    forwards.remove(localPort);
+  }
+
+  @Override
+  public synchronized Closeable logcat(OutputStream output, String... args)
+      throws ShellCommandException {
+    commands.add("logcat");
+    try {
+      output.write(logcatOutput.getBytes("UTF-8"));
+      output.flush();
+    } catch (IOException e) {
+      throw new ShellCommandException(e);
+    }
+    return new Closeable() {
+      @Override
+      public void close() {}
+    };
+  }
+}
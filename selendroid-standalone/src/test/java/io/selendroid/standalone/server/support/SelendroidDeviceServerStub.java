@@ -43,6 +43,8 @@ public class SelendroidDeviceServerStub extends NanoHTTPD {
     try {
       if (uri.endsWith("/wd/hub/status") && isGet(method)) {
         return respond(testSessionListener.status(params));
+      } else if (uri.endsWith("/wd/hub/sessions") && isGet(method)) {
+        return respond(testSessionListener.listSessions(params));
       } else if (uri.endsWith("/wd/hub/session") && isPost(method)) {
         return respond(testSessionListener.createSession(params));
       } else if (uri.endsWith("/wd/hub/session/:sessionId") && isDelete(method)) {
@@ -17,6 +17,7 @@ import io.selendroid.server.common.SelendroidResponse;
 
 import java.util.Properties;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -63,6 +64,10 @@ public abstract class TestSessionListener {
     return defaultResponseWithMessage(status);
   }
 
+  public SelendroidResponse listSessions(Properties params) {
+    return defaultResponseWithMessage(new JSONArray());
+  }
+
   public SelendroidResponse createSession(Properties params) throws JSONException {
 
     JSONObject sessionCap = new JSONObject();
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.selendroid.server.common.http.impl.NettyHttpResponse;
+import io.selendroid.standalone.server.DeviceResponse;
+import org.apache.commons.io.IOUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DeviceProxyClientTest {
+  private static final byte[] IMAGE = {(byte) 0x89, 'P', 'N', 'G', 0, (byte) 0xff, 13, 10};
+  private HttpServer server;
+  private DeviceProxyClient client;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/wd/hub/session/1/echo", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+        respond(exchange, 200, "{\"status\":0,\"value\":" + body + "}");
+      }
+    });
+    server.createContext("/wd/hub/session/1/unknown", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        respond(exchange, 404, "Not found");
+      }
+    });
+    server.createContext("/wd/hub/session/1/selendroid/screenshot", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "image/png");
+        exchange.sendResponseHeaders(200, IMAGE.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(IMAGE);
+        out.close();
+      }
+    });
+    server.start();
+    client = new DeviceProxyClient(1);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    client.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testPassesPayloadThrough() throws Exception {
+    JSONObject response = new JSONObject(client.forward(server.getAddress().getPort(), "1",
+        "POST", "/wd/hub/session/1/echo", "{\"text\":\"h\u00e9llo\"}").render());
+
+    assertEquals(0, response.getInt("status"));
+    assertEquals("h\u00e9llo", response.getJSONObject("value").getString("text"));
+  }
+
+  @Test
+  public void testReusesConnectionsBeyondPoolSize() throws Exception {
+    // more requests than pooled connections, each must hand its connection back
+    for (int i = 0; i < DeviceProxyClient.CONNECTIONS_PER_DEVICE * 3; i++) {
+      DeviceResponse response = client.forward(server.getAddress().getPort(), "1", "POST",
+          "/wd/hub/session/1/echo", null);
+      assertEquals(0, new JSONObject(response.render()).getJSONObject("value").length());
+    }
+  }
+
+  @Test
+  public void testForwardsResponseBodyUnchanged() throws Exception {
+    String payload = "{\"text\":\"h\u00e9llo\"}";
+    DeviceResponse deviceResponse = client.forward(server.getAddress().getPort(), "1", "POST",
+        "/wd/hub/session/1/echo", payload);
+
+    FullHttpResponse nettyResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+        HttpResponseStatus.OK);
+    deviceResponse.writeTo(new NettyHttpResponse(nettyResponse));
+
+    assertEquals("{\"status\":0,\"value\":" + payload + "}",
+        nettyResponse.content().toString(StandardCharsets.UTF_8));
+    assertEquals(String.valueOf(nettyResponse.content().readableBytes()),
+        nettyResponse.headers().get("Content-Length"));
+  }
+
+  @Test
+  public void testForwardsBinaryResponseWithItsContentType() throws Exception {
+    DeviceResponse deviceResponse = client.forward(server.getAddress().getPort(), "1", "GET",
+        "/wd/hub/session/1/selendroid/screenshot?format=png", null);
+
+    FullHttpResponse nettyResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
+        HttpResponseStatus.OK);
+    deviceResponse.writeTo(new NettyHttpResponse(nettyResponse));
+
+    byte[] content = new byte[nettyResponse.content().readableBytes()];
+    nettyResponse.content().readBytes(content);
+    assertArrayEquals(IMAGE, content);
+    assertEquals("image/png", nettyResponse.headers().get("Content-Type"));
+    assertEquals(String.valueOf(IMAGE.length), nettyResponse.headers().get("Content-Length"));
+  }
+
+  @Test
+  public void testForwardReturnsNullForUnknownCommands() throws Exception {
+    for (int i = 0; i < DeviceProxyClient.CONNECTIONS_PER_DEVICE * 3; i++) {
+      assertNull(client.forward(server.getAddress().getPort(), "1", "GET",
+          "/wd/hub/session/1/unknown", null));
+    }
+  }
+
+  @Test
+  public void testSocketTimeoutDependsOnCommand() {
+    assertEquals(DeviceProxyClient.LONG_COMMAND_TIMEOUT_MS,
+        DeviceProxyClient.socketTimeoutFor("POST", "/wd/hub/session/1/element"));
+    assertEquals(DeviceProxyClient.LONG_COMMAND_TIMEOUT_MS,
+        DeviceProxyClient.socketTimeoutFor("GET", "/wd/hub/session/1/screenshot"));
+    assertEquals(DeviceProxyClient.LONG_COMMAND_TIMEOUT_MS, DeviceProxyClient.socketTimeoutFor(
+        "GET", "/wd/hub/session/1/selendroid/screenshot?format=webp"));
+    assertEquals(DeviceProxyClient.COMMAND_TIMEOUT_MS,
+        DeviceProxyClient.socketTimeoutFor("POST", "/wd/hub/session/1/element/2/click"));
+    assertEquals(DeviceProxyClient.SHORT_COMMAND_TIMEOUT_MS,
+        DeviceProxyClient.socketTimeoutFor("GET", "/wd/hub/session/1/element/2/text"));
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, bytes.length);
+    OutputStream out = exchange.getResponseBody();
+    out.write(bytes);
+    out.close();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2014 eBay Software Foundation and selendroid committers.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.selendroid.standalone.server.util;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.selendroid.standalone.SelendroidConfiguration;
+import io.selendroid.standalone.server.model.SelendroidStandaloneDriver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FolderMonitorTest {
+  private static final long DEBOUNCE_MILLIS = 300;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private SelendroidStandaloneDriver driver;
+  private FolderMonitor monitor;
+
+  @Before
+  public void setUp() throws Exception {
+    driver = mock(SelendroidStandaloneDriver.class);
+    SelendroidConfiguration configuration = mock(SelendroidConfiguration.class);
+    when(configuration.getAppFolderToMonitor()).thenReturn(folder.getRoot().getAbsolutePath());
+    monitor = new FolderMonitor(driver, configuration, DEBOUNCE_MILLIS);
+    monitor.start();
+  }
+
+  @After
+  public void tearDown() {
+    monitor.stop();
+  }
+
+  @Test
+  public void shouldWaitUntilAppHasBeenCopiedCompletely() throws Exception {
+    File apk = new File(folder.getRoot(), "app.apk");
+    FileOutputStream out = new FileOutputStream(apk);
+    try {
+      for (int i = 0; i < 8; i++) {
+        out.write(new byte[1024]);
+        out.flush();
+        Thread.sleep(DEBOUNCE_MILLIS / 3);
+      }
+      verify(driver, never()).replaceInAppsStore(any(File.class));
+    } finally {
+      out.close();
+    }
+
+    verify(driver, timeout(5000)).replaceInAppsStore(apk);
+    Thread.sleep(DEBOUNCE_MILLIS * 2);
+    verify(driver, times(1)).replaceInAppsStore(apk);
+  }
+
+  @Test
+  public void shouldRemoveDeletedApp() throws Exception {
+    File apk = new File(folder.getRoot(), "app.apk");
+    FileUtils.writeStringToFile(apk, "app");
+    verify(driver, timeout(5000)).replaceInAppsStore(apk);
+
+    FileUtils.forceDelete(apk);
+    verify(driver, timeout(5000)).removeFromAppsStore(apk);
+  }
+
+  @Test
+  public void shouldIgnoreOtherFiles() throws Exception {
+    FileUtils.writeStringToFile(new File(folder.getRoot(), "notes.txt"), "not an app");
+    FileUtils.writeStringToFile(new File(folder.getRoot(), "resigned-app.apk"), "resigned");
+    Thread.sleep(DEBOUNCE_MILLIS * 3);
+    verify(driver, never()).replaceInAppsStore(any(File.class));
+  }
+}